@@ -0,0 +1,68 @@
+package com.warmhouse.telemetry.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Typed binary serializer for the service's own cache values
+ * A one-byte type tag followed by the raw value: booleans take 2 bytes and UUIDs 17, instead of JSON text
+ * with class metadata. Tags are control characters, so entries written by the JSON serializer read as
+ * a cache miss rather than failing.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+    
+    private static final byte BOOLEAN = 1;
+    private static final byte UUID_VALUE = 2;
+    private static final byte LONG = 3;
+    private static final byte STRING = 4;
+    
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Boolean) {
+            return new byte[] { BOOLEAN, (byte) (((Boolean) value) ? 1 : 0) };
+        }
+        if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            return ByteBuffer.allocate(17).put(UUID_VALUE)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array();
+        }
+        if (value instanceof Long || value instanceof Integer) {
+            return ByteBuffer.allocate(9).put(LONG).putLong(((Number) value).longValue()).array();
+        }
+        if (value instanceof String) {
+            byte[] text = ((String) value).getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(text.length + 1).put(STRING).put(text).array();
+        }
+        throw new SerializationException("Unsupported cache value type: " + value.getClass().getName());
+    }
+    
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        switch (bytes[0]) {
+            case BOOLEAN:
+                return bytes.length == 2 ? bytes[1] != 0 : null;
+            case UUID_VALUE:
+                return bytes.length == 17 ? new UUID(buffer.getLong(), buffer.getLong()) : null;
+            case LONG:
+                return bytes.length == 9 ? buffer.getLong() : null;
+            case STRING:
+                return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+            default:
+                // Written in another format (e.g. JSON before this serializer), treat as absent
+                return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.warmhouse.telemetry.config;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+/**
+ * Redis template for hot cache entries (device validation, device location), values in the compact
+ * typed encoding of {@link CompactRedisSerializer}
+ */
+public class CompactRedisTemplate extends RedisTemplate<String, Object> {
+    
+    public CompactRedisTemplate(RedisConnectionFactory connectionFactory) {
+        setConnectionFactory(connectionFactory);
+        setKeySerializer(new StringRedisSerializer());
+        setHashKeySerializer(new StringRedisSerializer());
+        setValueSerializer(new CompactRedisSerializer());
+        setHashValueSerializer(new CompactRedisSerializer());
+        afterPropertiesSet();
+    }
+}
@@ -1,7 +1,10 @@
 package com.warmhouse.telemetry.config;
 
 import com.warmhouse.telemetry.events.TelemetryEventListener;
+import com.warmhouse.telemetry.service.DeviceCacheInvalidator;
+import com.warmhouse.telemetry.service.DeviceDirectory;
 import com.warmhouse.telemetry.service.DeviceValidationService;
+import com.warmhouse.telemetry.service.SensorCorrelationStore;
 import com.warmhouse.telemetry.service.TelemetryCleanupService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,8 +25,12 @@ public class EventListenerConfig {
     @Bean
     public TelemetryEventListener telemetryEventListener(DeviceValidationService deviceValidationService,
                                                          RedisTemplate<String, Object> redisTemplate,
-                                                         TelemetryCleanupService cleanupService) {
+                                                         TelemetryCleanupService cleanupService,
+                                                         DeviceCacheInvalidator cacheInvalidator,
+                                                         DeviceDirectory deviceDirectory,
+                                                         SensorCorrelationStore sensorCorrelationStore) {
         log.info("Creating TelemetryEventListener bean explicitly");
-        return new TelemetryEventListener(deviceValidationService, redisTemplate, cleanupService);
+        return new TelemetryEventListener(deviceValidationService, redisTemplate, cleanupService,
+                cacheInvalidator, deviceDirectory, sensorCorrelationStore);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.warmhouse.telemetry.config;
+
+import com.warmhouse.telemetry.events.TelemetryEventPublisher;
+import com.warmhouse.telemetry.service.DependencyBulkheads;
+import com.warmhouse.telemetry.service.HealthProbeService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Health indicators backed by the background prober
+ * They replace the auto-configured Redis and RabbitMQ indicators (same bean names), which would call
+ * the dependency on every request. Redis and RabbitMQ report DEGRADED rather than DOWN: ingest keeps
+ * working without them, so they must not fail readiness or liveness.
+ */
+@Configuration
+public class HealthConfig {
+    
+    public static final Status DEGRADED = new Status("DEGRADED", "Running without the dependency or with slow responses");
+    
+    @Bean
+    public HealthIndicator influxdbHealthIndicator(HealthProbeService probes) {
+        return () -> cached(probes, HealthProbeService.INFLUXDB);
+    }
+    
+    @Bean
+    public HealthIndicator redisHealthIndicator(HealthProbeService probes) {
+        return () -> cached(probes, HealthProbeService.REDIS);
+    }
+    
+    @Bean
+    public HealthIndicator rabbitHealthIndicator(HealthProbeService probes) {
+        return () -> cached(probes, HealthProbeService.RABBITMQ);
+    }
+    
+    /**
+     * Degraded ingest mode: Redis or RabbitMQ bypassed by their circuit breakers
+     */
+    @Bean
+    public HealthIndicator ingestModeHealthIndicator(DependencyBulkheads bulkheads, TelemetryEventPublisher eventPublisher) {
+        return () -> Health.status(bulkheads.isDegraded() ? DEGRADED : Status.UP)
+                .withDetail("mode", bulkheads.isDegraded() ? "DEGRADED" : "NORMAL")
+                .withDetail("dependencies", bulkheads.getStatus())
+                .withDetail("queued_events", eventPublisher.getLocalQueueSize())
+                .build();
+    }
+    
+    private static Health cached(HealthProbeService probes, String dependency) {
+        Status status;
+        switch (probes.getState(dependency)) {
+            case UP:
+                status = Status.UP;
+                break;
+            case DEGRADED:
+                status = DEGRADED;
+                break;
+            case DOWN:
+                status = Status.DOWN;
+                break;
+            default:
+                status = Status.UNKNOWN;
+        }
+        return Health.status(status).withDetails(probes.getDetails(dependency)).build();
+    }
+}
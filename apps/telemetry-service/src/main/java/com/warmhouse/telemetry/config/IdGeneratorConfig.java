@@ -0,0 +1,30 @@
+package com.warmhouse.telemetry.config;
+
+import com.warmhouse.telemetry.util.IdGenerator;
+import com.warmhouse.telemetry.util.TimeOrderedIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Id generator for measurement and event ids
+ */
+@Configuration
+public class IdGeneratorConfig {
+    
+    // time-ordered (UUID version 7) or random (version 4)
+    @Value("${telemetry.ids.generator:time-ordered}")
+    private String generator;
+    
+    @Bean
+    public IdGenerator idGenerator() {
+        switch (generator) {
+            case "time-ordered":
+                return new TimeOrderedIdGenerator();
+            case "random":
+                return IdGenerator.RANDOM;
+            default:
+                throw new IllegalArgumentException("Unknown id generator: " + generator);
+        }
+    }
+}
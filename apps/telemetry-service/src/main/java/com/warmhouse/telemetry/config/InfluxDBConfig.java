@@ -5,12 +5,19 @@ import com.influxdb.client.InfluxDBClientFactory;
 import com.influxdb.client.WriteApiBlocking;
 import com.influxdb.client.QueryApi;
 import com.influxdb.client.DeleteApi;
+import com.warmhouse.telemetry.service.InfluxShard;
+import com.warmhouse.telemetry.service.InfluxShardRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Configuration for InfluxDB client
  */
@@ -31,10 +38,29 @@ public class InfluxDBConfig {
     @Value("${influxdb.bucket}")
     private String bucket;
     
+    // Sharded endpoints as name=url pairs; empty uses influxdb.url as the only shard
+    @Value("${influxdb.shards:}")
+    private String shards;
+    
+    // Ring before the last shard change, kept until the rebalance has been migrated
+    @Value("${influxdb.previous-shards:}")
+    private String previousShards;
+    
+    @Value("${influxdb.shard-virtual-nodes:128}")
+    private int virtualNodes;
+    
+    @Value("${influxdb.shard-learned-devices:100000}")
+    private int maxLearnedDevices;
+    
+    /**
+     * Client of the primary shard (the first configured one)
+     */
     @Bean
     public InfluxDBClient influxDBClient() {
-        log.info("Connecting to InfluxDB at: {}", url);
-        InfluxDBClient client = InfluxDBClientFactory.create(url, token.toCharArray(), org, bucket);
+        Map<String, String> specs = InfluxShardRouter.parseSpecs(shards);
+        String primaryUrl = specs.isEmpty() ? url : specs.values().iterator().next();
+        log.info("Connecting to InfluxDB at: {}", primaryUrl);
+        InfluxDBClient client = InfluxDBClientFactory.create(primaryUrl, token.toCharArray(), org, bucket);
         
         // Test connection
         try {
@@ -48,6 +74,34 @@ public class InfluxDBConfig {
         return client;
     }
     
+    @Bean(destroyMethod = "close")
+    public InfluxShardRouter influxShardRouter(InfluxDBClient primary) {
+        Map<String, String> current = InfluxShardRouter.parseSpecs(shards);
+        Map<String, String> previous = InfluxShardRouter.parseSpecs(previousShards);
+        if (current.isEmpty()) {
+            current.put("default", url);
+        }
+        
+        Map<String, String> all = new LinkedHashMap<>(current);
+        previous.forEach(all::putIfAbsent);
+        
+        String primaryName = current.keySet().iterator().next();
+        List<InfluxShard> endpoints = new ArrayList<>();
+        all.forEach((name, shardUrl) -> {
+            if (name.equals(primaryName)) {
+                endpoints.add(new InfluxShard(name, shardUrl, primary, false));
+            } else {
+                InfluxDBClient client = InfluxDBClientFactory.create(shardUrl, token.toCharArray(), org, bucket);
+                endpoints.add(new InfluxShard(name, shardUrl, client, true));
+            }
+        });
+        
+        log.info("InfluxDB shards: {}{}", current.keySet(),
+                previous.isEmpty() ? "" : " (rebalancing from " + previous.keySet() + ")");
+        return new InfluxShardRouter(endpoints, new ArrayList<>(current.keySet()),
+                new ArrayList<>(previous.keySet()), virtualNodes, maxLearnedDevices);
+    }
+    
     @Bean
     public WriteApiBlocking writeApi(InfluxDBClient client) {
         return client.getWriteApiBlocking();
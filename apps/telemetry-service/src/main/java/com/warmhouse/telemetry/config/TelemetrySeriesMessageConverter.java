@@ -0,0 +1,50 @@
+package com.warmhouse.telemetry.config;
+
+import com.warmhouse.telemetry.dto.TelemetrySeriesBinaryCodec;
+import com.warmhouse.telemetry.dto.TelemetrySeriesResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * HTTP message converter for the compact binary telemetry series format
+ * Selected only when the client explicitly accepts the vendor media type
+ */
+public class TelemetrySeriesMessageConverter extends AbstractHttpMessageConverter<TelemetrySeriesResponse> {
+    
+    public static final MediaType TELEMETRY_SERIES = MediaType.parseMediaType(TelemetrySeriesBinaryCodec.MEDIA_TYPE);
+    
+    public TelemetrySeriesMessageConverter() {
+        super(TELEMETRY_SERIES);
+    }
+    
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TelemetrySeriesResponse.class.isAssignableFrom(clazz);
+    }
+    
+    @Override
+    protected TelemetrySeriesResponse readInternal(Class<? extends TelemetrySeriesResponse> clazz,
+                                                   HttpInputMessage inputMessage) throws IOException {
+        try {
+            return new TelemetrySeriesResponse(
+                TelemetrySeriesBinaryCodec.decode(new DataInputStream(inputMessage.getBody())));
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Invalid telemetry series block: " + e.getMessage(), e, inputMessage);
+        }
+    }
+    
+    @Override
+    protected void writeInternal(TelemetrySeriesResponse response, HttpOutputMessage outputMessage) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputMessage.getBody()));
+        TelemetrySeriesBinaryCodec.encode(response.getSeries(), out);
+        out.flush();
+    }
+}
@@ -0,0 +1,88 @@
+package com.warmhouse.telemetry.controller;
+
+import com.warmhouse.telemetry.model.AlertRule;
+import com.warmhouse.telemetry.service.AlertRuleService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for alert rule management
+ */
+@RestController
+@RequestMapping("/api/v1/telemetry/rules")
+@RequiredArgsConstructor
+public class AlertRuleController {
+    
+    private static final Logger log = LoggerFactory.getLogger(AlertRuleController.class);
+    
+    private final AlertRuleService alertRuleService;
+    
+    /**
+     * List alert rules
+     * GET /api/v1/telemetry/rules
+     */
+    @GetMapping
+    public ResponseEntity<List<AlertRule>> getRules() {
+        try {
+            return ResponseEntity.ok(alertRuleService.getRules());
+        } catch (Exception e) {
+            log.error("Error listing alert rules: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Create alert rule
+     * POST /api/v1/telemetry/rules
+     */
+    @PostMapping
+    public ResponseEntity<AlertRule> createRule(@Valid @RequestBody AlertRule rule) {
+        rule.setRuleId(null);
+        return save(rule, HttpStatus.CREATED);
+    }
+    
+    /**
+     * Create or replace alert rule
+     * PUT /api/v1/telemetry/rules/{ruleId}
+     */
+    @PutMapping("/{ruleId}")
+    public ResponseEntity<AlertRule> putRule(@PathVariable String ruleId, @Valid @RequestBody AlertRule rule) {
+        rule.setRuleId(ruleId);
+        return save(rule, HttpStatus.OK);
+    }
+    
+    /**
+     * Delete alert rule
+     * DELETE /api/v1/telemetry/rules/{ruleId}
+     */
+    @DeleteMapping("/{ruleId}")
+    public ResponseEntity<Void> deleteRule(@PathVariable String ruleId) {
+        try {
+            return alertRuleService.deleteRule(ruleId)
+                    ? ResponseEntity.noContent().build()
+                    : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error deleting alert rule {}: {}", ruleId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    private ResponseEntity<AlertRule> save(AlertRule rule, HttpStatus status) {
+        try {
+            return ResponseEntity.status(status).body(alertRuleService.saveRule(rule));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid alert rule: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error saving alert rule: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.warmhouse.telemetry.controller;
 
+import com.warmhouse.telemetry.service.DeviceTombstones;
 import com.warmhouse.telemetry.service.TelemetryCleanupService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -22,9 +23,11 @@ public class CleanupController {
     private static final Logger log = LoggerFactory.getLogger(CleanupController.class);
     
     private final TelemetryCleanupService cleanupService;
+    private final DeviceTombstones tombstones;
     
     /**
      * Clean up all telemetry data for a specific device
+     * The device is hidden at once, its stored data is purged in the next purge window
      * DELETE /api/v1/cleanup/device/{deviceId}
      */
     @DeleteMapping("/device/{deviceId}")
@@ -38,7 +41,7 @@ public class CleanupController {
             response.put("device_id", deviceId.toString());
             response.put("status", success ? "success" : "partial_failure");
             response.put("message", success ? 
-                "Successfully cleaned up all data for device" : 
+                "Device data hidden, storage purge scheduled" : 
                 "Cleanup completed with some errors");
             
             if (success) {
@@ -109,6 +112,7 @@ public class CleanupController {
         response.put("status", "ok");
         response.put("service", "telemetry-cleanup");
         response.put("message", "Cleanup service is operational");
+        response.put("tombstones", tombstones.getStatus());
         
         return ResponseEntity.ok(response);
     }
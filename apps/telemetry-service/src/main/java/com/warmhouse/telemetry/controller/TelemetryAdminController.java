@@ -0,0 +1,160 @@
+package com.warmhouse.telemetry.controller;
+
+import com.warmhouse.telemetry.service.AdmissionControlService;
+import com.warmhouse.telemetry.service.DeviceDirectory;
+import com.warmhouse.telemetry.service.InfluxShard;
+import com.warmhouse.telemetry.service.InfluxShardRouter;
+import com.warmhouse.telemetry.service.InstanceMembershipService;
+import com.warmhouse.telemetry.service.SensorCorrelationStore;
+import com.warmhouse.telemetry.service.ShardMigrationService;
+import com.warmhouse.telemetry.service.TagCardinalityGuard;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * REST controller for telemetry administration
+ */
+@RestController
+@RequestMapping("/api/v1/telemetry/admin")
+@RequiredArgsConstructor
+public class TelemetryAdminController {
+    
+    private static final Logger log = LoggerFactory.getLogger(TelemetryAdminController.class);
+    
+    private final TagCardinalityGuard tagCardinalityGuard;
+    private final InfluxShardRouter shardRouter;
+    private final ShardMigrationService shardMigrationService;
+    private final InstanceMembershipService membershipService;
+    private final AdmissionControlService admissionControl;
+    private final DeviceDirectory deviceDirectory;
+    private final SensorCorrelationStore sensorCorrelationStore;
+    
+    /**
+     * Tag cardinality per key with offending devices
+     * GET /api/v1/telemetry/admin/tags
+     */
+    @GetMapping("/tags")
+    public ResponseEntity<Map<String, Object>> getTagCardinality(
+            @RequestParam(defaultValue = "false") boolean overBudgetOnly) {
+        return ResponseEntity.ok(tagCardinalityGuard.getReport(overBudgetOnly));
+    }
+    
+    /**
+     * Reset cardinality tracking for a tag key
+     * DELETE /api/v1/telemetry/admin/tags/{key}
+     */
+    @DeleteMapping("/tags/{key}")
+    public ResponseEntity<Void> resetTagCardinality(@PathVariable String key) {
+        log.info("Cardinality reset requested for tag key: {}", key);
+        
+        if (!tagCardinalityGuard.reset(key)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+    
+    /**
+     * InfluxDB shards, ring ownership and migration status
+     * GET /api/v1/telemetry/admin/shards
+     */
+    @GetMapping("/shards")
+    public ResponseEntity<Map<String, Object>> getShards() {
+        List<Map<String, Object>> shards = new ArrayList<>();
+        for (InfluxShard shard : shardRouter.getShards()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", shard.getName());
+            entry.put("url", shard.getUrl());
+            entry.put("on_ring", shardRouter.getCurrentShards().contains(shard));
+            entry.put("ownership", shardRouter.ownership().getOrDefault(shard.getName(), 0.0));
+            shards.add(entry);
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("shards", shards);
+        response.put("rebalancing", shardRouter.isRebalancing());
+        response.put("migration", shardMigrationService.getStatus());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Move houses to their owner on the current ring
+     * POST /api/v1/telemetry/admin/shards/migrate
+     */
+    @PostMapping("/shards/migrate")
+    public ResponseEntity<Map<String, Object>> migrateShards(@RequestParam(defaultValue = "false") boolean dryRun) {
+        log.info("Shard migration requested (dry run: {})", dryRun);
+        
+        if (!shardMigrationService.start(dryRun)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(shardMigrationService.getStatus());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(shardMigrationService.getStatus());
+    }
+    
+    /**
+     * Live instances and their share of device ownership
+     * GET /api/v1/telemetry/admin/partitions
+     */
+    @GetMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> getPartitions() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("enabled", membershipService.isEnabled());
+        body.put("instance_id", membershipService.getInstanceId());
+        body.put("members", membershipService.getMembers());
+        return ResponseEntity.ok(body);
+    }
+    
+    /**
+     * Admission limits, pool usage and rejection counts
+     * GET /api/v1/telemetry/admin/admission
+     */
+    @GetMapping("/admission")
+    public ResponseEntity<Map<String, Object>> getAdmission() {
+        return ResponseEntity.ok(admissionControl.getStatus());
+    }
+    
+    /**
+     * Device directory size, optionally with the devices of a house or location
+     * GET /api/v1/telemetry/admin/directory
+     */
+    @GetMapping("/directory")
+    public ResponseEntity<Map<String, Object>> getDirectory(@RequestParam(required = false) UUID houseId,
+                                                            @RequestParam(required = false) UUID locationId) {
+        return ResponseEntity.ok(deviceDirectory.getStatus(houseId, locationId));
+    }
+    
+    /**
+     * Sensors correlated with a device, location or type, read through the index sets
+     * GET /api/v1/telemetry/admin/sensor-correlations
+     */
+    @GetMapping("/sensor-correlations")
+    public ResponseEntity<List<Map<String, Object>>> getSensorCorrelations(
+            @RequestParam(required = false) UUID deviceId,
+            @RequestParam(required = false) String location,
+            @RequestParam(required = false) String type) {
+        try {
+            if (deviceId != null) {
+                return ResponseEntity.ok(sensorCorrelationStore.findByDevice(deviceId));
+            }
+            if (location != null) {
+                return ResponseEntity.ok(sensorCorrelationStore.findByLocation(location));
+            }
+            if (type != null) {
+                return ResponseEntity.ok(sensorCorrelationStore.findByType(type));
+            }
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error reading sensor correlations: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
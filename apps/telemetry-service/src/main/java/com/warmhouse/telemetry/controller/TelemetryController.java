@@ -1,18 +1,41 @@
 package com.warmhouse.telemetry.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warmhouse.telemetry.dto.StatisticsQuery;
 import com.warmhouse.telemetry.dto.TelemetryRequest;
 import com.warmhouse.telemetry.dto.TelemetryResponse;
+import com.warmhouse.telemetry.dto.TelemetrySeriesResponse;
 import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import com.warmhouse.telemetry.model.MeasurementSchema;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+import com.warmhouse.telemetry.service.AdmissionControlService;
+import com.warmhouse.telemetry.service.AdmissionRejectedException;
+import com.warmhouse.telemetry.service.BulkStatisticsService;
+import com.warmhouse.telemetry.service.IngestForwardingService;
+import com.warmhouse.telemetry.service.LiveTelemetryHub;
+import com.warmhouse.telemetry.service.MeasurementSchemaCatalog;
 import com.warmhouse.telemetry.service.TelemetryService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -25,19 +48,50 @@ public class TelemetryController {
     
     private static final Logger log = LoggerFactory.getLogger(TelemetryController.class);
     
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    
     private final TelemetryService telemetryService;
+    private final LiveTelemetryHub liveTelemetryHub;
+    private final MeasurementSchemaCatalog schemaCatalog;
+    private final AdmissionControlService admissionControl;
+    private final BulkStatisticsService bulkStatisticsService;
+    private final IngestForwardingService forwardingService;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${telemetry.bulk-statistics.timeout:600000}")
+    private long bulkStatisticsTimeoutMs;
     
     /**
      * Store telemetry data
      * POST /api/v1/telemetry
+     * A retry (same Idempotency-Key, or same device, type and timestamp) gets the original measurement back
      */
     @PostMapping
-    public ResponseEntity<TelemetryResponse> storeTelemetryData(@Valid @RequestBody TelemetryRequest request) {
+    public ResponseEntity<TelemetryResponse> storeTelemetryData(
+            @Valid @RequestBody TelemetryRequest request,
+            @RequestHeader(value = IngestForwardingService.FORWARDED_HEADER, required = false) String forwardedBy,
+            @RequestHeader(value = IngestForwardingService.FORWARDING_SECRET_HEADER, required = false) String forwardingSecret,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Received telemetry data for device: {}", request.getDeviceId());
         
-        try {
-            TelemetryResponse response = telemetryService.storeTelemetryData(request);
+        if (idempotencyKey != null && request.getIdempotencyKey() == null) {
+            if (idempotencyKey.length() > 128) {
+                return ResponseEntity.badRequest().build();
+            }
+            request.setIdempotencyKey(idempotencyKey);
+        }
+        
+        boolean forwarded = forwardingService.isTrustedForward(forwardedBy, forwardingSecret);
+        try (AdmissionControlService.Permit permit = admissionControl.admitIngest(List.of(request), forwarded)) {
+            TelemetryResponse response = telemetryService.storeTelemetryData(request, forwarded);
+            if (response.isReplayed()) {
+                return ResponseEntity.status(HttpStatus.CREATED).header(REPLAYED_HEADER, "true").body(response);
+            }
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
         } catch (IllegalArgumentException e) {
             log.error("Invalid request: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -52,12 +106,21 @@ public class TelemetryController {
      * POST /api/v1/telemetry/batch
      */
     @PostMapping("/batch")
-    public ResponseEntity<Void> storeTelemetryDataBatch(@Valid @RequestBody List<TelemetryRequest> requests) {
+    public ResponseEntity<Void> storeTelemetryDataBatch(
+            @Valid @RequestBody List<TelemetryRequest> requests,
+            @RequestHeader(value = IngestForwardingService.FORWARDED_HEADER, required = false) String forwardedBy,
+            @RequestHeader(value = IngestForwardingService.FORWARDING_SECRET_HEADER, required = false) String forwardingSecret) {
         log.info("Received batch of {} telemetry data points", requests.size());
         
-        try {
-            telemetryService.storeTelemetryDataBatch(requests);
+        boolean forwarded = forwardingService.isTrustedForward(forwardedBy, forwardingSecret);
+        try (AdmissionControlService.Permit permit = admissionControl.admitIngest(requests, forwarded)) {
+            telemetryService.storeTelemetryDataBatch(requests, forwarded);
             return ResponseEntity.status(HttpStatus.CREATED).build();
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error storing telemetry data batch: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -67,17 +130,35 @@ public class TelemetryController {
     /**
      * Get telemetry data for a specific device
      * GET /api/v1/telemetry/devices/{deviceId}
+     * Paged when limit or cursor is given; the next page's cursor is returned in the X-Next-Cursor header
      */
     @GetMapping("/devices/{deviceId}")
-    public ResponseEntity<List<TelemetryResponse>> getTelemetryByDevice(
+    public ResponseEntity<TelemetrySeriesResponse> getTelemetryByDevice(
             @PathVariable UUID deviceId,
-            @RequestParam(defaultValue = "24h") String period) {
+            @RequestParam(defaultValue = "24h") String period,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant end,
+            @RequestParam(required = false) TelemetrySeries.Interpolation reconstruct,
+            @RequestParam(defaultValue = "60") long stepSeconds,
+            @RequestParam(required = false) Long resolutionSeconds,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
         
         log.info("Fetching telemetry data for device: {} with period: {}", deviceId, period);
         
-        try {
-            List<TelemetryResponse> responses = telemetryService.getTelemetryByDevice(deviceId, period);
-            return ResponseEntity.ok(responses);
+        try (AdmissionControlService.Permit permit =
+                     admissionControl.admitQuery(telemetryService.rangeDuration(period, start, end))) {
+            TelemetrySeriesResponse response = telemetryService.getTelemetryByDevice(
+                    deviceId, period, start, end, reconstruct, stepSeconds, resolutionSeconds, limit, cursor);
+            if (response.getNextCursor() != null) {
+                return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, response.getNextCursor()).body(response);
+            }
+            return ResponseEntity.ok(response);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error fetching telemetry data: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -97,13 +178,127 @@ public class TelemetryController {
         log.info("Calculating statistics for device: {}, type: {}, period: {}", 
                 deviceId, measurementType, period);
         
-        try {
+        try (AdmissionControlService.Permit permit =
+                     admissionControl.admitQuery(telemetryService.periodDuration(period))) {
             TelemetryStatistics stats = telemetryService.getTelemetryStatistics(
                     deviceId, measurementType, period);
             return ResponseEntity.ok(stats);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             log.error("Error calculating telemetry statistics: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Get telemetry statistics for many (device, measurement type, period) tuples
+     * POST /api/v1/telemetry/statistics/bulk
+     * Streams one JSON object per line as groups of tuples complete; failed tuples carry an error field
+     */
+    @PostMapping(value = "/statistics/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> getTelemetryStatisticsBulk(
+            @Valid @RequestBody List<StatisticsQuery> queries,
+            @RequestParam(defaultValue = "false") boolean percentiles) {
+        
+        log.info("Calculating bulk statistics for {} tuples", queries.size());
+        
+        AdmissionControlService.Permit permit;
+        try {
+            permit = admissionControl.admitExport();
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        }
+        
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(bulkStatisticsTimeoutMs);
+        try {
+            bulkStatisticsService.calculate(queries, percentiles,
+                    stats -> sendLine(emitter, stats),
+                    (query, error) -> {
+                        Map<String, Object> failed = new LinkedHashMap<>();
+                        failed.put("deviceId", query.getDeviceId());
+                        failed.put("measurementType", query.getMeasurementType());
+                        failed.put("period", query.getPeriod());
+                        failed.put("error", error.getMessage());
+                        sendLine(emitter, failed);
+                    })
+                    .whenComplete((done, error) -> {
+                        permit.close();
+                        if (error != null) {
+                            log.warn("Bulk statistics stopped: {}", error.getMessage());
+                            emitter.completeWithError(error);
+                        } else {
+                            emitter.complete();
+                        }
+                    });
+        } catch (IllegalArgumentException e) {
+            permit.close();
+            log.error("Invalid bulk statistics request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            permit.close();
+            log.error("Error calculating bulk statistics: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+    
+    /**
+     * Subscribe to live telemetry for a device, house or location (Server-Sent Events)
+     * GET /api/v1/telemetry/stream
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTelemetry(
+            @RequestParam(required = false) UUID deviceId,
+            @RequestParam(required = false) UUID houseId,
+            @RequestParam(required = false) UUID locationId) {
+        
+        int filters = (deviceId != null ? 1 : 0) + (houseId != null ? 1 : 0) + (locationId != null ? 1 : 0);
+        if (filters != 1) {
+            log.error("Invalid live subscription: exactly one of deviceId, houseId, locationId is required");
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            SseEmitter emitter;
+            if (deviceId != null) {
+                emitter = liveTelemetryHub.subscribe(LiveTelemetryHub.Scope.DEVICE, deviceId);
+            } else if (houseId != null) {
+                emitter = liveTelemetryHub.subscribe(LiveTelemetryHub.Scope.HOUSE, houseId);
+            } else {
+                emitter = liveTelemetryHub.subscribe(LiveTelemetryHub.Scope.LOCATION, locationId);
+            }
+            return ResponseEntity.ok(emitter);
+        } catch (IllegalStateException e) {
+            log.warn("Rejected live subscription: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+    
+    /**
+     * Measurement type schemas used to validate readings
+     * GET /api/v1/telemetry/schemas
+     */
+    @GetMapping("/schemas")
+    public ResponseEntity<Collection<MeasurementSchema>> getMeasurementSchemas() {
+        return ResponseEntity.ok(schemaCatalog.getSchemas());
+    }
+    
+    /**
+     * Write one newline-delimited JSON object; failures (e.g. the client went away) stop the bulk request
+     */
+    private void sendLine(ResponseBodyEmitter emitter, Object value) {
+        try {
+            emitter.send(objectMapper.writeValueAsString(value) + "\n", MediaType.APPLICATION_NDJSON);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static <T> ResponseEntity<T> tooManyRequests(AdmissionRejectedException e) {
+        log.warn("Request refused by admission control: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
+}
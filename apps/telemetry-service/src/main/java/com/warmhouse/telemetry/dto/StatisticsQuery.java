@@ -0,0 +1,25 @@
+package com.warmhouse.telemetry.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * DTO for one (device, measurement type, period) tuple of a bulk statistics request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatisticsQuery {
+    
+    @NotNull(message = "Device ID is required")
+    private UUID deviceId;
+    
+    @NotNull(message = "Measurement type is required")
+    private String measurementType;
+    
+    private String period = "24h"; // e.g., "1h", "24h", "7d"
+}
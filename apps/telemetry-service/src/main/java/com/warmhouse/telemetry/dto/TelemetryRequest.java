@@ -2,6 +2,7 @@ package com.warmhouse.telemetry.dto;
 
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -45,4 +46,8 @@ public class TelemetryRequest {
     // Optional tags and metadata
     private Map<String, String> tags;
     private Map<String, Object> metadata;
+    
+    // Optional key identifying the reading across gateway retries, scoped to the device
+    @Size(max = 128, message = "Idempotency key must be at most 128 characters")
+    private String idempotencyKey;
 } 
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.warmhouse.telemetry.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -33,6 +34,10 @@ public class TelemetryResponse {
     private Map<String, String> tags;
     private Map<String, Object> metadata;
     
+    // Answer to a retried reading, reported in a header rather than the body
+    @JsonIgnore
+    private boolean replayed;
+    
     // Factory method from model
     public static TelemetryResponse fromModel(com.warmhouse.telemetry.model.TelemetryData data) {
         return TelemetryResponse.builder()
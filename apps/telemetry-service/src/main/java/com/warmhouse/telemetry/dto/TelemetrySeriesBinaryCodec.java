@@ -0,0 +1,237 @@
+package com.warmhouse.telemetry.dto;
+
+import com.warmhouse.telemetry.model.TelemetrySeries;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.warmhouse.telemetry.util.VarInts.readVarint;
+import static com.warmhouse.telemetry.util.VarInts.readVarintAsInt;
+import static com.warmhouse.telemetry.util.VarInts.unzigzag;
+import static com.warmhouse.telemetry.util.VarInts.writeVarint;
+import static com.warmhouse.telemetry.util.VarInts.zigzag;
+
+/**
+ * Compact columnar binary encoding for telemetry series
+ *
+ * Layout (all multi-byte integers big-endian, varints are unsigned LEB128,
+ * zigzag varints are LEB128 of zigzag-encoded signed values):
+ * <pre>
+ * block   := magic "WHTS" | version u8 | seriesCount varint | series*
+ * series  := deviceId 16B | houseId 16B | locationId 16B
+ *            | measurementType string | unit string | pointCount varint
+ *            | timestamps | values | qualities          (columns omitted when pointCount = 0)
+ * string  := byteLength varint | UTF-8 bytes (length 0 = empty/absent)
+ * timestamps := first i64 (epoch ns) | firstDelta zigzag | deltaOfDelta zigzag * (pointCount - 2)
+ * values  := first f64 bits i64 | xorValue * (pointCount - 1)
+ * xorValue := 0x00 when equal to previous value,
+ *             else control u8 (leadingZeroBytes &lt;&lt; 4 | meaningfulBytes) | meaningful bytes
+ * qualities := (runLength varint | QualityCode u8)* until pointCount codes are covered
+ * </pre>
+ * Regularly sampled, slowly changing series cost about 2-3 bytes per point.
+ */
+public final class TelemetrySeriesBinaryCodec {
+    
+    public static final String MEDIA_TYPE = "application/vnd.warmhouse.telemetry-series";
+    
+    static final int MAGIC = 0x57485453; // "WHTS"
+    static final int VERSION = 1;
+    
+    private TelemetrySeriesBinaryCodec() {
+    }
+    
+    /**
+     * Encode series into the binary block format
+     */
+    public static void encode(List<TelemetrySeries> seriesList, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarint(out, seriesList.size());
+        for (TelemetrySeries series : seriesList) {
+            encodeSeries(series, out);
+        }
+    }
+    
+    /**
+     * Decode a binary block back into columnar series
+     */
+    public static List<TelemetrySeries> decode(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a telemetry series block");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported telemetry series block version: " + version);
+        }
+        
+        int seriesCount = readVarintAsInt(in);
+        List<TelemetrySeries> result = new ArrayList<>(seriesCount);
+        for (int i = 0; i < seriesCount; i++) {
+            result.add(decodeSeries(in));
+        }
+        return result;
+    }
+    
+    private static void encodeSeries(TelemetrySeries series, DataOutput out) throws IOException {
+        writeUuid(out, series.getDeviceId());
+        writeUuid(out, series.getHouseId());
+        writeUuid(out, series.getLocationId());
+        writeString(out, series.getMeasurementType());
+        writeString(out, series.getUnit());
+        
+        int size = series.getSize();
+        writeVarint(out, size);
+        if (size == 0) {
+            return;
+        }
+        
+        // Timestamps: first raw, then delta and delta-of-delta
+        long prevTs = series.getTimestampNanos(0);
+        long prevDelta = 0;
+        out.writeLong(prevTs);
+        for (int i = 1; i < size; i++) {
+            long ts = series.getTimestampNanos(i);
+            long delta = ts - prevTs;
+            writeVarint(out, zigzag(i == 1 ? delta : delta - prevDelta));
+            prevDelta = delta;
+            prevTs = ts;
+        }
+        
+        // Values: first raw bits, then byte-aligned XOR with previous
+        long prevBits = Double.doubleToRawLongBits(series.getValue(0));
+        out.writeLong(prevBits);
+        for (int i = 1; i < size; i++) {
+            long bits = Double.doubleToRawLongBits(series.getValue(i));
+            writeXor(out, bits ^ prevBits);
+            prevBits = bits;
+        }
+        
+        // Qualities: run-length encoded codes
+        byte runCode = series.getQualityCode(0);
+        int runLength = 1;
+        for (int i = 1; i < size; i++) {
+            byte code = series.getQualityCode(i);
+            if (code == runCode) {
+                runLength++;
+            } else {
+                writeVarint(out, runLength);
+                out.writeByte(runCode);
+                runCode = code;
+                runLength = 1;
+            }
+        }
+        writeVarint(out, runLength);
+        out.writeByte(runCode);
+    }
+    
+    private static TelemetrySeries decodeSeries(DataInput in) throws IOException {
+        UUID deviceId = readUuid(in);
+        UUID houseId = readUuid(in);
+        UUID locationId = readUuid(in);
+        String measurementType = readString(in);
+        String unit = readString(in);
+        
+        int size = readVarintAsInt(in);
+        long[] timestamps = new long[size];
+        double[] values = new double[size];
+        byte[] qualities = new byte[size];
+        
+        if (size > 0) {
+            timestamps[0] = in.readLong();
+            long delta = 0;
+            for (int i = 1; i < size; i++) {
+                long encoded = unzigzag(readVarint(in));
+                delta = i == 1 ? encoded : delta + encoded;
+                timestamps[i] = timestamps[i - 1] + delta;
+            }
+            
+            long bits = in.readLong();
+            values[0] = Double.longBitsToDouble(bits);
+            for (int i = 1; i < size; i++) {
+                bits ^= readXor(in);
+                values[i] = Double.longBitsToDouble(bits);
+            }
+            
+            int filled = 0;
+            while (filled < size) {
+                int runLength = readVarintAsInt(in);
+                byte code = in.readByte();
+                if (runLength <= 0 || filled + runLength > size) {
+                    throw new IOException("Corrupt quality run length: " + runLength);
+                }
+                for (int i = 0; i < runLength; i++) {
+                    qualities[filled++] = code;
+                }
+            }
+        }
+        
+        TelemetrySeries series = new TelemetrySeries(deviceId, houseId, locationId, measurementType, unit, size);
+        for (int i = 0; i < size; i++) {
+            series.append(timestamps[i], values[i], qualities[i]);
+        }
+        return series;
+    }
+    
+    private static void writeXor(DataOutput out, long xor) throws IOException {
+        if (xor == 0) {
+            out.writeByte(0);
+            return;
+        }
+        int leadingBytes = Long.numberOfLeadingZeros(xor) / 8;
+        int trailingBytes = Long.numberOfTrailingZeros(xor) / 8;
+        int meaningfulBytes = 8 - leadingBytes - trailingBytes;
+        out.writeByte((leadingBytes << 4) | meaningfulBytes);
+        for (int i = meaningfulBytes - 1; i >= 0; i--) {
+            out.writeByte((int) (xor >>> ((trailingBytes + i) * 8)));
+        }
+    }
+    
+    private static long readXor(DataInput in) throws IOException {
+        int control = in.readUnsignedByte();
+        if (control == 0) {
+            return 0;
+        }
+        int leadingBytes = control >>> 4;
+        int meaningfulBytes = control & 0x0F;
+        int trailingBytes = 8 - leadingBytes - meaningfulBytes;
+        if (meaningfulBytes == 0 || trailingBytes < 0) {
+            throw new IOException("Corrupt XOR control byte: " + control);
+        }
+        long xor = 0;
+        for (int i = 0; i < meaningfulBytes; i++) {
+            xor = (xor << 8) | in.readUnsignedByte();
+        }
+        return xor << (trailingBytes * 8);
+    }
+    
+    private static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+    
+    private static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+    
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInput in) throws IOException {
+        int length = readVarintAsInt(in);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
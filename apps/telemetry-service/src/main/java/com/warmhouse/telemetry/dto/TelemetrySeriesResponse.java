@@ -0,0 +1,37 @@
+package com.warmhouse.telemetry.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * DTO for telemetry query results backed by columnar series
+ * Serialized as a flat array of TelemetryResponse-shaped points without materializing them;
+ * the cursor of the next page, if any, travels outside the body
+ */
+@Getter
+@JsonSerialize(using = TelemetrySeriesSerializer.class)
+public class TelemetrySeriesResponse {
+    
+    private final List<TelemetrySeries> series;
+    private final String nextCursor;
+    
+    public TelemetrySeriesResponse(List<TelemetrySeries> series) {
+        this(series, null);
+    }
+    
+    public TelemetrySeriesResponse(List<TelemetrySeries> series, String nextCursor) {
+        this.series = series;
+        this.nextCursor = nextCursor;
+    }
+    
+    public int getPointCount() {
+        int count = 0;
+        for (TelemetrySeries s : series) {
+            count += s.getSize();
+        }
+        return count;
+    }
+}
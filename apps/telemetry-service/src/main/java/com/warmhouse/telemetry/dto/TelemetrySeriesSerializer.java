@@ -0,0 +1,52 @@
+package com.warmhouse.telemetry.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Jackson serializer writing columnar series as the TelemetryResponse JSON array
+ * Series keys are rendered once per series and reused for every point
+ */
+public class TelemetrySeriesSerializer extends StdSerializer<TelemetrySeriesResponse> {
+    
+    public TelemetrySeriesSerializer() {
+        super(TelemetrySeriesResponse.class);
+    }
+    
+    @Override
+    public void serialize(TelemetrySeriesResponse response, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+        gen.writeStartArray();
+        for (TelemetrySeries series : response.getSeries()) {
+            writeSeries(series, gen);
+        }
+        gen.writeEndArray();
+    }
+    
+    private void writeSeries(TelemetrySeries series, JsonGenerator gen) throws IOException {
+        String deviceId = series.getDeviceId().toString();
+        String houseId = series.getHouseId().toString();
+        String locationId = series.getLocationId().toString();
+        
+        for (int i = 0; i < series.getSize(); i++) {
+            gen.writeStartObject();
+            gen.writeNullField("measurementId");
+            gen.writeStringField("deviceId", deviceId);
+            gen.writeStringField("houseId", houseId);
+            gen.writeStringField("locationId", locationId);
+            gen.writeStringField("measurementType", series.getMeasurementType());
+            gen.writeNumberField("value", series.getValue(i));
+            gen.writeStringField("unit", series.getUnit());
+            gen.writeStringField("quality", series.getQuality(i).name());
+            gen.writeStringField("timestamp", DateTimeFormatter.ISO_INSTANT.format(series.getTimestamp(i)));
+            gen.writeNullField("tags");
+            gen.writeNullField("metadata");
+            gen.writeEndObject();
+        }
+    }
+}
@@ -30,6 +30,12 @@ public class TelemetryStatistics {
     private Double sum;
     private Long count;
     
+    // Percentiles estimated from merged quantile sketches
+    private Double p50;
+    private Double p95;
+    private Double p99;
+    private Double percentileRelativeError; // e.g., 0.01 = within 1% of the true value
+    
     // Time range
     private Instant periodStart;
     private Instant periodEnd;
@@ -51,6 +57,13 @@ public class TelemetryStatistics {
         eventData.put("sum", sum);
         eventData.put("count", count);
         
+        // Percentiles
+        if (p50 != null) {
+            eventData.put("p50", p50);
+            eventData.put("p95", p95);
+            eventData.put("p99", p99);
+        }
+        
         // Time information
         eventData.put("period_start", periodStart);
         eventData.put("period_end", periodEnd);
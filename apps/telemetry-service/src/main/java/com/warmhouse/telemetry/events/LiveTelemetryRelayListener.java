@@ -0,0 +1,84 @@
+package com.warmhouse.telemetry.events;
+
+import com.warmhouse.telemetry.dto.TelemetryResponse;
+import com.warmhouse.telemetry.service.LiveTelemetryHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Relays measurements stored by other instances, singly or in batches, to local live subscribers
+ * Events published by this instance are skipped, they were already delivered in-process
+ */
+@Component
+public class LiveTelemetryRelayListener {
+    
+    private static final Logger log = LoggerFactory.getLogger(LiveTelemetryRelayListener.class);
+    
+    private final LiveTelemetryHub liveTelemetryHub;
+    
+    @Value("${telemetry.instance-id}")
+    private String instanceId;
+    
+    public LiveTelemetryRelayListener(LiveTelemetryHub liveTelemetryHub) {
+        this.liveTelemetryHub = liveTelemetryHub;
+    }
+    
+    @RabbitListener(queues = "#{telemetryLiveQueue.name}")
+    @SuppressWarnings("unchecked")
+    public void handleMeasurementReceived(Map<String, Object> eventData) {
+        if (instanceId.equals(eventData.get("source_instance")) || liveTelemetryHub.getSubscriberCount() == 0) {
+            return;
+        }
+        
+        try {
+            // A batch event carries its readings as a list of single measurement events
+            if (RabbitMQConfig.BATCH_RECEIVED_KEY.equals(eventData.get("event_type"))) {
+                Object measurements = eventData.get("measurements");
+                if (measurements instanceof List) {
+                    ((List<Map<String, Object>>) measurements).forEach(this::relay);
+                }
+            } else {
+                relay(eventData);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to relay measurement event to live subscribers: {}", e.getMessage());
+        }
+    }
+    
+    private void relay(Map<String, Object> measurement) {
+        liveTelemetryHub.publish(TelemetryResponse.builder()
+                .measurementId(toUuid(measurement.get("measurement_id")))
+                .deviceId(toUuid(measurement.get("device_id")))
+                .houseId(toUuid(measurement.get("house_id")))
+                .locationId(toUuid(measurement.get("location_id")))
+                .measurementType((String) measurement.get("measurement_type"))
+                .value(measurement.get("value") instanceof Number ? ((Number) measurement.get("value")).doubleValue() : null)
+                .unit((String) measurement.get("unit"))
+                .quality((String) measurement.get("quality"))
+                .timestamp(toInstant(measurement.get("timestamp")))
+                .build());
+    }
+    
+    private static UUID toUuid(Object value) {
+        return value != null ? UUID.fromString(value.toString()) : null;
+    }
+    
+    private static Instant toInstant(Object value) {
+        if (value instanceof Number) {
+            // Jackson writes Instant as decimal epoch seconds by default
+            BigDecimal seconds = new BigDecimal(value.toString());
+            return Instant.ofEpochSecond(seconds.longValue(),
+                    seconds.remainder(BigDecimal.ONE).movePointRight(9).longValue());
+        }
+        return value != null ? Instant.parse(value.toString()) : null;
+    }
+}
@@ -22,7 +22,9 @@ public class RabbitMQConfig {
     
     // Routing keys
     public static final String MEASUREMENT_RECEIVED_KEY = "telemetry.measurement.received";
+    public static final String BATCH_RECEIVED_KEY = "telemetry.batch.received";
     public static final String MEASUREMENT_AGGREGATED_KEY = "telemetry.measurement.aggregated";
+    public static final String ALERT_KEY = "telemetry.alert";
 
     @Bean
     public Jackson2JsonMessageConverter messageConverter() {
@@ -70,4 +72,26 @@ public class RabbitMQConfig {
                 .to(sensorExchange)
                 .with("sensor.*");
     }
-} 
\ No newline at end of file
+
+    // Per-instance queue relaying measurements from other replicas to live subscribers
+    @Bean
+    public Queue telemetryLiveQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy("telemetry-service.live."));
+    }
+
+    @Bean
+    public Binding telemetryLiveBinding() {
+        return BindingBuilder
+                .bind(telemetryLiveQueue())
+                .to(telemetryExchange())
+                .with(MEASUREMENT_RECEIVED_KEY);
+    }
+
+    @Bean
+    public Binding telemetryLiveBatchBinding() {
+        return BindingBuilder
+                .bind(telemetryLiveQueue())
+                .to(telemetryExchange())
+                .with(BATCH_RECEIVED_KEY);
+    }
+}
@@ -1,6 +1,9 @@
 package com.warmhouse.telemetry.events;
 
+import com.warmhouse.telemetry.service.DeviceCacheInvalidator;
+import com.warmhouse.telemetry.service.DeviceDirectory;
 import com.warmhouse.telemetry.service.DeviceValidationService;
+import com.warmhouse.telemetry.service.SensorCorrelationStore;
 import com.warmhouse.telemetry.service.TelemetryCleanupService;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,7 +15,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 public class TelemetryEventListener {
 
@@ -21,15 +23,24 @@ public class TelemetryEventListener {
     private final DeviceValidationService deviceValidationService;
     private final RedisTemplate<String, Object> redisTemplate;
     private final TelemetryCleanupService cleanupService;
+    private final DeviceCacheInvalidator cacheInvalidator;
+    private final DeviceDirectory deviceDirectory;
+    private final SensorCorrelationStore sensorCorrelationStore;
 
     @Autowired
     public TelemetryEventListener(DeviceValidationService deviceValidationService,
                                 RedisTemplate<String, Object> redisTemplate,
-                                TelemetryCleanupService cleanupService) {
+                                TelemetryCleanupService cleanupService,
+                                DeviceCacheInvalidator cacheInvalidator,
+                                DeviceDirectory deviceDirectory,
+                                SensorCorrelationStore sensorCorrelationStore) {
         log.info("TelemetryEventListener constructor called!");
         this.deviceValidationService = deviceValidationService;
         this.redisTemplate = redisTemplate;
         this.cleanupService = cleanupService;
+        this.cacheInvalidator = cacheInvalidator;
+        this.deviceDirectory = deviceDirectory;
+        this.sensorCorrelationStore = sensorCorrelationStore;
         log.info("TelemetryEventListener initialized successfully");
     }
 
@@ -44,8 +55,14 @@ public class TelemetryEventListener {
     @RabbitListener(queues = RabbitMQConfig.TELEMETRY_DEVICE_EVENTS_QUEUE)
     public void handleDeviceEvents(Map<String, Object> eventData) {
         try {
-            log.info("TelemetryEventListener.handleDeviceEvents called with data: " + eventData);
+            log.debug("TelemetryEventListener.handleDeviceEvents called with data: " + eventData);
             String eventType = (String) eventData.get("event_type");
+            
+            // The registry derives event ids from the second, the timestamp tells apart events within it
+            Object eventId = eventData.get("event_id");
+            if (eventId != null && !cacheInvalidator.firstDelivery(eventId + "|" + eventData.get("timestamp"))) {
+                return;
+            }
             log.info("Telemetry Service received event: " + eventType);
 
             switch (eventType) {
@@ -77,29 +94,36 @@ public class TelemetryEventListener {
     }
 
     /**
-     * Handle device created/updated - refresh cache
+     * Handle device created/updated - update the directory, queue cache invalidation and re-warm
+     * Changes are batched by DeviceCacheInvalidator, so bursts of events for the same devices
+     * cost one Redis call and one registry listing per house.
      */
     private void handleDeviceChange(Map<String, Object> eventData) {
         Object deviceIdObj = eventData.get("device_id");
         if (deviceIdObj != null) {
-            String deviceId = deviceIdObj.toString();
-            
-            // Invalidate device cache
-            String cacheKey = "device_validation:" + deviceId;
-            redisTemplate.delete(cacheKey);
-            
-            System.out.println("Invalidated device cache for device: " + deviceId);
-            
-            // Pre-warm cache for frequently accessed device
             try {
-                deviceValidationService.validateDevice(java.util.UUID.fromString(deviceId));
-                System.out.println("Pre-warmed cache for device: " + deviceId);
-            } catch (Exception e) {
-                System.err.println("Failed to pre-warm cache for device " + deviceId + ": " + e.getMessage());
+                UUID deviceId = UUID.fromString(deviceIdObj.toString());
+                UUID houseId = optionalId(eventData, "house_id");
+                UUID locationId = optionalId(eventData, "location_id");
+                Object deviceName = eventData.get("device_name");
+                deviceDirectory.putDevice(deviceId, deviceName != null ? deviceName.toString() : null,
+                        houseId, locationId);
+                Object locationName = eventData.get("location_name");
+                if (locationId != null && locationName != null) {
+                    deviceDirectory.putLocationName(locationId, locationName.toString());
+                }
+                cacheInvalidator.deviceChanged(deviceId, houseId);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid id format in device event: " + eventData);
             }
         }
     }
 
+    private static UUID optionalId(Map<String, Object> eventData, String field) {
+        Object value = eventData.get(field);
+        return value != null && !value.toString().isEmpty() ? UUID.fromString(value.toString()) : null;
+    }
+
     /**
      * Handle device deleted - perform cascading cleanup
      */
@@ -109,6 +133,7 @@ public class TelemetryEventListener {
             try {
                 String deviceIdStr = deviceIdObj.toString();
                 UUID deviceId = UUID.fromString(deviceIdStr);
+                deviceDirectory.removeDevice(deviceId);
                 
                 System.out.println("Processing device deletion cleanup for device: " + deviceId);
                 
@@ -137,24 +162,11 @@ public class TelemetryEventListener {
      */
     private void handleSensorCreated(Map<String, Object> eventData) {
         Object sensorIdObj = eventData.get("sensor_id");
-        Object nameObj = eventData.get("name");
-        Object typeObj = eventData.get("type");
-        Object locationObj = eventData.get("location");
 
         if (sensorIdObj != null) {
-            // Store sensor metadata for potential correlation
-            String correlationKey = "sensor_correlation:" + sensorIdObj.toString();
-            
-            Map<String, Object> sensorMetadata = Map.of(
-                "sensor_id", sensorIdObj,
-                "name", nameObj != null ? nameObj : "Unknown",
-                "type", typeObj != null ? typeObj : "Unknown", 
-                "location", locationObj != null ? locationObj : "Unknown",
-                "created_at", System.currentTimeMillis()
-            );
-            
-            // Store for 24 hours for correlation
-            redisTemplate.opsForValue().set(correlationKey, sensorMetadata, 24, TimeUnit.HOURS);
+            // Store sensor metadata for potential correlation (kept for 24 hours)
+            sensorCorrelationStore.save(sensorIdObj.toString(), text(eventData, "name"), text(eventData, "type"),
+                    text(eventData, "location"), optionalId(eventData, "device_id"));
             
             System.out.println("Stored sensor correlation data for sensor: " + sensorIdObj);
         }
@@ -168,28 +180,21 @@ public class TelemetryEventListener {
         String eventType = (String) eventData.get("event_type");
         
         if (sensorIdObj != null) {
-            String correlationKey = "sensor_correlation:" + sensorIdObj.toString();
+            String sensorId = sensorIdObj.toString();
             
             if ("sensor.deleted".equals(eventType)) {
-                redisTemplate.delete(correlationKey);
+                sensorCorrelationStore.delete(sensorId);
                 System.out.println("Removed sensor correlation for deleted sensor: " + sensorIdObj);
-            } else {
-                // Update correlation data
-                Map<String, Object> existingData = (Map<String, Object>) redisTemplate.opsForValue().get(correlationKey);
-                if (existingData != null) {
-                    // Update with new data
-                    Map<String, Object> updatedData = Map.of(
-                        "sensor_id", sensorIdObj,
-                        "name", eventData.getOrDefault("name", existingData.get("name")),
-                        "type", eventData.getOrDefault("type", existingData.get("type")),
-                        "location", eventData.getOrDefault("location", existingData.get("location")),
-                        "updated_at", System.currentTimeMillis()
-                    );
-                    
-                    redisTemplate.opsForValue().set(correlationKey, updatedData, 24, TimeUnit.HOURS);
-                    System.out.println("Updated sensor correlation for sensor: " + sensorIdObj);
-                }
+            } else if (sensorCorrelationStore.update(sensorId, text(eventData, "name"), text(eventData, "type"),
+                    text(eventData, "location"), optionalId(eventData, "device_id"))) {
+                // Only sensors still correlated are updated
+                System.out.println("Updated sensor correlation for sensor: " + sensorIdObj);
             }
         }
     }
+
+    private static String text(Map<String, Object> eventData, String field) {
+        Object value = eventData.get(field);
+        return value != null && !value.toString().isEmpty() ? value.toString() : null;
+    }
 } 
\ No newline at end of file
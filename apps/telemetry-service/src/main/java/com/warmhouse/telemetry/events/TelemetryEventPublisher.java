@@ -1,24 +1,65 @@
 package com.warmhouse.telemetry.events;
 
+import com.warmhouse.telemetry.model.AlertRule;
 import com.warmhouse.telemetry.model.TelemetryData;
+import com.warmhouse.telemetry.service.Bulkhead;
+import com.warmhouse.telemetry.service.DependencyBulkheads;
+import com.warmhouse.telemetry.util.IdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class TelemetryEventPublisher {
 
+    private static final Logger log = LoggerFactory.getLogger(TelemetryEventPublisher.class);
+
     private final RabbitTemplate rabbitTemplate;
+    private final Bulkhead rabbitBulkhead;
+    private final IdGenerator idGenerator;
+    
+    @Value("${telemetry.instance-id}")
+    private String instanceId;
+
+    // Events kept while RabbitMQ is degraded; the oldest are dropped beyond this
+    @Value("${telemetry.resilience.rabbitmq.local-queue-capacity:10000}")
+    private int localQueueCapacity;
+
+    private final Deque<PendingEvent> localQueue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger localQueueSize = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final Counter droppedCounter;
 
     @Autowired
-    public TelemetryEventPublisher(RabbitTemplate rabbitTemplate) {
+    public TelemetryEventPublisher(RabbitTemplate rabbitTemplate, DependencyBulkheads bulkheads,
+                                   IdGenerator idGenerator, MeterRegistry meterRegistry) {
         this.rabbitTemplate = rabbitTemplate;
+        this.rabbitBulkhead = bulkheads.rabbit();
+        this.idGenerator = idGenerator;
+        this.droppedCounter = Counter.builder("telemetry.events.dropped")
+                .description("Events dropped because the local queue was full while RabbitMQ was degraded")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.events.local_queue.size", localQueueSize, AtomicInteger::get)
+                .description("Events queued locally while RabbitMQ is degraded")
+                .register(meterRegistry);
     }
 
     /**
@@ -26,24 +67,12 @@ public class TelemetryEventPublisher {
      */
     public void publishMeasurementReceived(TelemetryData telemetryData) {
         try {
-            Map<String, Object> eventData = new HashMap<>();
-            eventData.put("event_id", UUID.randomUUID().toString());
+            Map<String, Object> eventData = measurementFields(telemetryData);
+            eventData.put("event_id", idGenerator.next().toString());
             eventData.put("event_type", "telemetry.measurement.received");
-            eventData.put("measurement_id", telemetryData.getMeasurementId());
-            eventData.put("device_id", telemetryData.getDeviceId());
-            eventData.put("house_id", telemetryData.getHouseId());
-            eventData.put("location_id", telemetryData.getLocationId());
-            eventData.put("measurement_type", telemetryData.getMeasurementType());
-            eventData.put("value", telemetryData.getValue());
-            eventData.put("unit", telemetryData.getUnit());
-            eventData.put("quality", telemetryData.getQuality());
-            eventData.put("timestamp", telemetryData.getTimestamp());
-
-            rabbitTemplate.convertAndSend(
-                RabbitMQConfig.TELEMETRY_EXCHANGE,
-                RabbitMQConfig.MEASUREMENT_RECEIVED_KEY,
-                eventData
-            );
+            eventData.put("source_instance", instanceId);
+
+            send(RabbitMQConfig.TELEMETRY_EXCHANGE, RabbitMQConfig.MEASUREMENT_RECEIVED_KEY, eventData);
         } catch (Exception e) {
             // Log error but don't fail the main operation
             System.err.println("Failed to publish measurement received event: " + e.getMessage());
@@ -56,7 +85,7 @@ public class TelemetryEventPublisher {
     public void publishBatchMeasurementsReceived(List<TelemetryData> telemetryDataList) {
         try {
             Map<String, Object> eventData = new HashMap<>();
-            eventData.put("event_id", UUID.randomUUID().toString());
+            eventData.put("event_id", idGenerator.next().toString());
             eventData.put("event_type", "telemetry.batch.received");
             eventData.put("batch_size", telemetryDataList.size());
             eventData.put("timestamp", LocalDateTime.now());
@@ -72,25 +101,41 @@ public class TelemetryEventPublisher {
                 .map(TelemetryData::getDeviceId)
                 .distinct()
                 .toList());
+            // Readings themselves, relayed to live subscribers on other instances
+            eventData.put("measurements", telemetryDataList.stream()
+                .map(TelemetryEventPublisher::measurementFields)
+                .toList());
+            eventData.put("source_instance", instanceId);
 
-            rabbitTemplate.convertAndSend(
-                RabbitMQConfig.TELEMETRY_EXCHANGE,
-                "telemetry.batch.received",
-                eventData
-            );
+            send(RabbitMQConfig.TELEMETRY_EXCHANGE, RabbitMQConfig.BATCH_RECEIVED_KEY, eventData);
         } catch (Exception e) {
             System.err.println("Failed to publish batch measurements event: " + e.getMessage());
         }
     }
 
+    private static Map<String, Object> measurementFields(TelemetryData telemetryData) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("measurement_id", telemetryData.getMeasurementId());
+        fields.put("device_id", telemetryData.getDeviceId());
+        fields.put("house_id", telemetryData.getHouseId());
+        fields.put("location_id", telemetryData.getLocationId());
+        fields.put("measurement_type", telemetryData.getMeasurementType());
+        fields.put("value", telemetryData.getValue());
+        fields.put("unit", telemetryData.getUnit());
+        fields.put("quality", telemetryData.getQuality());
+        fields.put("timestamp", telemetryData.getTimestamp());
+        return fields;
+    }
+
     /**
      * Publishes aggregated statistics events
+     * The event id is derived from the window by the caller, so a republished window keeps its id
      */
-    public void publishMeasurementAggregated(String deviceId, String measurementType, 
+    public void publishMeasurementAggregated(String eventId, String deviceId, String measurementType,
                                            String period, Map<String, Object> statistics) {
         try {
             Map<String, Object> eventData = new HashMap<>();
-            eventData.put("event_id", UUID.randomUUID().toString());
+            eventData.put("event_id", eventId);
             eventData.put("event_type", "telemetry.measurement.aggregated");
             eventData.put("device_id", deviceId);
             eventData.put("measurement_type", measurementType);
@@ -98,13 +143,107 @@ public class TelemetryEventPublisher {
             eventData.put("statistics", statistics);
             eventData.put("timestamp", LocalDateTime.now());
 
-            rabbitTemplate.convertAndSend(
-                RabbitMQConfig.TELEMETRY_EXCHANGE,
-                RabbitMQConfig.MEASUREMENT_AGGREGATED_KEY,
-                eventData
-            );
+            send(RabbitMQConfig.TELEMETRY_EXCHANGE, RabbitMQConfig.MEASUREMENT_AGGREGATED_KEY, eventData);
         } catch (Exception e) {
             System.err.println("Failed to publish aggregated measurement event: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Publishes alert state transition events (raised/cleared)
+     */
+    public void publishAlert(AlertRule rule, UUID deviceId, UUID houseId, UUID locationId,
+                             boolean raised, double value, long timestampMillis) {
+        try {
+            Map<String, Object> eventData = new HashMap<>();
+            eventData.put("event_id", idGenerator.next().toString());
+            eventData.put("event_type", raised ? "telemetry.alert.raised" : "telemetry.alert.cleared");
+            eventData.put("rule_id", rule.getRuleId());
+            eventData.put("rule_type", rule.getType().name());
+            eventData.put("severity", rule.getSeverity());
+            eventData.put("device_id", deviceId);
+            eventData.put("house_id", houseId);
+            eventData.put("location_id", locationId);
+            eventData.put("measurement_type", rule.getMeasurementType());
+            eventData.put("value", value);
+            eventData.put("threshold", rule.getThreshold());
+            eventData.put("timestamp", Instant.ofEpochMilli(timestampMillis));
+            eventData.put("source_instance", instanceId);
+
+            send(RabbitMQConfig.TELEMETRY_EXCHANGE, RabbitMQConfig.ALERT_KEY, eventData);
+        } catch (Exception e) {
+            System.err.println("Failed to publish alert event: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Number of events waiting for RabbitMQ to recover
+     */
+    public int getLocalQueueSize() {
+        return localQueueSize.get();
+    }
+
+    /**
+     * Publish through the RabbitMQ bulkhead without blocking the caller
+     * Events are queued locally while the broker is degraded or earlier events are still waiting,
+     * which keeps them in order.
+     */
+    private void send(String exchange, String routingKey, Map<String, Object> eventData) {
+        PendingEvent event = new PendingEvent(exchange, routingKey, eventData);
+        if (localQueueSize.get() > 0 || !rabbitBulkhead.submit(() -> publish(event), () -> enqueue(event))) {
+            enqueue(event);
+        }
+    }
+
+    /**
+     * Drain locally queued events once the broker answers again
+     * The first event is the probe; on success the rest follow right away on the bulkhead pool.
+     */
+    @Scheduled(fixedDelayString = "${telemetry.resilience.rabbitmq.drain-interval:1000}")
+    public void drainLocalQueue() {
+        if (localQueueSize.get() == 0 || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        boolean started = rabbitBulkhead.submit(() -> {
+            try {
+                PendingEvent event;
+                while ((event = localQueue.peekFirst()) != null) {
+                    publish(event);
+                    if (localQueue.remove(event)) {
+                        localQueueSize.decrementAndGet();
+                    }
+                }
+                log.info("Local event queue drained, RabbitMQ publishing recovered");
+            } finally {
+                draining.set(false);
+            }
+        }, null);
+        if (!started) {
+            draining.set(false);
+        }
+    }
+
+    private void publish(PendingEvent event) {
+        rabbitTemplate.convertAndSend(event.exchange, event.routingKey, event.eventData);
+    }
+
+    private void enqueue(PendingEvent event) {
+        localQueue.addLast(event);
+        if (localQueueSize.incrementAndGet() > localQueueCapacity && localQueue.pollFirst() != null) {
+            localQueueSize.decrementAndGet();
+            droppedCounter.increment();
+        }
+    }
+
+    private static final class PendingEvent {
+        private final String exchange;
+        private final String routingKey;
+        private final Map<String, Object> eventData;
+
+        private PendingEvent(String exchange, String routingKey, Map<String, Object> eventData) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.eventData = eventData;
+        }
+    }
+}
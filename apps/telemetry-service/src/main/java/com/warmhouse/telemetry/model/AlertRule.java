@@ -0,0 +1,58 @@
+package com.warmhouse.telemetry.model;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Model for an alert rule evaluated against incoming telemetry
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertRule {
+    
+    public enum Type {
+        THRESHOLD_ABOVE,  // raise when value > threshold, clear when value < clearThreshold
+        THRESHOLD_BELOW,  // raise when value < threshold, clear when value > clearThreshold
+        RATE_OF_CHANGE,   // raise when |change| over windowSeconds >= threshold
+        MISSING_DATA      // raise when no reading arrives within timeoutSeconds
+    }
+    
+    private String ruleId;
+    
+    // Scope: a specific device, or every device reporting the measurement type when null
+    private UUID deviceId;
+    
+    @NotNull(message = "Measurement type is required")
+    private String measurementType;
+    
+    @NotNull(message = "Rule type is required")
+    private Type type;
+    
+    private Double threshold;
+    
+    // Hysteresis level, defaults to threshold
+    private Double clearThreshold;
+    
+    @PositiveOrZero
+    private Long windowSeconds;
+    
+    @PositiveOrZero
+    private Long timeoutSeconds;
+    
+    private String severity; // e.g., "INFO", "WARNING", "CRITICAL"
+    
+    @Builder.Default
+    private boolean enabled = true;
+    
+    public double effectiveClearThreshold() {
+        return clearThreshold != null ? clearThreshold : threshold;
+    }
+}
@@ -0,0 +1,81 @@
+package com.warmhouse.telemetry.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Schema of a measurement type: canonical unit, valid range, precision and allowed quality codes
+ * Points of cataloged types are stored without a unit field; the unit is rehydrated on query
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeasurementSchema {
+    
+    private String measurementType;
+    private String unit;
+    private List<String> unitAliases;
+    
+    private Double minValue;
+    private Double maxValue;
+    
+    // Decimal places kept at ingest, null keeps full precision
+    private Integer precision;
+    
+    private List<QualityCode> allowedQualities;
+    
+    // Ingest compression, null stores every reading
+    private Compression compression;
+    
+    public boolean acceptsUnit(String candidate) {
+        if (candidate == null || candidate.isEmpty() || candidate.equalsIgnoreCase(unit)) {
+            return true;
+        }
+        return unitAliases != null && unitAliases.stream().anyMatch(candidate::equalsIgnoreCase);
+    }
+    
+    public boolean inRange(double value) {
+        return (minValue == null || value >= minValue) && (maxValue == null || value <= maxValue);
+    }
+    
+    public boolean allowsQuality(QualityCode quality) {
+        return allowedQualities == null || allowedQualities.isEmpty() || allowedQualities.contains(quality);
+    }
+    
+    public double round(double value) {
+        if (precision == null) {
+            return value;
+        }
+        double scale = Math.pow(10, precision);
+        return Math.round(value * scale) / scale;
+    }
+    
+    /**
+     * Per-type ingest compression settings
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Compression {
+        
+        public enum Mode {
+            NONE,
+            DEADBAND,
+            SWINGING_DOOR
+        }
+        
+        private Mode mode;
+        
+        // Deadband half-width or swinging-door deviation, in the schema unit
+        private double deviation;
+        
+        // A reading is stored at least this often even when nothing changes
+        private long maxSilenceSeconds;
+    }
+}
@@ -0,0 +1,43 @@
+package com.warmhouse.telemetry.model;
+
+/**
+ * Compact quality codes for telemetry points
+ * Stored as a single byte per point in columnar series
+ */
+public enum QualityCode {
+    
+    GOOD((byte) 0),
+    BAD((byte) 1),
+    UNCERTAIN((byte) 2),
+    UNKNOWN((byte) 3);
+    
+    private static final QualityCode[] BY_CODE = values();
+    
+    private final byte code;
+    
+    QualityCode(byte code) {
+        this.code = code;
+    }
+    
+    public byte code() {
+        return code;
+    }
+    
+    /**
+     * Resolve quality string (case-insensitive), unrecognized values map to UNKNOWN
+     */
+    public static QualityCode of(String quality) {
+        if (quality != null) {
+            for (QualityCode candidate : BY_CODE) {
+                if (candidate.name().equalsIgnoreCase(quality)) {
+                    return candidate;
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+    
+    public static QualityCode fromCode(byte code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : UNKNOWN;
+    }
+}
@@ -0,0 +1,341 @@
+package com.warmhouse.telemetry.model;
+
+import com.warmhouse.telemetry.util.VarInts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch (DDSketch) with relative-error guarantees
+ *
+ * Values are mapped to logarithmic bins of ratio gamma = (1 + alpha) / (1 - alpha),
+ * so any reported quantile q is within a relative error of alpha of the value with
+ * rank q * (count - 1), as long as no bins were collapsed. When the number of bins
+ * exceeds maxBins the lowest-magnitude bins are merged, which only affects quantiles
+ * among the smallest values. Sketches with the same alpha merge losslessly.
+ */
+public class QuantileSketch {
+    
+    private static final int SERIAL_VERSION = 1;
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+    
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBins;
+    
+    private final BinStore positive;
+    private final BinStore negative;
+    private long zeroCount;
+    
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBins = maxBins;
+        this.positive = new BinStore(maxBins);
+        this.negative = new BinStore(maxBins);
+    }
+    
+    /**
+     * Add a single value
+     */
+    public void add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (value > MIN_INDEXABLE_VALUE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+    
+    /**
+     * Merge another sketch into this one
+     */
+    public void merge(QuantileSketch other) {
+        if (Double.compare(relativeAccuracy, other.relativeAccuracy) != 0) {
+            throw new IllegalArgumentException("Cannot merge sketches with different relative accuracy");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+    
+    /**
+     * Estimate the value at quantile q (0..1), or null for an empty sketch
+     */
+    public Double quantile(double q) {
+        if (count == 0) {
+            return null;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        
+        long rank = (long) (q * (count - 1));
+        double estimate;
+        
+        long negativeCount = negative.total();
+        if (rank < negativeCount) {
+            // Negative bins in descending index order are the most negative values first
+            int index = negative.indexAtRankDescending(rank);
+            estimate = -value(index);
+        } else if (rank < negativeCount + zeroCount) {
+            estimate = 0;
+        } else {
+            int index = positive.indexAtRank(rank - negativeCount - zeroCount);
+            estimate = value(index);
+        }
+        
+        return Math.max(min, Math.min(max, estimate));
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getSum() {
+        return sum;
+    }
+    
+    public double getMin() {
+        return min;
+    }
+    
+    public double getMax() {
+        return max;
+    }
+    
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    /**
+     * Serialize to a compact binary form (varint-encoded bins)
+     */
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 2 * (positive.length() + negative.length()));
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(SERIAL_VERSION);
+            out.writeDouble(relativeAccuracy);
+            VarInts.writeVarint(out, maxBins);
+            VarInts.writeVarint(out, count);
+            out.writeDouble(sum);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            VarInts.writeVarint(out, zeroCount);
+            positive.write(out);
+            negative.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize quantile sketch", e);
+        }
+    }
+    
+    /**
+     * Deserialize a sketch produced by {@link #toBytes()}
+     */
+    public static QuantileSketch fromBytes(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            int version = in.readUnsignedByte();
+            if (version != SERIAL_VERSION) {
+                throw new IllegalArgumentException("Unsupported quantile sketch version: " + version);
+            }
+            QuantileSketch sketch = new QuantileSketch(in.readDouble(), VarInts.readVarintAsInt(in));
+            sketch.count = VarInts.readVarint(in);
+            sketch.sum = in.readDouble();
+            sketch.min = in.readDouble();
+            sketch.max = in.readDouble();
+            sketch.zeroCount = VarInts.readVarint(in);
+            sketch.positive.read(in);
+            sketch.negative.read(in);
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt quantile sketch", e);
+        }
+    }
+    
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+    
+    private double value(int index) {
+        // Midpoint of the bin (gamma^(i-1), gamma^i] that minimizes relative error
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+    
+    /**
+     * Dense bin counts over a contiguous index range, collapsing the lowest indices past maxBins
+     */
+    private static final class BinStore {
+        
+        private final int maxBins;
+        private long[] counts = new long[0];
+        private int offset; // bin index of counts[0]
+        private long total;
+        
+        BinStore(int maxBins) {
+            this.maxBins = maxBins;
+        }
+        
+        void add(int index, long n) {
+            if (n == 0) {
+                return;
+            }
+            int slot = ensureIndex(index);
+            counts[slot] += n;
+            total += n;
+        }
+        
+        void merge(BinStore other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+        
+        long total() {
+            return total;
+        }
+        
+        int length() {
+            return counts.length;
+        }
+        
+        int indexAtRank(long rank) {
+            long running = 0;
+            for (int i = 0; i < counts.length; i++) {
+                running += counts[i];
+                if (running > rank) {
+                    return offset + i;
+                }
+            }
+            return offset + counts.length - 1;
+        }
+        
+        int indexAtRankDescending(long rank) {
+            long running = 0;
+            for (int i = counts.length - 1; i >= 0; i--) {
+                running += counts[i];
+                if (running > rank) {
+                    return offset + i;
+                }
+            }
+            return offset;
+        }
+        
+        void write(DataOutputStream out) throws IOException {
+            VarInts.writeZigzag(out, offset);
+            VarInts.writeVarint(out, counts.length);
+            for (long c : counts) {
+                VarInts.writeVarint(out, c);
+            }
+        }
+        
+        void read(DataInputStream in) throws IOException {
+            offset = (int) VarInts.readZigzag(in);
+            int length = VarInts.readVarintAsInt(in);
+            if (length > maxBins) {
+                throw new IOException("Bin count " + length + " exceeds max bins " + maxBins);
+            }
+            counts = new long[length];
+            total = 0;
+            for (int i = 0; i < length; i++) {
+                counts[i] = VarInts.readVarint(in);
+                total += counts[i];
+            }
+        }
+        
+        private int ensureIndex(int index) {
+            if (counts.length == 0) {
+                counts = new long[1];
+                offset = index;
+                return 0;
+            }
+            
+            if (index < offset) {
+                int newLength = counts.length + (offset - index);
+                if (newLength > maxBins) {
+                    // Collapse: values below the retained range fall into the lowest bin
+                    return 0;
+                }
+                long[] grown = new long[newLength];
+                System.arraycopy(counts, 0, grown, offset - index, counts.length);
+                counts = grown;
+                offset = index;
+                return 0;
+            }
+            
+            int slot = index - offset;
+            if (slot >= counts.length) {
+                int newLength = slot + 1;
+                if (newLength > maxBins) {
+                    collapseLowest(newLength - maxBins);
+                    slot = index - offset;
+                    newLength = slot + 1;
+                }
+                counts = Arrays.copyOf(counts, newLength);
+            }
+            return slot;
+        }
+        
+        private void collapseLowest(int shift) {
+            if (shift >= counts.length) {
+                long all = 0;
+                for (long c : counts) {
+                    all += c;
+                }
+                counts = new long[] { all };
+                offset += shift;
+                return;
+            }
+            long collapsed = 0;
+            for (int i = 0; i <= shift; i++) {
+                collapsed += counts[i];
+            }
+            long[] shifted = new long[counts.length - shift];
+            System.arraycopy(counts, shift, shifted, 0, shifted.length);
+            shifted[0] = collapsed;
+            counts = shifted;
+            offset += shift;
+        }
+    }
+}
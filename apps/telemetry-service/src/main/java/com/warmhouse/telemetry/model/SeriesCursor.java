@@ -0,0 +1,122 @@
+package com.warmhouse.telemetry.model;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Position in a device history ordered by timestamp, then series key (type, location, house)
+ * Encoded as an opaque URL-safe token; a page continues strictly after the point it names. The token
+ * also pins the storage tier and the tier split times of the first page, so later pages read every
+ * part of the range from the same tier even after compaction has moved the watermarks.
+ */
+@Getter
+public final class SeriesCursor implements Comparable<SeriesCursor> {
+    
+    private static final String VERSION_PREFIX = "v2|";
+    
+    private static final Comparator<SeriesCursor> ORDER = Comparator
+            .comparingLong(SeriesCursor::getTimestampNanos)
+            .thenComparing(SeriesCursor::getMeasurementType)
+            .thenComparing(cursor -> cursor.getLocationId().toString())
+            .thenComparing(cursor -> cursor.getHouseId().toString());
+    
+    private final long timestampNanos;
+    private final String measurementType;
+    private final UUID locationId;
+    private final UUID houseId;
+    
+    // Tier the history is read from and each tier's watermark in epoch millis; -1 and null when not pinned
+    private final int tier;
+    private final long[] splitMillis;
+    
+    public SeriesCursor(long timestampNanos, String measurementType, UUID locationId, UUID houseId) {
+        this(timestampNanos, measurementType, locationId, houseId, -1, null);
+    }
+    
+    private SeriesCursor(long timestampNanos, String measurementType, UUID locationId, UUID houseId,
+                         int tier, long[] splitMillis) {
+        this.timestampNanos = timestampNanos;
+        this.measurementType = measurementType;
+        this.locationId = locationId;
+        this.houseId = houseId;
+        this.tier = tier;
+        this.splitMillis = splitMillis;
+    }
+    
+    /**
+     * Cursor naming a point of a series
+     */
+    public static SeriesCursor at(TelemetrySeries series, int index) {
+        return new SeriesCursor(series.getTimestampNanos(index), series.getMeasurementType(),
+                series.getLocationId(), series.getHouseId());
+    }
+    
+    /**
+     * The same position, pinned to a tier and the tier split times it was read with
+     */
+    public SeriesCursor pinnedTo(int tier, long[] splitMillis) {
+        return new SeriesCursor(timestampNanos, measurementType, locationId, houseId, tier, splitMillis.clone());
+    }
+    
+    public boolean isPinned() {
+        return splitMillis != null;
+    }
+    
+    public String encode() {
+        StringBuilder raw = new StringBuilder();
+        if (isPinned()) {
+            raw.append(VERSION_PREFIX).append(tier).append('|');
+            for (int i = 0; i < splitMillis.length; i++) {
+                raw.append(i > 0 ? "," : "").append(splitMillis[i]);
+            }
+            raw.append('|');
+        }
+        raw.append(timestampNanos).append('|').append(locationId).append('|').append(houseId)
+                .append('|').append(measurementType);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Parse a token produced by {@link #encode()}; tokens without a pinned tier are still accepted
+     *
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static SeriesCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int tier = -1;
+            long[] splitMillis = null;
+            if (raw.startsWith(VERSION_PREFIX)) {
+                String[] pin = raw.substring(VERSION_PREFIX.length()).split("\\|", 3);
+                if (pin.length != 3) {
+                    throw new IllegalArgumentException("Malformed cursor");
+                }
+                tier = Integer.parseInt(pin[0]);
+                String[] splits = pin[1].split(",");
+                splitMillis = new long[splits.length];
+                for (int i = 0; i < splits.length; i++) {
+                    splitMillis[i] = Long.parseLong(splits[i]);
+                }
+                raw = pin[2];
+            }
+            String[] parts = raw.split("\\|", 4);
+            // The type ends up in a Flux string literal, so quoting characters are never valid
+            if (parts.length != 4 || parts[3].isEmpty() || parts[3].matches(".*[\"\\\\$].*")) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new SeriesCursor(Long.parseLong(parts[0]), parts[3],
+                    UUID.fromString(parts[1]), UUID.fromString(parts[2]), tier, splitMillis);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + token, e);
+        }
+    }
+    
+    @Override
+    public int compareTo(SeriesCursor other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,35 @@
+package com.warmhouse.telemetry.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Model for a quantile sketch covering one device, measurement type and time bucket
+ * Stored in InfluxDB alongside raw telemetry, one point per bucket, service instance and generation
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SketchBucket {
+    
+    // Generations are told apart by the sub-second nanoseconds of the point time, buckets start on whole minutes
+    public static final long MAX_GENERATIONS = 1_000_000_000L;
+    
+    private UUID deviceId;
+    private String measurementType;
+    private Instant bucketStart;
+    
+    // Instance that produced the partial sketch, buckets from all instances are merged on read
+    private String instanceId;
+    
+    // Live bucket the sketch was flushed from; a bucket reopened by a late reading or a restart is a new generation
+    private long generation;
+    
+    private QuantileSketch sketch;
+}
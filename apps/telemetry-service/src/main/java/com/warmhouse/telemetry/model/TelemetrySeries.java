@@ -0,0 +1,153 @@
+package com.warmhouse.telemetry.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Columnar model for a single telemetry series
+ * Series keys (device, house, location, type, unit) are stored once,
+ * points are kept in primitive arrays ordered by timestamp
+ */
+@Getter
+public class TelemetrySeries {
+    
+    /**
+     * Reconstruction of values between stored points
+     */
+    public enum Interpolation {
+        STEP,
+        LINEAR
+    }
+    
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    
+    // Series keys
+    private final UUID deviceId;
+    private final UUID houseId;
+    private final UUID locationId;
+    private final String measurementType;
+    private final String unit;
+    
+    // Columns
+    @Getter(AccessLevel.NONE)
+    private long[] timestamps; // epoch nanoseconds
+    @Getter(AccessLevel.NONE)
+    private double[] values;
+    @Getter(AccessLevel.NONE)
+    private byte[] qualities; // QualityCode codes
+    
+    private int size;
+    
+    public TelemetrySeries(UUID deviceId, UUID houseId, UUID locationId, String measurementType, String unit) {
+        this(deviceId, houseId, locationId, measurementType, unit, INITIAL_CAPACITY);
+    }
+    
+    public TelemetrySeries(UUID deviceId, UUID houseId, UUID locationId, String measurementType, String unit,
+                           int initialCapacity) {
+        this.deviceId = deviceId;
+        this.houseId = houseId;
+        this.locationId = locationId;
+        this.measurementType = measurementType;
+        this.unit = unit;
+        int capacity = Math.max(initialCapacity, 1);
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+        this.qualities = new byte[capacity];
+    }
+    
+    /**
+     * Append a point to the end of the series
+     */
+    public void append(long epochNanos, double value, byte quality) {
+        if (size == timestamps.length) {
+            grow();
+        }
+        timestamps[size] = epochNanos;
+        values[size] = value;
+        qualities[size] = quality;
+        size++;
+    }
+    
+    public long getTimestampNanos(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+    
+    public Instant getTimestamp(int index) {
+        long nanos = getTimestampNanos(index);
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+    
+    public double getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+    
+    public byte getQualityCode(int index) {
+        checkIndex(index);
+        return qualities[index];
+    }
+    
+    public QualityCode getQuality(int index) {
+        return QualityCode.fromCode(getQualityCode(index));
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Resample onto a grid aligned to multiples of the step, from the first to the last point
+     * STEP holds the previous stored value, LINEAR interpolates between neighbours;
+     * each grid point takes the quality of the stored point at or before it
+     */
+    public TelemetrySeries resample(long stepNanos, Interpolation interpolation) {
+        if (stepNanos <= 0) {
+            throw new IllegalArgumentException("Step must be positive");
+        }
+        if (size == 0) {
+            return this;
+        }
+        
+        long first = Math.floorDiv(timestamps[0] + stepNanos - 1, stepNanos) * stepNanos;
+        long last = timestamps[size - 1];
+        int points = first > last ? 0 : (int) Math.min(Integer.MAX_VALUE - 8, (last - first) / stepNanos + 1);
+        TelemetrySeries result = new TelemetrySeries(deviceId, houseId, locationId, measurementType, unit, points);
+        
+        int i = 0;
+        for (long t = first; t <= last; t += stepNanos) {
+            while (i + 1 < size && timestamps[i + 1] <= t) {
+                i++;
+            }
+            double value = values[i];
+            if (interpolation == Interpolation.LINEAR && i + 1 < size && timestamps[i] < t) {
+                double fraction = (double) (t - timestamps[i]) / (timestamps[i + 1] - timestamps[i]);
+                value = values[i] + (values[i + 1] - values[i]) * fraction;
+            }
+            result.append(t, value, qualities[i]);
+        }
+        return result;
+    }
+    
+    public static long toEpochNanos(Instant instant) {
+        return instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
+    }
+    
+    private void grow() {
+        int capacity = timestamps.length + (timestamps.length >> 1) + 1;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        values = Arrays.copyOf(values, capacity);
+        qualities = Arrays.copyOf(qualities, capacity);
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for series of size " + size);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryRequest;
+import com.warmhouse.telemetry.util.TokenBuckets;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for ingest and queries
+ * Readings are rate limited per house and per device with token buckets, so one misbehaving gateway
+ * exhausts only its own budget. Ingest, interactive queries and exports (long periods) run in separate
+ * concurrency pools, so expensive reads cannot take the threads that ingest needs.
+ */
+@Service
+@RequiredArgsConstructor
+public class AdmissionControlService {
+    
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlService.class);
+    
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    
+    /**
+     * Concurrency pools
+     */
+    public enum Pool { INGEST, QUERY, EXPORT }
+    
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.admission.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.admission.house-rate:200}")
+    private double houseRate;
+    
+    @Value("${telemetry.admission.house-burst:2000}")
+    private int houseBurst;
+    
+    @Value("${telemetry.admission.device-rate:20}")
+    private double deviceRate;
+    
+    @Value("${telemetry.admission.device-burst:200}")
+    private int deviceBurst;
+    
+    @Value("${telemetry.admission.pools.ingest:64}")
+    private int ingestPermits;
+    
+    @Value("${telemetry.admission.pools.query:16}")
+    private int queryPermits;
+    
+    @Value("${telemetry.admission.pools.export:2}")
+    private int exportPermits;
+    
+    // How long a request may wait for a pool permit before it is refused
+    @Value("${telemetry.admission.pool-wait:50}")
+    private long poolWaitMs;
+    
+    // Queries over at least this many hours run in the export pool
+    @Value("${telemetry.admission.export-period-hours:168}")
+    private long exportPeriodHours;
+    
+    private TokenBuckets houseBuckets;
+    private TokenBuckets deviceBuckets;
+    private final Map<Pool, Semaphore> pools = new EnumMap<>(Pool.class);
+    private final Map<Pool, Integer> poolSizes = new EnumMap<>(Pool.class);
+    private final Map<String, Counter> rejections = new LinkedHashMap<>();
+    
+    @PostConstruct
+    void init() {
+        houseBuckets = new TokenBuckets(houseRate, houseBurst);
+        deviceBuckets = new TokenBuckets(deviceRate, deviceBurst);
+        poolSizes.put(Pool.INGEST, ingestPermits);
+        poolSizes.put(Pool.QUERY, queryPermits);
+        poolSizes.put(Pool.EXPORT, exportPermits);
+        
+        for (Pool pool : Pool.values()) {
+            Semaphore semaphore = new Semaphore(poolSizes.get(pool));
+            pools.put(pool, semaphore);
+            String name = pool.name().toLowerCase();
+            Gauge.builder("telemetry.admission.pool.in_use", semaphore, s -> poolSizes.get(pool) - s.availablePermits())
+                    .tag("pool", name)
+                    .description("Requests currently running in an admission pool")
+                    .register(meterRegistry);
+            Gauge.builder("telemetry.admission.pool.limit", poolSizes, sizes -> sizes.get(pool))
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            rejections.put("pool_" + name, rejectionCounter("pool", name));
+        }
+        rejections.put("house", rejectionCounter("house_rate", "ingest"));
+        rejections.put("device", rejectionCounter("device_rate", "ingest"));
+        
+        Gauge.builder("telemetry.admission.buckets", this, s -> s.houseBuckets.size() + s.deviceBuckets.size())
+                .description("Houses and devices with a partially drained token bucket")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Admit readings: takes one token per reading from each house and device bucket, then an ingest permit
+     * Already admitted readings (forwarded by another instance) only take the permit. Tokens are
+     * refunded when the pool refuses the request.
+     *
+     * @throws AdmissionRejectedException if a bucket is empty or the pool is saturated
+     */
+    public Permit admitIngest(List<TelemetryRequest> requests, boolean forwarded) {
+        if (!enabled) {
+            return Permit.NONE;
+        }
+        Map<UUID, Integer> takenHouses = new LinkedHashMap<>();
+        Map<UUID, Integer> takenDevices = new LinkedHashMap<>();
+        if (!forwarded) {
+            takeTokens(requests, takenHouses, takenDevices);
+        }
+        try {
+            return acquire(Pool.INGEST);
+        } catch (AdmissionRejectedException e) {
+            refund(takenHouses, takenDevices);
+            throw e;
+        }
+    }
+    
+    /**
+     * Admit a read over the given period into the query or export pool
+     */
+    public Permit admitQuery(Duration period) {
+        if (!enabled) {
+            return Permit.NONE;
+        }
+        return acquire(period.toHours() >= exportPeriodHours ? Pool.EXPORT : Pool.QUERY);
+    }
+    
+    /**
+     * Admit a bulk read, such as many statistics at once, into the export pool
+     */
+    public Permit admitExport() {
+        if (!enabled) {
+            return Permit.NONE;
+        }
+        return acquire(Pool.EXPORT);
+    }
+    
+    /**
+     * Current limits and pool usage
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("house_rate", houseRate);
+        status.put("house_burst", houseBurst);
+        status.put("device_rate", deviceRate);
+        status.put("device_burst", deviceBurst);
+        status.put("tracked_houses", houseBuckets.size());
+        status.put("tracked_devices", deviceBuckets.size());
+        Map<String, Object> poolStatus = new LinkedHashMap<>();
+        pools.forEach((pool, semaphore) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("limit", poolSizes.get(pool));
+            entry.put("in_use", poolSizes.get(pool) - semaphore.availablePermits());
+            poolStatus.put(pool.name().toLowerCase(), entry);
+        });
+        status.put("pools", poolStatus);
+        Map<String, Object> rejected = new LinkedHashMap<>();
+        rejections.forEach((reason, counter) -> rejected.put(reason, (long) counter.count()));
+        status.put("rejected", rejected);
+        return status;
+    }
+    
+    /**
+     * Forget buckets that have refilled completely
+     */
+    @Scheduled(fixedDelayString = "${telemetry.admission.sweep-interval:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        houseBuckets.evictIdle(now);
+        deviceBuckets.evictIdle(now);
+    }
+    
+    private void takeTokens(List<TelemetryRequest> requests, Map<UUID, Integer> takenHouses,
+                            Map<UUID, Integer> takenDevices) {
+        Map<UUID, Integer> perHouse = new LinkedHashMap<>();
+        Map<UUID, Integer> perDevice = new LinkedHashMap<>();
+        for (TelemetryRequest request : requests) {
+            if (request.getHouseId() == null || request.getDeviceId() == null) {
+                continue;
+            }
+            perHouse.merge(request.getHouseId(), 1, Integer::sum);
+            perDevice.merge(request.getDeviceId(), 1, Integer::sum);
+        }
+        
+        // A batch larger than a burst could never be admitted, retrying would not help
+        checkBurst(perHouse, houseBurst, "house");
+        checkBurst(perDevice, deviceBurst, "device");
+        
+        long now = System.nanoTime();
+        try {
+            take(houseBuckets, perHouse, takenHouses, now, "house");
+            take(deviceBuckets, perDevice, takenDevices, now, "device");
+        } catch (AdmissionRejectedException e) {
+            refund(takenHouses, takenDevices);
+            throw e;
+        }
+    }
+    
+    // All or nothing: a refused batch must not drain budgets it did not use
+    private void refund(Map<UUID, Integer> takenHouses, Map<UUID, Integer> takenDevices) {
+        takenHouses.forEach(houseBuckets::refund);
+        takenDevices.forEach(deviceBuckets::refund);
+        takenHouses.clear();
+        takenDevices.clear();
+    }
+    
+    private static void checkBurst(Map<UUID, Integer> costs, int burst, String scope) {
+        costs.forEach((key, cost) -> {
+            if (cost > burst) {
+                throw new IllegalArgumentException("Batch holds " + cost + " readings for " + scope + " " + key
+                        + ", more than its burst of " + burst);
+            }
+        });
+    }
+    
+    private void take(TokenBuckets buckets, Map<UUID, Integer> costs, Map<UUID, Integer> taken,
+                      long now, String reason) {
+        for (Map.Entry<UUID, Integer> entry : costs.entrySet()) {
+            long waitNanos = buckets.tryAcquire(entry.getKey(), entry.getValue(), now);
+            if (waitNanos > 0) {
+                rejections.get(reason).increment();
+                log.debug("Rate limited {} {}, retry in {} ms", reason, entry.getKey(), waitNanos / 1_000_000);
+                throw new AdmissionRejectedException("Rate limit exceeded for " + reason + " " + entry.getKey(),
+                        Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND));
+            }
+            taken.put(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    private Permit acquire(Pool pool) {
+        Semaphore semaphore = pools.get(pool);
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(poolWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejections.get("pool_" + pool.name().toLowerCase()).increment();
+            throw new AdmissionRejectedException(pool.name().toLowerCase() + " pool saturated", 1);
+        }
+        return new Permit(semaphore);
+    }
+    
+    private Counter rejectionCounter(String reason, String pool) {
+        return Counter.builder("telemetry.admission.rejected")
+                .tag("reason", reason)
+                .tag("pool", pool)
+                .description("Requests refused by admission control")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Pool permit, released on close
+     */
+    public static final class Permit implements AutoCloseable {
+        
+        static final Permit NONE = new Permit(null);
+        
+        private final Semaphore semaphore;
+        private boolean released;
+        
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+        
+        @Override
+        public void close() {
+            if (semaphore != null && !released) {
+                released = true;
+                semaphore.release();
+            }
+        }
+    }
+}
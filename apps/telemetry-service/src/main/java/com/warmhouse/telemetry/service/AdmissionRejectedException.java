@@ -0,0 +1,18 @@
+package com.warmhouse.telemetry.service;
+
+/**
+ * Request refused by admission control, to be answered with 429 and Retry-After
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    
+    private final long retryAfterSeconds;
+    
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,148 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import com.warmhouse.telemetry.events.TelemetryEventPublisher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Publishes per-device aggregates of closed windows (hourly and daily by default)
+ * One instance at a time computes each window once all late readings are in, publishes one
+ * aggregated event per device and measurement type, then moves the window's watermark in Redis.
+ * Event ids are derived from the window, so a window republished after a crash between publishing
+ * and moving the watermark carries the same ids and consumers can drop the repeats.
+ */
+@Service
+@RequiredArgsConstructor
+public class AggregatePublisher {
+    
+    private static final Logger log = LoggerFactory.getLogger(AggregatePublisher.class);
+    
+    static final String WATERMARK_PREFIX = "telemetry:aggregates:watermark:";
+    static final String LOCK_KEY = "telemetry:aggregates:lock";
+    
+    private final InfluxDBService influxDBService;
+    private final TelemetryEventPublisher eventPublisher;
+    private final DeviceDirectory deviceDirectory;
+    private final DependencyBulkheads bulkheads;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final SchedulerLocks schedulerLocks;
+    private final MeterRegistry meterRegistry;
+    private final IngestCompressionService compressionService;
+    
+    @Value("${telemetry.aggregates.enabled:true}")
+    private boolean enabled;
+    
+    // Window lengths, each published as its own aggregation period
+    @Value("${telemetry.aggregates.windows:1h,1d}")
+    private List<String> windows;
+    
+    // Late-arrival allowance before a window counts as closed, on top of the longest compression hold
+    @Value("${telemetry.aggregates.lag:300000}")
+    private long lagMs;
+    
+    @Value("${telemetry.aggregates.interval:60000}")
+    private long intervalMs;
+    
+    // Upper bound on windows published per length and run, so catching up after downtime stays incremental
+    @Value("${telemetry.aggregates.max-windows-per-run:24}")
+    private int maxWindowsPerRun;
+    
+    private final Map<String, Duration> lengths = new LinkedHashMap<>();
+    private Counter publishedWindows;
+    private Counter publishedEvents;
+    
+    @PostConstruct
+    void init() {
+        for (String window : windows) {
+            lengths.put(window.trim(), TieredStorageService.parseDuration(window));
+        }
+        publishedWindows = Counter.builder("telemetry.aggregates.windows")
+                .description("Closed aggregation windows published")
+                .register(meterRegistry);
+        publishedEvents = Counter.builder("telemetry.aggregates.events")
+                .description("Aggregated events published for closed windows")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Publish every window closed since the last run, one instance at a time
+     */
+    @Scheduled(fixedDelayString = "${telemetry.aggregates.interval:60000}")
+    public void publishClosedWindows() {
+        // Events would only pile up in the local queue; the windows wait for the broker instead
+        if (!enabled || bulkheads.rabbit().isDegraded()) {
+            return;
+        }
+        try {
+            if (!schedulerLocks.acquire(LOCK_KEY, intervalMs * 5)) {
+                return;
+            }
+            try {
+                lengths.forEach(this::publishWindows);
+            } finally {
+                schedulerLocks.release(LOCK_KEY);
+            }
+        } catch (Exception e) {
+            log.warn("Aggregate publishing skipped: {}", e.getMessage());
+        }
+    }
+    
+    private void publishWindows(String period, Duration length) {
+        long windowMs = length.toMillis();
+        // Readings held back by ingest compression reach storage up to maxHoldMs after they arrived
+        long lag = lagMs + compressionService.maxHoldMs();
+        long closedUntil = Math.floorDiv(System.currentTimeMillis() - lag, windowMs) * windowMs;
+        Object stored = redisTemplate.opsForValue().get(WATERMARK_PREFIX + period);
+        // Without a watermark publishing starts at the latest closed window, history is not replayed
+        long next = stored instanceof Number ? ((Number) stored).longValue() : closedUntil - windowMs;
+        
+        for (int i = 0; i < maxWindowsPerRun && next + windowMs <= closedUntil; i++) {
+            if (!schedulerLocks.renew(LOCK_KEY, intervalMs * 5)) {
+                log.warn("Aggregation lock lost, leaving {} windows from {} to the next run",
+                        period, Instant.ofEpochMilli(next));
+                return;
+            }
+            
+            Instant start = Instant.ofEpochMilli(next);
+            Instant end = start.plus(length);
+            List<TelemetryStatistics> aggregates = influxDBService.calculateWindowStatistics(start, end, period);
+            for (TelemetryStatistics stats : aggregates) {
+                deviceDirectory.applyNames(stats);
+                eventPublisher.publishMeasurementAggregated(eventId(stats, period),
+                        stats.getDeviceId().toString(), stats.getMeasurementType(), period, stats.toEventData());
+            }
+            
+            next += windowMs;
+            redisTemplate.opsForValue().set(WATERMARK_PREFIX + period, next);
+            publishedWindows.increment();
+            publishedEvents.increment(aggregates.size());
+            log.info("Published {} aggregates of {} window [{}, {})", aggregates.size(), period, start, end);
+        }
+    }
+    
+    /**
+     * Stable id of a window's aggregate for one device and measurement type
+     */
+    static String eventId(TelemetryStatistics stats, String period) {
+        String key = stats.getDeviceId() + "|" + stats.getMeasurementType() + "|" + period + "|"
+                + stats.getPeriodStart().toEpochMilli();
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
@@ -0,0 +1,126 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.model.AlertRule;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Service for alert rule definitions stored in Redis
+ * Rules are shared by all instances; a version counter lets every instance hot-reload on change
+ */
+@Service
+@RequiredArgsConstructor
+public class AlertRuleService {
+    
+    private static final Logger log = LoggerFactory.getLogger(AlertRuleService.class);
+    
+    private static final String RULES_KEY = "telemetry:alert_rules";
+    private static final String RULES_VERSION_KEY = "telemetry:alert_rules:version";
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RuleEngineService ruleEngineService;
+    
+    private volatile Long loadedVersion;
+    
+    /**
+     * List all stored rules
+     */
+    public List<AlertRule> getRules() {
+        List<AlertRule> rules = new ArrayList<>();
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(RULES_KEY);
+        for (Object value : entries.values()) {
+            if (value instanceof AlertRule) {
+                rules.add((AlertRule) value);
+            }
+        }
+        return rules;
+    }
+    
+    /**
+     * Create or replace a rule and reload locally
+     */
+    public AlertRule saveRule(AlertRule rule) {
+        if (rule.getRuleId() == null || rule.getRuleId().isBlank()) {
+            rule.setRuleId(UUID.randomUUID().toString());
+        }
+        validate(rule);
+        redisTemplate.opsForHash().put(RULES_KEY, rule.getRuleId(), rule);
+        redisTemplate.opsForValue().increment(RULES_VERSION_KEY);
+        reloadRules();
+        log.info("Saved alert rule {}", rule.getRuleId());
+        return rule;
+    }
+    
+    /**
+     * Delete a rule and reload locally
+     */
+    public boolean deleteRule(String ruleId) {
+        Long removed = redisTemplate.opsForHash().delete(RULES_KEY, ruleId);
+        if (removed == null || removed == 0) {
+            return false;
+        }
+        redisTemplate.opsForValue().increment(RULES_VERSION_KEY);
+        reloadRules();
+        log.info("Deleted alert rule {}", ruleId);
+        return true;
+    }
+    
+    /**
+     * Reload rules when another instance changed them
+     */
+    @Scheduled(fixedDelayString = "${telemetry.rules.reload-interval:10000}")
+    public void reloadIfChanged() {
+        try {
+            Object version = redisTemplate.opsForValue().get(RULES_VERSION_KEY);
+            Long current = version instanceof Number ? ((Number) version).longValue() : 0L;
+            if (!current.equals(loadedVersion)) {
+                reloadRules();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to check alert rule version: {}", e.getMessage());
+        }
+    }
+    
+    private synchronized void reloadRules() {
+        Object version = redisTemplate.opsForValue().get(RULES_VERSION_KEY);
+        List<AlertRule> rules = getRules();
+        ruleEngineService.updateRules(rules);
+        loadedVersion = version instanceof Number ? ((Number) version).longValue() : 0L;
+    }
+    
+    private void validate(AlertRule rule) {
+        switch (rule.getType()) {
+            case THRESHOLD_ABOVE:
+            case THRESHOLD_BELOW:
+                if (rule.getThreshold() == null) {
+                    throw new IllegalArgumentException("Threshold is required for " + rule.getType());
+                }
+                if (rule.getType() == AlertRule.Type.THRESHOLD_ABOVE && rule.effectiveClearThreshold() > rule.getThreshold()
+                        || rule.getType() == AlertRule.Type.THRESHOLD_BELOW && rule.effectiveClearThreshold() < rule.getThreshold()) {
+                    throw new IllegalArgumentException("Clear threshold must be on the inner side of the threshold");
+                }
+                break;
+            case RATE_OF_CHANGE:
+                if (rule.getThreshold() == null || rule.getWindowSeconds() == null || rule.getWindowSeconds() <= 0) {
+                    throw new IllegalArgumentException("Threshold and positive windowSeconds are required for RATE_OF_CHANGE");
+                }
+                break;
+            case MISSING_DATA:
+                if (rule.getTimeoutSeconds() == null || rule.getTimeoutSeconds() <= 0) {
+                    throw new IllegalArgumentException("Positive timeoutSeconds is required for MISSING_DATA");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported rule type: " + rule.getType());
+        }
+    }
+}
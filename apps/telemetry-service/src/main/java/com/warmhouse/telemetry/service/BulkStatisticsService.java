@@ -0,0 +1,191 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.StatisticsQuery;
+import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Statistics for many (device, measurement type, period) tuples in one request
+ * Tuples are grouped by period and chunked by device; each group is answered by one reduce query per
+ * storage tier and shard instead of five queries per tuple. Groups run on a small fixed pool and their
+ * results are handed over as each group completes.
+ */
+@Service
+@RequiredArgsConstructor
+public class BulkStatisticsService {
+    
+    private static final Logger log = LoggerFactory.getLogger(BulkStatisticsService.class);
+    
+    private final InfluxDBService influxDBService;
+    private final QuantileSketchService quantileSketchService;
+    private final DeviceDirectory deviceDirectory;
+    private final MeterRegistry meterRegistry;
+    
+    // Groups computed at once across all bulk requests
+    @Value("${telemetry.bulk-statistics.concurrency:4}")
+    private int concurrency;
+    
+    @Value("${telemetry.bulk-statistics.devices-per-query:200}")
+    private int devicesPerQuery;
+    
+    @Value("${telemetry.bulk-statistics.max-tuples:50000}")
+    private int maxTuples;
+    
+    private ExecutorService executor;
+    private Counter groups;
+    private Counter tuples;
+    
+    /**
+     * Tuples of one period whose devices are asked in one query
+     */
+    static final class Group {
+        
+        final String period;
+        final List<StatisticsQuery> queries = new ArrayList<>();
+        final Set<UUID> deviceIds = new LinkedHashSet<>();
+        final Set<String> measurementTypes = new LinkedHashSet<>();
+        
+        Group(String period) {
+            this.period = period;
+        }
+    }
+    
+    @PostConstruct
+    void init() {
+        executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        groups = Counter.builder("telemetry.statistics.bulk.groups")
+                .description("Tuple groups of bulk statistics requests computed")
+                .register(meterRegistry);
+        tuples = Counter.builder("telemetry.statistics.bulk.tuples")
+                .description("Tuples answered by bulk statistics requests")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Compute statistics for every tuple, passing each result to the consumer as its group completes
+     * Tuples of a failed group go to onFailure. A consumer that throws (e.g. the client went away)
+     * stops the remaining groups.
+     *
+     * @return completes once every group has been handled or the request was abandoned
+     * @throws IllegalArgumentException if a tuple is incomplete, or there are none or more than allowed
+     */
+    public CompletableFuture<Void> calculate(List<StatisticsQuery> queries, boolean withPercentiles,
+                                             Consumer<TelemetryStatistics> onResult,
+                                             BiConsumer<StatisticsQuery, Exception> onFailure) {
+        if (queries.isEmpty() || queries.size() > maxTuples) {
+            throw new IllegalArgumentException("Between 1 and " + maxTuples + " tuples are accepted");
+        }
+        for (StatisticsQuery query : queries) {
+            if (query.getDeviceId() == null || query.getMeasurementType() == null) {
+                throw new IllegalArgumentException("Every tuple needs a device ID and a measurement type");
+            }
+        }
+        Queue<Group> pending = new ConcurrentLinkedQueue<>(group(queries));
+        Instant end = Instant.now();
+        log.info("Calculating statistics for {} tuples in {} groups", queries.size(), pending.size());
+        
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        int workers = Math.min(concurrency, pending.size());
+        AtomicInteger running = new AtomicInteger(workers);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> {
+                try {
+                    Group next;
+                    while (!abandoned.get() && (next = pending.poll()) != null) {
+                        answer(next, end, withPercentiles, onResult, onFailure);
+                    }
+                } catch (RuntimeException e) {
+                    abandoned.set(true);
+                    completion.completeExceptionally(e);
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        completion.complete(null);
+                    }
+                }
+            });
+        }
+        return completion;
+    }
+    
+    /**
+     * Group tuples by period, at most devicesPerQuery devices per group
+     */
+    List<Group> group(List<StatisticsQuery> queries) {
+        Map<String, List<Group>> byPeriod = new LinkedHashMap<>();
+        for (StatisticsQuery query : queries) {
+            String period = query.getPeriod() != null ? query.getPeriod() : "24h";
+            List<Group> periodGroups = byPeriod.computeIfAbsent(period, p -> new ArrayList<>());
+            Group group = periodGroups.isEmpty() ? null : periodGroups.get(periodGroups.size() - 1);
+            if (group == null || (!group.deviceIds.contains(query.getDeviceId())
+                    && group.deviceIds.size() >= devicesPerQuery)) {
+                group = new Group(period);
+                periodGroups.add(group);
+            }
+            group.queries.add(query);
+            group.deviceIds.add(query.getDeviceId());
+            group.measurementTypes.add(query.getMeasurementType());
+        }
+        List<Group> grouped = new ArrayList<>();
+        byPeriod.values().forEach(grouped::addAll);
+        return grouped;
+    }
+    
+    private void answer(Group group, Instant end, boolean withPercentiles,
+                        Consumer<TelemetryStatistics> onResult, BiConsumer<StatisticsQuery, Exception> onFailure) {
+        Map<UUID, Map<String, TelemetryStatistics>> computed;
+        try {
+            computed = influxDBService.calculateStatistics(group.deviceIds, group.measurementTypes, group.period, end);
+            groups.increment();
+        } catch (Exception e) {
+            log.warn("Bulk statistics group of {} tuples failed: {}", group.queries.size(), e.getMessage());
+            group.queries.forEach(query -> onFailure.accept(query, e));
+            return;
+        }
+        
+        for (StatisticsQuery query : group.queries) {
+            TelemetryStatistics stats = computed.get(query.getDeviceId()).get(query.getMeasurementType());
+            if (withPercentiles) {
+                quantileSketchService.applyPercentiles(stats);
+            }
+            deviceDirectory.applyNames(stats);
+            onResult.accept(stats);
+            tuples.increment();
+        }
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
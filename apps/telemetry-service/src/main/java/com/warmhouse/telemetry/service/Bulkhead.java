@@ -0,0 +1,181 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.util.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead for one external dependency
+ * Calls run on the dependency's own bounded pool with a timeout, so a hanging dependency ties up
+ * its pool instead of the request threads. Failures, timeouts and rejections feed a circuit breaker;
+ * while it is open calls go straight to their fallback.
+ */
+public class Bulkhead {
+    
+    private static final Logger log = LoggerFactory.getLogger(Bulkhead.class);
+    
+    private final String name;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final CircuitBreaker circuitBreaker;
+    
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter timeouts;
+    private final Counter rejections;
+    private final Counter shortCircuits;
+    
+    public Bulkhead(String name, int poolSize, int queueCapacity, long timeoutMs,
+                    int failureThreshold, long openMillis, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeoutMs = timeoutMs;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+        
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "bulkhead-" + name + "-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        
+        successes = outcomeCounter(meterRegistry, "success");
+        failures = outcomeCounter(meterRegistry, "failure");
+        timeouts = outcomeCounter(meterRegistry, "timeout");
+        rejections = outcomeCounter(meterRegistry, "rejected");
+        shortCircuits = outcomeCounter(meterRegistry, "short_circuited");
+        Gauge.builder("telemetry.dependency.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .tag("dependency", name)
+                .description("Circuit state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.dependency.bulkhead.active", executor, ThreadPoolExecutor::getActiveCount)
+                .tag("dependency", name)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Run a call and wait for it up to the timeout, falling back on any failure or an open circuit
+     */
+    public <T> T call(Callable<T> task, Supplier<T> fallback) {
+        if (!circuitBreaker.allowRequest()) {
+            shortCircuits.increment();
+            return fallback.get();
+        }
+        
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            circuitBreaker.recordFailure();
+            return fallback.get();
+        }
+        
+        try {
+            T result = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            successes.increment();
+            circuitBreaker.recordSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            circuitBreaker.recordFailure();
+            log.debug("{} call timed out after {} ms", name, timeoutMs);
+        } catch (ExecutionException e) {
+            failures.increment();
+            circuitBreaker.recordFailure();
+            log.debug("{} call failed: {}", name, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            circuitBreaker.recordFailure();
+        }
+        return fallback.get();
+    }
+    
+    /**
+     * Fire-and-forget a call; the caller does not wait and the outcome only feeds the circuit breaker
+     *
+     * @param onFailure invoked if the call fails after being accepted, may be null
+     * @return false if the call was not started (open circuit or full pool)
+     */
+    public boolean submit(Runnable task, Runnable onFailure) {
+        if (!circuitBreaker.allowRequest()) {
+            shortCircuits.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                    successes.increment();
+                    circuitBreaker.recordSuccess();
+                } catch (Exception e) {
+                    failures.increment();
+                    circuitBreaker.recordFailure();
+                    log.debug("{} call failed: {}", name, e.getMessage());
+                    if (onFailure != null) {
+                        onFailure.run();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            circuitBreaker.recordFailure();
+            return false;
+        }
+    }
+    
+    /**
+     * Whether the dependency is being bypassed or probed
+     */
+    public boolean isDegraded() {
+        return circuitBreaker.getState() != CircuitBreaker.State.CLOSED;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("circuit", circuitBreaker.getState().name());
+        status.put("active", executor.getActiveCount());
+        status.put("queued", executor.getQueue().size());
+        status.put("timeouts", (long) timeouts.count());
+        status.put("failures", (long) failures.count());
+        status.put("rejected", (long) rejections.count());
+        status.put("short_circuited", (long) shortCircuits.count());
+        return status;
+    }
+    
+    void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("telemetry.dependency.calls")
+                .tag("dependency", name)
+                .tag("outcome", outcome)
+                .description("Calls to an external dependency through its bulkhead")
+                .register(meterRegistry);
+    }
+}
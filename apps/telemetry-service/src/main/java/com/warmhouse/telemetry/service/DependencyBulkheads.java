@@ -0,0 +1,89 @@
+package com.warmhouse.telemetry.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bulkheads for Redis and RabbitMQ
+ * Ingest keeps working while either is down: the location cache write is skipped, device validation is
+ * answered from local state and events are queued locally until the broker is back.
+ */
+@Service
+@RequiredArgsConstructor
+public class DependencyBulkheads {
+    
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.resilience.redis.pool-size:8}")
+    private int redisPoolSize;
+    
+    @Value("${telemetry.resilience.redis.queue-capacity:256}")
+    private int redisQueueCapacity;
+    
+    @Value("${telemetry.resilience.redis.timeout:250}")
+    private long redisTimeoutMs;
+    
+    @Value("${telemetry.resilience.redis.failure-threshold:5}")
+    private int redisFailureThreshold;
+    
+    @Value("${telemetry.resilience.redis.open-duration:5000}")
+    private long redisOpenMs;
+    
+    @Value("${telemetry.resilience.rabbitmq.pool-size:4}")
+    private int rabbitPoolSize;
+    
+    @Value("${telemetry.resilience.rabbitmq.queue-capacity:1024}")
+    private int rabbitQueueCapacity;
+    
+    @Value("${telemetry.resilience.rabbitmq.timeout:1000}")
+    private long rabbitTimeoutMs;
+    
+    @Value("${telemetry.resilience.rabbitmq.failure-threshold:5}")
+    private int rabbitFailureThreshold;
+    
+    @Value("${telemetry.resilience.rabbitmq.open-duration:5000}")
+    private long rabbitOpenMs;
+    
+    private Bulkhead redis;
+    private Bulkhead rabbit;
+    
+    @PostConstruct
+    void init() {
+        redis = new Bulkhead("redis", redisPoolSize, redisQueueCapacity, redisTimeoutMs,
+                redisFailureThreshold, redisOpenMs, meterRegistry);
+        rabbit = new Bulkhead("rabbitmq", rabbitPoolSize, rabbitQueueCapacity, rabbitTimeoutMs,
+                rabbitFailureThreshold, rabbitOpenMs, meterRegistry);
+    }
+    
+    public Bulkhead redis() {
+        return redis;
+    }
+    
+    public Bulkhead rabbit() {
+        return rabbit;
+    }
+    
+    public boolean isDegraded() {
+        return redis.isDegraded() || rabbit.isDegraded();
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put(redis.getName(), redis.getStatus());
+        status.put(rabbit.getName(), rabbit.getStatus());
+        return status;
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        redis.shutdown();
+        rabbit.shutdown();
+    }
+}
@@ -0,0 +1,131 @@
+package com.warmhouse.telemetry.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Debounced device cache invalidation
+ * Device change events are collected over a short window and collapsed per device, then applied as one
+ * Redis call and re-warmed with one registry listing per house, so a bulk import in the registry costs
+ * a handful of calls instead of one registry request per event. Redelivered events are recognised by
+ * their event id and skipped.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeviceCacheInvalidator {
+    
+    private static final Logger log = LoggerFactory.getLogger(DeviceCacheInvalidator.class);
+    
+    // Stands in for a missing house id, ConcurrentHashMap does not take null values
+    private static final UUID NO_HOUSE = new UUID(0, 0);
+    
+    private final DeviceValidationService deviceValidationService;
+    private final MeterRegistry meterRegistry;
+    
+    // Pending devices beyond this are flushed right away instead of waiting for the window
+    @Value("${telemetry.cache-invalidation.max-batch:5000}")
+    private int maxBatch;
+    
+    // Number of recent event ids remembered to drop redeliveries
+    @Value("${telemetry.cache-invalidation.dedup-capacity:10000}")
+    private int dedupCapacity;
+    
+    private final ConcurrentHashMap<UUID, UUID> pending = new ConcurrentHashMap<>();
+    private Map<String, Boolean> recentEvents;
+    
+    private Counter duplicates;
+    private Counter collapsed;
+    private Counter flushedDevices;
+    
+    @PostConstruct
+    void init() {
+        recentEvents = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > dedupCapacity;
+            }
+        };
+        duplicates = Counter.builder("telemetry.events.duplicates")
+                .description("Redelivered device events skipped by event id")
+                .register(meterRegistry);
+        collapsed = Counter.builder("telemetry.cache.invalidation.collapsed")
+                .description("Device changes merged into an invalidation already pending")
+                .register(meterRegistry);
+        flushedDevices = Counter.builder("telemetry.cache.invalidation.flushed")
+                .description("Devices invalidated and re-warmed")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.cache.invalidation.pending", pending, Map::size)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Record an event delivery
+     *
+     * @param eventKey event id, combined with anything that tells distinct events with the same id apart
+     * @return false if the event was seen recently and should be skipped
+     */
+    public boolean firstDelivery(String eventKey) {
+        if (eventKey == null) {
+            return true;
+        }
+        synchronized (recentEvents) {
+            if (recentEvents.putIfAbsent(eventKey, Boolean.TRUE) == null) {
+                return true;
+            }
+        }
+        duplicates.increment();
+        log.debug("Skipping redelivered event {}", eventKey);
+        return false;
+    }
+    
+    /**
+     * Queue a device for invalidation and re-warm in the next flush
+     */
+    public void deviceChanged(UUID deviceId, UUID houseId) {
+        if (pending.put(deviceId, houseId != null ? houseId : NO_HOUSE) != null) {
+            collapsed.increment();
+        }
+        if (pending.size() >= maxBatch) {
+            flush();
+        }
+    }
+    
+    /**
+     * Apply pending invalidations; runs every debounce window
+     */
+    @Scheduled(fixedDelayString = "${telemetry.cache-invalidation.window:500}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<UUID, UUID> batch = new LinkedHashMap<>();
+        for (UUID deviceId : pending.keySet()) {
+            UUID houseId = pending.remove(deviceId);
+            if (houseId != null) {
+                batch.put(deviceId, NO_HOUSE.equals(houseId) ? null : houseId);
+            }
+        }
+        
+        try {
+            deviceValidationService.invalidateDeviceCaches(batch.keySet());
+            int warmed = deviceValidationService.warmCache(batch);
+            flushedDevices.increment(batch.size());
+            log.info("Invalidated cache for {} devices, re-warmed {}", batch.size(), warmed);
+        } catch (Exception e) {
+            log.error("Failed to apply cache invalidation for {} devices: {}", batch.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local directory of device names, house membership and location names
+ * Materialized from device events and held in memory, so statistics enrichment and house or location
+ * scoped lookups never leave the process. Redis hashes are the shared backing store: local changes are
+ * written there in batches, and changes made by other instances (each consumes only part of the event
+ * queue) are pulled in when the directory version in Redis moves.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeviceDirectory {
+    
+    private static final Logger log = LoggerFactory.getLogger(DeviceDirectory.class);
+    
+    static final String DEVICES_KEY = "telemetry:directory:devices";
+    static final String LOCATIONS_KEY = "telemetry:directory:locations";
+    static final String VERSION_KEY = "telemetry:directory:version";
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final DependencyBulkheads bulkheads;
+    private final MeterRegistry meterRegistry;
+    
+    private final Map<UUID, Entry> devices = new ConcurrentHashMap<>();
+    private final Map<UUID, String> locationNames = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> devicesByHouse = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> devicesByLocation = new ConcurrentHashMap<>();
+    
+    // Local changes not yet written to Redis
+    private final Set<UUID> dirtyDevices = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> dirtyLocations = ConcurrentHashMap.newKeySet();
+    private final VersionedSync versionSync = new VersionedSync(this::pushChanges, this::reload);
+    
+    /**
+     * Directory entry of a device; ids are null when unknown
+     */
+    public static final class Entry {
+        
+        private final String name;
+        private final UUID houseId;
+        private final UUID locationId;
+        
+        Entry(String name, UUID houseId, UUID locationId) {
+            this.name = name;
+            this.houseId = houseId;
+            this.locationId = locationId;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public UUID getHouseId() {
+            return houseId;
+        }
+        
+        public UUID getLocationId() {
+            return locationId;
+        }
+        
+        String encode() {
+            return (houseId != null ? houseId.toString() : "") + "|"
+                    + (locationId != null ? locationId.toString() : "") + "|"
+                    + (name != null ? name : "");
+        }
+        
+        static Entry decode(String value) {
+            String[] parts = value.split("\\|", 3);
+            if (parts.length < 3) {
+                return null;
+            }
+            return new Entry(parts[2].isEmpty() ? null : parts[2],
+                    parts[0].isEmpty() ? null : UUID.fromString(parts[0]),
+                    parts[1].isEmpty() ? null : UUID.fromString(parts[1]));
+        }
+    }
+    
+    @PostConstruct
+    void init() {
+        Gauge.builder("telemetry.directory.devices", devices, Map::size)
+                .description("Devices in the local directory")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.directory.pending_writes", dirtyDevices, Set::size)
+                .description("Directory changes not yet written to Redis")
+                .register(meterRegistry);
+    }
+    
+    public Entry getDevice(UUID deviceId) {
+        return devices.get(deviceId);
+    }
+    
+    public String getLocationName(UUID locationId) {
+        return locationId != null ? locationNames.get(locationId) : null;
+    }
+    
+    public Set<UUID> devicesInHouse(UUID houseId) {
+        Set<UUID> ids = devicesByHouse.get(houseId);
+        return ids != null ? Collections.unmodifiableSet(ids) : Set.of();
+    }
+    
+    public Set<UUID> devicesInLocation(UUID locationId) {
+        Set<UUID> ids = devicesByLocation.get(locationId);
+        return ids != null ? Collections.unmodifiableSet(ids) : Set.of();
+    }
+    
+    /**
+     * Fill in device and location names of statistics from the directory, when known
+     */
+    public void applyNames(TelemetryStatistics stats) {
+        Entry device = devices.get(stats.getDeviceId());
+        if (device == null) {
+            return;
+        }
+        if (device.name != null) {
+            stats.setDeviceName(device.name);
+        }
+        String locationName = getLocationName(device.locationId);
+        if (locationName != null) {
+            stats.setLocationName(locationName);
+        }
+    }
+    
+    /**
+     * Record a created or updated device; missing fields keep their known value
+     */
+    public synchronized void putDevice(UUID deviceId, String name, UUID houseId, UUID locationId) {
+        Entry known = devices.get(deviceId);
+        Entry entry = new Entry(
+                name != null ? name : known != null ? known.name : null,
+                houseId != null ? houseId : known != null ? known.houseId : null,
+                locationId != null ? locationId : known != null ? known.locationId : null);
+        apply(deviceId, entry);
+        dirtyDevices.add(deviceId);
+    }
+    
+    public synchronized void removeDevice(UUID deviceId) {
+        apply(deviceId, null);
+        dirtyDevices.add(deviceId);
+    }
+    
+    public void putLocationName(UUID locationId, String name) {
+        if (name != null && !name.equals(locationNames.put(locationId, name))) {
+            dirtyLocations.add(locationId);
+        }
+    }
+    
+    /**
+     * Directory size and, if asked, the devices of a house or location
+     */
+    public Map<String, Object> getStatus(UUID houseId, UUID locationId) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("devices", devices.size());
+        status.put("houses", devicesByHouse.size());
+        status.put("locations", devicesByLocation.size());
+        status.put("named_locations", locationNames.size());
+        status.put("pending_writes", dirtyDevices.size() + dirtyLocations.size());
+        status.put("version", versionSync.getKnownVersion());
+        if (houseId != null) {
+            status.put("house_devices", describe(devicesInHouse(houseId)));
+        }
+        if (locationId != null) {
+            status.put("location_devices", describe(devicesInLocation(locationId)));
+        }
+        return status;
+    }
+    
+    /**
+     * Write local changes to Redis, then reload if another instance changed the directory
+     */
+    @Scheduled(fixedDelayString = "${telemetry.directory.sync-interval:5000}")
+    public void sync() {
+        versionSync.sync(bulkheads.redis());
+    }
+    
+    /**
+     * Write dirty entries in one pipeline and bump the version
+     *
+     * @return the directory version other instances' changes are measured against
+     */
+    private Long pushChanges() {
+        List<UUID> deviceIds = new ArrayList<>(dirtyDevices);
+        List<UUID> locationIds = new ArrayList<>(dirtyLocations);
+        if (deviceIds.isEmpty() && locationIds.isEmpty()) {
+            Object version = redisTemplate.opsForValue().get(VERSION_KEY);
+            return version != null ? Long.parseLong(version.toString()) : 0L;
+        }
+        deviceIds.forEach(dirtyDevices::remove);
+        locationIds.forEach(dirtyLocations::remove);
+        
+        Map<String, Object> upserts = new HashMap<>();
+        List<Object> deletes = new ArrayList<>();
+        for (UUID deviceId : deviceIds) {
+            Entry entry = devices.get(deviceId);
+            if (entry != null) {
+                upserts.put(deviceId.toString(), entry.encode());
+            } else {
+                deletes.add(deviceId.toString());
+            }
+        }
+        Map<String, Object> locations = new HashMap<>();
+        for (UUID locationId : locationIds) {
+            String name = locationNames.get(locationId);
+            if (name != null) {
+                locations.put(locationId.toString(), name);
+            }
+        }
+        
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    if (!upserts.isEmpty()) {
+                        ops.opsForHash().putAll(DEVICES_KEY, upserts);
+                    }
+                    if (!deletes.isEmpty()) {
+                        ops.opsForHash().delete(DEVICES_KEY, deletes.toArray());
+                    }
+                    if (!locations.isEmpty()) {
+                        ops.opsForHash().putAll(LOCATIONS_KEY, locations);
+                    }
+                    ops.opsForValue().increment(VERSION_KEY);
+                    return null;
+                }
+            });
+            long version = versionSync.pushed(((Number) results.get(results.size() - 1)).longValue());
+            log.debug("Wrote {} device and {} location directory changes", deviceIds.size(), locations.size());
+            return version;
+        } catch (RuntimeException e) {
+            dirtyDevices.addAll(deviceIds);
+            dirtyLocations.addAll(locationIds);
+            throw e;
+        }
+    }
+    
+    /**
+     * Replace the directory with the Redis copy, keeping local changes not yet written
+     */
+    private Boolean reload() {
+        Map<Object, Object> storedDevices = redisTemplate.opsForHash().entries(DEVICES_KEY);
+        Map<Object, Object> storedLocations = redisTemplate.opsForHash().entries(LOCATIONS_KEY);
+        
+        synchronized (this) {
+            Map<UUID, Entry> loaded = new HashMap<>();
+            storedDevices.forEach((key, value) -> {
+                try {
+                    Entry entry = Entry.decode(value.toString());
+                    if (entry != null) {
+                        loaded.put(UUID.fromString(key.toString()), entry);
+                    }
+                } catch (IllegalArgumentException e) {
+                    log.debug("Skipping malformed directory entry {}", key);
+                }
+            });
+            for (UUID deviceId : new ArrayList<>(devices.keySet())) {
+                if (!loaded.containsKey(deviceId) && !dirtyDevices.contains(deviceId)) {
+                    apply(deviceId, null);
+                }
+            }
+            loaded.forEach((deviceId, entry) -> {
+                if (!dirtyDevices.contains(deviceId)) {
+                    apply(deviceId, entry);
+                }
+            });
+        }
+        storedLocations.forEach((key, value) -> {
+            UUID locationId = UUID.fromString(key.toString());
+            if (!dirtyLocations.contains(locationId)) {
+                locationNames.put(locationId, value.toString());
+            }
+        });
+        log.debug("Reloaded directory: {} devices, {} named locations", devices.size(), locationNames.size());
+        return Boolean.TRUE;
+    }
+    
+    /**
+     * Replace a device entry and keep the house and location indexes in step; null removes the device
+     */
+    private void apply(UUID deviceId, Entry entry) {
+        Entry previous = entry != null ? devices.put(deviceId, entry) : devices.remove(deviceId);
+        if (previous != null) {
+            unindex(devicesByHouse, previous.houseId, deviceId);
+            unindex(devicesByLocation, previous.locationId, deviceId);
+        }
+        if (entry != null) {
+            index(devicesByHouse, entry.houseId, deviceId);
+            index(devicesByLocation, entry.locationId, deviceId);
+        }
+    }
+    
+    private static void index(Map<UUID, Set<UUID>> index, UUID key, UUID deviceId) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(deviceId);
+        }
+    }
+    
+    private static void unindex(Map<UUID, Set<UUID>> index, UUID key, UUID deviceId) {
+        if (key != null) {
+            index.computeIfPresent(key, (k, ids) -> {
+                ids.remove(deviceId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+    
+    private List<Map<String, Object>> describe(Set<UUID> deviceIds) {
+        List<Map<String, Object>> described = new ArrayList<>();
+        for (UUID deviceId : deviceIds) {
+            Entry entry = devices.get(deviceId);
+            if (entry == null) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("device_id", deviceId);
+            item.put("name", entry.name);
+            item.put("house_id", entry.houseId);
+            item.put("location_id", entry.locationId);
+            item.put("location_name", getLocationName(entry.locationId));
+            described.add(item);
+        }
+        return described;
+    }
+}
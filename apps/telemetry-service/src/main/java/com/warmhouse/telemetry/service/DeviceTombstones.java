@@ -0,0 +1,238 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.util.BloomFilter;
+import com.warmhouse.telemetry.util.Hashing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tombstones of deleted devices whose stored data has not been purged yet
+ * A deleted device is rejected at ingest and hidden from queries as soon as it is tombstoned, while the
+ * InfluxDB delete runs later. Lookups go through a Bloom filter, so the check for live devices (nearly every
+ * call) costs a few bit probes; positives are confirmed against the exact set. The Redis sorted set
+ * telemetry:tombstones (scored by deletion time) is the shared copy, reloaded when its version moves.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeviceTombstones {
+    
+    private static final Logger log = LoggerFactory.getLogger(DeviceTombstones.class);
+    
+    static final String TOMBSTONES_KEY = "telemetry:tombstones";
+    static final String VERSION_KEY = "telemetry:tombstones:version";
+    private static final int MIN_FILTER_CAPACITY = 1024;
+    
+    private final StringRedisTemplate redisTemplate;
+    private final DependencyBulkheads bulkheads;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.tombstones.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+    
+    // Deletion time of every tombstoned device
+    private final Map<UUID, Long> deletedAt = new ConcurrentHashMap<>();
+    // Tombstones not yet written to Redis
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    private volatile BloomFilter filter;
+    private int filterCapacity;
+    private final VersionedSync versionSync = new VersionedSync(this::pushPending, this::reload);
+    
+    @PostConstruct
+    void init() {
+        rebuildFilter();
+        Gauge.builder("telemetry.tombstones.devices", deletedAt, Map::size)
+                .description("Deleted devices awaiting the storage purge")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Whether the device was deleted and its data must no longer be accepted or returned
+     */
+    public boolean isDeleted(UUID deviceId) {
+        return filter.mightContain(Hashing.hash64(deviceId)) && deletedAt.containsKey(deviceId);
+    }
+    
+    /**
+     * Devices of the collection that are not deleted, in their original order
+     */
+    public List<UUID> live(Collection<UUID> deviceIds) {
+        return deviceIds.stream().filter(deviceId -> !isDeleted(deviceId)).collect(Collectors.toList());
+    }
+    
+    /**
+     * Tombstone a device; effective locally at once and written to Redis right away when it is reachable
+     */
+    public void tombstone(UUID deviceId) {
+        synchronized (this) {
+            if (deletedAt.putIfAbsent(deviceId, System.currentTimeMillis()) == null) {
+                if (deletedAt.size() > filterCapacity) {
+                    rebuildFilter();
+                } else {
+                    filter.put(Hashing.hash64(deviceId));
+                }
+            }
+            // Inside the lock, so a concurrent reload keeps the tombstone as not yet written
+            pending.add(deviceId);
+        }
+        bulkheads.redis().call(this::pushPending, () -> null);
+    }
+    
+    /**
+     * Up to limit devices tombstoned before the given epoch millis, oldest deletion first
+     */
+    public List<UUID> oldest(int limit, long deletedBefore) {
+        return deletedAt.entrySet().stream()
+                .filter(entry -> entry.getValue() < deletedBefore)
+                .sorted(Map.Entry.comparingByValue())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Drop the tombstones of purged devices, here and in Redis
+     *
+     * @return false if Redis could not be updated; the tombstones stay and the purge is repeated
+     */
+    public boolean remove(Collection<UUID> deviceIds) {
+        if (deviceIds.isEmpty()) {
+            return true;
+        }
+        Boolean removed = bulkheads.redis().call(() -> {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    ops.opsForZSet().remove(TOMBSTONES_KEY, deviceIds.stream().map(UUID::toString).toArray());
+                    ops.opsForValue().increment(VERSION_KEY);
+                    return null;
+                }
+            });
+            return Boolean.TRUE;
+        }, () -> Boolean.FALSE);
+        if (!removed) {
+            return false;
+        }
+        synchronized (this) {
+            deviceIds.forEach(deletedAt::remove);
+            deviceIds.forEach(pending::remove);
+            rebuildFilter();
+        }
+        return true;
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("devices", deletedAt.size());
+        status.put("pending_writes", pending.size());
+        deletedAt.values().stream().min(Long::compare)
+                .ifPresent(oldest -> status.put("oldest_deleted_at", Instant.ofEpochMilli(oldest)));
+        status.put("filter_bits", filter.bitSize());
+        status.put("version", versionSync.getKnownVersion());
+        return status;
+    }
+    
+    /**
+     * Write tombstones not yet in Redis, then reload if another instance changed the set
+     */
+    @Scheduled(fixedDelayString = "${telemetry.tombstones.sync-interval:1000}")
+    public void sync() {
+        versionSync.sync(bulkheads.redis());
+    }
+    
+    /**
+     * Add pending tombstones in one pipeline and bump the version
+     *
+     * @return the version other instances' changes are measured against
+     */
+    private Long pushPending() {
+        List<UUID> deviceIds = new ArrayList<>(pending);
+        if (deviceIds.isEmpty()) {
+            String version = redisTemplate.opsForValue().get(VERSION_KEY);
+            return version != null ? Long.parseLong(version) : 0L;
+        }
+        deviceIds.forEach(pending::remove);
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (UUID deviceId : deviceIds) {
+                        Long deleted = deletedAt.get(deviceId);
+                        if (deleted != null) {
+                            ops.opsForZSet().addIfAbsent(TOMBSTONES_KEY, deviceId.toString(), deleted);
+                        }
+                    }
+                    ops.opsForValue().increment(VERSION_KEY);
+                    return null;
+                }
+            });
+            long version = versionSync.pushed(((Number) results.get(results.size() - 1)).longValue());
+            log.debug("Wrote {} device tombstones", deviceIds.size());
+            return version;
+        } catch (RuntimeException e) {
+            pending.addAll(deviceIds);
+            throw e;
+        }
+    }
+    
+    /**
+     * Replace the tombstones with the Redis copy, keeping the ones not yet written
+     */
+    private Boolean reload() {
+        Set<ZSetOperations.TypedTuple<String>> stored = redisTemplate.opsForZSet().rangeWithScores(TOMBSTONES_KEY, 0, -1);
+        Map<UUID, Long> loaded = new HashMap<>();
+        if (stored != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : stored) {
+                try {
+                    loaded.put(UUID.fromString(tuple.getValue()),
+                            tuple.getScore() != null ? tuple.getScore().longValue() : 0L);
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    log.debug("Skipping malformed tombstone {}", tuple.getValue());
+                }
+            }
+        }
+        synchronized (this) {
+            deletedAt.keySet().removeIf(deviceId -> !loaded.containsKey(deviceId) && !pending.contains(deviceId));
+            deletedAt.putAll(loaded);
+            rebuildFilter();
+        }
+        log.debug("Reloaded {} device tombstones", deletedAt.size());
+        return Boolean.TRUE;
+    }
+    
+    /**
+     * Size a new filter for twice the current tombstones and fill it
+     */
+    private synchronized void rebuildFilter() {
+        filterCapacity = Math.max(MIN_FILTER_CAPACITY, deletedAt.size() * 2);
+        BloomFilter rebuilt = new BloomFilter(filterCapacity, falsePositiveRate);
+        deletedAt.keySet().forEach(deviceId -> rebuilt.put(Hashing.hash64(deviceId)));
+        filter = rebuilt;
+    }
+}
@@ -1,10 +1,12 @@
 package com.warmhouse.telemetry.service;
 
+import com.warmhouse.telemetry.config.CompactRedisTemplate;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -12,7 +14,15 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,25 +35,68 @@ public class DeviceValidationService {
     private static final Logger log = LoggerFactory.getLogger(DeviceValidationService.class);
     
     private final RestTemplate restTemplate;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final CompactRedisTemplate redisTemplate;
+    private final DependencyBulkheads bulkheads;
+    private final DeviceTombstones tombstones;
     
     @Value("${device-registry.url}")
     private String deviceRegistryUrl;
     
+    // Devices confirmed valid this recently are accepted without Redis while it is degraded
+    @Value("${telemetry.resilience.local-validation-ttl:3600000}")
+    private long localValidationTtlMs;
+    
+    @Value("${telemetry.resilience.local-validation-capacity:100000}")
+    private int localValidationCapacity;
+    
+    // Devices confirmed valid this recently are accepted without asking Redis at all
+    @Value("${telemetry.cache.local-validation-fresh:30000}")
+    private long localValidationFreshMs;
+    
     private static final String DEVICE_VALIDATION_CACHE_PREFIX = "device:validation:";
     private static final Duration CACHE_TTL = Duration.ofMinutes(5);
+    private static final Object REDIS_UNAVAILABLE = new Object();
+    // Largest page the registry serves for a device listing
+    private static final int REGISTRY_PAGE_SIZE = 100;
+    private static final int REGISTRY_MAX_PAGES = 100;
+    
+    private final Map<UUID, Long> locallyValid = new ConcurrentHashMap<>();
     
     /**
      * Validate if device exists in Device Registry
+     * Devices confirmed within the fresh window are accepted locally. While Redis is degraded, devices
+     * validated recently are accepted from local state and others are checked against the registry
+     * without touching the cache. Deleted devices are refused before any cache is consulted.
      */
     public boolean validateDevice(UUID deviceId) {
+        if (tombstones.isDeleted(deviceId)) {
+            locallyValid.remove(deviceId);
+            return false;
+        }
+        
         String cacheKey = DEVICE_VALIDATION_CACHE_PREFIX + deviceId.toString();
         
+        Long confirmedAt = locallyValid.get(deviceId);
+        if (confirmedAt != null && System.currentTimeMillis() - confirmedAt < localValidationFreshMs) {
+            return true;
+        }
+        
         // Check cache first
-        Boolean cachedResult = (Boolean) redisTemplate.opsForValue().get(cacheKey);
-        if (cachedResult != null) {
+        Object cachedResult = bulkheads.redis().call(() -> redisTemplate.opsForValue().get(cacheKey),
+                () -> REDIS_UNAVAILABLE);
+        if (cachedResult instanceof Boolean) {
             log.debug("Device validation cache hit for device: {}", deviceId);
-            return cachedResult;
+            if ((Boolean) cachedResult) {
+                rememberValid(deviceId);
+            }
+            return (Boolean) cachedResult;
+        }
+        if (cachedResult == REDIS_UNAVAILABLE) {
+            Long validatedAt = locallyValid.get(deviceId);
+            if (validatedAt != null && System.currentTimeMillis() - validatedAt < localValidationTtlMs) {
+                log.debug("Device {} validated from local state, Redis degraded", deviceId);
+                return true;
+            }
         }
         
         // Call Device Registry API
@@ -54,7 +107,10 @@ public class DeviceValidationService {
             boolean isValid = response.getStatusCode() == HttpStatus.OK;
             
             // Cache the result
-            redisTemplate.opsForValue().set(cacheKey, isValid, CACHE_TTL.toMillis(), TimeUnit.MILLISECONDS);
+            cacheResult(cacheKey, isValid);
+            if (isValid) {
+                rememberValid(deviceId);
+            }
             
             log.info("Device {} validation result: {}", deviceId, isValid);
             return isValid;
@@ -62,7 +118,8 @@ public class DeviceValidationService {
         } catch (HttpClientErrorException e) {
             if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
                 // Device not found - cache negative result
-                redisTemplate.opsForValue().set(cacheKey, false, CACHE_TTL.toMillis(), TimeUnit.MILLISECONDS);
+                cacheResult(cacheKey, false);
+                locallyValid.remove(deviceId);
                 log.warn("Device {} not found in Device Registry", deviceId);
                 return false;
             }
@@ -75,12 +132,126 @@ public class DeviceValidationService {
         }
     }
     
+    private void cacheResult(String cacheKey, boolean isValid) {
+        // Fire-and-forget: skipped while Redis is degraded, never blocks ingest
+        bulkheads.redis().submit(() -> redisTemplate.opsForValue()
+                .set(cacheKey, isValid, CACHE_TTL.toMillis(), TimeUnit.MILLISECONDS), null);
+    }
+    
+    private void rememberValid(UUID deviceId) {
+        if (locallyValid.size() < localValidationCapacity || locallyValid.containsKey(deviceId)) {
+            locallyValid.put(deviceId, System.currentTimeMillis());
+        }
+    }
+    
     /**
      * Invalidate device validation cache
      */
     public void invalidateDeviceCache(UUID deviceId) {
         String cacheKey = DEVICE_VALIDATION_CACHE_PREFIX + deviceId.toString();
-        redisTemplate.delete(cacheKey);
+        locallyValid.remove(deviceId);
+        bulkheads.redis().submit(() -> redisTemplate.delete(cacheKey), null);
         log.info("Invalidated device validation cache for device: {}", deviceId);
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Invalidate the validation cache of several devices with a single Redis call
+     */
+    public void invalidateDeviceCaches(Collection<UUID> deviceIds) {
+        if (deviceIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(deviceIds.size());
+        for (UUID deviceId : deviceIds) {
+            locallyValid.remove(deviceId);
+            keys.add(DEVICE_VALIDATION_CACHE_PREFIX + deviceId);
+        }
+        bulkheads.redis().call(() -> redisTemplate.delete(keys), () -> null);
+        log.debug("Invalidated device validation cache for {} devices", keys.size());
+    }
+    
+    /**
+     * Re-warm the validation cache with one registry listing per house instead of a call per device
+     * Devices found in their house are cached as valid in one pipelined write; the rest stay uncached
+     * and are validated on their next reading.
+     *
+     * @param houseByDevice changed devices and their house, null when the event did not carry one
+     * @return number of devices cached as valid
+     */
+    public int warmCache(Map<UUID, UUID> houseByDevice) {
+        Map<UUID, List<UUID>> devicesByHouse = new LinkedHashMap<>();
+        houseByDevice.forEach((deviceId, houseId) -> {
+            if (houseId == null) {
+                // No house to list, fall back to validating the device alone
+                validateDevice(deviceId);
+            } else {
+                devicesByHouse.computeIfAbsent(houseId, id -> new ArrayList<>()).add(deviceId);
+            }
+        });
+        
+        List<UUID> valid = new ArrayList<>();
+        devicesByHouse.forEach((houseId, deviceIds) -> {
+            Set<UUID> registered = listHouseDevices(houseId);
+            if (registered == null) {
+                return;
+            }
+            for (UUID deviceId : deviceIds) {
+                if (registered.contains(deviceId)) {
+                    valid.add(deviceId);
+                    rememberValid(deviceId);
+                }
+            }
+        });
+        
+        if (!valid.isEmpty()) {
+            bulkheads.redis().call(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (UUID deviceId : valid) {
+                        ops.opsForValue().set(DEVICE_VALIDATION_CACHE_PREFIX + deviceId, true,
+                                CACHE_TTL.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                    return null;
+                }
+            }), () -> null);
+        }
+        log.debug("Re-warmed validation cache for {} of {} devices across {} houses",
+                valid.size(), houseByDevice.size(), devicesByHouse.size());
+        return valid.size();
+    }
+    
+    /**
+     * Ids of all devices registered in a house, or null if the registry could not be listed
+     */
+    @SuppressWarnings("unchecked")
+    private Set<UUID> listHouseDevices(UUID houseId) {
+        Set<UUID> deviceIds = new HashSet<>();
+        try {
+            for (int page = 1; page <= REGISTRY_MAX_PAGES; page++) {
+                String url = deviceRegistryUrl + "/api/v1/devices?house_id=" + houseId
+                        + "&limit=" + REGISTRY_PAGE_SIZE + "&page=" + page;
+                Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+                List<Map<String, Object>> devices = response != null
+                        ? (List<Map<String, Object>>) response.get("devices") : null;
+                if (devices == null) {
+                    break;
+                }
+                for (Map<String, Object> device : devices) {
+                    Object deviceId = device.get("device_id");
+                    if (deviceId != null) {
+                        deviceIds.add(UUID.fromString(deviceId.toString()));
+                    }
+                }
+                if (devices.size() < REGISTRY_PAGE_SIZE) {
+                    break;
+                }
+            }
+            return deviceIds;
+        } catch (Exception e) {
+            log.warn("Failed to list devices of house {} from Device Registry: {}", houseId, e.getMessage());
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,230 @@
+package com.warmhouse.telemetry.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background health probes for InfluxDB, Redis and RabbitMQ
+ * Each dependency is probed on a fixed interval from a dedicated thread; health endpoints only read
+ * the cached result, so probing load does not grow with the number of monitors and a slow dependency
+ * never makes the health check itself slow.
+ */
+@Service
+@RequiredArgsConstructor
+public class HealthProbeService {
+    
+    private static final Logger log = LoggerFactory.getLogger(HealthProbeService.class);
+    
+    public static final String INFLUXDB = "influxdb";
+    public static final String REDIS = "redis";
+    public static final String RABBITMQ = "rabbitmq";
+    
+    /**
+     * Probe verdict: UP, DEGRADED (slow, flaky or bypassed by its circuit breaker), DOWN, or UNKNOWN before the first probe
+     */
+    public enum State { UP, DEGRADED, DOWN, UNKNOWN }
+    
+    private final InfluxShardRouter shardRouter;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final DependencyBulkheads bulkheads;
+    
+    @Value("${telemetry.health.probe-interval:5000}")
+    private long probeIntervalMs;
+    
+    // Number of recent probes per dependency the success rate and latency are computed over
+    @Value("${telemetry.health.window-size:20}")
+    private int windowSize;
+    
+    // Probes slower than this (ms) mark the dependency DEGRADED
+    @Value("${telemetry.health.latency-threshold:500}")
+    private long latencyThresholdMs;
+    
+    @Value("${telemetry.health.min-success-rate:0.8}")
+    private double minSuccessRate;
+    
+    private final Map<String, ProbeWindow> windows = new ConcurrentHashMap<>();
+    private ScheduledExecutorService prober;
+    
+    @PostConstruct
+    void start() {
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "health-prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(this::probeAll, 0, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    void stop() {
+        prober.shutdownNow();
+    }
+    
+    /**
+     * Cached verdict for a dependency
+     */
+    public State getState(String dependency) {
+        ProbeWindow window = windows.get(dependency);
+        return window == null ? State.UNKNOWN : window.state;
+    }
+    
+    /**
+     * Cached verdict with rolling success rate and latency of a dependency
+     */
+    public Map<String, Object> getDetails(String dependency) {
+        ProbeWindow window = windows.get(dependency);
+        if (window == null) {
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("state", State.UNKNOWN.name());
+            return details;
+        }
+        return window.details();
+    }
+    
+    void probeAll() {
+        try {
+            probe(INFLUXDB, this::pingInfluxShards, true);
+            probe(REDIS, () -> bulkheads.redis().call(() -> {
+                redisTemplate.opsForValue().get("health:check");
+                return null;
+            }, () -> "unavailable (circuit " + circuitOf(bulkheads.redis()) + ")"), false);
+            probe(RABBITMQ, () -> bulkheads.rabbit().call(
+                    () -> Boolean.TRUE.equals(rabbitTemplate.execute(channel -> channel.isOpen())) ? null : "channel closed",
+                    () -> "unavailable (circuit " + circuitOf(bulkheads.rabbit()) + ")"), false);
+        } catch (Exception e) {
+            log.warn("Health probe cycle failed: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Run one probe and update the dependency's window
+     *
+     * @param check    returns null on success, otherwise the failure reason
+     * @param critical whether failing makes the dependency DOWN rather than DEGRADED
+     */
+    void probe(String dependency, ProbeCheck check, boolean critical) {
+        long started = System.nanoTime();
+        String error;
+        try {
+            error = check.run();
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        long latencyMs = (System.nanoTime() - started) / 1_000_000;
+        
+        ProbeWindow window = windows.computeIfAbsent(dependency, name -> new ProbeWindow(windowSize));
+        window.record(error == null, latencyMs, error, critical, minSuccessRate, latencyThresholdMs);
+        if (error != null) {
+            log.debug("Health probe of {} failed in {} ms: {}", dependency, latencyMs, error);
+        }
+    }
+    
+    private String pingInfluxShards() {
+        StringBuilder down = new StringBuilder();
+        for (InfluxShard shard : shardRouter.getShards()) {
+            boolean up;
+            try {
+                up = shard.getClient().ping();
+            } catch (Exception e) {
+                up = false;
+            }
+            if (!up) {
+                down.append(down.length() == 0 ? "" : ", ").append(shard.getName());
+            }
+        }
+        return down.length() == 0 ? null : "shards down: " + down;
+    }
+    
+    private static String circuitOf(Bulkhead bulkhead) {
+        return String.valueOf(bulkhead.getStatus().get("circuit"));
+    }
+    
+    @FunctionalInterface
+    interface ProbeCheck {
+        String run() throws Exception;
+    }
+    
+    /**
+     * Ring buffer of the latest probe outcomes of one dependency
+     */
+    static final class ProbeWindow {
+        
+        private final boolean[] successes;
+        private final long[] latencies;
+        private int next;
+        private int count;
+        private String lastError;
+        private Instant checkedAt;
+        private volatile State state = State.UNKNOWN;
+        
+        ProbeWindow(int size) {
+            successes = new boolean[Math.max(size, 1)];
+            latencies = new long[Math.max(size, 1)];
+        }
+        
+        synchronized void record(boolean success, long latencyMs, String error, boolean critical,
+                                 double minSuccessRate, long latencyThresholdMs) {
+            successes[next] = success;
+            latencies[next] = latencyMs;
+            next = (next + 1) % successes.length;
+            count = Math.min(count + 1, successes.length);
+            lastError = error;
+            checkedAt = Instant.now();
+            
+            if (!success && successRate() < minSuccessRate) {
+                state = critical ? State.DOWN : State.DEGRADED;
+            } else if (!success || successRate() < minSuccessRate || latencyMs > latencyThresholdMs) {
+                state = State.DEGRADED;
+            } else {
+                state = State.UP;
+            }
+        }
+        
+        synchronized Map<String, Object> details() {
+            long[] recent = Arrays.copyOf(latencies, count);
+            Arrays.sort(recent);
+            long total = 0;
+            for (long latency : recent) {
+                total += latency;
+            }
+            
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("state", state.name());
+            details.put("success_rate", successRate());
+            details.put("probes", count);
+            details.put("latency_ms_avg", count == 0 ? 0 : total / count);
+            details.put("latency_ms_p95", count == 0 ? 0 : recent[Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1)]);
+            details.put("latency_ms_last", latencies[(next - 1 + latencies.length) % latencies.length]);
+            details.put("checked_at", checkedAt);
+            if (lastError != null) {
+                details.put("error", lastError);
+            }
+            return details;
+        }
+        
+        private double successRate() {
+            int ok = 0;
+            for (int i = 0; i < count; i++) {
+                ok += successes[i] ? 1 : 0;
+            }
+            return count == 0 ? 0.0 : (double) ok / count;
+        }
+    }
+}
@@ -1,22 +1,30 @@
 package com.warmhouse.telemetry.service;
 
-import com.influxdb.client.QueryApi;
-import com.influxdb.client.WriteApiBlocking;
 import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
+import com.warmhouse.telemetry.dto.TelemetrySeriesResponse;
 import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import com.warmhouse.telemetry.model.QualityCode;
+import com.warmhouse.telemetry.model.QuantileSketch;
+import com.warmhouse.telemetry.model.SeriesCursor;
+import com.warmhouse.telemetry.model.SketchBucket;
 import com.warmhouse.telemetry.model.TelemetryData;
+import com.warmhouse.telemetry.model.TelemetrySeries;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -28,8 +36,10 @@ public class InfluxDBService {
     
     private static final Logger log = LoggerFactory.getLogger(InfluxDBService.class);
     
-    private final WriteApiBlocking writeApi;
-    private final QueryApi queryApi;
+    private final InfluxShardRouter shardRouter;
+    private final MeasurementSchemaCatalog schemaCatalog;
+    private final TieredStorageService tieredStorage;
+    private final DeviceTombstones tombstones;
     
     @Value("${influxdb.bucket}")
     private String bucket;
@@ -37,7 +47,18 @@ public class InfluxDBService {
     @Value("${influxdb.org}")
     private String org;
     
+    @Value("${influxdb.query-timeout:30000}")
+    private long queryTimeoutMs;
+    
+    // Points per series a query aims for when no resolution is requested
+    @Value("${influxdb.tiers.target-points:1500}")
+    private long targetPoints;
+    
     private static final String MEASUREMENT_NAME = "telemetry";
+    private static final String SKETCH_MEASUREMENT_NAME = "telemetry_sketch";
+    
+    // Quality code field, omitted for GOOD readings
+    static final String QUALITY_FIELD = "q";
     
     /**
      * Write single telemetry data point to InfluxDB
@@ -45,7 +66,9 @@ public class InfluxDBService {
     public void writeTelemetryData(TelemetryData data) {
         try {
             Point point = createPointFromTelemetryData(data);
-            writeApi.writePoint(point);
+            shardRouter.shardFor(data.getHouseId()).getWriteApi().writePoint(point);
+            shardRouter.learn(data.getDeviceId(), data.getHouseId());
+            tieredStorage.noteWritten(data.getTimestamp());
             log.info("Successfully wrote telemetry data for device: {}, type: {}, value: {}, timestamp: {}", 
                 data.getDeviceId(), data.getMeasurementType(), data.getValue(), data.getTimestamp());
         } catch (Exception e) {
@@ -55,15 +78,19 @@ public class InfluxDBService {
     }
     
     /**
-     * Write batch of telemetry data points to InfluxDB
+     * Write batch of telemetry data points to InfluxDB, one request per shard
      */
     public void writeTelemetryDataBatch(List<TelemetryData> dataList) {
         try {
-            List<Point> points = dataList.stream()
-                    .map(this::createPointFromTelemetryData)
-                    .collect(Collectors.toList());
+            Map<InfluxShard, List<Point>> byShard = new LinkedHashMap<>();
+            for (TelemetryData data : dataList) {
+                byShard.computeIfAbsent(shardRouter.shardFor(data.getHouseId()), shard -> new ArrayList<>())
+                        .add(createPointFromTelemetryData(data));
+                shardRouter.learn(data.getDeviceId(), data.getHouseId());
+            }
             
-            writeApi.writePoints(points);
+            byShard.forEach((shard, points) -> shard.getWriteApi().writePoints(points));
+            dataList.forEach(data -> tieredStorage.noteWritten(data.getTimestamp()));
             log.info("Successfully wrote {} telemetry data points", dataList.size());
         } catch (Exception e) {
             log.error("Failed to write telemetry data batch: {}", e.getMessage(), e);
@@ -72,19 +99,297 @@ public class InfluxDBService {
     }
     
     /**
-     * Query telemetry data by device ID
+     * Query telemetry data by device ID as columnar series
+     * Records are streamed into primitive columns, one series per (house, location, type);
+     * units of cataloged types are rehydrated from the schema catalog
+     */
+    public List<TelemetrySeries> queryByDeviceId(UUID deviceId, Instant start, Instant end) {
+        return queryByDeviceId(deviceId, start, end, null);
+    }
+    
+    /**
+     * Query telemetry data by device ID from the coarsest storage tier that satisfies the resolution
+     * The part of the range not yet rolled up into that tier is read from finer tiers
+     */
+    public List<TelemetrySeries> queryByDeviceId(UUID deviceId, Instant start, Instant end, Duration resolution) {
+        if (tombstones.isDeleted(deviceId)) {
+            return new ArrayList<>();
+        }
+        int tier = tieredStorage.selectTier(start, effectiveResolution(start, end, resolution));
+        log.debug("Routing device query for {} over [{}, {}) to tier {}",
+            deviceId, start, end, tieredStorage.getTiers().get(tier).getName());
+        return queryTierRange(tier, deviceId, start, end);
+    }
+    
+    private List<TelemetrySeries> queryTierRange(int tierIndex, UUID deviceId, Instant start, Instant end) {
+        TieredStorageService.Tier tier = tieredStorage.getTiers().get(tierIndex);
+        Instant split = tier.getWatermark().isBefore(end) ? tier.getWatermark() : end;
+        
+        List<TelemetrySeries> result = start.isBefore(split)
+                ? querySeries(tier.getBucket(), deviceId, start, split)
+                : new ArrayList<>();
+        if (split.isBefore(end)) {
+            Instant tailStart = split.isAfter(start) ? split : start;
+            result = mergeSeries(result, queryTierRange(tierIndex - 1, deviceId, tailStart, end));
+        }
+        return result;
+    }
+    
+    private List<TelemetrySeries> querySeries(String source, UUID deviceId, Instant start, Instant end) {
+        String flux = String.format(
+            "from(bucket: \"%s\")" +
+            " |> range(start: %s, stop: %s)" +
+            " |> filter(fn: (r) => r._measurement == \"%s\")" +
+            " |> filter(fn: (r) => r.device_id == \"%s\")" +
+            " |> pivot(rowKey:[\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\")" +
+            " |> group(columns: [\"device_id\", \"house_id\", \"location_id\", \"measurement_type\"])" +
+            " |> sort(columns: [\"_time\"])",
+            source, start.toString(), end.toString(), MEASUREMENT_NAME, deviceId.toString()
+        );
+        return querySeriesOnShards(deviceId, flux);
+    }
+    
+    /**
+     * One page of a device's points in [start, end), ordered by timestamp and series key
+     * Walks the storage tiers in time order and stops as soon as the page is full. The next cursor
+     * names the last point returned and is null once nothing follows it; it keeps the tier and the
+     * tier split times of the first page, so compaction between pages neither skips nor repeats points.
+     */
+    public TelemetrySeriesResponse queryPageByDeviceId(UUID deviceId, Instant start, Instant end, Duration resolution,
+                                                       SeriesCursor after, int limit) {
+        if (tombstones.isDeleted(deviceId)) {
+            return new TelemetrySeriesResponse(new ArrayList<>());
+        }
+        List<TieredStorageService.Tier> tiers = tieredStorage.getTiers();
+        int tier;
+        long[] splits;
+        // A cursor from before a tier configuration change falls back to the current watermarks
+        if (after != null && after.isPinned() && after.getSplitMillis().length == tiers.size()
+                && after.getTier() >= 0 && after.getTier() < tiers.size()) {
+            tier = after.getTier();
+            splits = after.getSplitMillis();
+        } else {
+            tier = tieredStorage.selectTier(start, effectiveResolution(start, end, resolution));
+            splits = new long[tiers.size()];
+            for (int i = 0; i < tiers.size(); i++) {
+                splits[i] = tiers.get(i).isRaw() ? Long.MAX_VALUE : tiers.get(i).getWatermark().toEpochMilli();
+            }
+        }
+        log.debug("Routing device page for {} over [{}, {}) after {} to tier {}",
+            deviceId, start, end, after != null ? after.encode() : "start", tiers.get(tier).getName());
+        
+        // One point beyond the page tells whether another page follows
+        List<TelemetrySeries> fetched = queryTierPage(tier, splits, deviceId, start, end, after, limit + 1);
+        if (pointCount(fetched) <= limit) {
+            return new TelemetrySeriesResponse(fetched);
+        }
+        List<TelemetrySeries> page = firstPoints(fetched, limit);
+        SeriesCursor next = null;
+        for (TelemetrySeries series : page) {
+            SeriesCursor last = SeriesCursor.at(series, series.getSize() - 1);
+            if (next == null || last.compareTo(next) > 0) {
+                next = last;
+            }
+        }
+        return new TelemetrySeriesResponse(page, next != null ? next.pinnedTo(tier, splits).encode() : null);
+    }
+    
+    private List<TelemetrySeries> queryTierPage(int tierIndex, long[] splits, UUID deviceId, Instant start, Instant end,
+                                                SeriesCursor after, int wanted) {
+        TieredStorageService.Tier tier = tieredStorage.getTiers().get(tierIndex);
+        Instant watermark = tier.isRaw() ? end : Instant.ofEpochMilli(splits[tierIndex]);
+        Instant split = watermark.isBefore(end) ? watermark : end;
+        
+        // Nothing before the cursor can be on the page, so the range starts at its timestamp
+        Instant from = start;
+        if (after != null) {
+            Instant resume = Instant.ofEpochSecond(0, after.getTimestampNanos());
+            from = resume.isAfter(start) ? resume : start;
+        }
+        
+        List<TelemetrySeries> result = from.isBefore(split)
+                ? firstPoints(queryPageSeries(tier.getBucket(), deviceId, from, split, after, wanted), wanted)
+                : new ArrayList<>();
+        int found = pointCount(result);
+        if (found < wanted && split.isBefore(end)) {
+            Instant tailStart = split.isAfter(start) ? split : start;
+            result = mergeSeries(result,
+                    queryTierPage(tierIndex - 1, splits, deviceId, tailStart, end, after, wanted - found));
+        }
+        return result;
+    }
+    
+    /**
+     * At most limit points of every series after the cursor; the limit applies per Flux table (series),
+     * so the first limit points of the device are always among them
      */
-    public List<TelemetryData> queryByDeviceId(UUID deviceId, Instant start, Instant end) {
+    private List<TelemetrySeries> queryPageSeries(String source, UUID deviceId, Instant start, Instant end,
+                                                  SeriesCursor after, int limit) {
+        String keyset = "";
+        if (after != null) {
+            keyset = String.format(
+                " |> filter(fn: (r) => r._time > %1$s or (r._time == %1$s and (r.measurement_type > \"%2$s\"" +
+                " or (r.measurement_type == \"%2$s\" and (r.location_id > \"%3$s\"" +
+                " or (r.location_id == \"%3$s\" and r.house_id > \"%4$s\"))))))",
+                Instant.ofEpochSecond(0, after.getTimestampNanos()), after.getMeasurementType(),
+                after.getLocationId(), after.getHouseId()
+            );
+        }
         String flux = String.format(
             "from(bucket: \"%s\")" +
             " |> range(start: %s, stop: %s)" +
             " |> filter(fn: (r) => r._measurement == \"%s\")" +
             " |> filter(fn: (r) => r.device_id == \"%s\")" +
-            " |> pivot(rowKey:[\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\")",
-            bucket, start.toString(), end.toString(), MEASUREMENT_NAME, deviceId.toString()
+            "%s" +
+            " |> pivot(rowKey:[\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\")" +
+            " |> group(columns: [\"device_id\", \"house_id\", \"location_id\", \"measurement_type\"])" +
+            " |> sort(columns: [\"_time\"])" +
+            " |> limit(n: %d)",
+            source, start.toString(), end.toString(), MEASUREMENT_NAME, deviceId.toString(), keyset, limit
         );
+        return querySeriesOnShards(deviceId, flux);
+    }
+    
+    private List<TelemetrySeries> querySeriesOnShards(UUID deviceId, String flux) {
+        List<InfluxShard> shards = shardRouter.readShardsForDevice(deviceId);
+        if (shards.size() == 1) {
+            return executeSeriesQuery(shards.get(0), flux);
+        }
+        
+        // Fan out only when the device may span shards, then merge by series key
+        List<List<TelemetrySeries>> results = new ArrayList<>();
+        for (InfluxShard shard : shards) {
+            results.add(executeSeriesQuery(shard, flux));
+        }
+        return mergeShardSeries(results);
+    }
+    
+    /**
+     * Merge series of the same key from several shards by timestamp, dropping duplicate points
+     */
+    static List<TelemetrySeries> mergeShardSeries(List<List<TelemetrySeries>> results) {
+        Map<List<Object>, List<TelemetrySeries>> byKey = new LinkedHashMap<>();
+        for (List<TelemetrySeries> result : results) {
+            for (TelemetrySeries series : result) {
+                byKey.computeIfAbsent(seriesKey(series), key -> new ArrayList<>()).add(series);
+            }
+        }
         
-        return executeQueryAndMapResults(flux);
+        List<TelemetrySeries> merged = new ArrayList<>(byKey.size());
+        for (List<TelemetrySeries> parts : byKey.values()) {
+            if (parts.size() == 1) {
+                merged.add(parts.get(0));
+                continue;
+            }
+            TelemetrySeries first = parts.get(0);
+            int total = parts.stream().mapToInt(TelemetrySeries::getSize).sum();
+            TelemetrySeries target = new TelemetrySeries(first.getDeviceId(), first.getHouseId(),
+                    first.getLocationId(), first.getMeasurementType(), first.getUnit(), total);
+            int[] cursor = new int[parts.size()];
+            long last = Long.MIN_VALUE;
+            while (true) {
+                int next = -1;
+                for (int p = 0; p < parts.size(); p++) {
+                    if (cursor[p] < parts.get(p).getSize() && (next < 0
+                            || parts.get(p).getTimestampNanos(cursor[p]) < parts.get(next).getTimestampNanos(cursor[next]))) {
+                        next = p;
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                TelemetrySeries source = parts.get(next);
+                int i = cursor[next]++;
+                if (source.getTimestampNanos(i) != last) {
+                    last = source.getTimestampNanos(i);
+                    target.append(last, source.getValue(i), source.getQualityCode(i));
+                }
+            }
+            merged.add(target);
+        }
+        return merged;
+    }
+    
+    /**
+     * The first limit points across series in (timestamp, series key) order
+     * Every series must already be ordered by timestamp; series left without points are dropped.
+     */
+    static List<TelemetrySeries> firstPoints(List<TelemetrySeries> series, int limit) {
+        if (pointCount(series) <= limit) {
+            return series;
+        }
+        int[] taken = new int[series.size()];
+        for (int n = 0; n < limit; n++) {
+            int next = -1;
+            for (int s = 0; s < series.size(); s++) {
+                if (taken[s] < series.get(s).getSize() && (next < 0
+                        || comparePoints(series.get(s), taken[s], series.get(next), taken[next]) < 0)) {
+                    next = s;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            taken[next]++;
+        }
+        
+        List<TelemetrySeries> page = new ArrayList<>();
+        for (int s = 0; s < series.size(); s++) {
+            if (taken[s] == 0) {
+                continue;
+            }
+            TelemetrySeries source = series.get(s);
+            TelemetrySeries target = new TelemetrySeries(source.getDeviceId(), source.getHouseId(),
+                    source.getLocationId(), source.getMeasurementType(), source.getUnit(), taken[s]);
+            for (int i = 0; i < taken[s]; i++) {
+                target.append(source.getTimestampNanos(i), source.getValue(i), source.getQualityCode(i));
+            }
+            page.add(target);
+        }
+        return page;
+    }
+    
+    private static int comparePoints(TelemetrySeries a, int i, TelemetrySeries b, int j) {
+        int byTime = Long.compare(a.getTimestampNanos(i), b.getTimestampNanos(j));
+        return byTime != 0 ? byTime : SeriesCursor.at(a, i).compareTo(SeriesCursor.at(b, j));
+    }
+    
+    private static int pointCount(List<TelemetrySeries> series) {
+        int count = 0;
+        for (TelemetrySeries s : series) {
+            count += s.getSize();
+        }
+        return count;
+    }
+    
+    /**
+     * Append tail series to head series with the same keys; tail points are all later
+     */
+    private static List<TelemetrySeries> mergeSeries(List<TelemetrySeries> head, List<TelemetrySeries> tail) {
+        Map<List<Object>, TelemetrySeries> byKey = new LinkedHashMap<>();
+        for (TelemetrySeries series : head) {
+            byKey.put(seriesKey(series), series);
+        }
+        for (TelemetrySeries series : tail) {
+            TelemetrySeries target = byKey.putIfAbsent(seriesKey(series), series);
+            if (target != null) {
+                for (int i = 0; i < series.getSize(); i++) {
+                    target.append(series.getTimestampNanos(i), series.getValue(i), series.getQualityCode(i));
+                }
+            }
+        }
+        return new ArrayList<>(byKey.values());
+    }
+    
+    private static List<Object> seriesKey(TelemetrySeries series) {
+        return Arrays.asList(series.getDeviceId(), series.getHouseId(), series.getLocationId(), series.getMeasurementType());
+    }
+    
+    private Duration effectiveResolution(Instant start, Instant end, Duration resolution) {
+        if (resolution != null) {
+            return resolution;
+        }
+        return Duration.between(start, end).dividedBy(Math.max(targetPoints, 1));
     }
     
     /**
@@ -93,6 +398,9 @@ public class InfluxDBService {
     public TelemetryStatistics calculateStatistics(UUID deviceId, String measurementType, String period) {
         Instant end = Instant.now();
         Instant start = calculateStartTime(end, period);
+        if (tombstones.isDeleted(deviceId)) {
+            return statistics(deviceId, measurementType, period, start, end, null);
+        }
         
         String flux = String.format(
             "from(bucket: \"%s\")" +
@@ -109,13 +417,19 @@ public class InfluxDBService {
             deviceId, measurementType, period, start, end);
         log.debug("Flux query: {}", flux);
         
+        int tier = tieredStorage.selectTier(start, effectiveResolution(start, end, null));
+        if (tier > 0) {
+            return calculateTieredStatistics(tier, deviceId, measurementType, period, start, end);
+        }
+        
         // Calculate aggregations
+        List<InfluxShard> shards = shardRouter.readShardsForDevice(deviceId);
         Map<String, Double> stats = new HashMap<>();
-        stats.put("min", queryAggregation(flux + " |> min()", "min"));
-        stats.put("max", queryAggregation(flux + " |> max()", "max"));
-        stats.put("mean", queryAggregation(flux + " |> mean()", "mean"));
-        stats.put("sum", queryAggregation(flux + " |> sum()", "sum"));
-        stats.put("count", queryAggregation(flux + " |> count()", "count"));
+        stats.put("min", queryAggregation(shards, flux + " |> min()", "min"));
+        stats.put("max", queryAggregation(shards, flux + " |> max()", "max"));
+        stats.put("mean", queryAggregation(shards, flux + " |> mean()", "mean"));
+        stats.put("sum", queryAggregation(shards, flux + " |> sum()", "sum"));
+        stats.put("count", queryAggregation(shards, flux + " |> count()", "count"));
         
         log.debug("Statistics calculated: min={}, max={}, mean={}, sum={}, count={}", 
             stats.get("min"), stats.get("max"), stats.get("mean"), stats.get("sum"), stats.get("count"));
@@ -134,9 +448,300 @@ public class InfluxDBService {
                 .build();
     }
     
+    /**
+     * Statistics from downsampled tiers: min, max, sum and count combine exactly across tiers
+     */
+    private TelemetryStatistics calculateTieredStatistics(int tier, UUID deviceId, String measurementType,
+                                                          String period, Instant start, Instant end) {
+        double[] aggregate = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.0, 0.0};
+        aggregateTierRange(tier, deviceId, measurementType, start, end, aggregate);
+        
+        double count = aggregate[3];
+        return TelemetryStatistics.builder()
+                .deviceId(deviceId)
+                .measurementType(measurementType)
+                .period(period)
+                .min(count > 0 ? aggregate[0] : 0.0)
+                .max(count > 0 ? aggregate[1] : 0.0)
+                .avg(count > 0 ? aggregate[2] / count : 0.0)
+                .sum(aggregate[2])
+                .count((long) count)
+                .periodStart(start)
+                .periodEnd(end)
+                .build();
+    }
+    
+    private void aggregateTierRange(int tierIndex, UUID deviceId, String measurementType,
+                                    Instant start, Instant end, double[] aggregate) {
+        TieredStorageService.Tier tier = tieredStorage.getTiers().get(tierIndex);
+        Instant split = tier.getWatermark().isBefore(end) ? tier.getWatermark() : end;
+        
+        if (start.isBefore(split)) {
+            String base = String.format(
+                "from(bucket: \"%s\")" +
+                " |> range(start: %s, stop: %s)" +
+                " |> filter(fn: (r) => r._measurement == \"%s\")" +
+                " |> filter(fn: (r) => r.device_id == \"%s\")" +
+                " |> filter(fn: (r) => r.measurement_type == \"%s\")",
+                tier.getBucket(), start, split, MEASUREMENT_NAME, deviceId, measurementType
+            );
+            List<InfluxShard> shards = shardRouter.readShardsForDevice(deviceId);
+            double count = tier.isRaw()
+                    ? queryAggregation(shards, base + " |> filter(fn: (r) => r._field == \"value\") |> count()", "count")
+                    : queryAggregation(shards, base + " |> filter(fn: (r) => r._field == \"count\") |> sum()", "sum");
+            if (count > 0) {
+                String min = tier.isRaw() ? "value" : "min";
+                String max = tier.isRaw() ? "value" : "max";
+                String sum = tier.isRaw() ? "value" : "sum";
+                aggregate[0] = Math.min(aggregate[0], queryAggregation(shards,
+                        base + " |> filter(fn: (r) => r._field == \"" + min + "\") |> min()", "min"));
+                aggregate[1] = Math.max(aggregate[1], queryAggregation(shards,
+                        base + " |> filter(fn: (r) => r._field == \"" + max + "\") |> max()", "max"));
+                aggregate[2] += queryAggregation(shards,
+                        base + " |> filter(fn: (r) => r._field == \"" + sum + "\") |> sum()", "sum");
+                aggregate[3] += count;
+            }
+        }
+        if (split.isBefore(end)) {
+            aggregateTierRange(tierIndex - 1, deviceId, measurementType, split.isAfter(start) ? split : start, end, aggregate);
+        }
+    }
+    
+    /**
+     * Statistics of many devices and measurement types over one range, one reduce query per tier and shard
+     * Rows of every (device, type) pair in the range are folded into min, max, sum and count in a single
+     * pass, in place of five aggregation queries per pair.
+     *
+     * @return statistics of every device and type, zeros where the range holds no data or the device was deleted
+     */
+    public Map<UUID, Map<String, TelemetryStatistics>> calculateStatistics(Collection<UUID> deviceIds,
+                                                                          Collection<String> measurementTypes,
+                                                                          String period, Instant end) {
+        Instant start = calculateStartTime(end, period);
+        List<UUID> live = tombstones.live(deviceIds);
+        Map<UUID, Map<String, double[]>> aggregates = live.isEmpty() ? Map.of()
+                : aggregate(live, measurementTypes, start, end, effectiveResolution(start, end, null));
+        
+        Map<UUID, Map<String, TelemetryStatistics>> result = new HashMap<>();
+        for (UUID deviceId : deviceIds) {
+            Map<String, double[]> byType = aggregates.getOrDefault(deviceId, Map.of());
+            Map<String, TelemetryStatistics> stats = result.computeIfAbsent(deviceId, id -> new HashMap<>());
+            for (String measurementType : measurementTypes) {
+                stats.put(measurementType, statistics(deviceId, measurementType, period, start, end,
+                        byType.get(measurementType)));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Statistics of every device and measurement type with data in [start, end), such as a closed window
+     * The window length is the requested resolution, so the coarsest tier that has rolled the window up
+     * answers it; min, max, sum and count combine exactly across tiers.
+     */
+    public List<TelemetryStatistics> calculateWindowStatistics(Instant start, Instant end, String period) {
+        Map<UUID, Map<String, double[]>> aggregates =
+                aggregate(null, null, start, end, Duration.between(start, end));
+        
+        List<TelemetryStatistics> result = new ArrayList<>();
+        aggregates.forEach((deviceId, byType) -> {
+            if (!tombstones.isDeleted(deviceId)) {
+                byType.forEach((measurementType, aggregate) ->
+                        result.add(statistics(deviceId, measurementType, period, start, end, aggregate)));
+            }
+        });
+        return result;
+    }
+    
+    private Map<UUID, Map<String, double[]>> aggregate(Collection<UUID> deviceIds, Collection<String> measurementTypes,
+                                                       Instant start, Instant end, Duration resolution) {
+        int tier = tieredStorage.selectTier(start, resolution);
+        Map<UUID, Map<String, double[]>> aggregates = new HashMap<>();
+        aggregateTierRange(tier, deviceIds, measurementTypes, start, end, aggregates);
+        return aggregates;
+    }
+    
+    private static TelemetryStatistics statistics(UUID deviceId, String measurementType, String period,
+                                                  Instant start, Instant end, double[] aggregate) {
+        boolean found = aggregate != null && aggregate[3] > 0;
+        return TelemetryStatistics.builder()
+                .deviceId(deviceId)
+                .measurementType(measurementType)
+                .period(period)
+                .min(found ? aggregate[0] : 0.0)
+                .max(found ? aggregate[1] : 0.0)
+                .avg(found ? aggregate[2] / aggregate[3] : 0.0)
+                .sum(found ? aggregate[2] : 0.0)
+                .count(found ? (long) aggregate[3] : 0L)
+                .periodStart(start)
+                .periodEnd(end)
+                .build();
+    }
+    
+    private void aggregateTierRange(int tierIndex, Collection<UUID> deviceIds, Collection<String> measurementTypes,
+                                    Instant start, Instant end, Map<UUID, Map<String, double[]>> aggregates) {
+        TieredStorageService.Tier tier = tieredStorage.getTiers().get(tierIndex);
+        Instant split = tier.getWatermark().isBefore(end) ? tier.getWatermark() : end;
+        
+        if (start.isBefore(split)) {
+            // Devices whose house is unknown are asked on every shard; without devices every shard is read whole
+            Map<InfluxShard, List<UUID>> byShard = new LinkedHashMap<>();
+            if (deviceIds == null) {
+                shardRouter.getShards().forEach(shard -> byShard.put(shard, null));
+            } else {
+                for (UUID deviceId : deviceIds) {
+                    for (InfluxShard shard : shardRouter.readShardsForDevice(deviceId)) {
+                        byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(deviceId);
+                    }
+                }
+            }
+            byShard.forEach((shard, devices) -> {
+                String flux = buildBulkStatisticsFlux(tier, devices, measurementTypes, start, split);
+                for (FluxTable table : shard.getQueryApi().query(flux, org)) {
+                    for (FluxRecord record : table.getRecords()) {
+                        foldAggregate(record, aggregates);
+                    }
+                }
+            });
+        }
+        if (split.isBefore(end)) {
+            aggregateTierRange(tierIndex - 1, deviceIds, measurementTypes, split.isAfter(start) ? split : start, end,
+                    aggregates);
+        }
+    }
+    
+    String buildBulkStatisticsFlux(TieredStorageService.Tier tier, Collection<UUID> deviceIds,
+                                   Collection<String> measurementTypes, Instant start, Instant stop) {
+        String rows = tier.isRaw()
+                ? " |> filter(fn: (r) => r._field == \"value\")" +
+                  " |> map(fn: (r) => ({device_id: r.device_id, measurement_type: r.measurement_type," +
+                  " count: 1, sum: float(v: r._value), min: float(v: r._value), max: float(v: r._value)}))"
+                : " |> pivot(rowKey: [\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\")" +
+                  " |> map(fn: (r) => ({device_id: r.device_id, measurement_type: r.measurement_type," +
+                  " count: r.count, sum: r.sum, min: r.min, max: r.max}))";
+        return String.format(
+            "import \"math\"\n" +
+            "from(bucket: \"%s\")" +
+            " |> range(start: %s, stop: %s)" +
+            " |> filter(fn: (r) => r._measurement == \"%s\")" +
+            "%s%s%s" +
+            " |> group(columns: [\"device_id\", \"measurement_type\"])" +
+            " |> reduce(identity: {count: 0, sum: 0.0, min: math.maxfloat, max: -math.maxfloat}," +
+            " fn: (r, accumulator) => ({count: accumulator.count + r.count, sum: accumulator.sum + r.sum," +
+            " min: if r.min < accumulator.min then r.min else accumulator.min," +
+            " max: if r.max > accumulator.max then r.max else accumulator.max}))",
+            tier.getBucket(), start, stop, MEASUREMENT_NAME,
+            anyOf("device_id", deviceIds), anyOf("measurement_type", measurementTypes), rows
+        );
+    }
+    
+    /**
+     * Filter on a column equal to any of the values, none when values is null
+     * Plain comparisons keep the filter pushed down to storage
+     */
+    private static String anyOf(String column, Collection<?> values) {
+        if (values == null) {
+            return "";
+        }
+        return values.stream()
+                .map(value -> "r." + column + " == \"" + value.toString().replace("\\", "\\\\").replace("\"", "\\\"") + "\"")
+                .collect(Collectors.joining(" or ", " |> filter(fn: (r) => ", ")"));
+    }
+    
+    /**
+     * Add one reduced (device, type) row to the running aggregate {min, max, sum, count}
+     */
+    private static void foldAggregate(FluxRecord record, Map<UUID, Map<String, double[]>> aggregates) {
+        Object deviceId = record.getValueByKey("device_id");
+        Object measurementType = record.getValueByKey("measurement_type");
+        Object count = record.getValueByKey("count");
+        if (deviceId == null || measurementType == null || !(count instanceof Number)
+                || ((Number) count).longValue() == 0) {
+            return;
+        }
+        double[] aggregate;
+        try {
+            aggregate = aggregates.computeIfAbsent(UUID.fromString(deviceId.toString()), id -> new HashMap<>())
+                    .computeIfAbsent(measurementType.toString(),
+                            type -> new double[] {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.0, 0.0});
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        aggregate[0] = Math.min(aggregate[0], ((Number) record.getValueByKey("min")).doubleValue());
+        aggregate[1] = Math.max(aggregate[1], ((Number) record.getValueByKey("max")).doubleValue());
+        aggregate[2] += ((Number) record.getValueByKey("sum")).doubleValue();
+        aggregate[3] += ((Number) count).doubleValue();
+    }
+    
+    /**
+     * Write quantile sketch buckets, overwriting earlier versions of the same bucket generation
+     * The generation is the nanosecond offset of the point time, so generations of a bucket are separate points.
+     */
+    public void writeSketchBuckets(List<SketchBucket> buckets) {
+        try {
+            List<Point> points = buckets.stream()
+                    .map(bucket -> Point.measurement(SKETCH_MEASUREMENT_NAME)
+                            .time(bucket.getBucketStart().plusNanos(bucket.getGeneration()), WritePrecision.NS)
+                            .addTag("device_id", bucket.getDeviceId().toString())
+                            .addTag("measurement_type", bucket.getMeasurementType())
+                            .addTag("instance_id", bucket.getInstanceId())
+                            .addField("sketch", Base64.getEncoder().encodeToString(bucket.getSketch().toBytes()))
+                            .addField("count", bucket.getSketch().getCount()))
+                    .collect(Collectors.toList());
+            
+            shardRouter.primary().getWriteApi().writePoints(points);
+            log.debug("Wrote {} quantile sketch buckets", buckets.size());
+        } catch (Exception e) {
+            log.error("Failed to write quantile sketch buckets: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to write quantile sketch buckets", e);
+        }
+    }
+    
+    /**
+     * Query persisted quantile sketch buckets starting within [start, end), every generation of a bucket
+     */
+    public List<SketchBucket> querySketchBuckets(UUID deviceId, String measurementType, Instant start, Instant end) {
+        if (tombstones.isDeleted(deviceId)) {
+            return new ArrayList<>();
+        }
+        String flux = String.format(
+            "from(bucket: \"%s\")" +
+            " |> range(start: %s, stop: %s)" +
+            " |> filter(fn: (r) => r._measurement == \"%s\")" +
+            " |> filter(fn: (r) => r.device_id == \"%s\")" +
+            " |> filter(fn: (r) => r.measurement_type == \"%s\")" +
+            " |> filter(fn: (r) => r._field == \"sketch\")",
+            bucket, start.toString(), end.toString(), SKETCH_MEASUREMENT_NAME,
+            deviceId.toString(), measurementType
+        );
+        
+        List<SketchBucket> results = new ArrayList<>();
+        try {
+            for (FluxTable table : shardRouter.primary().getQueryApi().query(flux, org)) {
+                for (FluxRecord record : table.getRecords()) {
+                    Object encoded = record.getValue();
+                    if (!(encoded instanceof String) || record.getTime() == null) {
+                        continue;
+                    }
+                    results.add(SketchBucket.builder()
+                            .deviceId(deviceId)
+                            .measurementType(measurementType)
+                            .bucketStart(record.getTime().truncatedTo(ChronoUnit.SECONDS))
+                            .instanceId((String) record.getValueByKey("instance_id"))
+                            .generation(record.getTime().getNano())
+                            .sketch(QuantileSketch.fromBytes(Base64.getDecoder().decode((String) encoded)))
+                            .build());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to query quantile sketch buckets: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to query quantile sketch buckets", e);
+        }
+        return results;
+    }
+    
     private Point createPointFromTelemetryData(TelemetryData data) {
-        // Normalize quality to uppercase
-        String normalizedQuality = data.getQuality() != null ? data.getQuality().toUpperCase() : "UNKNOWN";
+        QualityCode quality = QualityCode.of(data.getQuality());
         
         Point point = Point.measurement(MEASUREMENT_NAME)
                 .time(data.getTimestamp(), WritePrecision.NS)
@@ -144,9 +749,15 @@ public class InfluxDBService {
                 .addTag("house_id", data.getHouseId().toString())
                 .addTag("location_id", data.getLocationId().toString())
                 .addTag("measurement_type", data.getMeasurementType())
-                .addTag("quality", normalizedQuality)
-                .addField("value", data.getValue())
-                .addField("unit", data.getUnit() != null ? data.getUnit() : "");
+                .addField("value", data.getValue());
+        
+        // Cataloged types carry their unit in the schema, only unknown types store it per point
+        if (!schemaCatalog.isCataloged(data.getMeasurementType())) {
+            point.addField("unit", data.getUnit() != null ? data.getUnit() : "");
+        }
+        if (quality != QualityCode.GOOD) {
+            point.addField(QUALITY_FIELD, quality.code());
+        }
         
         // Add custom tags if present
         if (data.getTags() != null) {
@@ -165,55 +776,45 @@ public class InfluxDBService {
         }
         
         log.debug("Created point for device: {}, measurement: {}, value: {}, quality: {}, timestamp: {}", 
-            data.getDeviceId(), data.getMeasurementType(), data.getValue(), normalizedQuality, data.getTimestamp());
+            data.getDeviceId(), data.getMeasurementType(), data.getValue(), quality, data.getTimestamp());
         
         return point;
     }
     
-    private List<TelemetryData> executeQueryAndMapResults(String flux) {
-        List<TelemetryData> results = new ArrayList<>();
+    private List<TelemetrySeries> executeSeriesQuery(InfluxShard shard, String flux) {
+        TelemetrySeriesDecoder decoder = new TelemetrySeriesDecoder(schemaCatalog::unitFor);
+        CompletableFuture<Void> completion = new CompletableFuture<>();
         
         try {
-            List<FluxTable> tables = queryApi.query(flux, org);
-            
-            for (FluxTable table : tables) {
-                for (FluxRecord record : table.getRecords()) {
-                    TelemetryData data = mapRecordToTelemetryData(record);
-                    if (data != null) {
-                        results.add(data);
-                    }
-                }
-            }
+            shard.getQueryApi().query(flux, org, decoder, completion::completeExceptionally, () -> completion.complete(null));
+            completion.get(queryTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            decoder.cancel();
+            log.error("Telemetry query on shard {} timed out after {} ms", shard.getName(), queryTimeoutMs);
+            throw new RuntimeException("Telemetry query timed out", e);
+        } catch (InterruptedException e) {
+            decoder.cancel();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Telemetry query interrupted", e);
         } catch (Exception e) {
             log.error("Failed to query telemetry data: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to query telemetry data", e);
         }
         
-        return results;
-    }
-    
-    private TelemetryData mapRecordToTelemetryData(FluxRecord record) {
-        try {
-            return TelemetryData.builder()
-                    .deviceId(UUID.fromString((String) record.getValueByKey("device_id")))
-                    .houseId(UUID.fromString((String) record.getValueByKey("house_id")))
-                    .locationId(UUID.fromString((String) record.getValueByKey("location_id")))
-                    .measurementType((String) record.getValueByKey("measurement_type"))
-                    .value(((Number) record.getValueByKey("value")).doubleValue())
-                    .unit((String) record.getValueByKey("unit"))
-                    .quality((String) record.getValueByKey("quality"))
-                    .timestamp(record.getTime())
-                    .build();
-        } catch (Exception e) {
-            log.warn("Failed to map record to TelemetryData: {}", e.getMessage());
-            return null;
+        if (decoder.getSkipped() > 0) {
+            log.warn("Skipped {} malformed telemetry records", decoder.getSkipped());
         }
+        
+        return decoder.getSeries();
     }
     
-    private Double queryAggregation(String flux, String aggregationType) {
+    private Double queryAggregation(List<InfluxShard> shards, String flux, String aggregationType) {
         try {
             log.debug("Executing {} aggregation query: {}", aggregationType, flux);
-            List<FluxTable> tables = queryApi.query(flux, org);
+            List<FluxTable> tables = new ArrayList<>();
+            for (InfluxShard shard : shards) {
+                tables.addAll(shard.getQueryApi().query(flux, org));
+            }
             log.debug("{} query returned {} tables", aggregationType, tables.size());
             
             // For aggregations like count, sum - we need to process all tables and combine results
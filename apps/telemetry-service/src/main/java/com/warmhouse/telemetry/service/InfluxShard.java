@@ -0,0 +1,39 @@
+package com.warmhouse.telemetry.service;
+
+import com.influxdb.client.DeleteApi;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.QueryApi;
+import com.influxdb.client.WriteApiBlocking;
+import lombok.Getter;
+
+/**
+ * One InfluxDB endpoint of the sharded telemetry store
+ */
+@Getter
+public class InfluxShard {
+    
+    private final String name;
+    private final String url;
+    private final InfluxDBClient client;
+    private final WriteApiBlocking writeApi;
+    private final QueryApi queryApi;
+    private final DeleteApi deleteApi;
+    
+    // False when the client is a context bean closed by Spring
+    private final boolean ownsClient;
+    
+    public InfluxShard(String name, String url, InfluxDBClient client, boolean ownsClient) {
+        this.name = name;
+        this.url = url;
+        this.client = client;
+        this.ownsClient = ownsClient;
+        this.writeApi = client.getWriteApiBlocking();
+        this.queryApi = client.getQueryApi();
+        this.deleteApi = client.getDeleteApi();
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,176 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.util.ConsistentHashRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes telemetry points to InfluxDB shards by house_id on a consistent-hash ring
+ * While a previous ring is configured (a rebalance in progress), reads for a house
+ * go to both its previous and current owner; writes always go to the current owner.
+ */
+public class InfluxShardRouter implements AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(InfluxShardRouter.class);
+    
+    private final List<InfluxShard> shards;
+    private final List<InfluxShard> currentShards;
+    private final ConsistentHashRing<InfluxShard> ring;
+    private final ConsistentHashRing<InfluxShard> previousRing;
+    private final int maxLearnedDevices;
+    
+    // Device to house mapping learned at ingest, lets device queries skip the fan-out
+    private final Map<UUID, UUID> deviceHouses = new ConcurrentHashMap<>();
+    
+    /**
+     * @param shards           every shard holding data, current ones first
+     * @param currentNames     names of the shards on the current ring
+     * @param previousNames    names of the shards on the ring before a rebalance, empty if none
+     * @param virtualNodes     virtual nodes per shard
+     */
+    public InfluxShardRouter(List<InfluxShard> shards, List<String> currentNames, List<String> previousNames,
+                             int virtualNodes, int maxLearnedDevices) {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.currentShards = select(currentNames);
+        this.ring = new ConsistentHashRing<>(currentShards, currentNames, virtualNodes);
+        this.previousRing = previousNames.isEmpty()
+                ? null
+                : new ConsistentHashRing<>(select(previousNames), previousNames, virtualNodes);
+        this.maxLearnedDevices = maxLearnedDevices;
+    }
+    
+    /**
+     * Parse a shard list such as {@code a=http://influx-a:8086,b=http://influx-b:8086}
+     */
+    public static Map<String, String> parseSpecs(String specs) {
+        Map<String, String> parsed = new LinkedHashMap<>();
+        if (specs == null || specs.isBlank()) {
+            return parsed;
+        }
+        for (String spec : specs.split(",")) {
+            String[] parts = spec.trim().split("=", 2);
+            if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                throw new IllegalArgumentException("Invalid shard spec, expected name=url: " + spec);
+            }
+            if (parsed.put(parts[0].trim(), parts[1].trim()) != null) {
+                throw new IllegalArgumentException("Duplicate shard name: " + parts[0].trim());
+            }
+        }
+        return parsed;
+    }
+    
+    /**
+     * Shard that receives writes for a house
+     */
+    public InfluxShard shardFor(UUID houseId) {
+        return ring.locate(houseId.toString());
+    }
+    
+    /**
+     * Shards that may hold data of a house
+     */
+    public List<InfluxShard> readShardsForHouse(UUID houseId) {
+        InfluxShard current = shardFor(houseId);
+        if (previousRing == null) {
+            return Collections.singletonList(current);
+        }
+        InfluxShard previous = previousRing.locate(houseId.toString());
+        return previous == current ? Collections.singletonList(current) : List.of(current, previous);
+    }
+    
+    /**
+     * Shards that may hold data of a device; all shards unless its house is known
+     */
+    public List<InfluxShard> readShardsForDevice(UUID deviceId) {
+        if (shards.size() == 1) {
+            return shards;
+        }
+        UUID houseId = deviceHouses.get(deviceId);
+        return houseId != null ? readShardsForHouse(houseId) : shards;
+    }
+    
+    public void learn(UUID deviceId, UUID houseId) {
+        if (shards.size() > 1 && (deviceHouses.size() < maxLearnedDevices || deviceHouses.containsKey(deviceId))) {
+            deviceHouses.put(deviceId, houseId);
+        }
+    }
+    
+    public void forgetDevice(UUID deviceId) {
+        deviceHouses.remove(deviceId);
+    }
+    
+    /**
+     * Shard for data without a house key, such as quantile sketches
+     */
+    public InfluxShard primary() {
+        return currentShards.get(0);
+    }
+    
+    /**
+     * Every shard that may hold data, including shards only on the previous ring
+     */
+    public List<InfluxShard> getShards() {
+        return shards;
+    }
+    
+    public List<InfluxShard> getCurrentShards() {
+        return currentShards;
+    }
+    
+    public boolean isRebalancing() {
+        return previousRing != null;
+    }
+    
+    /**
+     * Owner of a house on the previous ring, null when no rebalance is configured
+     */
+    public InfluxShard previousOwner(UUID houseId) {
+        return previousRing != null ? previousRing.locate(houseId.toString()) : null;
+    }
+    
+    /**
+     * Share of the hash space owned by each current shard
+     */
+    public Map<String, Double> ownership() {
+        double[] share = ring.ownership();
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int i = 0; i < currentShards.size(); i++) {
+            result.put(currentShards.get(i).getName(), share[i]);
+        }
+        return result;
+    }
+    
+    @Override
+    public void close() {
+        for (InfluxShard shard : shards) {
+            if (!shard.isOwnsClient()) {
+                continue;
+            }
+            try {
+                shard.getClient().close();
+            } catch (Exception e) {
+                log.warn("Failed to close InfluxDB client for shard {}: {}", shard.getName(), e.getMessage());
+            }
+        }
+    }
+    
+    private List<InfluxShard> select(List<String> names) {
+        List<InfluxShard> selected = new ArrayList<>();
+        for (String name : names) {
+            InfluxShard shard = shards.stream()
+                    .filter(s -> s.getName().equals(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown shard: " + name));
+            selected.add(shard);
+        }
+        return Collections.unmodifiableList(selected);
+    }
+}
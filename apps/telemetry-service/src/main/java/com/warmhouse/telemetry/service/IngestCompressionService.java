@@ -0,0 +1,350 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.model.MeasurementSchema;
+import com.warmhouse.telemetry.model.MeasurementSchema.Compression;
+import com.warmhouse.telemetry.model.QualityCode;
+import com.warmhouse.telemetry.model.TelemetryData;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Ingest compression for slowly changing sensors
+ * Decides per reading which points reach InfluxDB using the deadband or swinging-door
+ * settings of its measurement schema. Only storage is compressed: sketches, rules,
+ * events and live subscribers still see every reading.
+ */
+@Service
+@RequiredArgsConstructor
+public class IngestCompressionService {
+    
+    private static final Logger log = LoggerFactory.getLogger(IngestCompressionService.class);
+    
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    
+    private final MeasurementSchemaCatalog schemaCatalog;
+    private final InfluxDBService influxDBService;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.compression.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.compression.sweep-interval:10000}")
+    private long sweepIntervalMs;
+    
+    // Devices without held points are forgotten after this much inactivity
+    @Value("${telemetry.compression.idle-eviction:3600000}")
+    private long idleEvictionMs;
+    
+    private final Map<UUID, DeviceState> states = new ConcurrentHashMap<>();
+    private Counter receivedCounter;
+    private Counter storedCounter;
+    
+    @PostConstruct
+    void init() {
+        receivedCounter = Counter.builder("telemetry.compression.received")
+                .description("Readings offered to ingest compression")
+                .register(meterRegistry);
+        storedCounter = Counter.builder("telemetry.compression.stored")
+                .description("Points passed on to storage by ingest compression")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Points to store for a reading: none, the reading itself and/or an earlier held reading
+     */
+    public List<TelemetryData> filter(TelemetryData data) {
+        receivedCounter.increment();
+        
+        Compression compression = compressionFor(data.getMeasurementType());
+        if (compression == null || data.getTimestamp() == null || data.getValue() == null) {
+            storedCounter.increment();
+            return Collections.singletonList(data);
+        }
+        
+        while (true) {
+            DeviceState state = states.computeIfAbsent(data.getDeviceId(), id -> new DeviceState());
+            synchronized (state) {
+                // Lost a race with idle eviction, retry on a fresh state
+                if (state.evicted) {
+                    continue;
+                }
+                List<TelemetryData> out = state.offer(data, compression, System.currentTimeMillis());
+                storedCounter.increment(out.size());
+                return out;
+            }
+        }
+    }
+    
+    /**
+     * Longest a reading can be held before it reaches storage: the longest max silence
+     * of a compressed type plus one sweep; zero when compression is off
+     */
+    public long maxHoldMs() {
+        if (!enabled) {
+            return 0;
+        }
+        long longest = 0;
+        for (MeasurementSchema schema : schemaCatalog.getSchemas()) {
+            if (compressionFor(schema.getMeasurementType()) != null) {
+                longest = Math.max(longest, schema.getCompression().getMaxSilenceSeconds() * 1000);
+            }
+        }
+        return longest > 0 ? longest + sweepIntervalMs : 0;
+    }
+    
+    /**
+     * Drop compression state of a device so its next reading is stored unconditionally
+     */
+    public void forgetDevice(UUID deviceId) {
+        states.remove(deviceId);
+    }
+    
+    /**
+     * Store held readings of the matching devices and drop their state, e.g. when another instance takes them over
+     *
+     * @return number of devices released
+     */
+    public int releaseDevices(Predicate<UUID> release) {
+        List<TelemetryData> held = new ArrayList<>();
+        int[] released = new int[1];
+        
+        states.forEach((deviceId, state) -> {
+            if (!release.test(deviceId)) {
+                return;
+            }
+            synchronized (state) {
+                state.collectSilent(Long.MAX_VALUE, held);
+                state.evicted = true;
+                states.remove(deviceId, state);
+                released[0]++;
+            }
+        });
+        
+        write(held);
+        return released[0];
+    }
+    
+    /**
+     * Store held swinging-door readings of devices that went silent, evict idle devices
+     */
+    @Scheduled(fixedDelayString = "${telemetry.compression.sweep-interval:10000}")
+    public void flushSilent() {
+        long now = System.currentTimeMillis();
+        List<TelemetryData> due = new ArrayList<>();
+        
+        states.forEach((deviceId, state) -> {
+            synchronized (state) {
+                state.collectSilent(now, due);
+                if (!state.hasHeld() && now - state.lastArrivalMs >= idleEvictionMs) {
+                    state.evicted = true;
+                    states.remove(deviceId, state);
+                }
+            }
+        });
+        
+        write(due);
+    }
+    
+    @PreDestroy
+    void flushAll() {
+        List<TelemetryData> held = new ArrayList<>();
+        states.values().forEach(state -> {
+            synchronized (state) {
+                state.collectSilent(Long.MAX_VALUE, held);
+            }
+        });
+        write(held);
+    }
+    
+    private void write(List<TelemetryData> points) {
+        if (points.isEmpty()) {
+            return;
+        }
+        try {
+            influxDBService.writeTelemetryDataBatch(points);
+            storedCounter.increment(points.size());
+            log.debug("Stored {} held readings", points.size());
+        } catch (Exception e) {
+            log.warn("Failed to store {} held readings: {}", points.size(), e.getMessage());
+            points.forEach(point -> forgetDevice(point.getDeviceId()));
+        }
+    }
+    
+    private Compression compressionFor(String measurementType) {
+        if (!enabled) {
+            return null;
+        }
+        MeasurementSchema schema = schemaCatalog.find(measurementType);
+        if (schema == null || schema.getCompression() == null || schema.getCompression().getMode() == null
+                || schema.getCompression().getMode() == Compression.Mode.NONE) {
+            return null;
+        }
+        return schema.getCompression();
+    }
+    
+    /**
+     * Compression state of one device, one slot per measurement type
+     */
+    private static final class DeviceState {
+        
+        private String[] types = new String[0];
+        private long[] archivedNanos = new long[0];
+        private double[] archivedValue = new double[0];
+        private double[] slopeUpper = new double[0];
+        private double[] slopeLower = new double[0];
+        private long[] heldNanos = new long[0];
+        private long[] heldArrivalMs = new long[0];
+        private long[] maxSilenceMs = new long[0];
+        private TelemetryData[] held = new TelemetryData[0];
+        private long lastArrivalMs;
+        private boolean evicted;
+        
+        List<TelemetryData> offer(TelemetryData data, Compression compression, long nowMs) {
+            lastArrivalMs = nowMs;
+            long t = TelemetrySeries.toEpochNanos(data.getTimestamp());
+            double v = data.getValue();
+            long silenceNanos = compression.getMaxSilenceSeconds() * NANOS_PER_SECOND;
+            
+            int slot = indexOf(data.getMeasurementType());
+            if (slot < 0) {
+                slot = addSlot(data.getMeasurementType());
+                archive(slot, t, v);
+                return Collections.singletonList(data);
+            }
+            maxSilenceMs[slot] = compression.getMaxSilenceSeconds() * 1000;
+            
+            // Late readings bypass compression and leave the state untouched
+            if (t <= archivedNanos[slot] || (held[slot] != null && t <= heldNanos[slot])) {
+                return Collections.singletonList(data);
+            }
+            
+            // Anything but GOOD is always kept, together with the point before it
+            if (QualityCode.of(data.getQuality()) != QualityCode.GOOD) {
+                List<TelemetryData> out = new ArrayList<>(2);
+                if (held[slot] != null) {
+                    out.add(held[slot]);
+                }
+                out.add(data);
+                archive(slot, t, v);
+                return out;
+            }
+            
+            if (compression.getMode() == Compression.Mode.DEADBAND) {
+                if (Math.abs(v - archivedValue[slot]) > compression.getDeviation()
+                        || t - archivedNanos[slot] >= silenceNanos) {
+                    archive(slot, t, v);
+                    return Collections.singletonList(data);
+                }
+                return Collections.emptyList();
+            }
+            
+            return swingingDoor(slot, data, t, v, compression.getDeviation(), silenceNanos, nowMs);
+        }
+        
+        private List<TelemetryData> swingingDoor(int slot, TelemetryData data, long t, double v,
+                                                 double deviation, long silenceNanos, long nowMs) {
+            List<TelemetryData> out = new ArrayList<>(2);
+            double dt = t - archivedNanos[slot];
+            double upper = Math.min(slopeUpper[slot], (v + deviation - archivedValue[slot]) / dt);
+            double lower = Math.max(slopeLower[slot], (v - deviation - archivedValue[slot]) / dt);
+            
+            if (held[slot] != null && lower > upper) {
+                // Door opened: the held reading is the last point the line can still pass through
+                out.add(held[slot]);
+                archive(slot, heldNanos[slot], held[slot].getValue());
+                dt = t - archivedNanos[slot];
+                upper = (v + deviation - archivedValue[slot]) / dt;
+                lower = (v - deviation - archivedValue[slot]) / dt;
+            }
+            
+            if (t - archivedNanos[slot] >= silenceNanos) {
+                // Heartbeat: keep the held reading only if the straight line would misrepresent it
+                if (held[slot] != null) {
+                    double fraction = (double) (heldNanos[slot] - archivedNanos[slot]) / (t - archivedNanos[slot]);
+                    double expected = archivedValue[slot] + (v - archivedValue[slot]) * fraction;
+                    if (Math.abs(held[slot].getValue() - expected) > deviation) {
+                        out.add(held[slot]);
+                    }
+                }
+                out.add(data);
+                archive(slot, t, v);
+                return out;
+            }
+            
+            slopeUpper[slot] = upper;
+            slopeLower[slot] = lower;
+            held[slot] = data;
+            heldNanos[slot] = t;
+            heldArrivalMs[slot] = nowMs;
+            return out;
+        }
+        
+        void collectSilent(long nowMs, List<TelemetryData> due) {
+            for (int slot = 0; slot < types.length; slot++) {
+                if (held[slot] != null && nowMs - heldArrivalMs[slot] >= maxSilenceMs[slot]) {
+                    due.add(held[slot]);
+                    archive(slot, heldNanos[slot], held[slot].getValue());
+                }
+            }
+        }
+        
+        boolean hasHeld() {
+            for (TelemetryData h : held) {
+                if (h != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private void archive(int slot, long t, double v) {
+            archivedNanos[slot] = t;
+            archivedValue[slot] = v;
+            slopeUpper[slot] = Double.POSITIVE_INFINITY;
+            slopeLower[slot] = Double.NEGATIVE_INFINITY;
+            held[slot] = null;
+        }
+        
+        private int indexOf(String type) {
+            for (int i = 0; i < types.length; i++) {
+                if (types[i].equals(type)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        private int addSlot(String type) {
+            int n = types.length;
+            types = Arrays.copyOf(types, n + 1);
+            archivedNanos = Arrays.copyOf(archivedNanos, n + 1);
+            archivedValue = Arrays.copyOf(archivedValue, n + 1);
+            slopeUpper = Arrays.copyOf(slopeUpper, n + 1);
+            slopeLower = Arrays.copyOf(slopeLower, n + 1);
+            heldNanos = Arrays.copyOf(heldNanos, n + 1);
+            heldArrivalMs = Arrays.copyOf(heldArrivalMs, n + 1);
+            maxSilenceMs = Arrays.copyOf(maxSilenceMs, n + 1);
+            held = Arrays.copyOf(held, n + 1);
+            types[n] = type;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryRequest;
+import com.warmhouse.telemetry.model.TelemetryData;
+import com.warmhouse.telemetry.util.BloomFilter;
+import com.warmhouse.telemetry.util.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Recognizes readings retried by gateways, so a retry is answered with the original measurement
+ * instead of being stored and published again
+ * A reading is keyed by the client's idempotency key, or by device, type and timestamp when the client
+ * set the timestamp. Keys of the last one to two windows are held in two rotating Bloom filters; only a
+ * filter hit is checked exactly, against keys claimed here and not yet written, then against the
+ * Redis record telemetry:ingest:seen:&lt;key&gt; holding the original reading. The filters only know keys
+ * claimed by this instance, so for a window after startup or a change of device ownership misses are
+ * checked against Redis too. Without partitioning a retry may reach another instance; checking every
+ * miss catches it at one Redis read per keyed reading and is opt-in (check-misses).
+ */
+@Service
+@RequiredArgsConstructor
+public class IngestDeduplicator {
+    
+    private static final Logger log = LoggerFactory.getLogger(IngestDeduplicator.class);
+    
+    static final String KEY_PREFIX = "telemetry:ingest:seen:";
+    
+    private final StringRedisTemplate redisTemplate;
+    private final DependencyBulkheads bulkheads;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.idempotency.enabled:true}")
+    private boolean enabled;
+    
+    // Readings are remembered for one to two windows; gateway retries arrive well within one
+    @Value("${telemetry.idempotency.window:600000}")
+    private long windowMs;
+    
+    // Keys expected per window, sizes each filter generation
+    @Value("${telemetry.idempotency.expected-keys:1000000}")
+    private int expectedKeys;
+    
+    @Value("${telemetry.idempotency.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+    
+    // Records per pipeline, keeps a flush call well within the Redis timeout
+    @Value("${telemetry.idempotency.flush-batch-size:500}")
+    private int flushBatchSize;
+    
+    // Check every filter miss against Redis, not only during the warm-up window
+    @Value("${telemetry.idempotency.check-misses:false}")
+    private boolean checkMisses;
+    
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    // Keys claimed here and not yet written to Redis
+    private final Map<String, Original> claimed = new ConcurrentHashMap<>();
+    // Until then keys may have been claimed elsewhere (before a restart, or by a previous owner)
+    private volatile long incompleteUntil;
+    private Counter duplicates;
+    private Counter exactChecks;
+    
+    /**
+     * Measurement a key was first stored as
+     */
+    public static final class Original {
+        
+        private final UUID measurementId;
+        private final Instant timestamp;
+        private final String measurementType;
+        private final Double value;
+        private final String unit;
+        private final String quality;
+        private final long claimedAt = System.currentTimeMillis();
+        private volatile boolean committed;
+        
+        Original(TelemetryData data) {
+            this(data.getMeasurementId(), data.getTimestamp(), data.getMeasurementType(), data.getValue(),
+                    data.getUnit(), data.getQuality());
+        }
+        
+        private Original(UUID measurementId, Instant timestamp, String measurementType, Double value,
+                         String unit, String quality) {
+            this.measurementId = measurementId;
+            this.timestamp = timestamp;
+            this.measurementType = measurementType;
+            this.value = value;
+            this.unit = unit;
+            this.quality = quality;
+        }
+        
+        public UUID getMeasurementId() {
+            return measurementId;
+        }
+        
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+        
+        /**
+         * The retried reading as first stored; records without the reading (written by older
+         * versions) keep the retry's type, value, unit and quality
+         */
+        public TelemetryData replay(TelemetryData retry) {
+            boolean known = measurementType != null;
+            return TelemetryData.builder()
+                    .measurementId(measurementId)
+                    .deviceId(retry.getDeviceId())
+                    .houseId(retry.getHouseId())
+                    .locationId(retry.getLocationId())
+                    .measurementType(known ? measurementType : retry.getMeasurementType())
+                    .value(known ? value : retry.getValue())
+                    .unit(known ? unit : retry.getUnit())
+                    .quality(known ? quality : retry.getQuality())
+                    .timestamp(timestamp)
+                    .tags(retry.getTags())
+                    .metadata(retry.getMetadata())
+                    .build();
+        }
+        
+        // id|timestamp|value|quality|type|unit, the unit last as the one free-form field
+        String encode() {
+            return measurementId + "|" + timestamp + "|" + (value != null ? value : "") + "|" + quality
+                    + "|" + measurementType + "|" + unit;
+        }
+        
+        static Original decode(String record) {
+            String[] fields = record.split("\\|", 6);
+            if (fields.length < 6) {
+                return new Original(UUID.fromString(fields[0]), Instant.parse(fields[1]), null, null, null, null);
+            }
+            return new Original(UUID.fromString(fields[0]), Instant.parse(fields[1]),
+                    fields[4], fields[2].isEmpty() ? null : Double.valueOf(fields[2]), fields[5], fields[3]);
+        }
+    }
+    
+    @PostConstruct
+    void init() {
+        current = new BloomFilter(expectedKeys, falsePositiveRate);
+        previous = new BloomFilter(expectedKeys, falsePositiveRate);
+        incompleteUntil = System.currentTimeMillis() + windowMs;
+        duplicates = Counter.builder("telemetry.ingest.duplicates")
+                .description("Retried readings answered with the original measurement")
+                .register(meterRegistry);
+        exactChecks = Counter.builder("telemetry.ingest.dedup.exact_checks")
+                .description("Dedup keys checked against the exact record")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.ingest.dedup.pending", claimed, Map::size)
+                .description("Claimed reading keys not yet written to Redis")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Dedup key of a reading, null when it has neither an idempotency key nor a client timestamp
+     */
+    public String keyOf(TelemetryRequest request) {
+        if (!enabled) {
+            return null;
+        }
+        if (request.getIdempotencyKey() != null && !request.getIdempotencyKey().isBlank()) {
+            return "k|" + request.getDeviceId() + "|" + request.getIdempotencyKey();
+        }
+        if (request.getTimestamp() != null) {
+            return "r|" + request.getDeviceId() + "|" + request.getMeasurementType() + "|" + request.getTimestamp();
+        }
+        return null;
+    }
+    
+    /**
+     * Claim a key for a new measurement, validated and conformed as it will be stored
+     *
+     * @return null if the key is new and now belongs to the caller, otherwise the original measurement
+     */
+    public Original claim(String key, TelemetryData data) {
+        if (key == null) {
+            return null;
+        }
+        boolean maybeSeen = mightHaveSeen(key);
+        
+        Original claim = new Original(data);
+        // Also settles concurrent retries of a reading still being stored
+        Original existing = claimed.putIfAbsent(key, claim);
+        if (existing == null && maybeSeen) {
+            exactChecks.increment();
+            String stored = bulkheads.redis().call(() -> redisTemplate.opsForValue().get(KEY_PREFIX + key), () -> null);
+            if (stored != null) {
+                claimed.remove(key, claim);
+                existing = Original.decode(stored);
+            }
+        }
+        if (existing != null) {
+            duplicates.increment();
+        }
+        return existing;
+    }
+    
+    /**
+     * Claim the keys of a batch; keys that may have been seen are checked against Redis in one call
+     * A key repeated within the batch is a duplicate of its first reading.
+     *
+     * @param keys dedup key per reading, null for readings without one
+     * @param readings new measurement per reading
+     * @return per reading, null if it now belongs to the caller, otherwise the original measurement
+     */
+    public List<Original> claimAll(List<String> keys, List<TelemetryData> readings) {
+        List<Original> claims = new ArrayList<>(keys.size());
+        List<Original> existing = new ArrayList<>(keys.size());
+        List<Integer> unchecked = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            Original claim = key != null ? new Original(readings.get(i)) : null;
+            claims.add(claim);
+            Original found = null;
+            if (key != null) {
+                boolean maybeSeen = mightHaveSeen(key);
+                found = claimed.putIfAbsent(key, claim);
+                if (found == null && maybeSeen) {
+                    unchecked.add(i);
+                }
+            }
+            existing.add(found);
+        }
+        
+        if (!unchecked.isEmpty()) {
+            exactChecks.increment(unchecked.size());
+            List<String> redisKeys = unchecked.stream().map(i -> KEY_PREFIX + keys.get(i))
+                    .collect(Collectors.toList());
+            List<String> stored = bulkheads.redis().call(() -> redisTemplate.opsForValue().multiGet(redisKeys), () -> null);
+            for (int j = 0; stored != null && j < stored.size(); j++) {
+                if (stored.get(j) != null) {
+                    int i = unchecked.get(j);
+                    claimed.remove(keys.get(i), claims.get(i));
+                    existing.set(i, Original.decode(stored.get(j)));
+                }
+            }
+        }
+        duplicates.increment(existing.stream().filter(original -> original != null).count());
+        return existing;
+    }
+    
+    private boolean mightHaveSeen(String key) {
+        long hash = Hashing.hash64(key);
+        return !current.put(hash) || previous.mightContain(hash)
+                || checkMisses || System.currentTimeMillis() < incompleteUntil;
+    }
+    
+    /**
+     * Devices may have moved here from another instance; their keys are only in that instance's filters
+     */
+    public void ownershipChanged() {
+        incompleteUntil = System.currentTimeMillis() + windowMs;
+    }
+    
+    /**
+     * The measurement of a claimed key was stored; its record is written with the next flush
+     */
+    public void commit(String key, UUID measurementId) {
+        if (key != null) {
+            Original claim = claimed.get(key);
+            if (claim != null && claim.measurementId.equals(measurementId)) {
+                claim.committed = true;
+            }
+        }
+    }
+    
+    /**
+     * The measurement of a claimed key was not stored, a retry must be stored again
+     */
+    public void release(String key, UUID measurementId) {
+        if (key != null) {
+            claimed.computeIfPresent(key, (k, claim) -> claim.measurementId.equals(measurementId) ? null : claim);
+        }
+    }
+    
+    /**
+     * Write records of committed keys, one pipeline per chunk so each stays within the Redis timeout
+     * Claims left uncommitted for a whole window are dropped. While Redis is unreachable records are kept
+     * up to one window's worth of keys.
+     */
+    @Scheduled(fixedDelayString = "${telemetry.idempotency.flush-interval:1000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Original>> committed = new ArrayList<>();
+        claimed.entrySet().forEach(entry -> {
+            if (entry.getValue().committed) {
+                committed.add(entry);
+            } else if (now - entry.getValue().claimedAt > windowMs) {
+                claimed.remove(entry.getKey(), entry.getValue());
+            }
+        });
+        if (committed.isEmpty()) {
+            return;
+        }
+        
+        int written = 0;
+        if (!bulkheads.redis().isDegraded()) {
+            for (int from = 0; from < committed.size(); from += flushBatchSize) {
+                List<Map.Entry<String, Original>> chunk =
+                        committed.subList(from, Math.min(from + flushBatchSize, committed.size()));
+                if (!bulkheads.redis().call(() -> write(chunk), () -> Boolean.FALSE)) {
+                    break;
+                }
+                chunk.forEach(entry -> claimed.remove(entry.getKey(), entry.getValue()));
+                written += chunk.size();
+            }
+        }
+        int unwritten = committed.size() - written;
+        if (unwritten > expectedKeys) {
+            committed.subList(written, committed.size())
+                    .forEach(entry -> claimed.remove(entry.getKey(), entry.getValue()));
+            log.warn("Dropped {} ingest dedup records, Redis unreachable", unwritten);
+        }
+        log.debug("Wrote {} ingest dedup records, {} left", written, unwritten);
+    }
+    
+    private Boolean write(List<Map.Entry<String, Original>> records) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                // Filters remember a key for up to two windows
+                records.forEach(entry -> ops.opsForValue().set(KEY_PREFIX + entry.getKey(),
+                        entry.getValue().encode(), windowMs * 2, TimeUnit.MILLISECONDS));
+                return null;
+            }
+        });
+        return Boolean.TRUE;
+    }
+    
+    /**
+     * Start a new filter generation; the previous one is dropped
+     */
+    @Scheduled(initialDelayString = "${telemetry.idempotency.window:600000}",
+            fixedDelayString = "${telemetry.idempotency.window:600000}")
+    public void rotate() {
+        previous = current;
+        current = new BloomFilter(expectedKeys, falsePositiveRate);
+    }
+}
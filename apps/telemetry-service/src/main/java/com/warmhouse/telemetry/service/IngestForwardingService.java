@@ -0,0 +1,134 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryRequest;
+import com.warmhouse.telemetry.dto.TelemetryResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Forwards ingest for devices owned by another instance
+ * Forwarded requests carry {@link #FORWARDED_HEADER} and are never forwarded again, so a receiver
+ * with a different view of membership stores the reading itself instead of bouncing it. The header
+ * is only honoured together with the shared forwarding secret from a live member, since forwarded
+ * readings skip the rate limits already applied by the sender.
+ */
+@Service
+@RequiredArgsConstructor
+public class IngestForwardingService {
+    
+    private static final Logger log = LoggerFactory.getLogger(IngestForwardingService.class);
+    
+    public static final String FORWARDED_HEADER = "X-Telemetry-Forwarded-By";
+    public static final String FORWARDING_SECRET_HEADER = "X-Telemetry-Forwarding-Secret";
+    
+    private final RestTemplate restTemplate;
+    private final InstanceMembershipService membershipService;
+    private final MeterRegistry meterRegistry;
+    
+    // Shared by all instances; without it forwarded readings are admitted like client readings
+    @Value("${telemetry.partitioning.forwarding-secret:}")
+    private String forwardingSecret;
+    
+    private Counter forwardedCounter;
+    private Counter failedCounter;
+    private Counter untrustedCounter;
+    
+    @PostConstruct
+    void init() {
+        forwardedCounter = Counter.builder("telemetry.partition.forwarded")
+                .description("Readings forwarded to the owning instance")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("telemetry.partition.forward_failures")
+                .description("Forwarding attempts that fell back to local processing")
+                .register(meterRegistry);
+        untrustedCounter = Counter.builder("telemetry.partition.untrusted_forwards")
+                .description("Requests claiming to be forwarded without a valid secret or from an unknown instance")
+                .register(meterRegistry);
+        if (membershipService.isEnabled() && forwardingSecret.isEmpty()) {
+            log.warn("Partitioning is enabled without telemetry.partitioning.forwarding-secret, "
+                    + "forwarded readings are rate limited again by their owner");
+        }
+    }
+    
+    /**
+     * Whether a request really was forwarded by a live member, so its readings are already admitted
+     * and must not be forwarded again
+     */
+    public boolean isTrustedForward(String forwardedBy, String secret) {
+        if (forwardedBy == null) {
+            return false;
+        }
+        boolean trusted = !forwardingSecret.isEmpty() && secret != null
+                && MessageDigest.isEqual(forwardingSecret.getBytes(StandardCharsets.UTF_8),
+                        secret.getBytes(StandardCharsets.UTF_8))
+                && membershipService.isMember(forwardedBy);
+        if (!trusted) {
+            untrustedCounter.increment();
+            log.debug("Ignoring {} header from {}: not a trusted member", FORWARDED_HEADER, forwardedBy);
+        }
+        return trusted;
+    }
+    
+    /**
+     * Store a reading on its owner
+     *
+     * @return the owner's response, or null if the owner could not be reached
+     * @throws IllegalArgumentException if the owner rejected the reading
+     */
+    public TelemetryResponse forward(InstanceMembershipService.Member owner, TelemetryRequest request) {
+        try {
+            TelemetryResponse response = restTemplate.postForObject(
+                    owner.getUrl() + "/api/v1/telemetry", entity(request), TelemetryResponse.class);
+            forwardedCounter.increment();
+            return response;
+        } catch (HttpClientErrorException e) {
+            throw new IllegalArgumentException("Rejected by owner " + owner.getId() + ": " + e.getStatusCode());
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.warn("Forwarding device {} to {} failed, storing locally: {}",
+                    request.getDeviceId(), owner.getId(), e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Store a batch of readings owned by one instance
+     *
+     * @return false if the owner could not be reached
+     */
+    public boolean forwardBatch(InstanceMembershipService.Member owner, List<TelemetryRequest> requests) {
+        try {
+            restTemplate.postForEntity(owner.getUrl() + "/api/v1/telemetry/batch", entity(requests), Void.class);
+            forwardedCounter.increment(requests.size());
+            return true;
+        } catch (Exception e) {
+            failedCounter.increment(requests.size());
+            log.warn("Forwarding batch of {} readings to {} failed, storing locally: {}",
+                    requests.size(), owner.getId(), e.getMessage());
+            return false;
+        }
+    }
+    
+    private <T> HttpEntity<T> entity(T body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(FORWARDED_HEADER, membershipService.getInstanceId());
+        if (!forwardingSecret.isEmpty()) {
+            headers.set(FORWARDING_SECRET_HEADER, forwardingSecret);
+        }
+        return new HttpEntity<>(body, headers);
+    }
+}
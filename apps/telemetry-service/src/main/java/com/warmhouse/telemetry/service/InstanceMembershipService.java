@@ -0,0 +1,225 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.util.ConsistentHashRing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Membership of telemetry-service instances and device ownership
+ * Instances heartbeat into a Redis hash; live members form a consistent-hash ring over device_id.
+ * Per-device state (ingest compression, rule windows) is kept only by the owner, and released
+ * as soon as a membership change hands a device to another instance.
+ */
+@Service
+@RequiredArgsConstructor
+public class InstanceMembershipService {
+    
+    private static final Logger log = LoggerFactory.getLogger(InstanceMembershipService.class);
+    
+    static final String MEMBERS_KEY = "telemetry:members";
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final IngestCompressionService ingestCompressionService;
+    private final RuleEngineService ruleEngineService;
+    private final IngestDeduplicator ingestDeduplicator;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.partitioning.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${telemetry.instance-id}")
+    private String instanceId;
+    
+    // Base URL peers use to forward ingest to this instance
+    @Value("${telemetry.partitioning.advertised-url:http://localhost:8084}")
+    private String advertisedUrl;
+    
+    // Members without a heartbeat for this long are dropped from the ring
+    @Value("${telemetry.partitioning.member-ttl:15000}")
+    private long memberTtlMs;
+    
+    @Value("${telemetry.partitioning.virtual-nodes:128}")
+    private int virtualNodes;
+    
+    private volatile ConsistentHashRing<Member> ring;
+    private volatile long lastRefreshMs;
+    
+    @PostConstruct
+    void init() {
+        ring = singleton();
+        lastRefreshMs = System.currentTimeMillis();
+        Gauge.builder("telemetry.partition.members", () -> ring.getNodes().size())
+                .description("Live telemetry-service instances sharing device ownership")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Owner of a device when it is another instance, null when this instance owns it
+     */
+    public Member remoteOwnerOf(UUID deviceId) {
+        if (!enabled) {
+            return null;
+        }
+        Member owner = ring.locate(deviceId.toString());
+        return owner.getId().equals(instanceId) ? null : owner;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public String getInstanceId() {
+        return instanceId;
+    }
+    
+    /**
+     * Whether the instance is a live member of the ring
+     */
+    public boolean isMember(String id) {
+        for (Member member : ring.getNodes()) {
+            if (member.getId().equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Live members with their share of the device hash space
+     */
+    public List<Map<String, Object>> getMembers() {
+        ConsistentHashRing<Member> current = ring;
+        double[] ownership = current.ownership();
+        List<Map<String, Object>> members = new ArrayList<>();
+        for (int i = 0; i < current.getNodes().size(); i++) {
+            Member member = current.getNodes().get(i);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("instance_id", member.getId());
+            entry.put("url", member.getUrl());
+            entry.put("self", member.getId().equals(instanceId));
+            entry.put("ownership", ownership[i]);
+            members.add(entry);
+        }
+        return members;
+    }
+    
+    /**
+     * Publish our heartbeat, reload live members and release devices that moved away
+     */
+    @Scheduled(fixedDelayString = "${telemetry.partitioning.heartbeat-interval:5000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        
+        try {
+            redisTemplate.opsForHash().put(MEMBERS_KEY, instanceId, advertisedUrl + "|" + now);
+            
+            Map<String, String> live = new TreeMap<>();
+            for (Map.Entry<Object, Object> entry : redisTemplate.opsForHash().entries(MEMBERS_KEY).entrySet()) {
+                String id = entry.getKey().toString();
+                String value = String.valueOf(entry.getValue());
+                int separator = value.lastIndexOf('|');
+                long beat = separator < 0 ? 0 : Long.parseLong(value.substring(separator + 1));
+                if (now - beat > memberTtlMs) {
+                    redisTemplate.opsForHash().delete(MEMBERS_KEY, id);
+                    log.info("Dropped instance {} from membership, last heartbeat {} ms ago", id, now - beat);
+                } else {
+                    live.put(id, value.substring(0, Math.max(separator, 0)));
+                }
+            }
+            lastRefreshMs = now;
+            applyMembers(live);
+        } catch (Exception e) {
+            log.warn("Membership heartbeat failed: {}", e.getMessage());
+            // Without a view of the others, stop forwarding once our last view has expired
+            if (now - lastRefreshMs > memberTtlMs && ring.getNodes().size() > 1) {
+                log.warn("Membership unknown for {} ms, owning all devices locally", now - lastRefreshMs);
+                applyMembers(Map.of(instanceId, advertisedUrl));
+            }
+        }
+    }
+    
+    /**
+     * Leave the ring so peers take over our devices on their next heartbeat
+     */
+    @PreDestroy
+    void leave() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().delete(MEMBERS_KEY, instanceId);
+        } catch (Exception e) {
+            log.warn("Failed to leave membership: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Rebuild the ring from live members (sorted by id) and hand off devices no longer owned here
+     */
+    void applyMembers(Map<String, String> live) {
+        Map<String, String> members = new TreeMap<>(live);
+        members.putIfAbsent(instanceId, advertisedUrl);
+        
+        ConsistentHashRing<Member> current = ring;
+        if (!new ArrayList<>(members.keySet()).equals(idsOf(current))) {
+            List<Member> nodes = new ArrayList<>();
+            members.forEach((id, url) -> nodes.add(new Member(id, url)));
+            current = new ConsistentHashRing<>(nodes, new ArrayList<>(members.keySet()), virtualNodes);
+            ring = current;
+            ingestDeduplicator.ownershipChanged();
+            log.info("Partition membership changed: {}", members.keySet());
+        }
+        
+        // Also re-run on unchanged membership: state created by a reading racing the last change is released too
+        ConsistentHashRing<Member> owners = current;
+        int compressionReleased = ingestCompressionService.releaseDevices(
+                deviceId -> !owners.locate(deviceId.toString()).getId().equals(instanceId));
+        int rulesReleased = ruleEngineService.releaseDevices(
+                deviceId -> !owners.locate(deviceId.toString()).getId().equals(instanceId));
+        if (compressionReleased > 0 || rulesReleased > 0) {
+            log.info("Handed off state of {} compressed and {} rule-evaluated devices",
+                    compressionReleased, rulesReleased);
+        }
+    }
+    
+    private ConsistentHashRing<Member> singleton() {
+        return new ConsistentHashRing<>(List.of(new Member(instanceId, advertisedUrl)), List.of(instanceId),
+                Math.max(virtualNodes, 1));
+    }
+    
+    private static List<String> idsOf(ConsistentHashRing<Member> ring) {
+        List<String> ids = new ArrayList<>();
+        ring.getNodes().forEach(member -> ids.add(member.getId()));
+        return ids;
+    }
+    
+    /**
+     * A live telemetry-service instance
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Member {
+        private final String id;
+        private final String url;
+    }
+}
@@ -0,0 +1,298 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryResponse;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Fan-out hub for live telemetry subscriptions over Server-Sent Events
+ * Each subscriber has a bounded queue drained by a shared dispatcher pool;
+ * when a subscriber falls behind the oldest readings are dropped and reported.
+ * A send blocked on a stalled client longer than the send timeout drops that subscriber, and the pool gets
+ * a replacement thread until the blocked send returns, so stalled clients cannot occupy the dispatcher.
+ */
+@Service
+public class LiveTelemetryHub {
+    
+    private static final Logger log = LoggerFactory.getLogger(LiveTelemetryHub.class);
+    
+    public enum Scope { DEVICE, HOUSE, LOCATION }
+    
+    @Value("${telemetry.live.queue-capacity:256}")
+    private int queueCapacity;
+    
+    @Value("${telemetry.live.max-subscribers:1000}")
+    private int maxSubscribers;
+    
+    @Value("${telemetry.live.emitter-timeout:1800000}")
+    private long emitterTimeoutMs;
+    
+    @Value("${telemetry.live.send-timeout:5000}")
+    private long sendTimeoutMs;
+    
+    private final Map<UUID, Set<Subscriber>> byDevice = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<Subscriber>> byHouse = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<Subscriber>> byLocation = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong droppedTotal = new AtomicLong();
+    private final AtomicLong stalledTotal = new AtomicLong();
+    
+    private final int dispatcherThreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private final ThreadPoolExecutor dispatcher = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "live-telemetry-dispatch");
+                thread.setDaemon(true);
+                return thread;
+            });
+    // Subscribers with a send in progress, watched for stalls
+    private final Set<Subscriber> sending = ConcurrentHashMap.newKeySet();
+    // Dispatcher threads blocked in a send to a dropped subscriber
+    private int blockedThreads;
+    
+    /**
+     * Register a subscriber for one device, house or location
+     *
+     * @throws IllegalStateException when the subscriber limit is reached
+     */
+    public SseEmitter subscribe(Scope scope, UUID id) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("Live subscriber limit reached: " + maxSubscribers);
+        }
+        
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(scope, id, emitter, queueCapacity);
+        index(scope).computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        
+        log.info("Live subscriber added for {} {} ({} active)", scope, id, subscriberCount.get());
+        return emitter;
+    }
+    
+    /**
+     * Fan out a stored reading to matching subscribers without blocking the caller
+     */
+    public void publish(TelemetryResponse reading) {
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+        offer(byDevice.get(reading.getDeviceId()), reading);
+        offer(byHouse.get(reading.getHouseId()), reading);
+        offer(byLocation.get(reading.getLocationId()), reading);
+    }
+    
+    /**
+     * Heartbeat keeps idle connections open through proxies and detects dead clients
+     * Sent by the dispatcher like readings, so a stalled client never blocks the scheduler.
+     */
+    @Scheduled(fixedRateString = "${telemetry.live.heartbeat-interval:15000}")
+    public void heartbeat() {
+        forEachSubscriber(subscriber -> {
+            subscriber.heartbeatDue = true;
+            schedule(subscriber);
+        });
+    }
+    
+    /**
+     * Drop subscribers whose send has been blocked longer than the send timeout
+     */
+    @Scheduled(fixedDelayString = "${telemetry.live.stall-check-interval:1000}")
+    public void dropStalledSubscribers() {
+        long now = System.currentTimeMillis();
+        sending.forEach(subscriber -> {
+            long since = subscriber.sendingSince;
+            if (since > 0 && now - since > sendTimeoutMs && subscriber.replaced.compareAndSet(false, true)) {
+                subscriber.stalled = true;
+                stalledTotal.incrementAndGet();
+                log.warn("Live subscriber for {} {} stalled for {} ms, dropping it",
+                        subscriber.scope, subscriber.id, now - since);
+                resizeDispatcher(1);
+                unsubscribe(subscriber);
+                subscriber.queue.clear();
+                // The emitter stays locked by the blocked send, the dispatcher completes it once the send returns
+            }
+        });
+    }
+    
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+    
+    public long getDroppedTotal() {
+        return droppedTotal.get();
+    }
+    
+    public long getStalledTotal() {
+        return stalledTotal.get();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        forEachSubscriber(subscriber -> subscriber.emitter.complete());
+        dispatcher.shutdownNow();
+    }
+    
+    private void offer(Set<Subscriber> subscribers, TelemetryResponse reading) {
+        if (subscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            // Drop-oldest: a slow consumer loses history, never the latest reading
+            while (!subscriber.queue.offer(reading)) {
+                if (subscriber.queue.poll() != null) {
+                    subscriber.dropped.incrementAndGet();
+                    droppedTotal.incrementAndGet();
+                }
+            }
+            schedule(subscriber);
+        }
+    }
+    
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.stalled) {
+            return;
+        }
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.scheduled.set(false);
+            }
+        }
+    }
+    
+    private void drain(Subscriber subscriber) {
+        try {
+            if (subscriber.heartbeatDue) {
+                subscriber.heartbeatDue = false;
+                send(subscriber, SseEmitter.event().comment("heartbeat"));
+            }
+            long dropped = subscriber.dropped.getAndSet(0);
+            if (dropped > 0) {
+                send(subscriber, SseEmitter.event().name("overflow").data(Map.of("dropped", dropped)));
+            }
+            TelemetryResponse reading;
+            while ((reading = subscriber.queue.poll()) != null) {
+                send(subscriber, SseEmitter.event().name("telemetry").data(reading));
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Live subscriber for {} {} disconnected: {}", subscriber.scope, subscriber.id, e.getMessage());
+            subscriber.queue.clear();
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        
+        // Readings may have arrived after the last poll but before the flag was cleared
+        if (!subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+    
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) throws IOException {
+        if (subscriber.stalled) {
+            throw new IOException("Subscriber dropped after a stalled send");
+        }
+        subscriber.sendingSince = System.currentTimeMillis();
+        sending.add(subscriber);
+        try {
+            subscriber.emitter.send(event);
+        } finally {
+            sending.remove(subscriber);
+            subscriber.sendingSince = 0;
+            // The watchdog gave this thread a replacement while it was blocked
+            if (subscriber.replaced.get()) {
+                resizeDispatcher(-1);
+            }
+        }
+        if (subscriber.stalled) {
+            throw new IOException("Send timed out after " + sendTimeoutMs + " ms");
+        }
+    }
+    
+    private synchronized void resizeDispatcher(int blockedDelta) {
+        blockedThreads += blockedDelta;
+        int size = dispatcherThreads + blockedThreads;
+        // Grow the maximum first and shrink the core first, core may never exceed maximum
+        if (blockedDelta > 0) {
+            dispatcher.setMaximumPoolSize(size);
+            dispatcher.setCorePoolSize(size);
+        } else {
+            dispatcher.setCorePoolSize(size);
+            dispatcher.setMaximumPoolSize(size);
+        }
+    }
+    
+    private void unsubscribe(Subscriber subscriber) {
+        Set<Subscriber> subscribers = index(subscriber.scope).get(subscriber.id);
+        if (subscribers != null && subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+            index(subscriber.scope).computeIfPresent(subscriber.id, (k, set) -> set.isEmpty() ? null : set);
+            log.info("Live subscriber removed for {} {} ({} active)", subscriber.scope, subscriber.id, subscriberCount.get());
+        }
+    }
+    
+    private void forEachSubscriber(Consumer<Subscriber> action) {
+        for (Map<UUID, Set<Subscriber>> index : List.of(byDevice, byHouse, byLocation)) {
+            index.values().forEach(set -> set.forEach(action));
+        }
+    }
+    
+    private Map<UUID, Set<Subscriber>> index(Scope scope) {
+        switch (scope) {
+            case HOUSE:
+                return byHouse;
+            case LOCATION:
+                return byLocation;
+            default:
+                return byDevice;
+        }
+    }
+    
+    private static final class Subscriber {
+        
+        private final Scope scope;
+        private final UUID id;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<TelemetryResponse> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean heartbeatDue;
+        // Start of the send in progress, 0 when idle
+        private volatile long sendingSince;
+        private volatile boolean stalled;
+        // Set once, when the watchdog replaced the dispatcher thread blocked in this subscriber's send
+        private final AtomicBoolean replaced = new AtomicBoolean();
+        
+        Subscriber(Scope scope, UUID id, SseEmitter emitter, int capacity) {
+            this.scope = scope;
+            this.id = id;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+}
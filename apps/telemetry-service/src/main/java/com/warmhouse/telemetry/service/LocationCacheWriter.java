@@ -0,0 +1,162 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.config.CompactRedisTemplate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind cache of device location mappings (device:<id> -> location id)
+ * Readings only record the mapping locally. A key is written when the location changes or its TTL is
+ * about to run out, and pending writes are flushed in one pipeline per interval, so a device reporting
+ * every few seconds costs one Redis write per TTL period instead of one per reading.
+ */
+@Service
+@RequiredArgsConstructor
+public class LocationCacheWriter {
+    
+    private static final Logger log = LoggerFactory.getLogger(LocationCacheWriter.class);
+    
+    private static final String DEVICE_CACHE_PREFIX = "device:";
+    
+    private final CompactRedisTemplate redisTemplate;
+    private final DependencyBulkheads bulkheads;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.cache.location-ttl:600000}")
+    private long ttlMs;
+    
+    // A mapping is rewritten once less than this much of its TTL is left
+    @Value("${telemetry.cache.location-refresh-margin:60000}")
+    private long refreshMarginMs;
+    
+    @Value("${telemetry.cache.location-capacity:100000}")
+    private int capacity;
+    
+    /**
+     * Location and write time of a mapping as stored in Redis
+     */
+    private static final class Written {
+        
+        final UUID locationId;
+        final long writtenAt;
+        
+        Written(UUID locationId, long writtenAt) {
+            this.locationId = locationId;
+            this.writtenAt = writtenAt;
+        }
+    }
+    
+    private final Map<UUID, Written> written = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> pending = new ConcurrentHashMap<>();
+    
+    private Counter coalesced;
+    private Counter writes;
+    
+    @PostConstruct
+    void init() {
+        coalesced = Counter.builder("telemetry.cache.location.coalesced")
+                .description("Location mapping updates absorbed without a Redis write")
+                .register(meterRegistry);
+        writes = Counter.builder("telemetry.cache.location.writes")
+                .description("Location mappings written to Redis")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.cache.location.pending", pending, Map::size)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Record the location a device reported from; queues a write only if Redis would change
+     */
+    public void record(UUID deviceId, UUID locationId) {
+        if (deviceId == null || locationId == null) {
+            return;
+        }
+        Written current = written.get(deviceId);
+        if (current != null && current.locationId.equals(locationId)
+                && System.currentTimeMillis() - current.writtenAt < ttlMs - refreshMarginMs) {
+            coalesced.increment();
+            return;
+        }
+        if (locationId.equals(pending.put(deviceId, locationId))) {
+            coalesced.increment();
+        }
+    }
+    
+    /**
+     * Drop what is known about a device, e.g. after its cache entries were deleted
+     */
+    public void forget(UUID deviceId) {
+        written.remove(deviceId);
+        pending.remove(deviceId);
+    }
+    
+    /**
+     * Write pending mappings in one pipeline; skipped while Redis is degraded, pending writes are kept
+     */
+    @Scheduled(fixedDelayString = "${telemetry.cache.location-flush-interval:1000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<UUID, UUID> batch = new LinkedHashMap<>();
+        for (UUID deviceId : pending.keySet()) {
+            UUID locationId = pending.remove(deviceId);
+            if (locationId != null) {
+                batch.put(deviceId, locationId);
+            }
+        }
+        
+        Boolean stored = bulkheads.redis().call(() -> {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    batch.forEach((deviceId, locationId) -> ops.opsForValue()
+                            .set(DEVICE_CACHE_PREFIX + deviceId, locationId, ttlMs, TimeUnit.MILLISECONDS));
+                    return null;
+                }
+            });
+            return Boolean.TRUE;
+        }, () -> Boolean.FALSE);
+        
+        if (!Boolean.TRUE.equals(stored)) {
+            // Newer locations recorded meanwhile win over the ones that failed
+            batch.forEach(pending::putIfAbsent);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (written.size() + batch.size() > capacity) {
+            written.values().removeIf(entry -> now - entry.writtenAt >= ttlMs - refreshMarginMs);
+        }
+        batch.forEach((deviceId, locationId) -> {
+            if (written.size() < capacity || written.containsKey(deviceId)) {
+                written.put(deviceId, new Written(locationId, now));
+            }
+        });
+        writes.increment(batch.size());
+        log.debug("Wrote {} device location mappings", batch.size());
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+}
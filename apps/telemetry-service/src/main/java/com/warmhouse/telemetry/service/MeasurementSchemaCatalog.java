@@ -0,0 +1,116 @@
+package com.warmhouse.telemetry.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warmhouse.telemetry.model.MeasurementSchema;
+import com.warmhouse.telemetry.model.QualityCode;
+import com.warmhouse.telemetry.model.TelemetryData;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Catalog of measurement type schemas used to validate and normalize readings at ingest
+ */
+@Service
+@RequiredArgsConstructor
+public class MeasurementSchemaCatalog {
+    
+    private static final Logger log = LoggerFactory.getLogger(MeasurementSchemaCatalog.class);
+    
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${telemetry.schema.catalog:classpath:measurement-schemas.json}")
+    private String catalogLocation;
+    
+    // Reject measurement types missing from the catalog instead of storing them with a unit field
+    @Value("${telemetry.schema.strict:false}")
+    private boolean strict;
+    
+    private Map<String, MeasurementSchema> schemas = Collections.emptyMap();
+    
+    @PostConstruct
+    void load() {
+        try (InputStream in = resourceLoader.getResource(catalogLocation).getInputStream()) {
+            List<MeasurementSchema> loaded = objectMapper.readValue(in, new TypeReference<List<MeasurementSchema>>() {});
+            Map<String, MeasurementSchema> byType = new HashMap<>();
+            for (MeasurementSchema schema : loaded) {
+                byType.put(schema.getMeasurementType().toLowerCase(Locale.ROOT), schema);
+            }
+            schemas = Collections.unmodifiableMap(byType);
+            log.info("Loaded {} measurement schemas from {}", schemas.size(), catalogLocation);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load measurement schema catalog from " + catalogLocation, e);
+        }
+    }
+    
+    public MeasurementSchema find(String measurementType) {
+        return measurementType != null ? schemas.get(measurementType.toLowerCase(Locale.ROOT)) : null;
+    }
+    
+    public boolean isCataloged(String measurementType) {
+        return find(measurementType) != null;
+    }
+    
+    /**
+     * Canonical unit of a cataloged type, null otherwise
+     */
+    public String unitFor(String measurementType) {
+        MeasurementSchema schema = find(measurementType);
+        return schema != null ? schema.getUnit() : null;
+    }
+    
+    public Collection<MeasurementSchema> getSchemas() {
+        List<MeasurementSchema> sorted = new ArrayList<>(schemas.values());
+        sorted.sort((a, b) -> a.getMeasurementType().compareTo(b.getMeasurementType()));
+        return sorted;
+    }
+    
+    /**
+     * Validate a reading against its schema and normalize type, unit, quality and value precision
+     */
+    public void conform(TelemetryData data) {
+        QualityCode quality = QualityCode.of(data.getQuality());
+        MeasurementSchema schema = find(data.getMeasurementType());
+        
+        if (schema == null) {
+            if (strict) {
+                throw new IllegalArgumentException("Unknown measurement type: " + data.getMeasurementType());
+            }
+            data.setQuality(quality.name());
+            return;
+        }
+        
+        if (!schema.acceptsUnit(data.getUnit())) {
+            throw new IllegalArgumentException(String.format("Unit '%s' is not valid for %s, expected '%s'",
+                    data.getUnit(), schema.getMeasurementType(), schema.getUnit()));
+        }
+        if (!schema.allowsQuality(quality)) {
+            throw new IllegalArgumentException(String.format("Quality '%s' is not allowed for %s",
+                    data.getQuality(), schema.getMeasurementType()));
+        }
+        if (data.getValue() == null || !schema.inRange(data.getValue())) {
+            throw new IllegalArgumentException(String.format("Value %s is outside [%s, %s] for %s",
+                    data.getValue(), schema.getMinValue(), schema.getMaxValue(), schema.getMeasurementType()));
+        }
+        
+        data.setMeasurementType(schema.getMeasurementType());
+        data.setUnit(schema.getUnit());
+        data.setQuality(quality.name());
+        data.setValue(schema.round(data.getValue()));
+    }
+}
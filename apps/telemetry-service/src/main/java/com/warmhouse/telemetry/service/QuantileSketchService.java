@@ -0,0 +1,230 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import com.warmhouse.telemetry.model.QuantileSketch;
+import com.warmhouse.telemetry.model.SketchBucket;
+import com.warmhouse.telemetry.model.TelemetryData;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Service maintaining per-bucket quantile sketches for percentile statistics
+ * Sketches are updated at ingest, flushed to InfluxDB periodically and merged on read
+ */
+@Service
+@RequiredArgsConstructor
+public class QuantileSketchService {
+    
+    private static final Logger log = LoggerFactory.getLogger(QuantileSketchService.class);
+    
+    private final InfluxDBService influxDBService;
+    
+    @Value("${telemetry.sketch.relative-accuracy:0.01}")
+    private double relativeAccuracy;
+    
+    @Value("${telemetry.sketch.max-bins:2048}")
+    private int maxBins;
+    
+    @Value("${telemetry.sketch.bucket-minutes:60}")
+    private long bucketMinutes;
+    
+    @Value("${telemetry.instance-id}")
+    private String instanceId;
+    
+    // Live buckets per device and measurement type, by bucket start
+    private final Map<SeriesKey, NavigableMap<Long, LiveBucket>> series = new ConcurrentHashMap<>();
+    
+    /**
+     * Record a stored reading into its bucket sketch
+     */
+    public void record(TelemetryData data) {
+        if (data.getValue() == null || data.getTimestamp() == null) {
+            return;
+        }
+        SeriesKey key = new SeriesKey(data.getDeviceId(), data.getMeasurementType());
+        long bucketStart = bucketStart(data.getTimestamp());
+        double value = data.getValue();
+        // compute() keeps the update atomic with eviction from the same series
+        series.compute(key, (k, buckets) -> {
+            NavigableMap<Long, LiveBucket> target = buckets != null ? buckets : new ConcurrentSkipListMap<>();
+            LiveBucket bucket = target.computeIfAbsent(bucketStart,
+                    start -> new LiveBucket(new QuantileSketch(relativeAccuracy, maxBins)));
+            synchronized (bucket) {
+                bucket.sketch.add(value);
+                bucket.dirty = true;
+            }
+            return target;
+        });
+    }
+    
+    /**
+     * Fill p50/p95/p99 on statistics by merging every bucket overlapping the period
+     */
+    public void applyPercentiles(TelemetryStatistics stats) {
+        if (stats == null || stats.getPeriodStart() == null || stats.getPeriodEnd() == null) {
+            return;
+        }
+        
+        Instant start = Instant.ofEpochMilli(bucketStart(stats.getPeriodStart()));
+        Instant end = stats.getPeriodEnd();
+        QuantileSketch merged = new QuantileSketch(relativeAccuracy, maxBins);
+        
+        // Local buckets are authoritative for their own generation, its persisted copy may lag behind
+        Map<Long, Long> localGenerations = new HashMap<>();
+        NavigableMap<Long, LiveBucket> buckets =
+                series.get(new SeriesKey(stats.getDeviceId(), stats.getMeasurementType()));
+        if (buckets != null && start.isBefore(end)) {
+            buckets.subMap(start.toEpochMilli(), end.toEpochMilli()).forEach((bucketStart, bucket) -> {
+                synchronized (bucket) {
+                    merged.merge(bucket.sketch);
+                }
+                localGenerations.put(bucketStart, bucket.generation);
+            });
+        }
+        
+        try {
+            List<SketchBucket> persisted = influxDBService.querySketchBuckets(
+                    stats.getDeviceId(), stats.getMeasurementType(), start, end);
+            for (SketchBucket bucket : persisted) {
+                Long localGeneration = localGenerations.get(bucket.getBucketStart().toEpochMilli());
+                boolean shadowedByLocal = instanceId.equals(bucket.getInstanceId())
+                        && localGeneration != null && localGeneration == bucket.getGeneration();
+                if (!shadowedByLocal) {
+                    merged.merge(bucket.getSketch());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Percentiles for device {} limited to local sketches: {}", stats.getDeviceId(), e.getMessage());
+        }
+        
+        if (!merged.isEmpty()) {
+            stats.setP50(merged.quantile(0.50));
+            stats.setP95(merged.quantile(0.95));
+            stats.setP99(merged.quantile(0.99));
+            stats.setPercentileRelativeError(relativeAccuracy);
+        }
+    }
+    
+    /**
+     * Persist dirty buckets and evict closed ones that are already persisted
+     * Each live bucket is written as its own generation row, so a late reading for an evicted bucket
+     * or a restart adds a row next to the earlier ones instead of overwriting them.
+     */
+    @Scheduled(fixedDelayString = "${telemetry.sketch.flush-interval:60000}",
+               initialDelayString = "${telemetry.sketch.flush-interval:60000}")
+    public void flush() {
+        long openFrom = bucketStart(Instant.now());
+        List<SketchBucket> dirty = new ArrayList<>();
+        List<LiveBucket> flushed = new ArrayList<>();
+        
+        series.forEach((key, buckets) -> buckets.forEach((bucketStart, bucket) -> {
+            synchronized (bucket) {
+                if (bucket.dirty) {
+                    QuantileSketch snapshot = QuantileSketch.fromBytes(bucket.sketch.toBytes());
+                    dirty.add(SketchBucket.builder()
+                            .deviceId(key.deviceId)
+                            .measurementType(key.measurementType)
+                            .bucketStart(Instant.ofEpochMilli(bucketStart))
+                            .instanceId(instanceId)
+                            .generation(bucket.generation)
+                            .sketch(snapshot)
+                            .build());
+                    bucket.dirty = false;
+                    flushed.add(bucket);
+                }
+            }
+        }));
+        
+        if (!dirty.isEmpty()) {
+            try {
+                influxDBService.writeSketchBuckets(dirty);
+            } catch (Exception e) {
+                log.warn("Failed to flush {} sketch buckets, will retry: {}", dirty.size(), e.getMessage());
+                flushed.forEach(bucket -> {
+                    synchronized (bucket) {
+                        bucket.dirty = true;
+                    }
+                });
+                return;
+            }
+        }
+        
+        for (SeriesKey key : series.keySet()) {
+            series.computeIfPresent(key, (k, buckets) -> {
+                buckets.headMap(openFrom).entrySet().removeIf(entry -> {
+                    synchronized (entry.getValue()) {
+                        return !entry.getValue().dirty;
+                    }
+                });
+                return buckets.isEmpty() ? null : buckets;
+            });
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+    
+    private long bucketStart(Instant timestamp) {
+        long bucketMillis = bucketMinutes * 60_000L;
+        return Math.floorDiv(timestamp.toEpochMilli(), bucketMillis) * bucketMillis;
+    }
+    
+    private static final class LiveBucket {
+        
+        private final QuantileSketch sketch;
+        // Tells this bucket's persisted row apart from rows of earlier generations of the same bucket
+        private final long generation = ThreadLocalRandom.current().nextLong(SketchBucket.MAX_GENERATIONS);
+        private boolean dirty;
+        
+        LiveBucket(QuantileSketch sketch) {
+            this.sketch = sketch;
+        }
+    }
+    
+    private static final class SeriesKey {
+        
+        private final UUID deviceId;
+        private final String measurementType;
+        
+        SeriesKey(UUID deviceId, String measurementType) {
+            this.deviceId = deviceId;
+            this.measurementType = measurementType;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SeriesKey)) {
+                return false;
+            }
+            SeriesKey other = (SeriesKey) o;
+            return deviceId.equals(other.deviceId) && measurementType.equals(other.measurementType);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(deviceId, measurementType);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.events.TelemetryEventPublisher;
+import com.warmhouse.telemetry.model.AlertRule;
+import com.warmhouse.telemetry.model.TelemetryData;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * In-stream rule engine evaluated on every stored reading
+ * Rules are compiled into an immutable snapshot swapped on reload; per-device state lives in
+ * primitive arrays indexed by rule slot, so each reading costs O(1) per applicable rule.
+ * Alert events are published only when a rule changes state for a device, after its state lock is released.
+ */
+@Service
+@RequiredArgsConstructor
+public class RuleEngineService {
+    
+    private static final Logger log = LoggerFactory.getLogger(RuleEngineService.class);
+    
+    private final TelemetryEventPublisher eventPublisher;
+    
+    @Value("${telemetry.rules.window-capacity:64}")
+    private int windowCapacity;
+    
+    private volatile RuleSet ruleSet = RuleSet.compile(List.of(), 0);
+    private final Map<UUID, DeviceState> states = new ConcurrentHashMap<>();
+    
+    /**
+     * Replace the active rule set, per-device state is carried over by rule ID
+     */
+    public void updateRules(List<AlertRule> rules) {
+        RuleSet next = RuleSet.compile(rules, ruleSet.version + 1);
+        ruleSet = next;
+        log.info("Rule engine loaded {} rules (version {})", next.rules.length, next.version);
+    }
+    
+    public List<AlertRule> getActiveRules() {
+        return List.of(ruleSet.rules);
+    }
+    
+    /**
+     * Evaluate a stored reading against all rules for its device and measurement type
+     */
+    public void evaluate(TelemetryData data) {
+        RuleSet rules = ruleSet;
+        int[] global = rules.global.get(data.getMeasurementType());
+        Map<String, int[]> perDevice = rules.byDevice.get(data.getDeviceId());
+        int[] specific = perDevice != null ? perDevice.get(data.getMeasurementType()) : null;
+        if (global == null && specific == null) {
+            return;
+        }
+        
+        DeviceState state = states.computeIfAbsent(data.getDeviceId(), DeviceState::new);
+        // Value rules run on event time, missing data is judged by arrival so backfills and skewed clocks count
+        long now = data.getTimestamp().toEpochMilli();
+        long arrivedAt = System.currentTimeMillis();
+        double value = data.getValue();
+        
+        List<PendingAlert> alerts = new ArrayList<>(0);
+        synchronized (state) {
+            state.ensure(rules, windowCapacity);
+            state.houseId = data.getHouseId();
+            state.locationId = data.getLocationId();
+            if (global != null) {
+                for (int slot : global) {
+                    evaluateSlot(rules.rules[slot], slot, state, now, arrivedAt, value, alerts);
+                }
+            }
+            if (specific != null) {
+                for (int slot : specific) {
+                    evaluateSlot(rules.rules[slot], slot, state, now, arrivedAt, value, alerts);
+                }
+            }
+        }
+        alerts.forEach(this::publish);
+    }
+    
+    /**
+     * Raise missing-data alerts for devices that stopped reporting
+     */
+    @Scheduled(fixedDelayString = "${telemetry.rules.sweep-interval:5000}")
+    public void sweepMissingData() {
+        RuleSet rules = ruleSet;
+        if (rules.missingDataSlots.length == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        
+        List<PendingAlert> alerts = new ArrayList<>();
+        states.values().forEach(state -> {
+            synchronized (state) {
+                state.ensure(rules, windowCapacity);
+                for (int slot : rules.missingDataSlots) {
+                    AlertRule rule = rules.rules[slot];
+                    long lastArrival = state.lastArrival[slot];
+                    if (lastArrival > 0 && !state.active[slot]
+                            && now - lastArrival > rule.getTimeoutSeconds() * 1000L) {
+                        alerts.add(transition(rule, state, slot, true, state.lastValue[slot], now));
+                    }
+                }
+            }
+        });
+        alerts.forEach(this::publish);
+    }
+    
+    /**
+     * Drop state for a device, e.g. after deletion
+     */
+    public void forgetDevice(UUID deviceId) {
+        states.remove(deviceId);
+    }
+    
+    /**
+     * Drop state for the matching devices, e.g. when another instance takes them over
+     */
+    public int releaseDevices(Predicate<UUID> release) {
+        int before = states.size();
+        states.keySet().removeIf(release);
+        return before - states.size();
+    }
+    
+    private void evaluateSlot(AlertRule rule, int slot, DeviceState state, long now, long arrivedAt, double value,
+                              List<PendingAlert> alerts) {
+        boolean active = state.active[slot];
+        state.lastArrival[slot] = arrivedAt;
+        state.lastValue[slot] = value;
+        
+        switch (rule.getType()) {
+            case THRESHOLD_ABOVE:
+                if (!active && value > rule.getThreshold()) {
+                    alerts.add(transition(rule, state, slot, true, value, now));
+                } else if (active && value < rule.effectiveClearThreshold()) {
+                    alerts.add(transition(rule, state, slot, false, value, now));
+                }
+                break;
+                
+            case THRESHOLD_BELOW:
+                if (!active && value < rule.getThreshold()) {
+                    alerts.add(transition(rule, state, slot, true, value, now));
+                } else if (active && value > rule.effectiveClearThreshold()) {
+                    alerts.add(transition(rule, state, slot, false, value, now));
+                }
+                break;
+                
+            case RATE_OF_CHANGE:
+                double change = state.pushWindow(slot, now, value, rule.getWindowSeconds() * 1000L);
+                if (!active && Math.abs(change) >= rule.getThreshold()) {
+                    alerts.add(transition(rule, state, slot, true, value, now));
+                } else if (active && Math.abs(change) < rule.effectiveClearThreshold()) {
+                    alerts.add(transition(rule, state, slot, false, value, now));
+                }
+                break;
+                
+            case MISSING_DATA:
+                if (active) {
+                    alerts.add(transition(rule, state, slot, false, value, now));
+                }
+                break;
+                
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Change a rule's state for the device; the alert is published by the caller once the state lock is released
+     */
+    private PendingAlert transition(AlertRule rule, DeviceState state, int slot, boolean raised, double value, long at) {
+        state.active[slot] = raised;
+        return new PendingAlert(rule, state.deviceId, state.houseId, state.locationId, raised, value, at);
+    }
+    
+    private void publish(PendingAlert alert) {
+        log.info("Alert {} for rule {} on device {} (value {})",
+                alert.raised ? "raised" : "cleared", alert.rule.getRuleId(), alert.deviceId, alert.value);
+        eventPublisher.publishAlert(alert.rule, alert.deviceId, alert.houseId, alert.locationId,
+                alert.raised, alert.value, alert.at);
+    }
+    
+    private static final class PendingAlert {
+        
+        private final AlertRule rule;
+        private final UUID deviceId;
+        private final UUID houseId;
+        private final UUID locationId;
+        private final boolean raised;
+        private final double value;
+        private final long at;
+        
+        PendingAlert(AlertRule rule, UUID deviceId, UUID houseId, UUID locationId, boolean raised, double value, long at) {
+            this.rule = rule;
+            this.deviceId = deviceId;
+            this.houseId = houseId;
+            this.locationId = locationId;
+            this.raised = raised;
+            this.value = value;
+            this.at = at;
+        }
+    }
+    
+    /**
+     * Immutable compiled rule snapshot
+     */
+    private static final class RuleSet {
+        
+        private final long version;
+        private final AlertRule[] rules;
+        private final Map<String, int[]> global;
+        private final Map<UUID, Map<String, int[]>> byDevice;
+        private final int[] missingDataSlots;
+        
+        private RuleSet(long version, AlertRule[] rules, Map<String, int[]> global,
+                        Map<UUID, Map<String, int[]>> byDevice, int[] missingDataSlots) {
+            this.version = version;
+            this.rules = rules;
+            this.global = global;
+            this.byDevice = byDevice;
+            this.missingDataSlots = missingDataSlots;
+        }
+        
+        static RuleSet compile(List<AlertRule> source, long version) {
+            List<AlertRule> enabled = source.stream()
+                    .filter(AlertRule::isEnabled)
+                    .filter(RuleSet::isWellFormed)
+                    .toList();
+            AlertRule[] rules = enabled.toArray(new AlertRule[0]);
+            
+            Map<String, List<Integer>> global = new HashMap<>();
+            Map<UUID, Map<String, List<Integer>>> byDevice = new HashMap<>();
+            List<Integer> missing = new ArrayList<>();
+            for (int slot = 0; slot < rules.length; slot++) {
+                AlertRule rule = rules[slot];
+                Map<String, List<Integer>> target = rule.getDeviceId() == null
+                        ? global
+                        : byDevice.computeIfAbsent(rule.getDeviceId(), k -> new HashMap<>());
+                target.computeIfAbsent(rule.getMeasurementType(), k -> new ArrayList<>()).add(slot);
+                if (rule.getType() == AlertRule.Type.MISSING_DATA) {
+                    missing.add(slot);
+                }
+            }
+            
+            Map<UUID, Map<String, int[]>> deviceSlots = new HashMap<>();
+            byDevice.forEach((deviceId, types) -> deviceSlots.put(deviceId, toSlots(types)));
+            return new RuleSet(version, rules, toSlots(global), deviceSlots,
+                    missing.stream().mapToInt(Integer::intValue).toArray());
+        }
+        
+        private static Map<String, int[]> toSlots(Map<String, List<Integer>> source) {
+            Map<String, int[]> result = new HashMap<>();
+            source.forEach((type, slots) -> result.put(type, slots.stream().mapToInt(Integer::intValue).toArray()));
+            return result;
+        }
+        
+        private static boolean isWellFormed(AlertRule rule) {
+            if (rule.getType() == null || rule.getMeasurementType() == null) {
+                return false;
+            }
+            switch (rule.getType()) {
+                case THRESHOLD_ABOVE:
+                case THRESHOLD_BELOW:
+                    return rule.getThreshold() != null;
+                case RATE_OF_CHANGE:
+                    return rule.getThreshold() != null && rule.getWindowSeconds() != null && rule.getWindowSeconds() > 0;
+                case MISSING_DATA:
+                    return rule.getTimeoutSeconds() != null && rule.getTimeoutSeconds() > 0;
+                default:
+                    return false;
+            }
+        }
+    }
+    
+    /**
+     * Per-device rule state in primitive arrays indexed by rule slot
+     */
+    private static final class DeviceState {
+        
+        private final UUID deviceId;
+        private UUID houseId;
+        private UUID locationId;
+        
+        private long version = -1;
+        private String[] ruleIds = new String[0];
+        private boolean[] active = new boolean[0];
+        // Arrival time of the last reading, for missing-data rules
+        private long[] lastArrival = new long[0];
+        private double[] lastValue = new double[0];
+        
+        // Sliding windows for rate-of-change rules (null for other slots)
+        private long[][] windowTimes = new long[0][];
+        private double[][] windowValues = new double[0][];
+        private int[] windowHead = new int[0];
+        private int[] windowSize = new int[0];
+        
+        DeviceState(UUID deviceId) {
+            this.deviceId = deviceId;
+        }
+        
+        void ensure(RuleSet rules, int windowCapacity) {
+            if (version == rules.version) {
+                return;
+            }
+            Map<String, Integer> previous = new HashMap<>();
+            for (int i = 0; i < ruleIds.length; i++) {
+                previous.put(ruleIds[i], i);
+            }
+            
+            int n = rules.rules.length;
+            String[] newIds = new String[n];
+            boolean[] newActive = new boolean[n];
+            long[] newLastArrival = new long[n];
+            double[] newLastValue = new double[n];
+            long[][] newTimes = new long[n][];
+            double[][] newValues = new double[n][];
+            int[] newHead = new int[n];
+            int[] newSize = new int[n];
+            
+            for (int slot = 0; slot < n; slot++) {
+                AlertRule rule = rules.rules[slot];
+                newIds[slot] = rule.getRuleId();
+                Integer old = previous.get(rule.getRuleId());
+                if (old != null) {
+                    newActive[slot] = active[old];
+                    newLastArrival[slot] = lastArrival[old];
+                    newLastValue[slot] = lastValue[old];
+                }
+                if (rule.getType() == AlertRule.Type.RATE_OF_CHANGE) {
+                    if (old != null && windowTimes[old] != null) {
+                        newTimes[slot] = windowTimes[old];
+                        newValues[slot] = windowValues[old];
+                        newHead[slot] = windowHead[old];
+                        newSize[slot] = windowSize[old];
+                    } else {
+                        newTimes[slot] = new long[windowCapacity];
+                        newValues[slot] = new double[windowCapacity];
+                    }
+                }
+            }
+            
+            ruleIds = newIds;
+            active = newActive;
+            lastArrival = newLastArrival;
+            lastValue = newLastValue;
+            windowTimes = newTimes;
+            windowValues = newValues;
+            windowHead = newHead;
+            windowSize = newSize;
+            version = rules.version;
+        }
+        
+        /**
+         * Append to the slot's ring buffer and return the change over the window
+         * The anchor is the newest reading at or before the window start (or the oldest one inside it);
+         * when the anchor is older than the window the change is scaled down to the window length
+         */
+        double pushWindow(int slot, long now, double value, long windowMillis) {
+            long[] times = windowTimes[slot];
+            double[] values = windowValues[slot];
+            int capacity = times.length;
+            int head = windowHead[slot];
+            int size = windowSize[slot];
+            long windowStart = now - windowMillis;
+            
+            while (size > 1 && times[(head + 1) % capacity] <= windowStart) {
+                head = (head + 1) % capacity;
+                size--;
+            }
+            if (size == capacity) {
+                // Full ring: overwrite the oldest entry
+                head = (head + 1) % capacity;
+                size--;
+            }
+            int tail = (head + size) % capacity;
+            times[tail] = now;
+            values[tail] = value;
+            size++;
+            
+            windowHead[slot] = head;
+            windowSize[slot] = size;
+            
+            long elapsed = now - times[head];
+            double change = value - values[head];
+            return elapsed <= windowMillis ? change : change * windowMillis / elapsed;
+        }
+    }
+}
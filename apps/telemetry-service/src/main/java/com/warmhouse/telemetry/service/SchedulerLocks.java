@@ -0,0 +1,62 @@
+package com.warmhouse.telemetry.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Redis leases that let one instance at a time run a scheduled job
+ * The lock holds the instance id; renewal and release compare it inside a script, so an instance whose
+ * lease ran out while it worked can neither extend nor delete the lock another instance took over since.
+ */
+@Service
+@RequiredArgsConstructor
+public class SchedulerLocks {
+    
+    // KEYS: lock; ARGV: holder, lease ms
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end
+            return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            """, Long.class);
+    
+    // KEYS: lock; ARGV: holder
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end
+            return redis.call('DEL', KEYS[1])
+            """, Long.class);
+    
+    private final StringRedisTemplate redisTemplate;
+    
+    @Value("${telemetry.instance-id}")
+    private String instanceId;
+    
+    /**
+     * Take the lock for this instance unless another instance holds it
+     */
+    public boolean acquire(String key, long leaseMs) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(key, instanceId, Duration.ofMillis(leaseMs)));
+    }
+    
+    /**
+     * Extend the lease if this instance still holds the lock
+     * @return false once the lock expired or passed to another instance
+     */
+    public boolean renew(String key, long leaseMs) {
+        Long renewed = redisTemplate.execute(RENEW, List.of(key), instanceId, String.valueOf(leaseMs));
+        return renewed != null && renewed == 1L;
+    }
+    
+    /**
+     * Delete the lock if this instance still holds it
+     */
+    public void release(String key) {
+        redisTemplate.execute(RELEASE, List.of(key), instanceId);
+    }
+}
@@ -0,0 +1,220 @@
+package com.warmhouse.telemetry.service;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sensor correlation data in Redis
+ * Each sensor is a hash with one-letter fields (plain strings, no serializer metadata) and is listed in
+ * index sets by device, location and type. Scripts keep the hash and its index entries consistent, so
+ * lookups and deletions by device or location read only the index and the sensors it names instead of
+ * scanning every correlation key. Index keys are derived inside the scripts, which needs a standalone
+ * (not clustered) Redis, as deployed.
+ */
+@Service
+@RequiredArgsConstructor
+public class SensorCorrelationStore {
+    
+    private static final Logger log = LoggerFactory.getLogger(SensorCorrelationStore.class);
+    
+    static final String KEY_PREFIX = "sensor_correlation:";
+    static final String INDEX_PREFIX = KEY_PREFIX + "idx:";
+    static final String BY_DEVICE = "device:";
+    static final String BY_LOCATION = "location:";
+    static final String BY_TYPE = "type:";
+    private static final Duration TTL = Duration.ofHours(24);
+    
+    // Field names in the sensor hash
+    static final Map<String, String> FIELDS = Map.of(
+            "n", "name",
+            "t", "type",
+            "l", "location",
+            "d", "device_id",
+            "c", "created_at",
+            "u", "updated_at");
+    
+    // Shared by the scripts: drop a sensor from the indexes named by its hash
+    private static final String UNINDEX = """
+            local function unindex(key, prefix, id)
+              if redis.call('TYPE', key).ok ~= 'hash' then return end
+              local old = redis.call('HMGET', key, 'd', 'l', 't')
+              local kinds = {'device:', 'location:', 'type:'}
+              for i = 1, 3 do
+                if old[i] then redis.call('SREM', prefix .. kinds[i] .. old[i], id) end
+              end
+            end
+            """;
+    
+    // KEYS: sensor hash; ARGV: index prefix, ttl seconds, only if exists, name, type, location, device, now, id
+    private static final RedisScript<Long> UPSERT = new DefaultRedisScript<>("""
+            local key, prefix, ttl, id = KEYS[1], ARGV[1], tonumber(ARGV[2]), ARGV[9]
+            local kind = redis.call('TYPE', key).ok
+            if kind == 'none' and ARGV[3] == '1' then return 0 end
+            -- Entries from before the hash layout were JSON strings
+            if kind ~= 'hash' and kind ~= 'none' then redis.call('DEL', key) end
+            local old = redis.call('HMGET', key, 'd', 'l', 't')
+            local new = {ARGV[7], ARGV[6], ARGV[5]}
+            local fields = {'d', 'l', 't'}
+            local kinds = {'device:', 'location:', 'type:'}
+            for i = 1, 3 do
+              local value = new[i]
+              if value == '' then value = old[i] end
+              if old[i] and old[i] ~= value then redis.call('SREM', prefix .. kinds[i] .. old[i], id) end
+              if value then
+                redis.call('HSET', key, fields[i], value)
+                redis.call('SADD', prefix .. kinds[i] .. value, id)
+                redis.call('EXPIRE', prefix .. kinds[i] .. value, ttl)
+              end
+            end
+            if ARGV[4] ~= '' then redis.call('HSET', key, 'n', ARGV[4]) end
+            redis.call('HSETNX', key, 'c', ARGV[8])
+            redis.call('HSET', key, 'u', ARGV[8])
+            redis.call('EXPIRE', key, ttl)
+            return 1
+            """, Long.class);
+    
+    // KEYS: sensor hash; ARGV: index prefix, id
+    private static final RedisScript<Long> DELETE = new DefaultRedisScript<>(UNINDEX + """
+            unindex(KEYS[1], ARGV[1], ARGV[2])
+            return redis.call('DEL', KEYS[1])
+            """, Long.class);
+    
+    // KEYS: index set; ARGV: index prefix, sensor key prefix
+    private static final RedisScript<Long> DELETE_INDEXED = new DefaultRedisScript<>(UNINDEX + """
+            local ids = redis.call('SMEMBERS', KEYS[1])
+            for _, id in ipairs(ids) do
+              unindex(ARGV[2] .. id, ARGV[1], id)
+              redis.call('DEL', ARGV[2] .. id)
+            end
+            redis.call('DEL', KEYS[1])
+            return #ids
+            """, Long.class);
+    
+    private final StringRedisTemplate redisTemplate;
+    
+    /**
+     * Store a created sensor; null fields are left out
+     */
+    public void save(String sensorId, String name, String type, String location, UUID deviceId) {
+        upsert(sensorId, name, type, location, deviceId, false);
+    }
+    
+    /**
+     * Update fields of a known sensor; null fields keep their value
+     *
+     * @return false if the sensor is not stored (expired or never created)
+     */
+    public boolean update(String sensorId, String name, String type, String location, UUID deviceId) {
+        return upsert(sensorId, name, type, location, deviceId, true);
+    }
+    
+    public boolean delete(String sensorId) {
+        Long deleted = redisTemplate.execute(DELETE, List.of(KEY_PREFIX + sensorId), INDEX_PREFIX, sensorId);
+        return deleted != null && deleted > 0;
+    }
+    
+    /**
+     * Remove every sensor correlated with a device
+     *
+     * @return number of sensors removed
+     */
+    public long deleteByDevice(UUID deviceId) {
+        Long deleted = redisTemplate.execute(DELETE_INDEXED, List.of(INDEX_PREFIX + BY_DEVICE + deviceId),
+                INDEX_PREFIX, KEY_PREFIX);
+        return deleted != null ? deleted : 0;
+    }
+    
+    public List<Map<String, Object>> findByDevice(UUID deviceId) {
+        return findIndexed(BY_DEVICE + deviceId);
+    }
+    
+    public List<Map<String, Object>> findByLocation(String location) {
+        return findIndexed(BY_LOCATION + location);
+    }
+    
+    public List<Map<String, Object>> findByType(String type) {
+        return findIndexed(BY_TYPE + type);
+    }
+    
+    private boolean upsert(String sensorId, String name, String type, String location, UUID deviceId,
+                           boolean onlyIfExists) {
+        Long stored = redisTemplate.execute(UPSERT, List.of(KEY_PREFIX + sensorId),
+                INDEX_PREFIX, String.valueOf(TTL.toSeconds()), onlyIfExists ? "1" : "0",
+                orEmpty(name), orEmpty(type), orEmpty(location), deviceId != null ? deviceId.toString() : "",
+                String.valueOf(System.currentTimeMillis()), sensorId);
+        return stored != null && stored > 0;
+    }
+    
+    /**
+     * Sensors listed in an index set, read in one pipeline
+     * Members whose hash has expired are skipped; the index set itself expires once no sensor in it is written.
+     */
+    private List<Map<String, Object>> findIndexed(String index) {
+        String indexKey = INDEX_PREFIX + index;
+        Set<String> ids = redisTemplate.opsForSet().members(indexKey);
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        List<String> ordered = new ArrayList<>(ids);
+        List<Object> hashes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String id : ordered) {
+                    ops.opsForHash().entries(KEY_PREFIX + id);
+                }
+                return null;
+            }
+        });
+        
+        List<Map<String, Object>> sensors = new ArrayList<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            Map<?, ?> hash = (Map<?, ?>) hashes.get(i);
+            if (hash != null && !hash.isEmpty()) {
+                sensors.add(decode(ordered.get(i), hash));
+            }
+        }
+        log.debug("Index {} lists {} sensors, {} still stored", index, ordered.size(), sensors.size());
+        return sensors;
+    }
+    
+    /**
+     * Expand a sensor hash into named fields
+     */
+    static Map<String, Object> decode(String sensorId, Map<?, ?> hash) {
+        Map<String, Object> sensor = new LinkedHashMap<>();
+        sensor.put("sensor_id", sensorId);
+        for (String field : List.of("n", "t", "l", "d", "c", "u")) {
+            Object value = hash.get(field);
+            if (value == null) {
+                continue;
+            }
+            if ("c".equals(field) || "u".equals(field)) {
+                sensor.put(FIELDS.get(field), Long.parseLong(value.toString()));
+            } else {
+                sensor.put(FIELDS.get(field), value.toString());
+            }
+        }
+        return sensor;
+    }
+    
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,240 @@
+package com.warmhouse.telemetry.service;
+
+import com.influxdb.client.domain.DeletePredicateRequest;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves houses to their owner on the current shard ring after shards were added or removed
+ * Every shard is scanned for houses it holds but no longer owns. Their points are copied
+ * tier by tier in time chunks to the owner, then deleted from the old shard. Copies are
+ * idempotent, so an interrupted migration can simply be started again.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShardMigrationService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ShardMigrationService.class);
+    
+    private static final int CHUNKS_PER_RETENTION = 30;
+    private static final Set<String> SYSTEM_COLUMNS = Set.of(
+            "result", "table", "_start", "_stop", "_time", "_value", "_field", "_measurement");
+    
+    private final InfluxShardRouter shardRouter;
+    private final TieredStorageService tieredStorage;
+    
+    @Value("${influxdb.org}")
+    private String org;
+    
+    @Value("${influxdb.shard-migration-batch-size:5000}")
+    private int batchSize;
+    
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private volatile String state = "IDLE";
+    private volatile boolean dryRun;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String lastError;
+    private final AtomicLong housesPlanned = new AtomicLong();
+    private final AtomicLong housesMoved = new AtomicLong();
+    private final AtomicLong pointsCopied = new AtomicLong();
+    private final Map<String, Long> plan = new LinkedHashMap<>();
+    
+    /**
+     * Start a migration in the background, returns false if one is already running
+     */
+    public synchronized boolean start(boolean dryRun) {
+        if ("RUNNING".equals(state)) {
+            return false;
+        }
+        this.state = "RUNNING";
+        this.dryRun = dryRun;
+        this.startedAt = Instant.now();
+        this.finishedAt = null;
+        this.lastError = null;
+        housesPlanned.set(0);
+        housesMoved.set(0);
+        pointsCopied.set(0);
+        synchronized (plan) {
+            plan.clear();
+        }
+        
+        executor.submit(this::run);
+        return true;
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        status.put("dry_run", dryRun);
+        status.put("started_at", startedAt);
+        status.put("finished_at", finishedAt);
+        status.put("houses_planned", housesPlanned.get());
+        status.put("houses_moved", housesMoved.get());
+        status.put("points_copied", pointsCopied.get());
+        synchronized (plan) {
+            status.put("plan", new LinkedHashMap<>(plan));
+        }
+        if (lastError != null) {
+            status.put("error", lastError);
+        }
+        return status;
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private void run() {
+        try {
+            for (InfluxShard source : shardRouter.getShards()) {
+                for (UUID houseId : listHouses(source)) {
+                    InfluxShard owner = shardRouter.shardFor(houseId);
+                    if (owner == source) {
+                        continue;
+                    }
+                    housesPlanned.incrementAndGet();
+                    synchronized (plan) {
+                        plan.merge(source.getName() + "->" + owner.getName(), 1L, Long::sum);
+                    }
+                    if (!dryRun) {
+                        moveHouse(houseId, source, owner);
+                        housesMoved.incrementAndGet();
+                    }
+                }
+            }
+            state = "COMPLETED";
+            log.info("Shard migration {}: {} houses planned, {} moved, {} points copied",
+                    dryRun ? "dry run finished" : "completed", housesPlanned.get(), housesMoved.get(), pointsCopied.get());
+        } catch (Exception e) {
+            state = "FAILED";
+            lastError = e.getMessage();
+            log.error("Shard migration failed: {}", e.getMessage(), e);
+        } finally {
+            finishedAt = Instant.now();
+        }
+    }
+    
+    private Set<UUID> listHouses(InfluxShard shard) {
+        Set<UUID> houses = new LinkedHashSet<>();
+        for (TieredStorageService.Tier tier : tieredStorage.getTiers()) {
+            String flux = String.format(
+                "import \"influxdata/influxdb/schema\"\n" +
+                "schema.tagValues(bucket: \"%s\", tag: \"house_id\", start: -%ds)",
+                tier.getBucket(), tier.getRetention().getSeconds());
+            for (FluxTable table : shard.getQueryApi().query(flux, org)) {
+                for (FluxRecord record : table.getRecords()) {
+                    try {
+                        houses.add(UUID.fromString(String.valueOf(record.getValue())));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Skipping malformed house_id tag on shard {}: {}", shard.getName(), record.getValue());
+                    }
+                }
+            }
+        }
+        return houses;
+    }
+    
+    private void moveHouse(UUID houseId, InfluxShard source, InfluxShard target) {
+        Instant now = Instant.now();
+        for (TieredStorageService.Tier tier : tieredStorage.getTiers()) {
+            Instant oldest = now.minus(tier.getRetention());
+            Duration chunk = tier.getRetention().dividedBy(CHUNKS_PER_RETENTION);
+            for (Instant start = oldest; start.isBefore(now); start = start.plus(chunk)) {
+                Instant stop = start.plus(chunk).isAfter(now) ? now.plusSeconds(1) : start.plus(chunk);
+                copyChunk(houseId, tier.getBucket(), source, target, start, stop);
+            }
+            
+            DeletePredicateRequest delete = new DeletePredicateRequest()
+                    .start(OffsetDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC))
+                    .stop(OffsetDateTime.ofInstant(now.plusSeconds(1), ZoneOffset.UTC))
+                    .predicate(String.format("_measurement=\"%s\" AND house_id=\"%s\"",
+                            TieredStorageService.MEASUREMENT_NAME, houseId));
+            source.getDeleteApi().delete(delete, tier.getBucket(), org);
+        }
+        log.info("Moved house {} from shard {} to {}", houseId, source.getName(), target.getName());
+    }
+    
+    private void copyChunk(UUID houseId, String bucket, InfluxShard source, InfluxShard target,
+                           Instant start, Instant stop) {
+        String flux = String.format(
+            "from(bucket: \"%s\")" +
+            " |> range(start: %s, stop: %s)" +
+            " |> filter(fn: (r) => r._measurement == \"%s\" and r.house_id == \"%s\")",
+            bucket, start, stop, TieredStorageService.MEASUREMENT_NAME, houseId);
+        
+        List<Point> batch = new ArrayList<>(batchSize);
+        for (FluxTable table : source.getQueryApi().query(flux, org)) {
+            for (FluxRecord record : table.getRecords()) {
+                Point point = toPoint(record);
+                if (point == null) {
+                    continue;
+                }
+                batch.add(point);
+                if (batch.size() >= batchSize) {
+                    target.getWriteApi().writePoints(bucket, org, batch);
+                    pointsCopied.addAndGet(batch.size());
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            target.getWriteApi().writePoints(bucket, org, batch);
+            pointsCopied.addAndGet(batch.size());
+        }
+    }
+    
+    private static Point toPoint(FluxRecord record) {
+        Object value = record.getValue();
+        if (record.getTime() == null || record.getField() == null || value == null) {
+            return null;
+        }
+        
+        Point point = Point.measurement(record.getMeasurement()).time(record.getTime(), WritePrecision.NS);
+        record.getValues().forEach((column, tag) -> {
+            if (!SYSTEM_COLUMNS.contains(column) && tag instanceof String) {
+                point.addTag(column, (String) tag);
+            }
+        });
+        
+        if (value instanceof Double || value instanceof Float) {
+            point.addField(record.getField(), ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            point.addField(record.getField(), ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            point.addField(record.getField(), (Boolean) value);
+        } else {
+            point.addField(record.getField(), value.toString());
+        }
+        return point;
+    }
+}
@@ -0,0 +1,285 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.model.TelemetryData;
+import com.warmhouse.telemetry.util.HyperLogLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Guards InfluxDB series cardinality against user-supplied tags
+ * Distinct values per tag key are estimated with HyperLogLog. Once a key exceeds its budget
+ * its values are demoted to fields (prefixed with {@value #DEMOTED_FIELD_PREFIX}) or the
+ * reading is rejected, depending on the configured policy. Estimates are per instance.
+ * Devices are ranked by the distinct values they add to a key from its first value on, so the
+ * report names the devices that used up the budget rather than those writing after it tripped.
+ */
+@Service
+@RequiredArgsConstructor
+public class TagCardinalityGuard {
+    
+    private static final Logger log = LoggerFactory.getLogger(TagCardinalityGuard.class);
+    
+    public enum Policy {
+        DEMOTE,
+        REJECT
+    }
+    
+    public static final String DEMOTED_FIELD_PREFIX = "tag_";
+    
+    /** Report key for tag keys seen after the tracking limit was reached */
+    public static final String UNTRACKED_KEY = "*";
+    
+    private static final int MAX_OFFENDING_DEVICES = 50;
+    
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${telemetry.tags.max-values-per-key:1000}")
+    private long maxValuesPerKey;
+    
+    @Value("${telemetry.tags.policy:DEMOTE}")
+    private Policy policy;
+    
+    @Value("${telemetry.tags.max-tracked-keys:256}")
+    private int maxTrackedKeys;
+    
+    @Value("${telemetry.tags.hll-precision:12}")
+    private int precision;
+    
+    private final ConcurrentMap<String, KeyState> keys = new ConcurrentHashMap<>();
+    private final HyperLogLog metadataKeys = new HyperLogLog(10);
+    private KeyState untracked;
+    private Counter demotedCounter;
+    private Counter rejectedCounter;
+    
+    @PostConstruct
+    void init() {
+        demotedCounter = Counter.builder("telemetry.tags.demoted")
+                .description("Tag values written as fields because their key exceeded its cardinality budget")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("telemetry.tags.rejected")
+                .description("Readings rejected because a tag key exceeded its cardinality budget")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.tags.keys.over_budget", keys, k -> k.values().stream().filter(s -> s.overBudget).count())
+                .description("Tag keys currently over their cardinality budget")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.metadata.keys", metadataKeys, HyperLogLog::estimate)
+                .description("Estimated distinct metadata keys written as fields")
+                .register(meterRegistry);
+        
+        untracked = new KeyState(UNTRACKED_KEY, precision);
+        untracked.overBudget = true;
+    }
+    
+    /**
+     * Apply the cardinality policy to the tags of a reading
+     * Over-budget tags are moved into metadata under DEMOTE, or cause an
+     * {@link IllegalArgumentException} under REJECT
+     */
+    public void apply(TelemetryData data) {
+        if (data.getMetadata() != null) {
+            data.getMetadata().keySet().forEach(metadataKeys::add);
+        }
+        
+        Map<String, String> tags = data.getTags();
+        if (tags == null || tags.isEmpty()) {
+            return;
+        }
+        
+        Map<String, String> demoted = null;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            KeyState state = stateFor(tag.getKey());
+            if (!state.offer(tag.getValue(), data.getDeviceId(), maxValuesPerKey)) {
+                continue;
+            }
+            
+            if (policy == Policy.REJECT) {
+                state.rejected.incrementAndGet();
+                rejectedCounter.increment();
+                throw new IllegalArgumentException("Tag '" + tag.getKey()
+                        + "' exceeds cardinality budget of " + maxValuesPerKey + " distinct values");
+            }
+            
+            if (demoted == null) {
+                demoted = new HashMap<>();
+            }
+            demoted.put(tag.getKey(), tag.getValue());
+        }
+        
+        if (demoted == null) {
+            return;
+        }
+        
+        Map<String, String> admitted = new HashMap<>(tags);
+        Map<String, Object> metadata = data.getMetadata() != null ? new HashMap<>(data.getMetadata()) : new HashMap<>();
+        for (Map.Entry<String, String> tag : demoted.entrySet()) {
+            admitted.remove(tag.getKey());
+            metadata.put(DEMOTED_FIELD_PREFIX + tag.getKey(), tag.getValue());
+            stateFor(tag.getKey()).demoted.incrementAndGet();
+        }
+        demotedCounter.increment(demoted.size());
+        data.setTags(admitted);
+        data.setMetadata(metadata);
+    }
+    
+    /**
+     * Cardinality report for all tracked tag keys, most distinct values first
+     */
+    public Map<String, Object> getReport(boolean overBudgetOnly) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        List<KeyState> states = new ArrayList<>(keys.values());
+        if (untracked.demoted.get() > 0 || untracked.rejected.get() > 0) {
+            states.add(untracked);
+        }
+        states.sort((a, b) -> Long.compare(b.hll.estimate(), a.hll.estimate()));
+        
+        for (KeyState state : states) {
+            if (overBudgetOnly && !state.overBudget) {
+                continue;
+            }
+            entries.add(state.toReport());
+        }
+        
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("policy", policy.name());
+        report.put("max_values_per_key", maxValuesPerKey);
+        report.put("tracked_keys", keys.size());
+        report.put("max_tracked_keys", maxTrackedKeys);
+        report.put("metadata_keys_estimate", metadataKeys.estimate());
+        report.put("keys", entries);
+        return report;
+    }
+    
+    /**
+     * Forget the estimate and offenders for a tag key, e.g. after its producers were fixed
+     */
+    public boolean reset(String key) {
+        KeyState state = UNTRACKED_KEY.equals(key) ? untracked : keys.get(key);
+        if (state == null) {
+            return false;
+        }
+        state.reset(precision);
+        log.info("Reset cardinality tracking for tag key: {}", key);
+        return true;
+    }
+    
+    private KeyState stateFor(String key) {
+        KeyState state = keys.get(key);
+        if (state != null) {
+            return state;
+        }
+        if (keys.size() >= maxTrackedKeys) {
+            return untracked;
+        }
+        return keys.computeIfAbsent(key, k -> {
+            KeyState created = new KeyState(k, precision);
+            Gauge.builder("telemetry.tags.cardinality", created, s -> s.hll.estimate())
+                    .description("Estimated distinct values per tag key")
+                    .tag("tag_key", k)
+                    .register(meterRegistry);
+            return created;
+        });
+    }
+    
+    private static final class KeyState {
+        private final String key;
+        private volatile HyperLogLog hll;
+        private volatile boolean overBudget;
+        // Space-Saving top list: new distinct values per device, at most MAX_OFFENDING_DEVICES counters
+        private final Map<UUID, long[]> contributors = new HashMap<>();
+        private final AtomicLong demoted = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        
+        KeyState(String key, int precision) {
+            this.key = key;
+            this.hll = new HyperLogLog(precision);
+        }
+        
+        /**
+         * Returns true when the key is over budget
+         * A value that changes the sketch is new, and is credited to the device that sent it.
+         */
+        boolean offer(String value, UUID deviceId, long budget) {
+            if (value == null || !hll.add(value)) {
+                return overBudget;
+            }
+            credit(deviceId);
+            if (!overBudget && hll.estimate() > budget) {
+                overBudget = true;
+                log.warn("Tag key '{}' exceeded cardinality budget of {} distinct values", key, budget);
+            }
+            return overBudget;
+        }
+        
+        private void credit(UUID deviceId) {
+            if (deviceId == null) {
+                return;
+            }
+            synchronized (contributors) {
+                long[] count = contributors.get(deviceId);
+                if (count != null) {
+                    count[0]++;
+                    return;
+                }
+                long floor = 0;
+                if (contributors.size() >= MAX_OFFENDING_DEVICES) {
+                    // The new device takes over the smallest counter, which bounds its overestimate
+                    UUID smallest = null;
+                    for (Map.Entry<UUID, long[]> entry : contributors.entrySet()) {
+                        if (smallest == null || entry.getValue()[0] < floor) {
+                            smallest = entry.getKey();
+                            floor = entry.getValue()[0];
+                        }
+                    }
+                    contributors.remove(smallest);
+                }
+                contributors.put(deviceId, new long[] {floor + 1});
+            }
+        }
+        
+        void reset(int precision) {
+            hll = new HyperLogLog(precision);
+            overBudget = UNTRACKED_KEY.equals(key);
+            demoted.set(0);
+            rejected.set(0);
+            synchronized (contributors) {
+                contributors.clear();
+            }
+        }
+        
+        Map<String, Object> toReport() {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("key", key);
+            entry.put("estimated_values", hll.estimate());
+            entry.put("over_budget", overBudget);
+            entry.put("demoted", demoted.get());
+            entry.put("rejected", rejected.get());
+            List<UUID> offenders = new ArrayList<>();
+            if (overBudget) {
+                synchronized (contributors) {
+                    contributors.entrySet().stream()
+                            .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                            .forEach(contributor -> offenders.add(contributor.getKey()));
+                }
+            }
+            entry.put("offending_devices", offenders);
+            return entry;
+        }
+    }
+}
@@ -1,21 +1,28 @@
 package com.warmhouse.telemetry.service;
 
-import com.influxdb.client.DeleteApi;
 import com.influxdb.client.domain.DeletePredicateRequest;
+import com.influxdb.query.FluxTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
 
+import java.time.LocalTime;
 import java.time.OffsetDateTime;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Service for cleaning up telemetry data when devices are deleted
+ * A deleted device is tombstoned and its cache entries cleared at once; the InfluxDB delete is deferred
+ * to the purge window and done in batches, and the tombstone is dropped once no data is left.
  */
 @Service
 @RequiredArgsConstructor
@@ -23,8 +30,16 @@ public class TelemetryCleanupService {
     
     private static final Logger log = LoggerFactory.getLogger(TelemetryCleanupService.class);
     
-    private final DeleteApi deleteApi;
+    private final InfluxShardRouter shardRouter;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final SchedulerLocks schedulerLocks;
+    private final TieredStorageService tieredStorage;
+    private final SensorCorrelationStore sensorCorrelationStore;
+    private final LocationCacheWriter locationCacheWriter;
+    private final DeviceTombstones tombstones;
+    private final IngestCompressionService compressionService;
+    private final RuleEngineService ruleEngineService;
+    private final MeterRegistry meterRegistry;
     
     @Value("${influxdb.bucket}")
     private String bucket;
@@ -32,18 +47,51 @@ public class TelemetryCleanupService {
     @Value("${influxdb.org}")
     private String org;
     
+    @Value("${telemetry.tombstones.purge-interval:60000}")
+    private long purgeIntervalMs;
+    
+    // Local time of day the purge may run in, as HH:mm-HH:mm; empty for any time
+    @Value("${telemetry.tombstones.purge-window:}")
+    private String purgeWindow;
+    
+    // Margin on top of the compression hold and sketch flush before a deleted device is purged
+    @Value("${telemetry.tombstones.purge-delay:60000}")
+    private long purgeDelayMs;
+    
+    @Value("${telemetry.sketch.flush-interval:60000}")
+    private long sketchFlushIntervalMs;
+    
+    // Deleted devices purged per run
+    @Value("${telemetry.tombstones.purge-batch-size:20}")
+    private int purgeBatchSize;
+    
+    private LocalTime purgeFrom;
+    private LocalTime purgeUntil;
+    private Counter purgedDevices;
+    
     @PostConstruct
     public void init() {
+        if (purgeWindow != null && !purgeWindow.isBlank()) {
+            String[] bounds = purgeWindow.trim().split("-");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Purge window must look like HH:mm-HH:mm: " + purgeWindow);
+            }
+            purgeFrom = LocalTime.parse(bounds[0].trim());
+            purgeUntil = LocalTime.parse(bounds[1].trim());
+        }
+        purgedDevices = Counter.builder("telemetry.tombstones.purged")
+                .description("Deleted devices whose stored data was purged")
+                .register(meterRegistry);
         log.info("TelemetryCleanupService @PostConstruct called - bean is ready");
     }
     
     private static final String DEVICE_CACHE_PREFIX = "device:";
-    private static final String LOCATION_CACHE_PREFIX = "location:";
-    private static final String DEVICE_VALIDATION_PREFIX = "device_validation:";
-    private static final String SENSOR_CORRELATION_PREFIX = "sensor_correlation:";
+    private static final String DEVICE_VALIDATION_PREFIX = "device:validation:";
+    private static final String PURGE_LOCK_KEY = "telemetry:tombstones:purge-lock";
     
     /**
      * Clean up all telemetry data for a deleted device
+     * The device disappears from ingest and queries immediately; its stored data is purged later.
      * 
      * @param deviceId UUID of the device to clean up
      * @return true if cleanup was successful, false otherwise
@@ -54,10 +102,13 @@ public class TelemetryCleanupService {
         boolean success = true;
         
         try {
-            // 1. Delete telemetry data from InfluxDB
-            success &= deleteInfluxDBData(deviceId);
+            // 1. Tombstone the device, InfluxDB data is purged in the next purge window
+            tombstones.tombstone(deviceId);
+            
+            // 2. Drop its rule state, its readings are rejected from now on and would never clear an alert
+            ruleEngineService.forgetDevice(deviceId);
             
-            // 2. Clear Redis cache entries
+            // 3. Clear Redis cache entries
             success &= clearRedisCache(deviceId);
             
             if (success) {
@@ -74,8 +125,82 @@ public class TelemetryCleanupService {
         return success;
     }
     
+    /**
+     * Purge the stored data of the oldest tombstoned devices, one instance at a time
+     * Runs only inside the purge window. A tombstone is dropped once every bucket of every shard is
+     * confirmed empty for the device; otherwise it stays and the purge is repeated next run. Readings
+     * held by ingest compression and unflushed sketch buckets still reach InfluxDB after the tombstone,
+     * so a device is purged only once they have been written.
+     */
+    @Scheduled(fixedDelayString = "${telemetry.tombstones.purge-interval:60000}")
+    public void purgeDeletedDevices() {
+        if (!inPurgeWindow(LocalTime.now())) {
+            return;
+        }
+        long settleMs = Math.max(compressionService.maxHoldMs(), sketchFlushIntervalMs) + purgeDelayMs;
+        List<UUID> batch = tombstones.oldest(purgeBatchSize, System.currentTimeMillis() - settleMs);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (!schedulerLocks.acquire(PURGE_LOCK_KEY, purgeIntervalMs * 5)) {
+                return;
+            }
+            try {
+                List<UUID> purged = new ArrayList<>();
+                for (UUID deviceId : batch) {
+                    if (deleteInfluxDBData(deviceId) && !hasInfluxDBData(deviceId)) {
+                        purged.add(deviceId);
+                    }
+                }
+                if (tombstones.remove(purged)) {
+                    purged.forEach(shardRouter::forgetDevice);
+                    purgedDevices.increment(purged.size());
+                }
+                log.info("Purged stored data of {} of {} deleted devices", purged.size(), batch.size());
+            } finally {
+                schedulerLocks.release(PURGE_LOCK_KEY);
+            }
+        } catch (Exception e) {
+            log.warn("Purge of deleted devices skipped: {}", e.getMessage());
+        }
+    }
+    
+    boolean inPurgeWindow(LocalTime now) {
+        if (purgeFrom == null) {
+            return true;
+        }
+        // A window may wrap past midnight, e.g. 22:00-05:00
+        return purgeFrom.isBefore(purgeUntil)
+                ? !now.isBefore(purgeFrom) && now.isBefore(purgeUntil)
+                : !now.isBefore(purgeFrom) || now.isBefore(purgeUntil);
+    }
+    
+    /**
+     * Whether any bucket of any shard still holds a point of the device
+     */
+    private boolean hasInfluxDBData(UUID deviceId) {
+        for (InfluxShard shard : shardRouter.getShards()) {
+            for (TieredStorageService.Tier tier : tieredStorage.getTiers()) {
+                String flux = String.format(
+                    "from(bucket: \"%s\")" +
+                    " |> range(start: 0)" +
+                    " |> filter(fn: (r) => r.device_id == \"%s\")" +
+                    " |> limit(n: 1)",
+                    tier.getBucket(), deviceId);
+                for (FluxTable table : shard.getQueryApi().query(flux, org)) {
+                    if (!table.getRecords().isEmpty()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
     /**
      * Delete all telemetry data for a device from InfluxDB
+     * The delete API takes no OR predicates, so a batch is one predicate per device, shard and bucket
      */
     private boolean deleteInfluxDBData(UUID deviceId) {
         try {
@@ -94,8 +219,12 @@ public class TelemetryCleanupService {
                     .stop(stop)
                     .predicate(predicate);
             
-            // Execute delete
-            deleteApi.delete(deleteRequest, bucket, org);
+            // Execute delete in the raw bucket and every downsampled tier of every shard
+            for (InfluxShard shard : shardRouter.getShards()) {
+                for (TieredStorageService.Tier tier : tieredStorage.getTiers()) {
+                    shard.getDeleteApi().delete(deleteRequest, tier.getBucket(), org);
+                }
+            }
             
             log.info("Successfully deleted InfluxDB data for device: {}", deviceId);
             return true;
@@ -114,58 +243,16 @@ public class TelemetryCleanupService {
             log.info("Clearing Redis cache for device: {}", deviceId);
             
             String deviceIdStr = deviceId.toString();
-            int deletedKeys = 0;
             
-            // 1. Clear device cache entries
+            // 1. Clear device location, name and validation cache entries in one call
             String deviceCacheKey = DEVICE_CACHE_PREFIX + deviceIdStr;
-            if (Boolean.TRUE.equals(redisTemplate.delete(deviceCacheKey))) {
-                deletedKeys++;
-            }
+            Long deleted = redisTemplate.delete(List.of(deviceCacheKey, deviceCacheKey + ":name",
+                    DEVICE_VALIDATION_PREFIX + deviceIdStr));
+            long deletedKeys = deleted != null ? deleted : 0;
+            locationCacheWriter.forget(deviceId);
             
-            // Clear device name cache
-            String deviceNameKey = deviceCacheKey + ":name";
-            if (Boolean.TRUE.equals(redisTemplate.delete(deviceNameKey))) {
-                deletedKeys++;
-            }
-            
-            // 2. Clear device validation cache
-            String validationKey = DEVICE_VALIDATION_PREFIX + deviceIdStr;
-            if (Boolean.TRUE.equals(redisTemplate.delete(validationKey))) {
-                deletedKeys++;
-            }
-            
-            // 3. Clear sensor correlation data
-            String correlationPattern = SENSOR_CORRELATION_PREFIX + "*";
-            Set<String> correlationKeys = redisTemplate.keys(correlationPattern);
-            if (correlationKeys != null) {
-                for (String key : correlationKeys) {
-                    try {
-                        Object data = redisTemplate.opsForValue().get(key);
-                        if (data != null && data.toString().contains(deviceIdStr)) {
-                            if (Boolean.TRUE.equals(redisTemplate.delete(key))) {
-                                deletedKeys++;
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("Error checking correlation key {}: {}", key, e.getMessage());
-                    }
-                }
-            }
-            
-            // 4. Clear any other cache entries containing the device ID
-            String devicePattern = "*" + deviceIdStr + "*";
-            Set<String> deviceKeys = redisTemplate.keys(devicePattern);
-            if (deviceKeys != null) {
-                for (String key : deviceKeys) {
-                    try {
-                        if (Boolean.TRUE.equals(redisTemplate.delete(key))) {
-                            deletedKeys++;
-                        }
-                    } catch (Exception e) {
-                        log.warn("Error deleting cache key {}: {}", key, e.getMessage());
-                    }
-                }
-            }
+            // 2. Clear sensor correlation data through the device index, no keyspace scan
+            deletedKeys += sensorCorrelationStore.deleteByDevice(deviceId);
             
             log.info("Successfully cleared {} Redis cache entries for device: {}", deletedKeys, deviceId);
             return true;
@@ -178,7 +265,8 @@ public class TelemetryCleanupService {
     
     /**
      * Clean up telemetry data older than specified days
-     * This is a general cleanup method for data retention
+     * This is a general cleanup method for data retention of the raw bucket;
+     * downsampled tiers expire through their own bucket retention
      * 
      * @param retentionDays Number of days to retain data
      * @return Number of deleted records (if supported by the implementation)
@@ -195,7 +283,9 @@ public class TelemetryCleanupService {
                     .start(start)
                     .stop(cutoffTime);
             
-            deleteApi.delete(deleteRequest, bucket, org);
+            for (InfluxShard shard : shardRouter.getShards()) {
+                shard.getDeleteApi().delete(deleteRequest, bucket, org);
+            }
             
             log.info("Successfully cleaned up old telemetry data");
             return 1; // InfluxDB doesn't return count, so return 1 for success
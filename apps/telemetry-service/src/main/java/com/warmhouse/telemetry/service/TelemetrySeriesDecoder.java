@@ -0,0 +1,109 @@
+package com.warmhouse.telemetry.service;
+
+import com.influxdb.Cancellable;
+import com.influxdb.query.FluxRecord;
+import com.warmhouse.telemetry.model.QualityCode;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Streaming decoder from pivoted Flux records into columnar series
+ * Each Flux table is one series: keys are parsed once from its first record,
+ * subsequent records only contribute timestamp, value and quality code.
+ * Points written before the schema catalog carry a unit field and a quality tag;
+ * newer points carry neither and an integer quality field only when not GOOD
+ */
+class TelemetrySeriesDecoder implements BiConsumer<Cancellable, FluxRecord> {
+    
+    private final List<TelemetrySeries> series = new ArrayList<>();
+    private final Function<String, String> unitResolver;
+    
+    private volatile Cancellable cancellable;
+    private TelemetrySeries current;
+    private Integer currentTable;
+    private long skipped;
+    
+    TelemetrySeriesDecoder(Function<String, String> unitResolver) {
+        this.unitResolver = unitResolver;
+    }
+    
+    @Override
+    public void accept(Cancellable cancellable, FluxRecord record) {
+        this.cancellable = cancellable;
+        
+        Integer table = record.getTable();
+        if (currentTable == null || !currentTable.equals(table)) {
+            current = openSeries(record);
+            currentTable = table;
+            if (current != null) {
+                series.add(current);
+            }
+        }
+        
+        Instant time = record.getTime();
+        Object value = record.getValueByKey("value");
+        if (current == null || time == null || !(value instanceof Number)) {
+            skipped++;
+            return;
+        }
+        
+        current.append(
+            TelemetrySeries.toEpochNanos(time),
+            ((Number) value).doubleValue(),
+            qualityCode(record)
+        );
+    }
+    
+    /**
+     * Cancel the underlying query if it is still streaming
+     */
+    void cancel() {
+        Cancellable c = cancellable;
+        if (c != null) {
+            c.cancel();
+        }
+    }
+    
+    List<TelemetrySeries> getSeries() {
+        return series;
+    }
+    
+    long getSkipped() {
+        return skipped;
+    }
+    
+    private static byte qualityCode(FluxRecord record) {
+        Object code = record.getValueByKey(InfluxDBService.QUALITY_FIELD);
+        if (code instanceof Number) {
+            return ((Number) code).byteValue();
+        }
+        Object legacy = record.getValueByKey("quality");
+        return legacy != null ? QualityCode.of((String) legacy).code() : QualityCode.GOOD.code();
+    }
+    
+    private TelemetrySeries openSeries(FluxRecord record) {
+        try {
+            String measurementType = (String) record.getValueByKey("measurement_type");
+            String unit = (String) record.getValueByKey("unit");
+            if (unit == null || unit.isEmpty()) {
+                unit = unitResolver.apply(measurementType);
+            }
+            return new TelemetrySeries(
+                UUID.fromString((String) record.getValueByKey("device_id")),
+                UUID.fromString((String) record.getValueByKey("house_id")),
+                UUID.fromString((String) record.getValueByKey("location_id")),
+                measurementType,
+                unit != null ? unit : ""
+            );
+        } catch (Exception e) {
+            // Malformed series keys - skip every record of this table
+            return null;
+        }
+    }
+}
@@ -2,23 +2,29 @@ package com.warmhouse.telemetry.service;
 
 import com.warmhouse.telemetry.dto.TelemetryRequest;
 import com.warmhouse.telemetry.dto.TelemetryResponse;
+import com.warmhouse.telemetry.dto.TelemetrySeriesResponse;
 import com.warmhouse.telemetry.dto.TelemetryStatistics;
 import com.warmhouse.telemetry.events.TelemetryEventPublisher;
+import com.warmhouse.telemetry.model.SeriesCursor;
 import com.warmhouse.telemetry.model.TelemetryData;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+import com.warmhouse.telemetry.util.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.HttpClientErrorException;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -31,18 +37,51 @@ public class TelemetryService {
     private static final Logger log = LoggerFactory.getLogger(TelemetryService.class);
     
     private final InfluxDBService influxDBService;
-    private final RedisTemplate<String, Object> redisTemplate;
     private final DeviceValidationService deviceValidationService;
     private final TelemetryEventPublisher eventPublisher;
+    private final QuantileSketchService quantileSketchService;
+    private final LiveTelemetryHub liveTelemetryHub;
+    private final RuleEngineService ruleEngineService;
+    private final TagCardinalityGuard tagCardinalityGuard;
+    private final MeasurementSchemaCatalog schemaCatalog;
+    private final IngestCompressionService ingestCompressionService;
+    private final InstanceMembershipService membershipService;
+    private final IngestForwardingService ingestForwardingService;
+    private final DeviceDirectory deviceDirectory;
+    private final LocationCacheWriter locationCacheWriter;
+    private final IdGenerator idGenerator;
+    private final IngestDeduplicator ingestDeduplicator;
     
-    private static final String DEVICE_CACHE_PREFIX = "device:";
-    private static final String LOCATION_CACHE_PREFIX = "location:";
-    private static final Duration CACHE_TTL = Duration.ofMinutes(10);
+    @Value("${telemetry.compression.max-reconstructed-points:100000}")
+    private long maxReconstructedPoints;
+    
+    @Value("${telemetry.history.page-size:1000}")
+    private int defaultPageSize;
+    
+    @Value("${telemetry.history.max-page-size:10000}")
+    private int maxPageSize;
     
     /**
      * Store telemetry data
      */
     public TelemetryResponse storeTelemetryData(TelemetryRequest request) {
+        return storeTelemetryData(request, false);
+    }
+    
+    /**
+     * Store telemetry data, forwarding it to the instance owning the device unless already forwarded
+     */
+    public TelemetryResponse storeTelemetryData(TelemetryRequest request, boolean forwarded) {
+        if (!forwarded) {
+            InstanceMembershipService.Member owner = membershipService.remoteOwnerOf(request.getDeviceId());
+            if (owner != null) {
+                TelemetryResponse response = ingestForwardingService.forward(owner, request);
+                if (response != null) {
+                    return response;
+                }
+            }
+        }
+        
         log.info("Storing telemetry data for device: {}", request.getDeviceId());
         
         // Validate device exists
@@ -51,8 +90,66 @@ public class TelemetryService {
         }
         
         // Create telemetry data model
-        TelemetryData data = TelemetryData.builder()
-                .measurementId(UUID.randomUUID())
+        TelemetryData data = toData(request, idGenerator.next(),
+                request.getTimestamp() != null ? request.getTimestamp() : Instant.now());
+        
+        // Validate against the measurement schema, keep user-supplied tags within budget
+        schemaCatalog.conform(data);
+        tagCardinalityGuard.apply(data);
+        
+        // A retried reading is answered with the measurement it was first stored as
+        String dedupKey = ingestDeduplicator.keyOf(request);
+        IngestDeduplicator.Original original = ingestDeduplicator.claim(dedupKey, data);
+        if (original != null) {
+            log.info("Duplicate reading for device {}, answering with measurement {}",
+                    request.getDeviceId(), original.getMeasurementId());
+            TelemetryResponse response = TelemetryResponse.fromModel(original.replay(data));
+            response.setReplayed(true);
+            return response;
+        }
+        
+        try {
+            TelemetryResponse response = store(data);
+            ingestDeduplicator.commit(dedupKey, data.getMeasurementId());
+            return response;
+        } catch (RuntimeException e) {
+            ingestDeduplicator.release(dedupKey, data.getMeasurementId());
+            throw e;
+        }
+    }
+    
+    private TelemetryResponse store(TelemetryData data) {
+        // Write to InfluxDB, compression may hold back or drop the reading
+        List<TelemetryData> toStore = ingestCompressionService.filter(data);
+        try {
+            if (toStore.size() == 1) {
+                influxDBService.writeTelemetryData(toStore.get(0));
+            } else if (!toStore.isEmpty()) {
+                influxDBService.writeTelemetryDataBatch(toStore);
+            }
+        } catch (RuntimeException e) {
+            ingestCompressionService.forgetDevice(data.getDeviceId());
+            throw e;
+        }
+        quantileSketchService.record(data);
+        ruleEngineService.evaluate(data);
+        
+        // Cache device location mapping (write-behind, only when it changes)
+        locationCacheWriter.record(data.getDeviceId(), data.getLocationId());
+        
+        // Publish measurement received event
+        eventPublisher.publishMeasurementReceived(data);
+        
+        // Push to live subscribers on this instance
+        TelemetryResponse response = TelemetryResponse.fromModel(data);
+        liveTelemetryHub.publish(response);
+        
+        return response;
+    }
+    
+    private static TelemetryData toData(TelemetryRequest request, UUID measurementId, Instant timestamp) {
+        return TelemetryData.builder()
+                .measurementId(measurementId)
                 .deviceId(request.getDeviceId())
                 .houseId(request.getHouseId())
                 .locationId(request.getLocationId())
@@ -60,42 +157,74 @@ public class TelemetryService {
                 .value(request.getValue())
                 .unit(request.getUnit() != null ? request.getUnit() : "")
                 .quality(request.getQuality() != null ? request.getQuality() : "GOOD")
-                .timestamp(request.getTimestamp() != null ? request.getTimestamp() : Instant.now())
+                .timestamp(timestamp)
                 .tags(request.getTags())
                 .metadata(request.getMetadata())
                 .build();
-        
-        // Write to InfluxDB
-        influxDBService.writeTelemetryData(data);
-        
-        // Cache device location mapping
-        cacheDeviceLocation(request.getDeviceId(), request.getLocationId());
-        
-        // Publish measurement received event
-        eventPublisher.publishMeasurementReceived(data);
-        
-        // Return response
-        return TelemetryResponse.fromModel(data);
     }
     
     /**
-     * Get telemetry data for a device
+     * Get telemetry data for a device over a period ending now or an explicit [start, end) range
+     * Compressed ingest stores only significant points, STEP or LINEAR reconstruction fills the gaps.
+     * The resolution (or the step when reconstructing) selects the storage tier. With a limit or cursor
+     * the result is one page in (timestamp, series key) order, carrying the next cursor while more follow.
      */
-    public List<TelemetryResponse> getTelemetryByDevice(UUID deviceId, String period) {
-        log.info("Fetching telemetry data for device: {} with period: {}", deviceId, period);
+    public TelemetrySeriesResponse getTelemetryByDevice(UUID deviceId, String period, Instant rangeStart,
+                                                        Instant rangeEnd, TelemetrySeries.Interpolation interpolation,
+                                                        long stepSeconds, Long resolutionSeconds, Integer limit,
+                                                        String cursor) {
+        log.info("Fetching telemetry data for device: {} with period: {}, range: [{}, {}), cursor: {}",
+                deviceId, period, rangeStart, rangeEnd, cursor);
         
-        Instant end = Instant.now();
-        Instant start = calculateStartTime(end, period);
+        Instant end = rangeEnd != null ? rangeEnd : Instant.now();
+        Instant start = rangeStart != null ? rangeStart : calculateStartTime(end, period);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Start must be before end");
+        }
+        
+        if (limit != null || cursor != null) {
+            if (interpolation != null) {
+                throw new IllegalArgumentException("Reconstruction cannot be combined with pagination");
+            }
+            int pageSize = limit != null ? limit : defaultPageSize;
+            if (pageSize <= 0 || pageSize > maxPageSize) {
+                throw new IllegalArgumentException("Limit must be between 1 and " + maxPageSize);
+            }
+            SeriesCursor after = cursor != null ? SeriesCursor.decode(cursor) : null;
+            return influxDBService.queryPageByDeviceId(deviceId, start, end, resolution(resolutionSeconds), after,
+                    pageSize);
+        }
         
-        List<TelemetryData> dataList = influxDBService.queryByDeviceId(deviceId, start, end);
+        if (interpolation != null) {
+            if (stepSeconds <= 0) {
+                throw new IllegalArgumentException("Step must be positive");
+            }
+            long gridPoints = Duration.between(start, end).getSeconds() / stepSeconds;
+            if (gridPoints > maxReconstructedPoints) {
+                throw new IllegalArgumentException("Reconstruction step too small for the requested range");
+            }
+        }
         
-        return dataList.stream()
-                .map(TelemetryResponse::fromModel)
-                .collect(Collectors.toList());
+        Duration resolution = resolution(resolutionSeconds);
+        if (resolution == null && interpolation != null) {
+            resolution = Duration.ofSeconds(stepSeconds);
+        }
+        
+        List<TelemetrySeries> series = influxDBService.queryByDeviceId(deviceId, start, end, resolution);
+        
+        if (interpolation != null) {
+            long stepNanos = stepSeconds * 1_000_000_000L;
+            series = series.stream()
+                    .map(s -> s.resample(stepNanos, interpolation))
+                    .collect(Collectors.toList());
+        }
+        
+        return new TelemetrySeriesResponse(series);
     }
     
     /**
      * Get telemetry statistics
+     * A pure read: aggregated events are published per closed window by AggregatePublisher
      */
     public TelemetryStatistics getTelemetryStatistics(UUID deviceId, String measurementType, String period) {
         log.info("Calculating statistics for device: {}, type: {}, period: {}", 
@@ -103,17 +232,12 @@ public class TelemetryService {
         
         TelemetryStatistics stats = influxDBService.calculateStatistics(deviceId, measurementType, period);
         
-        // Enrich with cached device/location names if available
-        enrichStatisticsWithNames(stats);
+        // Percentiles from bucketed quantile sketches
+        quantileSketchService.applyPercentiles(stats);
         
-        // Publish aggregated statistics event
+        // Enrich with device/location names from the local directory
         if (stats != null) {
-            eventPublisher.publishMeasurementAggregated(
-                deviceId.toString(), 
-                measurementType, 
-                period, 
-                stats.toEventData()
-            );
+            deviceDirectory.applyNames(stats);
         }
         
         return stats;
@@ -123,81 +247,153 @@ public class TelemetryService {
      * Store batch of telemetry data
      */
     public void storeTelemetryDataBatch(List<TelemetryRequest> requests) {
+        storeTelemetryDataBatch(requests, false);
+    }
+    
+    /**
+     * Store batch of telemetry data, forwarding readings of devices owned elsewhere in one batch per owner
+     */
+    public void storeTelemetryDataBatch(List<TelemetryRequest> requests, boolean forwarded) {
+        if (!forwarded && membershipService.isEnabled()) {
+            requests = forwardToOwners(requests);
+        }
+        
         log.info("Storing batch of {} telemetry data points", requests.size());
         
         // Convert requests to data models
-        List<TelemetryData> dataList = requests.stream()
-                .map(request -> {
-                    // Validate each device
-                    if (!deviceValidationService.validateDevice(request.getDeviceId())) {
-                        log.warn("Skipping invalid device: {}", request.getDeviceId());
-                        return null;
-                    }
-                    
-                    return TelemetryData.builder()
-                            .measurementId(UUID.randomUUID())
-                            .deviceId(request.getDeviceId())
-                            .houseId(request.getHouseId())
-                            .locationId(request.getLocationId())
-                            .measurementType(request.getMeasurementType())
-                            .value(request.getValue())
-                            .unit(request.getUnit() != null ? request.getUnit() : "")
-                            .quality(request.getQuality() != null ? request.getQuality() : "GOOD")
-                            .timestamp(request.getTimestamp() != null ? request.getTimestamp() : Instant.now())
-                            .tags(request.getTags())
-                            .metadata(request.getMetadata())
-                            .build();
-                })
-                .filter(data -> data != null)
-                .collect(Collectors.toList());
+        List<TelemetryData> candidates = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (TelemetryRequest request : requests) {
+            // Validate each device
+            if (!deviceValidationService.validateDevice(request.getDeviceId())) {
+                log.warn("Skipping invalid device: {}", request.getDeviceId());
+                continue;
+            }
+            
+            TelemetryData data = toData(request, idGenerator.next(),
+                    request.getTimestamp() != null ? request.getTimestamp() : Instant.now());
+            
+            try {
+                schemaCatalog.conform(data);
+                tagCardinalityGuard.apply(data);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping reading from device {}: {}", request.getDeviceId(), e.getMessage());
+                continue;
+            }
+            candidates.add(data);
+            keys.add(ingestDeduplicator.keyOf(request));
+        }
+        
+        // Readings retried by the gateway were stored before; the rest are claimed by this batch,
+        // committed once it is stored
+        List<IngestDeduplicator.Original> existing = ingestDeduplicator.claimAll(keys, candidates);
+        List<TelemetryData> dataList = new ArrayList<>();
+        Map<String, UUID> claims = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            TelemetryData data = candidates.get(i);
+            if (existing.get(i) != null) {
+                log.debug("Skipping duplicate reading from device {}", data.getDeviceId());
+                continue;
+            }
+            if (keys.get(i) != null) {
+                claims.put(keys.get(i), data.getMeasurementId());
+            }
+            dataList.add(data);
+        }
         
         if (!dataList.isEmpty()) {
-            influxDBService.writeTelemetryDataBatch(dataList);
+            List<TelemetryData> toStore = dataList.stream()
+                    .flatMap(data -> ingestCompressionService.filter(data).stream())
+                    .collect(Collectors.toList());
+            if (!toStore.isEmpty()) {
+                try {
+                    influxDBService.writeTelemetryDataBatch(toStore);
+                } catch (RuntimeException e) {
+                    dataList.forEach(data -> ingestCompressionService.forgetDevice(data.getDeviceId()));
+                    claims.forEach(ingestDeduplicator::release);
+                    throw e;
+                }
+            }
+            claims.forEach(ingestDeduplicator::commit);
+            dataList.forEach(quantileSketchService::record);
+            dataList.forEach(ruleEngineService::evaluate);
+            dataList.forEach(data -> liveTelemetryHub.publish(TelemetryResponse.fromModel(data)));
             
             // Publish batch measurement event
             eventPublisher.publishBatchMeasurementsReceived(dataList);
         }
     }
     
-    private void cacheDeviceLocation(UUID deviceId, UUID locationId) {
-        String key = DEVICE_CACHE_PREFIX + deviceId.toString();
-        redisTemplate.opsForValue().set(key, locationId.toString(), CACHE_TTL.toMillis(), TimeUnit.MILLISECONDS);
+    /**
+     * Forward readings owned by other instances, returning the ones to store here
+     * (local ones and those whose owner could not be reached)
+     */
+    private List<TelemetryRequest> forwardToOwners(List<TelemetryRequest> requests) {
+        List<TelemetryRequest> local = new ArrayList<>();
+        Map<String, List<TelemetryRequest>> remote = new LinkedHashMap<>();
+        Map<String, InstanceMembershipService.Member> owners = new HashMap<>();
+        
+        for (TelemetryRequest request : requests) {
+            InstanceMembershipService.Member owner = membershipService.remoteOwnerOf(request.getDeviceId());
+            if (owner == null) {
+                local.add(request);
+            } else {
+                owners.putIfAbsent(owner.getId(), owner);
+                remote.computeIfAbsent(owner.getId(), id -> new ArrayList<>()).add(request);
+            }
+        }
+        
+        remote.forEach((ownerId, owned) -> {
+            if (!ingestForwardingService.forwardBatch(owners.get(ownerId), owned)) {
+                local.addAll(owned);
+            }
+        });
+        return local;
     }
     
-    private void enrichStatisticsWithNames(TelemetryStatistics stats) {
-        // Try to get device name from cache
-        String deviceKey = DEVICE_CACHE_PREFIX + stats.getDeviceId().toString();
-        Object cachedDeviceName = redisTemplate.opsForValue().get(deviceKey + ":name");
-        if (cachedDeviceName != null) {
-            stats.setDeviceName(cachedDeviceName.toString());
-        }
-        
-        // Try to get location name from cache
-        Object cachedLocationId = redisTemplate.opsForValue().get(deviceKey);
-        if (cachedLocationId != null) {
-            String locationKey = LOCATION_CACHE_PREFIX + cachedLocationId.toString();
-            Object cachedLocationName = redisTemplate.opsForValue().get(locationKey + ":name");
-            if (cachedLocationName != null) {
-                stats.setLocationName(cachedLocationName.toString());
-            }
+    private static Duration resolution(Long resolutionSeconds) {
+        if (resolutionSeconds == null) {
+            return null;
+        }
+        if (resolutionSeconds <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive");
         }
+        return Duration.ofSeconds(resolutionSeconds);
+    }
+    
+    /**
+     * Length of an explicit range, or of the period when no start is given
+     */
+    public Duration rangeDuration(String period, Instant start, Instant end) {
+        if (start == null) {
+            return periodDuration(period);
+        }
+        Duration span = Duration.between(start, end != null ? end : Instant.now());
+        return span.isNegative() ? Duration.ZERO : span;
     }
     
     private Instant calculateStartTime(Instant end, String period) {
+        return end.minus(periodDuration(period));
+    }
+    
+    /**
+     * Length of a query period, unknown periods count as one hour
+     */
+    public Duration periodDuration(String period) {
         switch (period.toLowerCase()) {
             case "1h":
-                return end.minus(1, ChronoUnit.HOURS);
+                return Duration.ofHours(1);
             case "24h":
             case "1d":
-                return end.minus(1, ChronoUnit.DAYS);
+                return Duration.ofDays(1);
             case "7d":
             case "1w":
-                return end.minus(7, ChronoUnit.DAYS);
+                return Duration.ofDays(7);
             case "30d":
             case "1m":
-                return end.minus(30, ChronoUnit.DAYS);
+                return Duration.ofDays(30);
             default:
-                return end.minus(1, ChronoUnit.HOURS);
+                return Duration.ofHours(1);
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,403 @@
+package com.warmhouse.telemetry.service;
+
+import com.influxdb.client.domain.Bucket;
+import com.influxdb.client.domain.BucketRetentionRules;
+import com.influxdb.client.domain.Organization;
+import com.influxdb.query.FluxTable;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tiered hot/cold telemetry storage
+ * Raw points live in the main bucket with short retention, a background compaction job
+ * rolls them up into 1-minute and 1-hour buckets with long retention. Each downsampled
+ * point carries value (mean), min, max, sum and count. Compaction runs server-side in Flux
+ * on every shard and advances a per-tier watermark kept in Redis; rewriting a window is idempotent,
+ * so windows that receive writes after they were rolled up are simply compacted again.
+ */
+@Service
+@RequiredArgsConstructor
+public class TieredStorageService {
+    
+    private static final Logger log = LoggerFactory.getLogger(TieredStorageService.class);
+    
+    private static final String WATERMARK_PREFIX = "telemetry:tiers:watermark:";
+    private static final String LOCK_KEY = "telemetry:tiers:compaction:lock";
+    private static final String LATE_WINDOWS_KEY = "telemetry:tiers:late";
+    
+    // Upper bound on windows rolled up per tier and run, so catching up stays incremental
+    private static final int MAX_WINDOWS_PER_RUN = 360;
+    
+    static final String MEASUREMENT_NAME = "telemetry";
+    static final String SERIES_TAGS = "\"device_id\", \"house_id\", \"location_id\", \"measurement_type\"";
+    
+    private final InfluxShardRouter shardRouter;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final SchedulerLocks schedulerLocks;
+    
+    @Value("${influxdb.bucket}")
+    private String rawBucket;
+    
+    @Value("${influxdb.org}")
+    private String org;
+    
+    @Value("${influxdb.retention:30d}")
+    private String rawRetention;
+    
+    @Value("${influxdb.tiers.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${influxdb.tiers.minute-bucket:telemetry_1m}")
+    private String minuteBucket;
+    
+    @Value("${influxdb.tiers.minute-retention:90d}")
+    private String minuteRetention;
+    
+    @Value("${influxdb.tiers.hour-bucket:telemetry_1h}")
+    private String hourBucket;
+    
+    @Value("${influxdb.tiers.hour-retention:1825d}")
+    private String hourRetention;
+    
+    // Late-arrival allowance before a window is rolled up
+    @Value("${influxdb.tiers.compaction-lag:120000}")
+    private long compactionLagMs;
+    
+    @Value("${influxdb.tiers.compaction-interval:60000}")
+    private long compactionIntervalMs;
+    
+    @Value("${influxdb.tiers.initial-lookback:1d}")
+    private String initialLookback;
+    
+    @Getter
+    private List<Tier> tiers = Collections.emptyList();
+    
+    private volatile boolean bucketsReady;
+    
+    // Starts of first-tier windows written to below their watermark, pushed to Redis on the next run
+    private final Set<Long> lateWindows = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * One storage tier; resolution is zero for raw data
+     */
+    @Getter
+    public static final class Tier {
+        private final String name;
+        private final String bucket;
+        private final Duration resolution;
+        private final Duration retention;
+        private volatile Instant watermark;
+        
+        Tier(String name, String bucket, Duration resolution, Duration retention) {
+            this.name = name;
+            this.bucket = bucket;
+            this.resolution = resolution;
+            this.retention = retention;
+        }
+        
+        public boolean isRaw() {
+            return resolution.isZero();
+        }
+        
+        /**
+         * Data at or after this instant has been rolled up into the tier; raw data is always complete
+         */
+        public Instant getWatermark() {
+            return isRaw() ? Instant.MAX : (watermark != null ? watermark : Instant.EPOCH);
+        }
+    }
+    
+    @PostConstruct
+    void init() {
+        List<Tier> configured = new ArrayList<>();
+        configured.add(new Tier("raw", rawBucket, Duration.ZERO, parseDuration(rawRetention)));
+        if (enabled) {
+            configured.add(new Tier("1m", minuteBucket, Duration.ofMinutes(1), parseDuration(minuteRetention)));
+            configured.add(new Tier("1h", hourBucket, Duration.ofHours(1), parseDuration(hourRetention)));
+        }
+        tiers = Collections.unmodifiableList(configured);
+    }
+    
+    /**
+     * Coarsest tier whose resolution is at least as fine as requested and whose retention covers start
+     * Falls back to the finest tier still holding start when nothing satisfies the resolution
+     */
+    public int selectTier(Instant start, Duration resolution) {
+        Instant now = Instant.now();
+        int selected = -1;
+        for (int i = 0; i < tiers.size(); i++) {
+            Tier tier = tiers.get(i);
+            boolean covers = !start.isBefore(now.minus(tier.getRetention()));
+            if (covers && tier.getResolution().compareTo(resolution) <= 0) {
+                selected = i;
+            }
+        }
+        if (selected >= 0) {
+            return selected;
+        }
+        for (int i = 0; i < tiers.size(); i++) {
+            if (!start.isBefore(now.minus(tiers.get(i).getRetention()))) {
+                return i;
+            }
+        }
+        return tiers.size() - 1;
+    }
+    
+    /**
+     * Record a raw point write; points landing in a window that was already rolled up
+     * (held back by ingest compression, delayed or backfilled) get that window compacted again
+     */
+    public void noteWritten(Instant timestamp) {
+        if (tiers.size() < 2 || timestamp == null) {
+            return;
+        }
+        Tier first = tiers.get(1);
+        if (timestamp.isBefore(first.getWatermark())) {
+            long windowMs = first.getResolution().toMillis();
+            lateWindows.add(Math.floorDiv(timestamp.toEpochMilli(), windowMs) * windowMs);
+        }
+    }
+    
+    /**
+     * Roll up closed windows into the downsampled tiers, one instance at a time
+     */
+    @Scheduled(fixedDelayString = "${influxdb.tiers.compaction-interval:60000}")
+    public void compact() {
+        if (tiers.size() < 2) {
+            return;
+        }
+        
+        try {
+            refreshWatermarks();
+            pushLateWindows();
+            
+            if (!schedulerLocks.acquire(LOCK_KEY, compactionIntervalMs * 5)) {
+                return;
+            }
+            try {
+                ensureBuckets();
+                for (int i = 1; i < tiers.size(); i++) {
+                    compactTier(tiers.get(i - 1), tiers.get(i));
+                }
+                recompactLateWindows();
+            } finally {
+                schedulerLocks.release(LOCK_KEY);
+            }
+        } catch (Exception e) {
+            log.warn("Tier compaction skipped: {}", e.getMessage());
+        }
+    }
+    
+    private void compactTier(Tier source, Tier target) {
+        long windowMs = target.getResolution().toMillis();
+        Instant limit = Instant.ofEpochMilli(
+                Math.floorDiv(System.currentTimeMillis() - compactionLagMs, windowMs) * windowMs);
+        if (!source.isRaw() && source.getWatermark().isBefore(limit)) {
+            limit = Instant.ofEpochMilli(Math.floorDiv(source.getWatermark().toEpochMilli(), windowMs) * windowMs);
+        }
+        
+        Instant start = target.watermark;
+        if (start == null) {
+            long lookback = System.currentTimeMillis() - parseDuration(initialLookback).toMillis();
+            start = Instant.ofEpochMilli(Math.floorDiv(lookback, windowMs) * windowMs);
+        }
+        if (!start.isBefore(limit)) {
+            return;
+        }
+        Instant stop = start.plusMillis(windowMs * MAX_WINDOWS_PER_RUN);
+        if (stop.isAfter(limit)) {
+            stop = limit;
+        }
+        
+        long written = compactRange(source, target, start, stop);
+        
+        target.watermark = stop;
+        redisTemplate.opsForValue().set(WATERMARK_PREFIX + target.getName(), stop.toEpochMilli());
+        log.info("Compacted {} -> {} for [{}, {}): {} points", source.getName(), target.getName(), start, stop, written);
+    }
+    
+    private long compactRange(Tier source, Tier target, Instant start, Instant stop) {
+        long written = 0;
+        String flux = buildCompactionFlux(source, target, start, stop);
+        for (InfluxShard shard : shardRouter.getShards()) {
+            for (FluxTable table : shard.getQueryApi().query(flux, org)) {
+                if (!table.getRecords().isEmpty() && table.getRecords().get(0).getValueByKey("_time") instanceof Number) {
+                    written += ((Number) table.getRecords().get(0).getValueByKey("_time")).longValue();
+                }
+            }
+        }
+        return written;
+    }
+    
+    private void pushLateWindows() {
+        if (lateWindows.isEmpty()) {
+            return;
+        }
+        List<Long> pending = new ArrayList<>(lateWindows);
+        redisTemplate.opsForSet().add(LATE_WINDOWS_KEY, pending.toArray());
+        pending.forEach(lateWindows::remove);
+    }
+    
+    /**
+     * Compact late first-tier windows again, then the coarser windows containing them
+     * that are already below their own watermark; coarser windows not yet rolled up
+     * pick the late points up in their regular run
+     */
+    private void recompactLateWindows() {
+        Set<Object> members = redisTemplate.opsForSet().members(LATE_WINDOWS_KEY);
+        if (members == null || members.isEmpty()) {
+            return;
+        }
+        List<Object> batch = new ArrayList<>(members);
+        if (batch.size() > MAX_WINDOWS_PER_RUN) {
+            batch = batch.subList(0, MAX_WINDOWS_PER_RUN);
+        }
+        
+        Set<Long> windows = new TreeSet<>();
+        for (Object member : batch) {
+            if (member instanceof Number) {
+                windows.add(((Number) member).longValue());
+            }
+        }
+        for (int i = 1; i < tiers.size(); i++) {
+            Tier source = tiers.get(i - 1);
+            Tier target = tiers.get(i);
+            long windowMs = target.getResolution().toMillis();
+            Set<Long> targetWindows = new TreeSet<>();
+            for (long window : windows) {
+                long start = Math.floorDiv(window, windowMs) * windowMs;
+                if (start + windowMs <= target.getWatermark().toEpochMilli()) {
+                    targetWindows.add(start);
+                }
+            }
+            for (long start : targetWindows) {
+                long written = compactRange(source, target, Instant.ofEpochMilli(start), Instant.ofEpochMilli(start + windowMs));
+                log.info("Recompacted late {} -> {} window {}: {} points",
+                        source.getName(), target.getName(), Instant.ofEpochMilli(start), written);
+            }
+        }
+        redisTemplate.opsForSet().remove(LATE_WINDOWS_KEY, batch.toArray());
+    }
+    
+    String buildCompactionFlux(Tier source, Tier target, Instant start, Instant stop) {
+        StringBuilder flux = new StringBuilder("import \"math\"\n");
+        flux.append(String.format("from(bucket: \"%s\") |> range(start: %s, stop: %s)",
+                source.getBucket(), start, stop));
+        
+        if (source.isRaw()) {
+            flux.append(String.format(
+                " |> filter(fn: (r) => r._measurement == \"%s\" and r._field == \"value\")" +
+                " |> group(columns: [%s])" +
+                " |> map(fn: (r) => ({_time: r._time, device_id: r.device_id, house_id: r.house_id," +
+                " location_id: r.location_id, measurement_type: r.measurement_type," +
+                " count: 1, sum: float(v: r._value), min: float(v: r._value), max: float(v: r._value)}))",
+                MEASUREMENT_NAME, SERIES_TAGS));
+        } else {
+            flux.append(String.format(
+                " |> filter(fn: (r) => r._measurement == \"%s\")" +
+                " |> pivot(rowKey: [\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\")" +
+                " |> group(columns: [%s])" +
+                " |> map(fn: (r) => ({_time: r._time, device_id: r.device_id, house_id: r.house_id," +
+                " location_id: r.location_id, measurement_type: r.measurement_type," +
+                " count: r.count, sum: r.sum, min: r.min, max: r.max}))",
+                MEASUREMENT_NAME, SERIES_TAGS));
+        }
+        
+        flux.append(String.format(
+            " |> window(every: %ds)" +
+            " |> reduce(identity: {count: 0, sum: 0.0, min: math.maxfloat, max: -math.maxfloat}," +
+            " fn: (r, accumulator) => ({count: accumulator.count + r.count, sum: accumulator.sum + r.sum," +
+            " min: if r.min < accumulator.min then r.min else accumulator.min," +
+            " max: if r.max > accumulator.max then r.max else accumulator.max}))" +
+            " |> map(fn: (r) => ({_time: r._start, _measurement: \"%s\", device_id: r.device_id, house_id: r.house_id," +
+            " location_id: r.location_id, measurement_type: r.measurement_type," +
+            " value: r.sum / float(v: r.count), min: r.min, max: r.max, sum: r.sum, count: r.count}))" +
+            " |> to(bucket: \"%s\", org: \"%s\", tagColumns: [%s]," +
+            " fieldFn: (r) => ({\"value\": r.value, \"min\": r.min, \"max\": r.max, \"sum\": r.sum, \"count\": r.count}))" +
+            " |> group() |> count(column: \"_time\")",
+            target.getResolution().getSeconds(), MEASUREMENT_NAME, target.getBucket(), org, SERIES_TAGS));
+        
+        return flux.toString();
+    }
+    
+    private void refreshWatermarks() {
+        for (Tier tier : tiers) {
+            if (tier.isRaw()) {
+                continue;
+            }
+            Object stored = redisTemplate.opsForValue().get(WATERMARK_PREFIX + tier.getName());
+            if (stored instanceof Number) {
+                tier.watermark = Instant.ofEpochMilli(((Number) stored).longValue());
+            }
+        }
+    }
+    
+    private void ensureBuckets() {
+        if (bucketsReady) {
+            return;
+        }
+        for (InfluxShard shard : shardRouter.getShards()) {
+            Organization organization = shard.getClient().getOrganizationsApi().findOrganizations().stream()
+                    .filter(o -> org.equals(o.getName()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("InfluxDB organization not found: " + org));
+            
+            for (Tier tier : tiers) {
+                if (tier.isRaw()) {
+                    continue;
+                }
+                Bucket existing = shard.getClient().getBucketsApi().findBucketByName(tier.getBucket());
+                if (existing == null) {
+                    BucketRetentionRules retention = new BucketRetentionRules()
+                            .everySeconds((int) tier.getRetention().getSeconds());
+                    shard.getClient().getBucketsApi().createBucket(tier.getBucket(), retention, organization);
+                    log.info("Created {} tier bucket {} on shard {} with retention {}",
+                            tier.getName(), tier.getBucket(), shard.getName(), tier.getRetention());
+                }
+            }
+        }
+        bucketsReady = true;
+    }
+    
+    /**
+     * Parse retention strings such as 30d, 12h, 2w, 90m or 45s
+     */
+    static Duration parseDuration(String value) {
+        String trimmed = value.trim().toLowerCase(Locale.ROOT);
+        if (trimmed.length() < 2) {
+            throw new IllegalArgumentException("Invalid duration: " + value);
+        }
+        long amount = Long.parseLong(trimmed.substring(0, trimmed.length() - 1));
+        switch (trimmed.charAt(trimmed.length() - 1)) {
+            case 's':
+                return Duration.ofSeconds(amount);
+            case 'm':
+                return Duration.ofMinutes(amount);
+            case 'h':
+                return Duration.ofHours(amount);
+            case 'd':
+                return Duration.ofDays(amount);
+            case 'w':
+                return Duration.ofDays(amount * 7);
+            default:
+                throw new IllegalArgumentException("Invalid duration: " + value);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.warmhouse.telemetry.service;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Keeps a local copy in step with a shared Redis copy whose every change bumps a version counter
+ * Local changes are pushed first; the local copy is reloaded only when the version moved by more
+ * than our own bumps, so an instance that alone writes never reads the whole copy back.
+ */
+final class VersionedSync {
+    
+    private final Callable<Long> push;
+    private final Callable<Boolean> reload;
+    private volatile long knownVersion = -1;
+    
+    /**
+     * @param push writes local changes and returns the current version, via {@link #pushed(long)} after a bump
+     * @param reload replaces the local copy with the shared one, keeping changes not yet pushed
+     */
+    VersionedSync(Callable<Long> push, Callable<Boolean> reload) {
+        this.push = push;
+        this.reload = reload;
+    }
+    
+    /**
+     * Push local changes, then reload if another instance changed the shared copy
+     */
+    void sync(Bulkhead redis) {
+        if (redis.isDegraded()) {
+            return;
+        }
+        Long version = redis.call(push, () -> null);
+        if (version != null && version != knownVersion) {
+            Boolean reloaded = redis.call(reload, () -> Boolean.FALSE);
+            if (Boolean.TRUE.equals(reloaded)) {
+                knownVersion = version;
+            }
+        }
+    }
+    
+    /**
+     * Record the version returned by our own bump
+     */
+    long pushed(long version) {
+        // Only our own bump since the last sync: nothing to reload
+        if (version == knownVersion + 1) {
+            knownVersion = version;
+        }
+        return version;
+    }
+    
+    long getKnownVersion() {
+        return knownVersion;
+    }
+}
@@ -0,0 +1,69 @@
+package com.warmhouse.telemetry.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker over consecutive failures
+ * Opens after failureThreshold failures in a row, short-circuits calls for openMillis, then lets a single
+ * probe through (half-open): its success closes the circuit, its failure opens it again.
+ */
+public final class CircuitBreaker {
+    
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    private final int failureThreshold;
+    private final long openMillis;
+    
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis < 0) {
+            throw new IllegalArgumentException("Failure threshold must be positive and open time non-negative");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+    
+    /**
+     * Whether a call may proceed; when the open period has elapsed exactly one caller gets the probe
+     */
+    public boolean allowRequest() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt.get() >= openMillis) {
+            return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        }
+        return false;
+    }
+    
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+    
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        State current = state.get();
+        if (current == State.HALF_OPEN || (current == State.CLOSED && failures >= failureThreshold)) {
+            open();
+        } else if (current == State.OPEN) {
+            // A call admitted before the circuit opened failed late, restart the open period
+            openedAt.set(System.currentTimeMillis());
+        }
+    }
+    
+    public State getState() {
+        return state.get();
+    }
+    
+    private void open() {
+        openedAt.set(System.currentTimeMillis());
+        state.set(State.OPEN);
+    }
+}
@@ -0,0 +1,98 @@
+package com.warmhouse.telemetry.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable consistent-hash ring with virtual nodes
+ * Ring positions are kept in a sorted primitive array and looked up by binary search.
+ * Adding a node moves roughly 1/N of the keys, all of them to the new node.
+ */
+public final class ConsistentHashRing<T> {
+    
+    private final List<T> nodes;
+    private final long[] positions;
+    private final int[] owners;
+    
+    /**
+     * @param nodes        ring members
+     * @param names        stable node names, hashed to place virtual nodes
+     * @param virtualNodes virtual nodes per member
+     */
+    public ConsistentHashRing(List<T> nodes, List<String> names, int virtualNodes) {
+        if (nodes.isEmpty() || nodes.size() != names.size()) {
+            throw new IllegalArgumentException("Ring needs at least one node and one name per node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be positive");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        
+        int total = nodes.size() * virtualNodes;
+        long[] entries = new long[total];
+        long[] unsorted = new long[total];
+        int[] unsortedOwners = new int[total];
+        for (int n = 0, k = 0; n < nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++, k++) {
+                unsorted[k] = Hashing.hash64(names.get(n) + "#" + v);
+                unsortedOwners[k] = n;
+            }
+        }
+        
+        // Sort positions and carry owners along
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(unsorted[a], unsorted[b]));
+        this.owners = new int[total];
+        for (int i = 0; i < total; i++) {
+            entries[i] = unsorted[order[i]];
+            owners[i] = unsortedOwners[order[i]];
+        }
+        this.positions = entries;
+    }
+    
+    /**
+     * Node owning a key: the first virtual node clockwise from the key's hash
+     */
+    public T locate(CharSequence key) {
+        return nodes.get(ownerIndex(Hashing.hash64(key)));
+    }
+    
+    public List<T> getNodes() {
+        return nodes;
+    }
+    
+    /**
+     * Fraction of the hash space owned by each node, in node order
+     */
+    public double[] ownership() {
+        double space = Math.pow(2, 64);
+        double[] share = new double[nodes.size()];
+        if (positions.length == 1) {
+            share[owners[0]] = 1.0;
+            return share;
+        }
+        for (int i = 0; i < positions.length; i++) {
+            // Arc from the previous position up to this one (wrapping around) belongs to this owner;
+            // the subtraction wraps modulo 2^64 and is read as unsigned
+            long arc = positions[i] - positions[i == 0 ? positions.length - 1 : i - 1];
+            share[owners[i]] += (arc >= 0 ? arc : arc + space) / space;
+        }
+        return share;
+    }
+    
+    private int ownerIndex(long hash) {
+        int index = Arrays.binarySearch(positions, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (index == positions.length) {
+            index = 0;
+        }
+        return owners[index];
+    }
+}
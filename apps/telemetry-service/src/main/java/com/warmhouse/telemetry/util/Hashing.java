@@ -0,0 +1,43 @@
+package com.warmhouse.telemetry.util;
+
+import java.util.UUID;
+
+/**
+ * Fast non-cryptographic hashing for sketches and partitioning
+ */
+public final class Hashing {
+    
+    private Hashing() {
+    }
+    
+    /**
+     * 64-bit FNV-1a over UTF-16 code units followed by a murmur3 finalizer
+     */
+    public static long hash64(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+    
+    /**
+     * 64-bit hash of a UUID from both halves, for filters keyed by device or event id
+     */
+    public static long hash64(UUID value) {
+        return mix64(value.getMostSignificantBits() ^ mix64(value.getLeastSignificantBits()));
+    }
+
+    /**
+     * Murmur3 64-bit finalizer
+     */
+    public static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,76 @@
+package com.warmhouse.telemetry.util;
+
+/**
+ * HyperLogLog distinct-count sketch with O(1) estimates
+ * The harmonic sum and zero-register count are maintained incrementally, so reading the
+ * estimate does not scan the registers. Standard error is about 1.04 / sqrt(2^precision).
+ */
+public class HyperLogLog {
+    
+    private final int precision;
+    private final int registerCount;
+    private final byte[] registers;
+    private final double alphaMM;
+    
+    private double inverseSum;
+    private int zeroRegisters;
+    
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be in [4, 16]: " + precision);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.registers = new byte[registerCount];
+        this.inverseSum = registerCount;
+        this.zeroRegisters = registerCount;
+        
+        double alpha;
+        switch (registerCount) {
+            case 16:
+                alpha = 0.673;
+                break;
+            case 32:
+                alpha = 0.697;
+                break;
+            case 64:
+                alpha = 0.709;
+                break;
+            default:
+                alpha = 0.7213 / (1 + 1.079 / registerCount);
+        }
+        this.alphaMM = alpha * registerCount * registerCount;
+    }
+    
+    /**
+     * Offer a value, returns true if the sketch changed
+     */
+    public synchronized boolean add(CharSequence value) {
+        long hash = Hashing.hash64(value);
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        
+        byte current = registers[index];
+        if (rank <= current) {
+            return false;
+        }
+        if (current == 0) {
+            zeroRegisters--;
+        }
+        inverseSum += Math.scalb(1.0, -rank) - Math.scalb(1.0, -current);
+        registers[index] = (byte) rank;
+        return true;
+    }
+    
+    /**
+     * Estimated number of distinct values offered so far
+     */
+    public synchronized long estimate() {
+        double raw = alphaMM / inverseSum;
+        if (raw <= 2.5 * registerCount && zeroRegisters > 0) {
+            // Small range correction: linear counting
+            return Math.round(registerCount * Math.log((double) registerCount / zeroRegisters));
+        }
+        return Math.round(raw);
+    }
+}
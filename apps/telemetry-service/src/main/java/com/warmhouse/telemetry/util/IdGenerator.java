@@ -0,0 +1,17 @@
+package com.warmhouse.telemetry.util;
+
+import java.util.UUID;
+
+/**
+ * Source of unique ids for measurements and events
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    
+    UUID next();
+    
+    /**
+     * Version 4 ids from the shared SecureRandom, as UUID.randomUUID()
+     */
+    IdGenerator RANDOM = UUID::randomUUID;
+}
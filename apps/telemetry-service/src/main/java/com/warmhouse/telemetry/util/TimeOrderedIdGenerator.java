@@ -0,0 +1,39 @@
+package com.warmhouse.telemetry.util;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * UUID version 7 ids (RFC 9562): 48-bit Unix milliseconds followed by 74 random bits
+ * Ids sort by creation time to the millisecond. Random bits come from ThreadLocalRandom rather than
+ * the SecureRandom shared by UUID.randomUUID(), so concurrent callers never contend; the ids are
+ * unique, not unguessable.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+    
+    private final LongSupplier clock;
+    
+    public TimeOrderedIdGenerator() {
+        this(System::currentTimeMillis);
+    }
+    
+    TimeOrderedIdGenerator(LongSupplier clock) {
+        this.clock = clock;
+    }
+    
+    @Override
+    public UUID next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSignificant = (clock.getAsLong() << 16) | 0x7000L | (random.nextInt() & 0x0FFF);
+        long leastSignificant = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+    
+    /**
+     * Creation time of a version 7 id in Unix milliseconds
+     */
+    public static long timestampMillis(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+}
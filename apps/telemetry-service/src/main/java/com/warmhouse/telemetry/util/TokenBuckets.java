@@ -0,0 +1,75 @@
+package com.warmhouse.telemetry.util;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token buckets keyed by id
+ * Each bucket is a single AtomicLong holding its theoretical arrival time (GCRA), so taking tokens is
+ * one compare-and-set without refill bookkeeping; ConcurrentHashMap bins stripe contention across keys.
+ */
+public final class TokenBuckets {
+    
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final ConcurrentHashMap<UUID, AtomicLong> buckets = new ConcurrentHashMap<>();
+    
+    /**
+     * @param ratePerSecond sustained tokens per second
+     * @param burst         tokens available to an idle key at once
+     */
+    public TokenBuckets(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = intervalNanos * burst;
+    }
+    
+    /**
+     * Take tokens for a key
+     *
+     * @return 0 when admitted, otherwise nanoseconds until the tokens will be available
+     */
+    public long tryAcquire(UUID key, int tokens, long nowNanos) {
+        long cost = intervalNanos * tokens;
+        if (cost > toleranceNanos) {
+            // More than the burst can ever hold
+            return cost - toleranceNanos;
+        }
+        AtomicLong tat = buckets.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, nowNanos) + cost;
+            long wait = next - toleranceNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Return tokens taken by an admission that was rolled back
+     */
+    public void refund(UUID key, int tokens) {
+        AtomicLong tat = buckets.get(key);
+        if (tat != null) {
+            tat.addAndGet(-intervalNanos * tokens);
+        }
+    }
+    
+    /**
+     * Forget keys whose bucket has been full since before the given time
+     */
+    public void evictIdle(long nowNanos) {
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() < nowNanos);
+    }
+    
+    public int size() {
+        return buckets.size();
+    }
+}
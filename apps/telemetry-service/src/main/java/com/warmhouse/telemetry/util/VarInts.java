@@ -0,0 +1,58 @@
+package com.warmhouse.telemetry.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable-length integer helpers (unsigned LEB128 and zigzag) for compact binary encodings
+ */
+public final class VarInts {
+    
+    private VarInts() {
+    }
+    
+    public static void writeVarint(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    public static long readVarint(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+    
+    public static int readVarintAsInt(DataInput in) throws IOException {
+        long value = readVarint(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Varint out of int range: " + value);
+        }
+        return (int) value;
+    }
+    
+    public static void writeZigzag(DataOutput out, long value) throws IOException {
+        writeVarint(out, zigzag(value));
+    }
+    
+    public static long readZigzag(DataInput in) throws IOException {
+        return unzigzag(readVarint(in));
+    }
+    
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
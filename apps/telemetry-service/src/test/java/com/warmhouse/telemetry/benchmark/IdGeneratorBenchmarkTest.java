@@ -0,0 +1,79 @@
+package com.warmhouse.telemetry.benchmark;
+
+import com.warmhouse.telemetry.util.IdGenerator;
+import com.warmhouse.telemetry.util.TimeOrderedIdGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH throughput of measurement and event id generation, UUID.randomUUID() against time-ordered ids,
+ * at 1 to 64 threads. Excluded from the default build, run with:
+ * <pre>
+ * mvn test -Pbenchmark -Dbenchmark.threads=1,4,16,64
+ * </pre>
+ * The report is logged and written to target/benchmark-ids.txt.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmarkTest {
+    
+    private static final Logger log = LoggerFactory.getLogger(IdGeneratorBenchmarkTest.class);
+    
+    private final IdGenerator timeOrdered = new TimeOrderedIdGenerator();
+    
+    @Benchmark
+    public UUID random() {
+        return IdGenerator.RANDOM.next();
+    }
+    
+    @Benchmark
+    public UUID timeOrdered() {
+        return timeOrdered.next();
+    }
+    
+    @Test
+    void compareThroughput() throws RunnerException, IOException {
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-8s %-12s %14s %10s", "threads", "generator", "ops/us", "error"));
+        for (String threads : System.getProperty("benchmark.threads", "1,4,16,64").split(",")) {
+            Options options = new OptionsBuilder()
+                    .include(IdGeneratorBenchmarkTest.class.getName() + "\\.")
+                    .threads(Integer.parseInt(threads.trim()))
+                    .forks(1)
+                    .warmupIterations(3)
+                    .warmupTime(TimeValue.seconds(1))
+                    .measurementIterations(5)
+                    .measurementTime(TimeValue.seconds(1))
+                    .timeUnit(TimeUnit.MICROSECONDS)
+                    .build();
+            for (RunResult result : new Runner(options).run()) {
+                report.add(String.format("%-8s %-12s %14.2f %10.2f", threads.trim(),
+                        result.getParams().getBenchmark().replaceAll(".*\\.", ""),
+                        result.getPrimaryResult().getScore(), result.getPrimaryResult().getScoreError()));
+            }
+        }
+        
+        String text = String.join(System.lineSeparator(), report);
+        log.info("Id generator throughput:{}{}", System.lineSeparator(), text);
+        Files.writeString(Path.of("target", "benchmark-ids.txt"), text + System.lineSeparator());
+    }
+}
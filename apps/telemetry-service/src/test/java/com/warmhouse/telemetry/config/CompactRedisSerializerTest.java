@@ -0,0 +1,33 @@
+package com.warmhouse.telemetry.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompactRedisSerializerTest {
+    
+    private final CompactRedisSerializer serializer = new CompactRedisSerializer();
+    
+    @Test
+    void roundTripsTypedValuesCompactly() {
+        UUID locationId = UUID.randomUUID();
+        
+        assertEquals(2, serializer.serialize(Boolean.TRUE).length);
+        assertEquals(17, serializer.serialize(locationId).length);
+        assertEquals(Boolean.TRUE, serializer.deserialize(serializer.serialize(Boolean.TRUE)));
+        assertEquals(locationId, serializer.deserialize(serializer.serialize(locationId)));
+        assertEquals(42L, serializer.deserialize(serializer.serialize(42L)));
+        assertEquals("kitchen", serializer.deserialize(serializer.serialize("kitchen")));
+    }
+    
+    @Test
+    void readsJsonEntriesAsAbsent() {
+        byte[] legacy = new GenericJackson2JsonRedisSerializer().serialize(Boolean.TRUE);
+        
+        assertNull(serializer.deserialize(legacy));
+    }
+}
@@ -0,0 +1,97 @@
+package com.warmhouse.telemetry.dto;
+
+import com.warmhouse.telemetry.model.QualityCode;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TelemetrySeriesBinaryCodecTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void roundTripPreservesEveryPoint() throws IOException {
+        TelemetrySeries regular = newSeries("temperature", "celsius");
+        long start = 1_734_708_600L * SECOND;
+        for (int i = 0; i < 1000; i++) {
+            double value = 21.5 + (i / 100) * 0.25;
+            byte quality = (i % 250 == 0 ? QualityCode.UNCERTAIN : QualityCode.GOOD).code();
+            regular.append(start + i * 5 * SECOND, value, quality);
+        }
+
+        TelemetrySeries irregular = newSeries("humidity", null);
+        irregular.append(start, 45.2, QualityCode.GOOD.code());
+        irregular.append(start + 3, -0.0, QualityCode.BAD.code());
+        irregular.append(start - 7 * SECOND, Double.NaN, QualityCode.UNKNOWN.code());
+        irregular.append(start + 86_400 * SECOND, Double.MAX_VALUE, QualityCode.GOOD.code());
+
+        TelemetrySeries empty = newSeries("energy", "kwh");
+
+        List<TelemetrySeries> decoded = roundTrip(List.of(regular, irregular, empty));
+
+        assertEquals(3, decoded.size());
+        assertSeriesEquals(regular, decoded.get(0));
+        assertSeriesEquals(irregular, decoded.get(1));
+        assertSeriesEquals(empty, decoded.get(2));
+        assertEquals("", decoded.get(1).getUnit());
+    }
+
+    @Test
+    void regularSeriesEncodesCompactly() throws IOException {
+        TelemetrySeries series = newSeries("temperature", "celsius");
+        for (int i = 0; i < 10_000; i++) {
+            series.append(i * 10 * SECOND, 22.0, QualityCode.GOOD.code());
+        }
+
+        int encodedSize = encode(List.of(series)).length;
+
+        assertTrue(encodedSize < 3 * 10_000, "expected under 3 bytes per point, got " + encodedSize);
+    }
+
+    @Test
+    void rejectsForeignPayload() {
+        byte[] payload = "[{\"deviceId\":\"x\"}]".getBytes();
+
+        assertThrows(IOException.class, () ->
+                TelemetrySeriesBinaryCodec.decode(new DataInputStream(new ByteArrayInputStream(payload))));
+    }
+
+    private static TelemetrySeries newSeries(String type, String unit) {
+        return new TelemetrySeries(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), type, unit);
+    }
+
+    private static byte[] encode(List<TelemetrySeries> series) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TelemetrySeriesBinaryCodec.encode(series, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static List<TelemetrySeries> roundTrip(List<TelemetrySeries> series) throws IOException {
+        return TelemetrySeriesBinaryCodec.decode(new DataInputStream(new ByteArrayInputStream(encode(series))));
+    }
+
+    private static void assertSeriesEquals(TelemetrySeries expected, TelemetrySeries actual) {
+        assertEquals(expected.getDeviceId(), actual.getDeviceId());
+        assertEquals(expected.getHouseId(), actual.getHouseId());
+        assertEquals(expected.getLocationId(), actual.getLocationId());
+        assertEquals(expected.getMeasurementType(), actual.getMeasurementType());
+        assertEquals(expected.getSize(), actual.getSize());
+        for (int i = 0; i < expected.getSize(); i++) {
+            assertEquals(expected.getTimestampNanos(i), actual.getTimestampNanos(i), "timestamp " + i);
+            assertEquals(Double.doubleToRawLongBits(expected.getValue(i)),
+                    Double.doubleToRawLongBits(actual.getValue(i)), "value " + i);
+            assertEquals(expected.getQualityCode(i), actual.getQualityCode(i), "quality " + i);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.warmhouse.telemetry.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.warmhouse.telemetry.model.QualityCode;
+import com.warmhouse.telemetry.model.TelemetryData;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class TelemetrySeriesSerializerTest {
+    
+    // As configured by Spring Boot
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    
+    @Test
+    void writesTheSameBytesAsTheTelemetryResponseArray() throws Exception {
+        Instant start = Instant.parse("2024-12-20T15:30:00Z");
+        TelemetrySeries temperature = new TelemetrySeries(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                "temperature", "celsius");
+        temperature.append(TelemetrySeries.toEpochNanos(start), 21.5, QualityCode.GOOD.code());
+        temperature.append(TelemetrySeries.toEpochNanos(start.plusMillis(1500)), -3.0, QualityCode.BAD.code());
+        temperature.append(TelemetrySeries.toEpochNanos(start.plusNanos(123_456_789)), 1e-7,
+                QualityCode.UNCERTAIN.code());
+        TelemetrySeries humidity = new TelemetrySeries(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                "humidity", "");
+        humidity.append(TelemetrySeries.toEpochNanos(start), 45.0, QualityCode.UNKNOWN.code());
+        TelemetrySeries empty = new TelemetrySeries(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                "co2", "ppm");
+        List<TelemetrySeries> series = List.of(temperature, empty, humidity);
+        
+        List<TelemetryResponse> points = new ArrayList<>();
+        for (TelemetrySeries s : series) {
+            for (int i = 0; i < s.getSize(); i++) {
+                points.add(TelemetryResponse.fromModel(TelemetryData.builder()
+                        .deviceId(s.getDeviceId())
+                        .houseId(s.getHouseId())
+                        .locationId(s.getLocationId())
+                        .measurementType(s.getMeasurementType())
+                        .value(s.getValue(i))
+                        .unit(s.getUnit())
+                        .quality(s.getQuality(i).name())
+                        .timestamp(s.getTimestamp(i))
+                        .build()));
+            }
+        }
+        
+        assertArrayEquals(mapper.writeValueAsBytes(points),
+                mapper.writeValueAsBytes(new TelemetrySeriesResponse(series)));
+        assertArrayEquals(mapper.writeValueAsBytes(List.of()),
+                mapper.writeValueAsBytes(new TelemetrySeriesResponse(List.of())));
+    }
+}
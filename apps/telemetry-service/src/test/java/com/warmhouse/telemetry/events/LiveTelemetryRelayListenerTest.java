@@ -0,0 +1,53 @@
+package com.warmhouse.telemetry.events;
+
+import com.warmhouse.telemetry.dto.TelemetryResponse;
+import com.warmhouse.telemetry.service.LiveTelemetryHub;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LiveTelemetryRelayListenerTest {
+    
+    @Test
+    void batchEventsFromOtherInstancesAreRelayedReadingByReading() {
+        LiveTelemetryHub hub = mock(LiveTelemetryHub.class);
+        when(hub.getSubscriberCount()).thenReturn(1);
+        LiveTelemetryRelayListener listener = new LiveTelemetryRelayListener(hub);
+        ReflectionTestUtils.setField(listener, "instanceId", "instance-a");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        
+        listener.handleMeasurementReceived(Map.of(
+                "event_type", RabbitMQConfig.BATCH_RECEIVED_KEY,
+                "source_instance", "instance-b",
+                "measurements", List.of(reading(first, 21.5), reading(second, 40.0))));
+        
+        ArgumentCaptor<TelemetryResponse> relayed = ArgumentCaptor.forClass(TelemetryResponse.class);
+        verify(hub, times(2)).publish(relayed.capture());
+        assertEquals(first, relayed.getAllValues().get(0).getDeviceId());
+        assertEquals(40.0, relayed.getAllValues().get(1).getValue());
+        
+        // Own batches were already delivered in-process
+        listener.handleMeasurementReceived(Map.of(
+                "event_type", RabbitMQConfig.BATCH_RECEIVED_KEY,
+                "source_instance", "instance-a",
+                "measurements", List.of(reading(first, 22.0))));
+        verify(hub, times(2)).publish(any());
+    }
+    
+    private static Map<String, Object> reading(UUID deviceId, double value) {
+        return Map.of("measurement_id", UUID.randomUUID().toString(), "device_id", deviceId.toString(),
+                "measurement_type", "temperature", "value", value, "timestamp", "2026-10-19T10:00:00Z");
+    }
+}
@@ -0,0 +1,85 @@
+package com.warmhouse.telemetry.events;
+
+import com.warmhouse.telemetry.model.TelemetryData;
+import com.warmhouse.telemetry.service.DependencyBulkheads;
+import com.warmhouse.telemetry.util.IdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TelemetryEventPublisherTest {
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void eventsAreQueuedWhileBrokerIsDownAndDrainedInOrder() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DependencyBulkheads bulkheads = new DependencyBulkheads(registry);
+        ReflectionTestUtils.setField(bulkheads, "redisPoolSize", 1);
+        ReflectionTestUtils.setField(bulkheads, "redisQueueCapacity", 1);
+        ReflectionTestUtils.setField(bulkheads, "redisFailureThreshold", 1);
+        ReflectionTestUtils.setField(bulkheads, "rabbitPoolSize", 1);
+        ReflectionTestUtils.setField(bulkheads, "rabbitQueueCapacity", 16);
+        ReflectionTestUtils.setField(bulkheads, "rabbitTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(bulkheads, "rabbitFailureThreshold", 1);
+        ReflectionTestUtils.setField(bulkheads, "rabbitOpenMs", 0L);
+        ReflectionTestUtils.invokeMethod(bulkheads, "init");
+        
+        RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+        doThrow(new AmqpConnectException(new java.net.ConnectException("refused")))
+                .when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class));
+        TelemetryEventPublisher publisher = new TelemetryEventPublisher(rabbitTemplate, bulkheads,
+                IdGenerator.RANDOM, registry);
+        ReflectionTestUtils.setField(publisher, "instanceId", "test");
+        ReflectionTestUtils.setField(publisher, "localQueueCapacity", 100);
+        
+        for (int i = 0; i < 5; i++) {
+            publisher.publishMeasurementReceived(reading(i));
+        }
+        waitFor(() -> publisher.getLocalQueueSize() == 5);
+        assertTrue(bulkheads.isDegraded());
+        
+        // Broker is back: the drain probe succeeds and the backlog follows in order
+        reset(rabbitTemplate);
+        publisher.drainLocalQueue();
+        waitFor(() -> publisher.getLocalQueueSize() == 0);
+        
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(rabbitTemplate, times(5)).convertAndSend(anyString(), anyString(), sent.capture());
+        List<Object> events = sent.getAllValues();
+        for (int i = 0; i < 5; i++) {
+            assertEquals((double) i, ((Map<String, Object>) events.get(i)).get("value"));
+        }
+        waitFor(() -> !bulkheads.isDegraded());
+        ReflectionTestUtils.invokeMethod(bulkheads, "shutdown");
+    }
+    
+    private static TelemetryData reading(int i) {
+        return TelemetryData.builder()
+                .measurementId(UUID.randomUUID())
+                .deviceId(UUID.randomUUID())
+                .measurementType("temperature")
+                .value((double) i)
+                .timestamp(Instant.now())
+                .build();
+    }
+    
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached");
+            Thread.sleep(10);
+        }
+    }
+}
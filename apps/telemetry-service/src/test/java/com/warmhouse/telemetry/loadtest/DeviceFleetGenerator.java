@@ -0,0 +1,96 @@
+package com.warmhouse.telemetry.loadtest;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Synthetic device fleet producing telemetry request payloads
+ * Devices are grouped into houses and locations; each device reports one measurement type
+ * with a slowly drifting value, like a real sensor. Not thread-safe: use from the dispatching thread.
+ */
+public class DeviceFleetGenerator {
+    
+    private static final String[][] TYPES = {
+        {"temperature", "celsius"},
+        {"humidity", "percent"},
+        {"energy", "kwh"},
+        {"co2", "ppm"}
+    };
+    
+    private final Device[] devices;
+    private final SplittableRandom random;
+    
+    public DeviceFleetGenerator(int deviceCount, int devicesPerHouse, long seed) {
+        this.random = new SplittableRandom(seed);
+        this.devices = new Device[deviceCount];
+        UUID houseId = null;
+        UUID locationId = null;
+        for (int i = 0; i < deviceCount; i++) {
+            if (i % devicesPerHouse == 0) {
+                houseId = new UUID(random.nextLong(), random.nextLong());
+            }
+            if (i % 2 == 0) {
+                locationId = new UUID(random.nextLong(), random.nextLong());
+            }
+            String[] type = TYPES[i % TYPES.length];
+            devices[i] = new Device(new UUID(random.nextLong(), random.nextLong()), houseId, locationId,
+                    type[0], type[1], 10 + random.nextDouble() * 40);
+        }
+    }
+    
+    public int size() {
+        return devices.length;
+    }
+    
+    /**
+     * Next single reading for a random device as a TelemetryRequest JSON document
+     */
+    public String nextReading() {
+        return toJson(devices[random.nextInt(devices.length)], Instant.now());
+    }
+    
+    /**
+     * Next batch of readings as a JSON array
+     */
+    public String nextBatch(int size) {
+        StringBuilder json = new StringBuilder(size * 260).append('[');
+        Instant now = Instant.now();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(toJson(devices[random.nextInt(devices.length)], now));
+        }
+        return json.append(']').toString();
+    }
+    
+    private String toJson(Device device, Instant timestamp) {
+        double value = Math.max(0.1, device.value + (random.nextDouble() - 0.5) * 0.2);
+        device.value = value;
+        return String.format(Locale.ROOT,
+                "{\"deviceId\":\"%s\",\"houseId\":\"%s\",\"locationId\":\"%s\",\"measurementType\":\"%s\","
+                        + "\"value\":%.3f,\"unit\":\"%s\",\"quality\":\"GOOD\",\"timestamp\":\"%s\"}",
+                device.id, device.houseId, device.locationId, device.type, value, device.unit, timestamp);
+    }
+    
+    private static final class Device {
+        
+        private final UUID id;
+        private final UUID houseId;
+        private final UUID locationId;
+        private final String type;
+        private final String unit;
+        private double value;
+        
+        Device(UUID id, UUID houseId, UUID locationId, String type, String unit, double value) {
+            this.id = id;
+            this.houseId = houseId;
+            this.locationId = locationId;
+            this.type = type;
+            this.unit = unit;
+            this.value = value;
+        }
+    }
+}
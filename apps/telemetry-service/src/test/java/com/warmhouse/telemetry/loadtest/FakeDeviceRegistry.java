@@ -0,0 +1,56 @@
+package com.warmhouse.telemetry.loadtest;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process device registry stand-in: every device ID is reported as existing
+ */
+public class FakeDeviceRegistry implements AutoCloseable {
+    
+    private final HttpServer server;
+    private final AtomicLong lookups = new AtomicLong();
+    
+    public FakeDeviceRegistry() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        server.setExecutor(Executors.newFixedThreadPool(4, r -> {
+            Thread thread = new Thread(r, "fake-registry");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/api/v1/devices/", exchange -> {
+            lookups.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            String path = exchange.getRequestURI().getPath();
+            String deviceId = path.substring(path.lastIndexOf('/') + 1);
+            byte[] body = ("{\"id\":\"" + deviceId + "\",\"name\":\"Load test device\",\"status\":\"active\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+    
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    public long getLookups() {
+        return lookups.get();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,128 @@
+package com.warmhouse.telemetry.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process InfluxDB v2 stand-in for the HTTP write, query, delete and ping APIs
+ * Writes are parsed only to count line-protocol points; queries return an empty result set.
+ */
+public class FakeInfluxDBServer implements AutoCloseable {
+    
+    private final HttpServer server;
+    private final AtomicLong writeRequests = new AtomicLong();
+    private final AtomicLong pointsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong deletes = new AtomicLong();
+    
+    public FakeInfluxDBServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        server.setExecutor(Executors.newFixedThreadPool(8, r -> {
+            Thread thread = new Thread(r, "fake-influxdb");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/ping", exchange -> respond(exchange, 204, null));
+        server.createContext("/health", exchange -> respond(exchange, 200, "{\"status\":\"pass\"}"));
+        server.createContext("/api/v2/write", this::handleWrite);
+        server.createContext("/api/v2/query", this::handleQuery);
+        server.createContext("/api/v2/delete", exchange -> {
+            drain(exchange);
+            deletes.incrementAndGet();
+            respond(exchange, 204, null);
+        });
+        server.start();
+    }
+    
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    public long getWriteRequests() {
+        return writeRequests.get();
+    }
+    
+    public long getPointsWritten() {
+        return pointsWritten.get();
+    }
+    
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+    
+    public long getQueries() {
+        return queries.get();
+    }
+    
+    public long getDeletes() {
+        return deletes.get();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+    
+    private void handleWrite(HttpExchange exchange) throws IOException {
+        byte[] body = drain(exchange);
+        writeRequests.incrementAndGet();
+        bytesWritten.addAndGet(body.length);
+        long lines = 0;
+        boolean content = false;
+        for (byte b : body) {
+            if (b == '\n') {
+                if (content) {
+                    lines++;
+                }
+                content = false;
+            } else {
+                content = true;
+            }
+        }
+        if (content) {
+            lines++;
+        }
+        pointsWritten.addAndGet(lines);
+        respond(exchange, 204, null);
+    }
+    
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        drain(exchange);
+        queries.incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
+        respond(exchange, 200, "");
+    }
+    
+    private static byte[] drain(HttpExchange exchange) throws IOException {
+        InputStream body = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            body = new GZIPInputStream(body);
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        body.transferTo(buffer);
+        return buffer.toByteArray();
+    }
+    
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        exchange.sendResponseHeaders(status, status == 204 || bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0 && status != 204) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,662 @@
+package com.warmhouse.telemetry.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * In-process Redis stand-in speaking RESP2
+ * Supports the string, hash, set, sorted set, expiry and transaction commands used by the service;
+ * HELLO is rejected so clients fall back to RESP2. Expiry is tracked but only applied lazily.
+ * Lua scripts run as Java stand-ins registered by their source, see {@link #script(String, Script)}.
+ */
+public class FakeRedisServer implements AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(FakeRedisServer.class);
+    
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "fake-redis");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final Map<String, byte[]> strings = new HashMap<>();
+    private final Map<String, Map<String, byte[]>> hashes = new HashMap<>();
+    private final Map<String, Set<String>> sets = new HashMap<>();
+    private final Map<String, Map<String, Double>> sortedSets = new HashMap<>();
+    private final Map<String, Long> expiresAt = new HashMap<>();
+    private final AtomicLong commandCount = new AtomicLong();
+    // Script stand-ins by SHA1 of their source, and the scripts loaded by EVAL
+    private final Map<String, Script> scripts = new ConcurrentHashMap<>();
+    private final Set<String> loadedScripts = new HashSet<>();
+    
+    /**
+     * Java stand-in for a Lua script, run by EVAL and EVALSHA
+     */
+    @FunctionalInterface
+    public interface Script {
+        
+        Object run(Commands redis, List<String> keys, List<String> args);
+    }
+    
+    /**
+     * Equivalent of redis.call inside a script: status and bulk replies come back as strings, integers
+     * as longs and arrays as lists; error replies are thrown
+     */
+    @FunctionalInterface
+    public interface Commands {
+        
+        Object call(String... command);
+    }
+    
+    public FakeRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        connections.execute(this::acceptLoop);
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+    
+    /**
+     * Emulate a Lua script of the service; EVAL and EVALSHA of this source run the stand-in
+     */
+    public void script(String source, Script standIn) {
+        scripts.put(sha1(source.getBytes(StandardCharsets.UTF_8)), standIn);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+    
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Fake Redis accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void serve(Socket socket) {
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            List<List<byte[]>> transaction = null;
+            while (true) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                commandCount.incrementAndGet();
+                String name = str(command.get(0)).toUpperCase();
+                
+                if ("MULTI".equals(name)) {
+                    transaction = new ArrayList<>();
+                    writeSimple(out, "OK");
+                } else if ("EXEC".equals(name) && transaction != null) {
+                    out.write(('*' + Integer.toString(transaction.size()) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                    synchronized (this) {
+                        for (List<byte[]> queued : transaction) {
+                            execute(queued, out);
+                        }
+                    }
+                    transaction = null;
+                } else if ("DISCARD".equals(name)) {
+                    transaction = null;
+                    writeSimple(out, "OK");
+                } else if (transaction != null) {
+                    transaction.add(command);
+                    writeSimple(out, "QUEUED");
+                } else {
+                    synchronized (this) {
+                        execute(command, out);
+                    }
+                }
+                
+                // Flush once the client's pipeline is drained
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Fake Redis connection closed: {}", e.getMessage());
+        }
+    }
+    
+    private void execute(List<byte[]> command, OutputStream out) throws IOException {
+        String name = str(command.get(0)).toUpperCase();
+        switch (name) {
+            case "PING":
+                writeSimple(out, "PONG");
+                break;
+            case "HELLO":
+                writeError(out, "ERR unknown command 'HELLO'");
+                break;
+            case "AUTH":
+            case "SELECT":
+            case "CLIENT":
+            case "FLUSHALL":
+                if ("FLUSHALL".equals(name)) {
+                    strings.clear();
+                    hashes.clear();
+                    sets.clear();
+                    sortedSets.clear();
+                    expiresAt.clear();
+                }
+                writeSimple(out, "OK");
+                break;
+            case "GET":
+                writeBulk(out, strings.get(live(str(command.get(1)))));
+                break;
+            case "MGET":
+                out.write(('*' + Integer.toString(command.size() - 1) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                for (int i = 1; i < command.size(); i++) {
+                    writeBulk(out, strings.get(live(str(command.get(i)))));
+                }
+                break;
+            case "SET":
+                set(command, out);
+                break;
+            case "SETEX":
+            case "PSETEX": {
+                String key = str(command.get(1));
+                long ttl = Long.parseLong(str(command.get(2)));
+                strings.put(key, command.get(3));
+                expiresAt.put(key, System.currentTimeMillis() + ("SETEX".equals(name) ? ttl * 1000 : ttl));
+                writeSimple(out, "OK");
+                break;
+            }
+            case "DEL":
+            case "UNLINK": {
+                long removed = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    String key = str(command.get(i));
+                    expiresAt.remove(key);
+                    if (strings.remove(key) != null | hashes.remove(key) != null | sets.remove(key) != null
+                            | sortedSets.remove(key) != null) {
+                        removed++;
+                    }
+                }
+                writeInteger(out, removed);
+                break;
+            }
+            case "EXISTS": {
+                long found = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    String key = live(str(command.get(i)));
+                    if (strings.containsKey(key) || hashes.containsKey(key) || sets.containsKey(key)
+                            || sortedSets.containsKey(key)) {
+                        found++;
+                    }
+                }
+                writeInteger(out, found);
+                break;
+            }
+            case "INCR":
+            case "INCRBY": {
+                String key = live(str(command.get(1)));
+                long delta = "INCR".equals(name) ? 1 : Long.parseLong(str(command.get(2)));
+                byte[] current = strings.get(key);
+                long next = (current != null ? Long.parseLong(str(current)) : 0) + delta;
+                strings.put(key, Long.toString(next).getBytes(StandardCharsets.US_ASCII));
+                writeInteger(out, next);
+                break;
+            }
+            case "EXPIRE":
+            case "PEXPIRE": {
+                String key = str(command.get(1));
+                long ttl = Long.parseLong(str(command.get(2)));
+                expiresAt.put(key, System.currentTimeMillis() + ("EXPIRE".equals(name) ? ttl * 1000 : ttl));
+                writeInteger(out, 1);
+                break;
+            }
+            case "KEYS": {
+                Pattern pattern = globToRegex(str(command.get(1)));
+                List<String> keys = new ArrayList<>();
+                for (Set<String> keySet : List.of(strings.keySet(), hashes.keySet(), sets.keySet(),
+                        sortedSets.keySet())) {
+                    for (String key : keySet) {
+                        if (pattern.matcher(key).matches()) {
+                            keys.add(key);
+                        }
+                    }
+                }
+                out.write(('*' + Integer.toString(keys.size()) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                for (String key : keys) {
+                    writeBulk(out, key.getBytes(StandardCharsets.ISO_8859_1));
+                }
+                break;
+            }
+            case "HSET":
+            case "HMSET": {
+                Map<String, byte[]> hash = hashes.computeIfAbsent(live(str(command.get(1))), k -> new HashMap<>());
+                long added = 0;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (hash.put(str(command.get(i)), command.get(i + 1)) == null) {
+                        added++;
+                    }
+                }
+                if ("HMSET".equals(name)) {
+                    writeSimple(out, "OK");
+                } else {
+                    writeInteger(out, added);
+                }
+                break;
+            }
+            case "HGET": {
+                Map<String, byte[]> hash = hashes.get(live(str(command.get(1))));
+                writeBulk(out, hash != null ? hash.get(str(command.get(2))) : null);
+                break;
+            }
+            case "HGETALL": {
+                Map<String, byte[]> hash = hashes.getOrDefault(live(str(command.get(1))), Map.of());
+                out.write(('*' + Integer.toString(hash.size() * 2) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                for (Map.Entry<String, byte[]> entry : hash.entrySet()) {
+                    writeBulk(out, entry.getKey().getBytes(StandardCharsets.ISO_8859_1));
+                    writeBulk(out, entry.getValue());
+                }
+                break;
+            }
+            case "HDEL": {
+                Map<String, byte[]> hash = hashes.get(live(str(command.get(1))));
+                long removed = 0;
+                for (int i = 2; hash != null && i < command.size(); i++) {
+                    if (hash.remove(str(command.get(i))) != null) {
+                        removed++;
+                    }
+                }
+                // Like Redis, an emptied hash or set no longer exists
+                if (hash != null && hash.isEmpty()) {
+                    hashes.remove(str(command.get(1)));
+                }
+                writeInteger(out, removed);
+                break;
+            }
+            case "SADD":
+            case "SREM": {
+                String key = live(str(command.get(1)));
+                Set<String> set = "SADD".equals(name) ? sets.computeIfAbsent(key, k -> new LinkedHashSet<>()) : sets.get(key);
+                long changed = 0;
+                for (int i = 2; set != null && i < command.size(); i++) {
+                    boolean result = "SADD".equals(name) ? set.add(str(command.get(i))) : set.remove(str(command.get(i)));
+                    if (result) {
+                        changed++;
+                    }
+                }
+                if (set != null && set.isEmpty()) {
+                    sets.remove(key);
+                }
+                writeInteger(out, changed);
+                break;
+            }
+            case "TYPE": {
+                String key = live(str(command.get(1)));
+                writeSimple(out, strings.containsKey(key) ? "string" : hashes.containsKey(key) ? "hash"
+                        : sets.containsKey(key) ? "set" : sortedSets.containsKey(key) ? "zset" : "none");
+                break;
+            }
+            case "HMGET": {
+                Map<String, byte[]> hash = hashes.getOrDefault(live(str(command.get(1))), Map.of());
+                out.write(('*' + Integer.toString(command.size() - 2) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                for (int i = 2; i < command.size(); i++) {
+                    writeBulk(out, hash.get(str(command.get(i))));
+                }
+                break;
+            }
+            case "HSETNX": {
+                Map<String, byte[]> hash = hashes.computeIfAbsent(live(str(command.get(1))), k -> new HashMap<>());
+                writeInteger(out, hash.putIfAbsent(str(command.get(2)), command.get(3)) == null ? 1 : 0);
+                break;
+            }
+            case "ZADD":
+                zadd(command, out);
+                break;
+            case "ZREM": {
+                String key = live(str(command.get(1)));
+                Map<String, Double> sortedSet = sortedSets.get(key);
+                long removed = 0;
+                for (int i = 2; sortedSet != null && i < command.size(); i++) {
+                    if (sortedSet.remove(str(command.get(i))) != null) {
+                        removed++;
+                    }
+                }
+                if (sortedSet != null && sortedSet.isEmpty()) {
+                    sortedSets.remove(key);
+                }
+                writeInteger(out, removed);
+                break;
+            }
+            case "ZRANGE":
+                zrange(command, out);
+                break;
+            case "EVAL":
+            case "EVALSHA":
+                eval(name, command, out);
+                break;
+            case "SMEMBERS": {
+                Set<String> set = sets.getOrDefault(live(str(command.get(1))), Set.of());
+                out.write(('*' + Integer.toString(set.size()) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                for (String member : set) {
+                    writeBulk(out, member.getBytes(StandardCharsets.ISO_8859_1));
+                }
+                break;
+            }
+            default:
+                writeError(out, "ERR unknown command '" + name + "'");
+        }
+    }
+    
+    private void set(List<byte[]> command, OutputStream out) throws IOException {
+        String key = str(command.get(1));
+        boolean onlyIfAbsent = false;
+        Long ttlMillis = null;
+        for (int i = 3; i < command.size(); i++) {
+            String option = str(command.get(i)).toUpperCase();
+            if ("NX".equals(option)) {
+                onlyIfAbsent = true;
+            } else if ("EX".equals(option)) {
+                ttlMillis = Long.parseLong(str(command.get(++i))) * 1000;
+            } else if ("PX".equals(option)) {
+                ttlMillis = Long.parseLong(str(command.get(++i)));
+            }
+        }
+        if (onlyIfAbsent && strings.containsKey(live(key))) {
+            writeBulk(out, null);
+            return;
+        }
+        strings.put(key, command.get(2));
+        if (ttlMillis != null) {
+            expiresAt.put(key, System.currentTimeMillis() + ttlMillis);
+        } else {
+            expiresAt.remove(key);
+        }
+        writeSimple(out, "OK");
+    }
+    
+    // Flags NX and XX; scores and members follow them
+    private void zadd(List<byte[]> command, OutputStream out) throws IOException {
+        Map<String, Double> sortedSet = sortedSets.computeIfAbsent(live(str(command.get(1))), k -> new HashMap<>());
+        boolean onlyNew = false;
+        boolean onlyExisting = false;
+        int i = 2;
+        for (; i < command.size(); i++) {
+            String option = str(command.get(i)).toUpperCase();
+            if ("NX".equals(option)) {
+                onlyNew = true;
+            } else if ("XX".equals(option)) {
+                onlyExisting = true;
+            } else {
+                break;
+            }
+        }
+        long added = 0;
+        for (; i + 1 < command.size(); i += 2) {
+            String member = str(command.get(i + 1));
+            boolean exists = sortedSet.containsKey(member);
+            if (exists ? onlyNew : onlyExisting) {
+                continue;
+            }
+            sortedSet.put(member, Double.parseDouble(str(command.get(i))));
+            if (!exists) {
+                added++;
+            }
+        }
+        if (sortedSet.isEmpty()) {
+            sortedSets.remove(str(command.get(1)));
+        }
+        writeInteger(out, added);
+    }
+    
+    // By rank only, ordered by score then member
+    private void zrange(List<byte[]> command, OutputStream out) throws IOException {
+        Map<String, Double> sortedSet = sortedSets.getOrDefault(live(str(command.get(1))), Map.of());
+        List<Map.Entry<String, Double>> ordered = new ArrayList<>(sortedSet.entrySet());
+        ordered.sort(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        int start = rank(Integer.parseInt(str(command.get(2))), ordered.size());
+        int stop = Math.min(rank(Integer.parseInt(str(command.get(3))), ordered.size()), ordered.size() - 1);
+        boolean withScores = command.size() > 4 && "WITHSCORES".equalsIgnoreCase(str(command.get(4)));
+        List<Map.Entry<String, Double>> range = start <= stop ? ordered.subList(start, stop + 1) : List.of();
+        out.write(('*' + Integer.toString(range.size() * (withScores ? 2 : 1)) + "\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        for (Map.Entry<String, Double> entry : range) {
+            writeBulk(out, entry.getKey().getBytes(StandardCharsets.ISO_8859_1));
+            if (withScores) {
+                writeBulk(out, score(entry.getValue()).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+    }
+    
+    private static int rank(int index, int size) {
+        return Math.max(index < 0 ? size + index : index, 0);
+    }
+    
+    private static String score(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value)
+                ? Long.toString((long) value) : Double.toString(value);
+    }
+    
+    private void eval(String name, List<byte[]> command, OutputStream out) throws IOException {
+        String sha = "EVAL".equals(name) ? sha1(command.get(1)) : str(command.get(1)).toLowerCase();
+        if ("EVAL".equals(name)) {
+            loadedScripts.add(sha);
+        } else if (!loadedScripts.contains(sha)) {
+            writeError(out, "NOSCRIPT No matching script. Please use EVAL.");
+            return;
+        }
+        Script script = scripts.get(sha);
+        if (script == null) {
+            writeError(out, "ERR script " + sha + " has no stand-in in the fake Redis");
+            return;
+        }
+        int keyCount = Integer.parseInt(str(command.get(2)));
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        for (int i = 3; i < command.size(); i++) {
+            (i < 3 + keyCount ? keys : args).add(str(command.get(i)));
+        }
+        Object result;
+        try {
+            result = script.run(this::call, keys, args);
+        } catch (IllegalStateException e) {
+            writeError(out, e.getMessage());
+            return;
+        }
+        writeReply(out, result);
+    }
+    
+    // Runs within the calling EVAL, which already holds the lock
+    private Object call(String... command) {
+        List<byte[]> args = new ArrayList<>(command.length);
+        for (String arg : command) {
+            args.add(arg.getBytes(StandardCharsets.ISO_8859_1));
+        }
+        ByteArrayOutputStream reply = new ByteArrayOutputStream();
+        try {
+            execute(args, reply);
+            return readReply(new ByteArrayInputStream(reply.toByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private String live(String key) {
+        Long deadline = expiresAt.get(key);
+        if (deadline != null && deadline <= System.currentTimeMillis()) {
+            expiresAt.remove(key);
+            strings.remove(key);
+            hashes.remove(key);
+            sets.remove(key);
+            sortedSets.remove(key);
+        }
+        return key;
+    }
+    
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int marker = in.read();
+        if (marker == -1) {
+            return null;
+        }
+        if (marker != '*') {
+            throw new IOException("Inline commands are not supported");
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected bulk string");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] arg = in.readNBytes(length);
+            in.read();
+            in.read();
+            args.add(arg);
+        }
+        return args;
+    }
+    
+    private static Object readReply(InputStream in) throws IOException {
+        int marker = in.read();
+        String line = readLine(in);
+        switch (marker) {
+            case '+':
+                return line;
+            case '-':
+                throw new IllegalStateException(line);
+            case ':':
+                return Long.parseLong(line);
+            case '$': {
+                int length = Integer.parseInt(line);
+                if (length < 0) {
+                    return null;
+                }
+                byte[] value = in.readNBytes(length);
+                in.read();
+                in.read();
+                return str(value);
+            }
+            default: {
+                int count = Integer.parseInt(line);
+                List<Object> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(readReply(in));
+                }
+                return items;
+            }
+        }
+    }
+    
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            line.append((char) c);
+        }
+        in.read();
+        return line.toString();
+    }
+    
+    private static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+    
+    private static String sha1(byte[] source) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(source));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String str(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+    
+    private static void writeSimple(OutputStream out, String value) throws IOException {
+        out.write(('+' + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    private static void writeError(OutputStream out, String message) throws IOException {
+        out.write(('-' + message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    private static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write((':' + Long.toString(value) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    private static void writeReply(OutputStream out, Object value) throws IOException {
+        if (value instanceof Long) {
+            writeInteger(out, (Long) value);
+        } else if (value instanceof List) {
+            List<?> items = (List<?>) value;
+            out.write(('*' + Integer.toString(items.size()) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (Object item : items) {
+                writeReply(out, item);
+            }
+        } else {
+            writeBulk(out, value != null ? value.toString().getBytes(StandardCharsets.ISO_8859_1) : null);
+        }
+    }
+    
+    private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        out.write(('$' + Integer.toString(value.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(value);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+}
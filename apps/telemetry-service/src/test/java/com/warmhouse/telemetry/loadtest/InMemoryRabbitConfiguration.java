@@ -0,0 +1,78 @@
+package com.warmhouse.telemetry.loadtest;
+
+import com.rabbitmq.client.Channel;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.RabbitExceptionTranslator;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * In-memory AMQP stand-in: a primary RabbitTemplate that converts and counts messages per routing key
+ * without a broker connection (listener containers are disabled by the harness). Channel callbacks, such
+ * as the health probe, run against a channel that is always open.
+ */
+@TestConfiguration
+public class InMemoryRabbitConfiguration {
+    
+    @Bean
+    @Primary
+    public InMemoryRabbitTemplate inMemoryRabbitTemplate(ConnectionFactory connectionFactory,
+                                                         MessageConverter messageConverter) {
+        InMemoryRabbitTemplate template = new InMemoryRabbitTemplate(connectionFactory);
+        template.setMessageConverter(messageConverter);
+        return template;
+    }
+    
+    public static class InMemoryRabbitTemplate extends RabbitTemplate {
+        
+        private final Map<String, AtomicLong> published = new ConcurrentHashMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+        private final Channel channel = mock(Channel.class);
+        
+        InMemoryRabbitTemplate(ConnectionFactory connectionFactory) {
+            super(connectionFactory);
+            when(channel.isOpen()).thenReturn(true);
+        }
+        
+        @Override
+        public <T> T execute(ChannelCallback<T> action) {
+            try {
+                return action.doInRabbit(channel);
+            } catch (Exception e) {
+                throw RabbitExceptionTranslator.convertRabbitAccessException(e);
+            }
+        }
+        
+        @Override
+        public void send(String exchange, String routingKey, Message message) throws AmqpException {
+            published.computeIfAbsent(routingKey, k -> new AtomicLong()).incrementAndGet();
+            bytes.addAndGet(message.getBody().length);
+        }
+        
+        @Override
+        public void convertAndSend(String exchange, String routingKey, Object object) throws AmqpException {
+            send(exchange, routingKey, convertMessageIfNecessary(object));
+        }
+        
+        public Map<String, AtomicLong> getPublished() {
+            return published;
+        }
+        
+        public long getBytes() {
+            return bytes.get();
+        }
+    }
+}
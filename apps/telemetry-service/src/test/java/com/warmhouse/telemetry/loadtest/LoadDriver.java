@@ -0,0 +1,176 @@
+package com.warmhouse.telemetry.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop HTTP load driver
+ * Requests are issued on a fixed schedule regardless of response times and latency is measured
+ * from the scheduled send time, so queueing in the service is not hidden (no coordinated omission).
+ */
+public class LoadDriver {
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(8, r -> {
+                Thread thread = new Thread(r, "loadtest-client");
+                thread.setDaemon(true);
+                return thread;
+            }))
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    
+    private final int maxInFlight;
+    
+    public LoadDriver(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+    
+    /**
+     * Run one scenario at a fixed request rate and return its measurements
+     */
+    public Result run(String name, URI uri, double requestsPerSecond, Duration duration,
+                      int pointsPerRequest, Supplier<String> payloads) throws InterruptedException {
+        int total = (int) Math.max(1, requestsPerSecond * duration.toSeconds());
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        Map<Integer, AtomicLong> statuses = new HashMap<>();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        
+        Map<Long, Long> allocationBefore = AllocationProbe.snapshot();
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long scheduled = start + i * intervalNanos;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.ofString(payloads.get()))
+                    .build();
+            
+            inFlight.acquire();
+            int slot = i;
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        latencies[slot] = System.nanoTime() - scheduled;
+                        if (failure != null || response.statusCode() >= 300) {
+                            errors.incrementAndGet();
+                        }
+                        int status = failure != null ? -1 : response.statusCode();
+                        synchronized (statuses) {
+                            statuses.computeIfAbsent(status, k -> new AtomicLong()).incrementAndGet();
+                        }
+                        completed.incrementAndGet();
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        long elapsed = System.nanoTime() - start;
+        long allocated = AllocationProbe.allocatedSince(allocationBefore);
+        
+        return new Result(name, total, pointsPerRequest, elapsed, latencies, errors.get(), statuses, allocated);
+    }
+    
+    /**
+     * Measurements of a single scenario
+     */
+    public static final class Result {
+        
+        private final String name;
+        private final int requests;
+        private final int pointsPerRequest;
+        private final long elapsedNanos;
+        private final long[] sortedLatencies;
+        private final long errors;
+        private final Map<Integer, AtomicLong> statuses;
+        private final long serverAllocatedBytes;
+        
+        Result(String name, int requests, int pointsPerRequest, long elapsedNanos, long[] latencies,
+               long errors, Map<Integer, AtomicLong> statuses, long serverAllocatedBytes) {
+            this.name = name;
+            this.requests = requests;
+            this.pointsPerRequest = pointsPerRequest;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = latencies.clone();
+            Arrays.sort(this.sortedLatencies);
+            this.errors = errors;
+            this.statuses = statuses;
+            this.serverAllocatedBytes = serverAllocatedBytes;
+        }
+        
+        public double throughput() {
+            return requests / (elapsedNanos / 1e9);
+        }
+        
+        public double percentileMillis(double q) {
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(q * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+        
+        public int getRequests() {
+            return requests;
+        }
+        
+        public long getErrors() {
+            return errors;
+        }
+        
+        public String format() {
+            return String.format(Locale.ROOT,
+                    "%-14s requests=%d points/req=%d throughput=%.1f req/s (%.1f points/s) errors=%d statuses=%s%n"
+                            + "%-14s latency ms p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n"
+                            + "%-14s server allocation=%.1f KiB/request",
+                    name, requests, pointsPerRequest, throughput(), throughput() * pointsPerRequest, errors, statuses,
+                    "", percentileMillis(0.50), percentileMillis(0.90), percentileMillis(0.99),
+                    percentileMillis(0.999), sortedLatencies[sortedLatencies.length - 1] / 1e6,
+                    "", serverAllocatedBytes / 1024.0 / requests);
+        }
+    }
+    
+    /**
+     * Sums bytes allocated by the servlet container's request threads (Tomcat "http-nio-*")
+     */
+    static final class AllocationProbe {
+        
+        private static final com.sun.management.ThreadMXBean THREADS =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        
+        static Map<Long, Long> snapshot() {
+            Map<Long, Long> allocated = new HashMap<>();
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("http-nio-")) {
+                    allocated.put(thread.getId(), THREADS.getThreadAllocatedBytes(thread.getId()));
+                }
+            }
+            return allocated;
+        }
+        
+        static long allocatedSince(Map<Long, Long> before) {
+            long total = 0;
+            for (Map.Entry<Long, Long> entry : snapshot().entrySet()) {
+                total += entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            }
+            return total;
+        }
+    }
+}
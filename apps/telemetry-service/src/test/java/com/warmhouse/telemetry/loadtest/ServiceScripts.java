@@ -0,0 +1,113 @@
+package com.warmhouse.telemetry.loadtest;
+
+import com.warmhouse.telemetry.service.SchedulerLocks;
+import com.warmhouse.telemetry.service.SensorCorrelationStore;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+/**
+ * Java stand-ins for the Lua scripts of the service, registered with the fake Redis by their source
+ * Each follows its script call by call, so the fake sees the same commands a real Redis would run.
+ */
+final class ServiceScripts {
+    
+    private static final String[] SENSOR_FIELDS = {"d", "l", "t"};
+    private static final String[] SENSOR_INDEXES = {"device:", "location:", "type:"};
+    
+    private ServiceScripts() {
+    }
+    
+    static void register(FakeRedisServer redis) {
+        redis.script(source(SensorCorrelationStore.class, "UPSERT"), ServiceScripts::upsertSensor);
+        redis.script(source(SensorCorrelationStore.class, "DELETE"), ServiceScripts::deleteSensor);
+        redis.script(source(SensorCorrelationStore.class, "DELETE_INDEXED"), ServiceScripts::deleteIndexedSensors);
+        redis.script(source(SchedulerLocks.class, "RENEW"), ServiceScripts::renewLock);
+        redis.script(source(SchedulerLocks.class, "RELEASE"), ServiceScripts::releaseLock);
+    }
+    
+    // KEYS: sensor hash; ARGV: index prefix, ttl seconds, only if exists, name, type, location, device, now, id
+    private static Object upsertSensor(FakeRedisServer.Commands redis, List<String> keys, List<String> args) {
+        String key = keys.get(0);
+        String prefix = args.get(0);
+        String ttl = args.get(1);
+        String id = args.get(8);
+        Object kind = redis.call("TYPE", key);
+        if ("none".equals(kind) && "1".equals(args.get(2))) {
+            return 0L;
+        }
+        if (!"hash".equals(kind) && !"none".equals(kind)) {
+            redis.call("DEL", key);
+        }
+        List<?> old = (List<?>) redis.call("HMGET", key, "d", "l", "t");
+        String[] values = {args.get(6), args.get(5), args.get(4)};
+        for (int i = 0; i < SENSOR_FIELDS.length; i++) {
+            Object value = values[i].isEmpty() ? old.get(i) : values[i];
+            if (old.get(i) != null && !old.get(i).equals(value)) {
+                redis.call("SREM", prefix + SENSOR_INDEXES[i] + old.get(i), id);
+            }
+            if (value != null) {
+                redis.call("HSET", key, SENSOR_FIELDS[i], value.toString());
+                redis.call("SADD", prefix + SENSOR_INDEXES[i] + value, id);
+                redis.call("EXPIRE", prefix + SENSOR_INDEXES[i] + value, ttl);
+            }
+        }
+        if (!args.get(3).isEmpty()) {
+            redis.call("HSET", key, "n", args.get(3));
+        }
+        redis.call("HSETNX", key, "c", args.get(7));
+        redis.call("HSET", key, "u", args.get(7));
+        redis.call("EXPIRE", key, ttl);
+        return 1L;
+    }
+    
+    // KEYS: sensor hash; ARGV: index prefix, id
+    private static Object deleteSensor(FakeRedisServer.Commands redis, List<String> keys, List<String> args) {
+        unindexSensor(redis, keys.get(0), args.get(0), args.get(1));
+        return redis.call("DEL", keys.get(0));
+    }
+    
+    // KEYS: index set; ARGV: index prefix, sensor key prefix
+    private static Object deleteIndexedSensors(FakeRedisServer.Commands redis, List<String> keys, List<String> args) {
+        List<?> ids = (List<?>) redis.call("SMEMBERS", keys.get(0));
+        for (Object id : ids) {
+            unindexSensor(redis, args.get(1) + id, args.get(0), id.toString());
+            redis.call("DEL", args.get(1) + id);
+        }
+        redis.call("DEL", keys.get(0));
+        return (long) ids.size();
+    }
+    
+    private static void unindexSensor(FakeRedisServer.Commands redis, String key, String prefix, String id) {
+        if (!"hash".equals(redis.call("TYPE", key))) {
+            return;
+        }
+        List<?> old = (List<?>) redis.call("HMGET", key, "d", "l", "t");
+        for (int i = 0; i < SENSOR_FIELDS.length; i++) {
+            if (old.get(i) != null) {
+                redis.call("SREM", prefix + SENSOR_INDEXES[i] + old.get(i), id);
+            }
+        }
+    }
+    
+    // KEYS: lock; ARGV: holder, lease ms
+    private static Object renewLock(FakeRedisServer.Commands redis, List<String> keys, List<String> args) {
+        if (!args.get(0).equals(redis.call("GET", keys.get(0)))) {
+            return 0L;
+        }
+        return redis.call("PEXPIRE", keys.get(0), args.get(1));
+    }
+    
+    // KEYS: lock; ARGV: holder
+    private static Object releaseLock(FakeRedisServer.Commands redis, List<String> keys, List<String> args) {
+        if (!args.get(0).equals(redis.call("GET", keys.get(0)))) {
+            return 0L;
+        }
+        return redis.call("DEL", keys.get(0));
+    }
+    
+    private static String source(Class<?> owner, String field) {
+        return ((RedisScript<?>) ReflectionTestUtils.getField(owner, field)).getScriptAsString();
+    }
+}
@@ -0,0 +1,134 @@
+package com.warmhouse.telemetry.loadtest;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * End-to-end load test of the ingest API against in-process stand-ins for InfluxDB, Redis,
+ * RabbitMQ and the device registry. Excluded from the default build, run with:
+ * <pre>
+ * mvn test -Ploadtest -Dloadtest.rate=2000 -Dloadtest.duration=30 -Dloadtest.devices=5000
+ * </pre>
+ * The report is logged and written to target/loadtest-report.txt.
+ */
+@Tag("loadtest")
+// Log levels must be set before the context starts, dynamic properties come too late for them
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "logging.level.com.warmhouse.telemetry=${loadtest.log-level:WARN}",
+        "logging.level.org.springframework.data.redis=WARN",
+        "logging.level.org.springframework.amqp=WARN",
+        "logging.level.com.influxdb=WARN"})
+@Import(InMemoryRabbitConfiguration.class)
+class TelemetryLoadTest {
+    
+    private static final Logger log = LoggerFactory.getLogger(TelemetryLoadTest.class);
+    
+    private static final FakeInfluxDBServer INFLUXDB;
+    private static final FakeRedisServer REDIS;
+    private static final FakeDeviceRegistry REGISTRY;
+    
+    static {
+        try {
+            INFLUXDB = new FakeInfluxDBServer();
+            REDIS = new FakeRedisServer();
+            ServiceScripts.register(REDIS);
+            REGISTRY = new FakeDeviceRegistry();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private InMemoryRabbitConfiguration.InMemoryRabbitTemplate rabbit;
+    
+    @DynamicPropertySource
+    static void standIns(DynamicPropertyRegistry registry) {
+        registry.add("influxdb.url", INFLUXDB::getUrl);
+        registry.add("spring.redis.host", () -> "127.0.0.1");
+        registry.add("spring.redis.port", REDIS::getPort);
+        registry.add("device-registry.url", REGISTRY::getUrl);
+        registry.add("spring.rabbitmq.listener.simple.auto-startup", () -> "false");
+    }
+    
+    @AfterAll
+    static void stopStandIns() throws IOException {
+        INFLUXDB.close();
+        REDIS.close();
+        REGISTRY.close();
+    }
+    
+    @Test
+    void ingestCapacity() throws Exception {
+        double rate = Double.parseDouble(setting("loadtest.rate", "500"));
+        double batchRate = Double.parseDouble(setting("loadtest.batch-rate", "50"));
+        int batchSize = Integer.parseInt(setting("loadtest.batch-size", "100"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(setting("loadtest.duration", "20")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(setting("loadtest.warmup", "5")));
+        int devices = Integer.parseInt(setting("loadtest.devices", "1000"));
+        int maxInFlight = Integer.parseInt(setting("loadtest.max-in-flight", "256"));
+        
+        DeviceFleetGenerator fleet = new DeviceFleetGenerator(devices, 8, 42);
+        LoadDriver driver = new LoadDriver(maxInFlight);
+        URI single = URI.create("http://127.0.0.1:" + port + "/api/v1/telemetry");
+        URI batch = URI.create("http://127.0.0.1:" + port + "/api/v1/telemetry/batch");
+        
+        driver.run("warmup", single, rate, warmup, 1, fleet::nextReading);
+        long pointsBefore = INFLUXDB.getPointsWritten();
+        long redisBefore = REDIS.getCommandCount();
+        
+        List<LoadDriver.Result> results = new ArrayList<>();
+        results.add(driver.run("single", single, rate, duration, 1, fleet::nextReading));
+        long singleRedis = REDIS.getCommandCount() - redisBefore;
+        results.add(driver.run("batch", batch, batchRate, duration, batchSize, () -> fleet.nextBatch(batchSize)));
+        
+        StringBuilder report = new StringBuilder()
+                .append("Telemetry ingest load test ").append(Instant.now()).append('\n')
+                .append(String.format("devices=%d rate=%.0f req/s batch-rate=%.0f req/s batch-size=%d duration=%ds%n",
+                        devices, rate, batchRate, batchSize, duration.toSeconds()));
+        for (LoadDriver.Result result : results) {
+            report.append(result.format()).append('\n');
+        }
+        report.append(String.format("stand-ins     influxdb points=%d writes=%d bytes=%d | redis commands/single request=%.2f"
+                        + " | registry lookups=%d | amqp messages=%s%n",
+                INFLUXDB.getPointsWritten() - pointsBefore, INFLUXDB.getWriteRequests(), INFLUXDB.getBytesWritten(),
+                (double) singleRedis / results.get(0).getRequests(),
+                REGISTRY.getLookups(), rabbit.getPublished()));
+        
+        log.warn("\n{}", report);
+        Path output = Path.of("target", "loadtest-report.txt");
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, report);
+        
+        for (LoadDriver.Result result : results) {
+            assertEquals(0, result.getErrors(), "requests failed during load test");
+        }
+    }
+    
+    private static String setting(String name, String defaultValue) {
+        return System.getProperty(name, defaultValue);
+    }
+}
@@ -0,0 +1,49 @@
+package com.warmhouse.telemetry.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+
+    @Test
+    void mergedBucketsStayWithinRelativeErrorBound() {
+        Random random = new Random(42);
+        double[] all = new double[48_000];
+        QuantileSketch merged = new QuantileSketch(ACCURACY, 2048);
+
+        // 48 hourly buckets merged after a serialization round trip
+        for (int bucket = 0; bucket < 48; bucket++) {
+            QuantileSketch hourly = new QuantileSketch(ACCURACY, 2048);
+            for (int i = 0; i < 1000; i++) {
+                double value = Math.exp(random.nextGaussian()) * (bucket % 2 == 0 ? 20 : -3);
+                all[bucket * 1000 + i] = value;
+                hourly.add(value);
+            }
+            merged.merge(QuantileSketch.fromBytes(hourly.toBytes()));
+        }
+
+        Arrays.sort(all);
+        assertEquals(all.length, merged.getCount());
+        for (double q : new double[] {0.01, 0.25, 0.5, 0.95, 0.99}) {
+            double expected = all[(int) (q * (all.length - 1))];
+            double actual = merged.quantile(q);
+            assertTrue(Math.abs(actual - expected) <= ACCURACY * Math.abs(expected) + 1e-12,
+                    "q=" + q + " expected " + expected + " got " + actual);
+        }
+        assertEquals(all[0], merged.quantile(0));
+        assertEquals(all[all.length - 1], merged.quantile(1));
+    }
+
+    @Test
+    void emptySketchHasNoQuantiles() {
+        assertNull(new QuantileSketch(ACCURACY, 2048).quantile(0.5));
+    }
+}
@@ -0,0 +1,118 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlServiceTest {
+    
+    private AdmissionControlService admission;
+    
+    @BeforeEach
+    void setUp() {
+        admission = new AdmissionControlService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(admission, "enabled", true);
+        ReflectionTestUtils.setField(admission, "houseRate", 1.0);
+        ReflectionTestUtils.setField(admission, "houseBurst", 10);
+        ReflectionTestUtils.setField(admission, "deviceRate", 1.0);
+        ReflectionTestUtils.setField(admission, "deviceBurst", 5);
+        ReflectionTestUtils.setField(admission, "ingestPermits", 4);
+        ReflectionTestUtils.setField(admission, "queryPermits", 4);
+        ReflectionTestUtils.setField(admission, "exportPermits", 1);
+        ReflectionTestUtils.setField(admission, "poolWaitMs", 0L);
+        ReflectionTestUtils.setField(admission, "exportPeriodHours", 168L);
+        admission.init();
+    }
+    
+    @Test
+    void noisyHouseIsLimitedWithoutAffectingOthers() {
+        UUID noisy = UUID.randomUUID();
+        for (int i = 0; i < 10; i++) {
+            admission.admitIngest(List.of(request(noisy, UUID.randomUUID())), false).close();
+        }
+        
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> admission.admitIngest(List.of(request(noisy, UUID.randomUUID())), false));
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+        
+        admission.admitIngest(List.of(request(UUID.randomUUID(), UUID.randomUUID())), false).close();
+        // Forwarded readings were admitted by the receiving instance already
+        admission.admitIngest(List.of(request(noisy, UUID.randomUUID())), true).close();
+    }
+    
+    @Test
+    void refusedBatchDoesNotDrainHouseBudget() {
+        UUID house = UUID.randomUUID();
+        UUID device = UUID.randomUUID();
+        List<TelemetryRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(request(house, device));
+        }
+        admission.admitIngest(batch, false).close();
+        
+        // Device bucket is empty, the house tokens taken for this batch are returned
+        assertThrows(AdmissionRejectedException.class, () -> admission.admitIngest(batch, false));
+        List<TelemetryRequest> others = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            others.add(request(house, UUID.randomUUID()));
+        }
+        admission.admitIngest(others, false).close();
+    }
+    
+    @Test
+    void poolRefusalReturnsTokens() {
+        UUID house = UUID.randomUUID();
+        UUID device = UUID.randomUUID();
+        List<TelemetryRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(request(house, device));
+        }
+        List<AdmissionControlService.Permit> held = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            held.add(admission.admitIngest(List.of(request(UUID.randomUUID(), UUID.randomUUID())), true));
+        }
+        
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> admission.admitIngest(batch, false));
+        assertEquals("ingest pool saturated", rejected.getMessage());
+        
+        // The whole device burst is still available once the pool frees up
+        held.forEach(AdmissionControlService.Permit::close);
+        admission.admitIngest(batch, false).close();
+    }
+    
+    @Test
+    void exportsCannotTakeQueryOrIngestCapacity() {
+        AdmissionControlService.Permit export = admission.admitQuery(Duration.ofDays(30));
+        assertThrows(AdmissionRejectedException.class, () -> admission.admitQuery(Duration.ofDays(7)));
+        
+        try (AdmissionControlService.Permit query = admission.admitQuery(Duration.ofHours(1));
+             AdmissionControlService.Permit ingest = admission.admitIngest(
+                     List.of(request(UUID.randomUUID(), UUID.randomUUID())), false)) {
+            assertNotNull(query);
+            assertNotNull(ingest);
+        }
+        
+        export.close();
+        admission.admitQuery(Duration.ofDays(30)).close();
+    }
+    
+    private static TelemetryRequest request(UUID houseId, UUID deviceId) {
+        return TelemetryRequest.builder()
+                .houseId(houseId)
+                .deviceId(deviceId)
+                .locationId(UUID.randomUUID())
+                .measurementType("temperature")
+                .value(21.0)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import com.warmhouse.telemetry.events.TelemetryEventPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AggregatePublisherTest {
+    
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+    
+    private final UUID device = UUID.randomUUID();
+    private InfluxDBService influxDBService;
+    private TelemetryEventPublisher eventPublisher;
+    private IngestCompressionService compressionService;
+    private ValueOperations<String, Object> values;
+    private SchedulerLocks locks;
+    private AggregatePublisher publisher;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        influxDBService = mock(InfluxDBService.class);
+        eventPublisher = mock(TelemetryEventPublisher.class);
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        locks = mock(SchedulerLocks.class);
+        when(locks.renew(eq(AggregatePublisher.LOCK_KEY), anyLong())).thenReturn(true);
+        DependencyBulkheads bulkheads = mock(DependencyBulkheads.class);
+        when(bulkheads.rabbit()).thenReturn(mock(Bulkhead.class));
+        when(influxDBService.calculateWindowStatistics(any(), any(), eq("1h"))).thenAnswer(invocation ->
+                List.of(TelemetryStatistics.builder().deviceId(device).measurementType("temperature")
+                        .periodStart(invocation.getArgument(0)).count(4L).build()));
+        
+        compressionService = mock(IngestCompressionService.class);
+        
+        publisher = new AggregatePublisher(influxDBService, eventPublisher,
+                new DeviceDirectory(null, null, new SimpleMeterRegistry()), bulkheads, redisTemplate,
+                locks, new SimpleMeterRegistry(), compressionService);
+        ReflectionTestUtils.setField(publisher, "enabled", true);
+        ReflectionTestUtils.setField(publisher, "windows", List.of("1h"));
+        ReflectionTestUtils.setField(publisher, "lagMs", 0L);
+        ReflectionTestUtils.setField(publisher, "intervalMs", 60000L);
+        ReflectionTestUtils.setField(publisher, "maxWindowsPerRun", 24);
+        ReflectionTestUtils.invokeMethod(publisher, "init");
+    }
+    
+    @Test
+    void publishesEachClosedWindowOnceAndMovesTheWatermark() {
+        long lastClosed = Math.floorDiv(System.currentTimeMillis(), HOUR) * HOUR - HOUR;
+        when(locks.acquire(eq(AggregatePublisher.LOCK_KEY), anyLong())).thenReturn(true);
+        when(values.get(AggregatePublisher.WATERMARK_PREFIX + "1h")).thenReturn(lastClosed - 2 * HOUR);
+        
+        publisher.publishClosedWindows();
+        
+        ArgumentCaptor<String> eventIds = ArgumentCaptor.forClass(String.class);
+        verify(eventPublisher, times(3)).publishMeasurementAggregated(eventIds.capture(),
+                eq(device.toString()), eq("temperature"), eq("1h"), any());
+        verify(values).set(AggregatePublisher.WATERMARK_PREFIX + "1h", lastClosed + HOUR);
+        verify(influxDBService).calculateWindowStatistics(Instant.ofEpochMilli(lastClosed),
+                Instant.ofEpochMilli(lastClosed + HOUR), "1h");
+        
+        // Ids are stable per window, distinct across windows
+        TelemetryStatistics window = TelemetryStatistics.builder().deviceId(device).measurementType("temperature")
+                .periodStart(Instant.ofEpochMilli(lastClosed)).build();
+        assertEquals(AggregatePublisher.eventId(window, "1h"), eventIds.getAllValues().get(2));
+        assertNotEquals(eventIds.getAllValues().get(0), eventIds.getAllValues().get(1));
+    }
+    
+    @Test
+    void keepsWindowsOpenWhileCompressionMayStillHoldReadings() {
+        long lastClosed = Math.floorDiv(System.currentTimeMillis(), HOUR) * HOUR - HOUR;
+        when(locks.acquire(eq(AggregatePublisher.LOCK_KEY), anyLong())).thenReturn(true);
+        when(values.get(AggregatePublisher.WATERMARK_PREFIX + "1h")).thenReturn(lastClosed);
+        when(compressionService.maxHoldMs()).thenReturn(2 * HOUR);
+        
+        publisher.publishClosedWindows();
+        
+        verify(influxDBService, never()).calculateWindowStatistics(any(), any(), anyString());
+        verify(values, never()).set(eq(AggregatePublisher.WATERMARK_PREFIX + "1h"), any());
+    }
+    
+    @Test
+    void leavesWindowsToTheLockHolder() {
+        when(locks.acquire(eq(AggregatePublisher.LOCK_KEY), anyLong())).thenReturn(false);
+        
+        publisher.publishClosedWindows();
+        
+        verify(influxDBService, never()).calculateWindowStatistics(any(), any(), anyString());
+        verify(eventPublisher, never()).publishMeasurementAggregated(any(), any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,99 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.StatisticsQuery;
+import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkStatisticsServiceTest {
+    
+    private InfluxDBService influxDBService;
+    private BulkStatisticsService service;
+    
+    @BeforeEach
+    void setUp() {
+        influxDBService = mock(InfluxDBService.class);
+        service = new BulkStatisticsService(influxDBService, mock(QuantileSketchService.class),
+                new DeviceDirectory(null, null, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "concurrency", 2);
+        ReflectionTestUtils.setField(service, "devicesPerQuery", 2);
+        ReflectionTestUtils.setField(service, "maxTuples", 100);
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(service, "shutdown");
+    }
+    
+    @Test
+    void answersEveryTupleWithOneQueryPerGroup() throws Exception {
+        when(influxDBService.calculateStatistics(anyCollection(), anyCollection(), any(), any()))
+                .thenAnswer(invocation -> statistics(invocation.getArgument(0), invocation.getArgument(1)));
+        List<StatisticsQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            UUID device = UUID.randomUUID();
+            queries.add(new StatisticsQuery(device, "temperature", "24h"));
+            queries.add(new StatisticsQuery(device, "humidity", "24h"));
+        }
+        queries.add(new StatisticsQuery(queries.get(0).getDeviceId(), "temperature", "7d"));
+        
+        List<TelemetryStatistics> results = new CopyOnWriteArrayList<>();
+        service.calculate(queries, false, results::add, (query, error) -> { })
+                .get(5, TimeUnit.SECONDS);
+        
+        // Three devices at two per query for 24h, one query for 7d
+        assertEquals(queries.size(), results.size());
+        verify(influxDBService, times(2)).calculateStatistics(anyCollection(), anyCollection(), eq("24h"), any());
+        verify(influxDBService, times(1)).calculateStatistics(anyCollection(), anyCollection(), eq("7d"), any());
+    }
+    
+    @Test
+    void reportsTuplesOfFailedGroupsAndRejectsIncompleteOnes() throws Exception {
+        when(influxDBService.calculateStatistics(anyCollection(), anyCollection(), any(), any()))
+                .thenThrow(new RuntimeException("influx down"));
+        List<StatisticsQuery> failed = new CopyOnWriteArrayList<>();
+        
+        service.calculate(List.of(new StatisticsQuery(UUID.randomUUID(), "temperature", "1h")), false,
+                stats -> { }, (query, error) -> failed.add(query)).get(5, TimeUnit.SECONDS);
+        
+        assertEquals(1, failed.size());
+        assertThrows(IllegalArgumentException.class, () -> service.calculate(
+                List.of(new StatisticsQuery(null, "temperature", "1h")), false, stats -> { }, (query, error) -> { }));
+    }
+    
+    private static Map<UUID, Map<String, TelemetryStatistics>> statistics(Collection<UUID> devices,
+                                                                        Collection<String> types) {
+        Map<UUID, Map<String, TelemetryStatistics>> result = new HashMap<>();
+        for (UUID device : devices) {
+            for (String type : types) {
+                result.computeIfAbsent(device, id -> new HashMap<>()).put(type, TelemetryStatistics.builder()
+                        .deviceId(device).measurementType(type).count(1L).periodEnd(Instant.now()).build());
+            }
+        }
+        return result;
+    }
+}
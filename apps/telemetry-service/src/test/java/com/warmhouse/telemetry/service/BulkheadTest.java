@@ -0,0 +1,67 @@
+package com.warmhouse.telemetry.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+    
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Bulkhead bulkhead = new Bulkhead("test", 2, 2, 50, 3, 100, new SimpleMeterRegistry());
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        bulkhead.shutdown();
+    }
+    
+    @Test
+    void hangingDependencyTimesOutAndOpensCircuit() {
+        long started = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("fallback", bulkhead.call(this::hang, () -> "fallback"));
+        }
+        assertTrue(bulkhead.isDegraded());
+        
+        // Open circuit: no waiting at all, the dependency is not called
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals("fallback", bulkhead.call(() -> "value" + calls.incrementAndGet(), () -> "fallback"));
+        assertEquals(0, calls.get());
+        assertTrue((System.nanoTime() - started) / 1_000_000 < 1_000);
+    }
+    
+    @Test
+    void probeAfterOpenPeriodClosesCircuit() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            bulkhead.call(() -> {
+                throw new IllegalStateException("down");
+            }, () -> null);
+        }
+        assertTrue(bulkhead.isDegraded());
+        
+        Thread.sleep(150);
+        assertEquals("value", bulkhead.call(() -> "value", () -> "fallback"));
+        assertFalse(bulkhead.isDegraded());
+    }
+    
+    @Test
+    void fireAndForgetIsSkippedWhileOpen() {
+        for (int i = 0; i < 3; i++) {
+            bulkhead.call(() -> {
+                throw new IllegalStateException("down");
+            }, () -> null);
+        }
+        
+        assertFalse(bulkhead.submit(() -> fail("must not run"), null));
+    }
+    
+    private String hang() throws InterruptedException {
+        release.await();
+        return "late";
+    }
+}
@@ -0,0 +1,72 @@
+package com.warmhouse.telemetry.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DeviceCacheInvalidatorTest {
+    
+    private DeviceValidationService validationService;
+    private DeviceCacheInvalidator invalidator;
+    
+    @BeforeEach
+    void setUp() {
+        validationService = mock(DeviceValidationService.class);
+        invalidator = new DeviceCacheInvalidator(validationService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(invalidator, "maxBatch", 100);
+        ReflectionTestUtils.setField(invalidator, "dedupCapacity", 2);
+        ReflectionTestUtils.invokeMethod(invalidator, "init");
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void collapsesChangesPerDeviceIntoOneFlush() {
+        UUID house = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        invalidator.deviceChanged(first, house);
+        invalidator.deviceChanged(second, null);
+        invalidator.deviceChanged(first, house);
+        
+        invalidator.flush();
+        invalidator.flush();
+        
+        ArgumentCaptor<Collection<UUID>> invalidated = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Map<UUID, UUID>> warmed = ArgumentCaptor.forClass(Map.class);
+        verify(validationService, times(1)).invalidateDeviceCaches(invalidated.capture());
+        verify(validationService, times(1)).warmCache(warmed.capture());
+        assertEquals(Set.of(first, second), Set.copyOf(invalidated.getValue()));
+        assertEquals(house, warmed.getValue().get(first));
+        assertTrue(warmed.getValue().containsKey(second));
+        assertNull(warmed.getValue().get(second));
+    }
+    
+    @Test
+    void skipsRedeliveredEventsWithinCapacity() {
+        assertTrue(invalidator.firstDelivery("device-updated-1"));
+        assertFalse(invalidator.firstDelivery("device-updated-1"));
+        assertTrue(invalidator.firstDelivery("device-updated-2"));
+        assertTrue(invalidator.firstDelivery("device-updated-3"));
+        
+        // Capacity 2: the oldest id has been forgotten
+        assertTrue(invalidator.firstDelivery("device-updated-1"));
+        verify(validationService, never()).warmCache(any());
+    }
+}
@@ -0,0 +1,58 @@
+package com.warmhouse.telemetry.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceDirectoryTest {
+    
+    private DeviceDirectory directory;
+    
+    @BeforeEach
+    void setUp() {
+        directory = new DeviceDirectory(null, null, new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(directory, "init");
+    }
+    
+    @Test
+    void keepsHouseAndLocationIndexesInStep() {
+        UUID device = UUID.randomUUID();
+        UUID house = UUID.randomUUID();
+        UUID kitchen = UUID.randomUUID();
+        UUID hall = UUID.randomUUID();
+        directory.putDevice(device, "Thermostat", house, kitchen);
+        directory.putLocationName(kitchen, "Kitchen");
+        assertEquals("Kitchen", directory.getLocationName(directory.getDevice(device).getLocationId()));
+        
+        // An update without a name moves the device and keeps the known name
+        directory.putDevice(device, null, null, hall);
+        assertEquals("Thermostat", directory.getDevice(device).getName());
+        assertEquals(Set.of(device), directory.devicesInHouse(house));
+        assertEquals(Set.of(device), directory.devicesInLocation(hall));
+        assertTrue(directory.devicesInLocation(kitchen).isEmpty());
+        
+        directory.removeDevice(device);
+        assertNull(directory.getDevice(device));
+        assertTrue(directory.devicesInHouse(house).isEmpty());
+    }
+    
+    @Test
+    void encodesEntriesForTheBackingStore() {
+        UUID house = UUID.randomUUID();
+        DeviceDirectory.Entry entry = new DeviceDirectory.Entry("Boiler | basement", house, null);
+        
+        DeviceDirectory.Entry decoded = DeviceDirectory.Entry.decode(entry.encode());
+        
+        assertEquals("Boiler | basement", decoded.getName());
+        assertEquals(house, decoded.getHouseId());
+        assertNull(decoded.getLocationId());
+    }
+}
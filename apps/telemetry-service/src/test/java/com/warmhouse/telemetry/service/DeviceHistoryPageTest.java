@@ -0,0 +1,83 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.model.QualityCode;
+import com.warmhouse.telemetry.model.SeriesCursor;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceHistoryPageTest {
+    
+    private final UUID device = UUID.randomUUID();
+    private final UUID house = UUID.randomUUID();
+    private final UUID location = UUID.randomUUID();
+    
+    @Test
+    void pageEndsAtTheFirstPointsByTimeThenSeriesKey() {
+        TelemetrySeries humidity = series("humidity", 1, 2, 3);
+        TelemetrySeries temperature = series("temperature", 2, 3, 4);
+        
+        List<TelemetrySeries> page = InfluxDBService.firstPoints(List.of(temperature, humidity), 3);
+        
+        assertEquals(2, page.size());
+        assertArrayEquals(new long[] {2}, timestamps(page.get(0)));
+        assertArrayEquals(new long[] {1, 2}, timestamps(page.get(1)));
+        
+        // At timestamp 2 humidity sorts before temperature, so the page ends on temperature
+        SeriesCursor last = SeriesCursor.at(page.get(0), 0);
+        assertTrue(last.compareTo(SeriesCursor.at(humidity, 1)) > 0);
+    }
+    
+    @Test
+    void cursorSurvivesTheRoundTripAndRejectsGarbage() {
+        SeriesCursor cursor = SeriesCursor.at(series("co2 | ppm", 1_700_000_000_123_456_789L), 0);
+        
+        SeriesCursor decoded = SeriesCursor.decode(cursor.encode());
+        
+        assertEquals(0, decoded.compareTo(cursor));
+        assertEquals("co2 | ppm", decoded.getMeasurementType());
+        assertThrows(IllegalArgumentException.class, () -> SeriesCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> SeriesCursor.decode(
+                new SeriesCursor(1, "x\") or true", location, house).encode()));
+    }
+    
+    @Test
+    void cursorKeepsTheTierSplitOfTheFirstPage() {
+        SeriesCursor position = SeriesCursor.at(series("co2 | ppm", 1_700_000_000_123_456_789L), 0);
+        long[] splits = {Long.MAX_VALUE, 1_700_000_040_000L, 1_699_999_200_000L};
+        
+        SeriesCursor decoded = SeriesCursor.decode(position.pinnedTo(1, splits).encode());
+        
+        assertTrue(decoded.isPinned());
+        assertEquals(1, decoded.getTier());
+        assertArrayEquals(splits, decoded.getSplitMillis());
+        assertEquals(0, decoded.compareTo(position));
+        assertEquals("co2 | ppm", decoded.getMeasurementType());
+        // Cursors issued before tiers were pinned still resume, on the current watermarks
+        assertFalse(SeriesCursor.decode(position.encode()).isPinned());
+    }
+    
+    private TelemetrySeries series(String type, long... timestamps) {
+        TelemetrySeries series = new TelemetrySeries(device, house, location, type, "");
+        for (long timestamp : timestamps) {
+            series.append(timestamp, timestamp, QualityCode.GOOD.code());
+        }
+        return series;
+    }
+    
+    private static long[] timestamps(TelemetrySeries series) {
+        long[] timestamps = new long[series.getSize()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = series.getTimestampNanos(i);
+        }
+        return timestamps;
+    }
+}
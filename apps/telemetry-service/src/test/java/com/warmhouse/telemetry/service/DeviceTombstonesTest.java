@@ -0,0 +1,76 @@
+package com.warmhouse.telemetry.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeviceTombstonesTest {
+    
+    private Bulkhead redis;
+    private DeviceTombstones tombstones;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(List.of(1L));
+        redis = mock(Bulkhead.class);
+        when(redis.call(any(), any())).thenAnswer(invocation -> ((Callable<Object>) invocation.getArgument(0)).call());
+        DependencyBulkheads bulkheads = mock(DependencyBulkheads.class);
+        when(bulkheads.redis()).thenReturn(redis);
+        
+        tombstones = new DeviceTombstones(redisTemplate, bulkheads, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tombstones, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.invokeMethod(tombstones, "init");
+    }
+    
+    @Test
+    void deletedDevicesAreHiddenUntilTheirPurgeIsConfirmed() {
+        UUID deleted = UUID.randomUUID();
+        UUID live = UUID.randomUUID();
+        
+        tombstones.tombstone(deleted);
+        
+        assertTrue(tombstones.isDeleted(deleted));
+        assertFalse(tombstones.isDeleted(live));
+        assertEquals(List.of(live), tombstones.live(List.of(deleted, live)));
+        assertEquals(List.of(deleted), tombstones.oldest(10, Long.MAX_VALUE));
+        // Not yet settled: writes held back before the deletion may still arrive
+        assertEquals(List.of(), tombstones.oldest(10, System.currentTimeMillis() - 60_000));
+        
+        assertTrue(tombstones.remove(List.of(deleted)));
+        assertFalse(tombstones.isDeleted(deleted));
+    }
+    
+    @Test
+    void tombstonesStayWhenRedisCannotBeUpdated() {
+        UUID deleted = UUID.randomUUID();
+        tombstones.tombstone(deleted);
+        doAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get()).when(redis).call(any(), any());
+        
+        assertFalse(tombstones.remove(List.of(deleted)));
+        assertTrue(tombstones.isDeleted(deleted));
+        
+        // Filter grows past its initial capacity without losing entries
+        for (int i = 0; i < 3000; i++) {
+            tombstones.tombstone(UUID.randomUUID());
+        }
+        assertTrue(tombstones.isDeleted(deleted));
+    }
+}
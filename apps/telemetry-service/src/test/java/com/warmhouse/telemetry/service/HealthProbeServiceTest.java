@@ -0,0 +1,67 @@
+package com.warmhouse.telemetry.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HealthProbeServiceTest {
+    
+    private HealthProbeService probes;
+    
+    @BeforeEach
+    void setUp() {
+        probes = new HealthProbeService(null, null, null, null);
+        ReflectionTestUtils.setField(probes, "windowSize", 10);
+        ReflectionTestUtils.setField(probes, "latencyThresholdMs", 50L);
+        ReflectionTestUtils.setField(probes, "minSuccessRate", 0.8);
+    }
+    
+    @Test
+    void unknownUntilFirstProbe() {
+        assertEquals(HealthProbeService.State.UNKNOWN, probes.getState(HealthProbeService.INFLUXDB));
+        
+        probes.probe(HealthProbeService.INFLUXDB, () -> null, true);
+        
+        assertEquals(HealthProbeService.State.UP, probes.getState(HealthProbeService.INFLUXDB));
+        Map<String, Object> details = probes.getDetails(HealthProbeService.INFLUXDB);
+        assertEquals(1.0, details.get("success_rate"));
+        assertEquals(1, details.get("probes"));
+    }
+    
+    @Test
+    void isolatedFailureDegradesAndSustainedFailureIsDown() {
+        for (int i = 0; i < 9; i++) {
+            probes.probe(HealthProbeService.INFLUXDB, () -> null, true);
+        }
+        probes.probe(HealthProbeService.INFLUXDB, () -> "shards down: a", true);
+        assertEquals(HealthProbeService.State.DEGRADED, probes.getState(HealthProbeService.INFLUXDB));
+        
+        probes.probe(HealthProbeService.INFLUXDB, () -> {
+            throw new IllegalStateException("refused");
+        }, true);
+        probes.probe(HealthProbeService.INFLUXDB, () -> "shards down: a", true);
+        assertEquals(HealthProbeService.State.DOWN, probes.getState(HealthProbeService.INFLUXDB));
+        assertEquals("shards down: a", probes.getDetails(HealthProbeService.INFLUXDB).get("error"));
+        
+        // Optional dependencies never go below DEGRADED
+        for (int i = 0; i < 10; i++) {
+            probes.probe(HealthProbeService.REDIS, () -> "unavailable", false);
+        }
+        assertEquals(HealthProbeService.State.DEGRADED, probes.getState(HealthProbeService.REDIS));
+    }
+    
+    @Test
+    void slowProbeDegrades() {
+        probes.probe(HealthProbeService.REDIS, () -> {
+            Thread.sleep(80);
+            return null;
+        }, false);
+        
+        assertEquals(HealthProbeService.State.DEGRADED, probes.getState(HealthProbeService.REDIS));
+        assertTrue((Long) probes.getDetails(HealthProbeService.REDIS).get("latency_ms_last") >= 80);
+    }
+}
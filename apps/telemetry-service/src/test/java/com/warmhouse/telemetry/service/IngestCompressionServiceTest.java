@@ -0,0 +1,86 @@
+package com.warmhouse.telemetry.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warmhouse.telemetry.model.TelemetryData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class IngestCompressionServiceTest {
+    
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+    
+    private IngestCompressionService compression;
+    private final UUID deviceId = UUID.randomUUID();
+    
+    @BeforeEach
+    void setUp() {
+        MeasurementSchemaCatalog catalog = new MeasurementSchemaCatalog(new DefaultResourceLoader(), new ObjectMapper());
+        ReflectionTestUtils.setField(catalog, "catalogLocation", "classpath:measurement-schemas.json");
+        catalog.load();
+        
+        compression = new IngestCompressionService(catalog, mock(InfluxDBService.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(compression, "enabled", true);
+        compression.init();
+    }
+    
+    @Test
+    void deadbandDropsSmallChangesUntilHeartbeat() {
+        // humidity: deadband 0.5, max silence 300 s
+        assertEquals(1, offer("humidity", 0, 40.0).size());
+        assertEquals(0, offer("humidity", 10, 40.3).size());
+        assertEquals(1, offer("humidity", 20, 40.6).size());
+        assertEquals(0, offer("humidity", 30, 40.4).size());
+        assertEquals(1, offer("humidity", 330, 40.4).size());
+    }
+    
+    @Test
+    void swingingDoorKeepsTurningPoints() {
+        // temperature: deviation 0.1, max silence 300 s
+        List<TelemetryData> stored = new ArrayList<>();
+        for (int s = 0; s <= 100; s += 5) {
+            stored.addAll(offer("temperature", s, 20.0 + 0.01 * s));
+        }
+        for (int s = 105; s <= 200; s += 5) {
+            stored.addAll(offer("temperature", s, 21.0 - 0.01 * (s - 100)));
+        }
+        
+        // Start and a point within the deviation of the peak; the descending ramp is still held
+        assertEquals(2, stored.size());
+        assertEquals(T0, stored.get(0).getTimestamp());
+        assertEquals(21.0, stored.get(1).getValue(), 0.1 + 1e-9);
+    }
+    
+    @Test
+    void nonGoodQualityIsAlwaysStored() {
+        offer("humidity", 0, 40.0);
+        TelemetryData bad = reading("humidity", 10, 40.0);
+        bad.setQuality("BAD");
+        
+        assertEquals(List.of(bad), compression.filter(bad));
+    }
+    
+    private List<TelemetryData> offer(String type, long seconds, double value) {
+        return compression.filter(reading(type, seconds, value));
+    }
+    
+    private TelemetryData reading(String type, long seconds, double value) {
+        return TelemetryData.builder()
+                .deviceId(deviceId)
+                .measurementType(type)
+                .value(value)
+                .quality("GOOD")
+                .timestamp(T0.plusSeconds(seconds))
+                .build();
+    }
+}
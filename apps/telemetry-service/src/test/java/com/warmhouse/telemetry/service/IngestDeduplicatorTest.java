@@ -0,0 +1,184 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryRequest;
+import com.warmhouse.telemetry.model.TelemetryData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestDeduplicatorTest {
+    
+    private final UUID device = UUID.randomUUID();
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> values;
+    private IngestDeduplicator deduplicator;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        Bulkhead redis = mock(Bulkhead.class);
+        when(redis.call(any(), any())).thenAnswer(invocation -> ((Callable<Object>) invocation.getArgument(0)).call());
+        DependencyBulkheads bulkheads = mock(DependencyBulkheads.class);
+        when(bulkheads.redis()).thenReturn(redis);
+        
+        deduplicator = new IngestDeduplicator(redisTemplate, bulkheads, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "windowMs", 600_000L);
+        ReflectionTestUtils.setField(deduplicator, "expectedKeys", 10_000);
+        ReflectionTestUtils.setField(deduplicator, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(deduplicator, "flushBatchSize", 500);
+        ReflectionTestUtils.invokeMethod(deduplicator, "init");
+    }
+    
+    @Test
+    void retriesGetTheOriginalMeasurementUntilAFailedOneIsReleased() {
+        Instant timestamp = Instant.parse("2026-10-19T10:00:00.123Z");
+        String key = deduplicator.keyOf(reading(timestamp, null));
+        UUID original = UUID.randomUUID();
+        
+        assertNull(deduplicator.claim(key, data(original, timestamp, 21.5)));
+        IngestDeduplicator.Original retry = deduplicator.claim(key, data(UUID.randomUUID(), Instant.now(), 21.5));
+        assertNotNull(retry);
+        assertEquals(original, retry.getMeasurementId());
+        assertEquals(timestamp, retry.getTimestamp());
+        
+        // A failed store is forgotten, so its retry is stored again
+        deduplicator.release(key, original);
+        UUID stored = UUID.randomUUID();
+        assertNull(deduplicator.claim(key, data(stored, timestamp, 21.5)));
+        deduplicator.commit(key, stored);
+        
+        assertNull(deduplicator.keyOf(reading(null, null)));
+        assertEquals(deduplicator.keyOf(reading(null, "gw-42")), deduplicator.keyOf(reading(timestamp, "gw-42")));
+    }
+    
+    @Test
+    void onlyFilterHitsAreCheckedAgainstRedis() {
+        ReflectionTestUtils.setField(deduplicator, "incompleteUntil", 0L);
+        Instant timestamp = Instant.parse("2026-10-19T10:00:00Z");
+        String key = deduplicator.keyOf(reading(timestamp, null));
+        UUID original = UUID.randomUUID();
+        deduplicator.claim(key, data(original, timestamp, 21.5));
+        deduplicator.commit(key, original);
+        deduplicator.flush();
+        verify(redisTemplate).executePipelined(any(SessionCallback.class));
+        verify(values, never()).get(anyString());
+        
+        // Flushed keys are no longer held locally, the Redis record answers the retry
+        when(values.get(IngestDeduplicator.KEY_PREFIX + key)).thenReturn(original + "|" + timestamp);
+        deduplicator.rotate();
+        IngestDeduplicator.Original retry = deduplicator.claim(key, data(UUID.randomUUID(), Instant.now(), 21.5));
+        
+        assertNotNull(retry);
+        assertEquals(original, retry.getMeasurementId());
+    }
+    
+    @Test
+    void missesAreCheckedAgainstRedisWhileFiltersAreIncomplete() {
+        Instant timestamp = Instant.parse("2026-10-19T10:00:00Z");
+        UUID original = UUID.randomUUID();
+        String restarted = deduplicator.keyOf(reading(timestamp, "before-restart"));
+        when(values.get(IngestDeduplicator.KEY_PREFIX + restarted)).thenReturn(original + "|" + timestamp);
+        
+        // Claimed before a restart: only Redis knows the key
+        assertEquals(original, deduplicator.claim(restarted, data(UUID.randomUUID(), timestamp, 21.5)).getMeasurementId());
+        
+        // Warmed up, a miss is trusted until devices move here
+        ReflectionTestUtils.setField(deduplicator, "incompleteUntil", 0L);
+        String moved = deduplicator.keyOf(reading(timestamp, "previous-owner"));
+        when(values.get(IngestDeduplicator.KEY_PREFIX + moved)).thenReturn(original + "|" + timestamp);
+        String fresh = deduplicator.keyOf(reading(timestamp, "fresh"));
+        assertNull(deduplicator.claim(fresh, data(UUID.randomUUID(), timestamp, 21.5)));
+        verify(values, never()).get(IngestDeduplicator.KEY_PREFIX + fresh);
+        deduplicator.ownershipChanged();
+        assertNotNull(deduplicator.claim(moved, data(UUID.randomUUID(), timestamp, 21.5)));
+        
+        // Opted in, for instances without partitioning: another one may have stored the reading at any time
+        ReflectionTestUtils.setField(deduplicator, "incompleteUntil", 0L);
+        ReflectionTestUtils.setField(deduplicator, "checkMisses", true);
+        String elsewhere = deduplicator.keyOf(reading(timestamp, "other-instance"));
+        when(values.get(IngestDeduplicator.KEY_PREFIX + elsewhere)).thenReturn(original + "|" + timestamp);
+        assertNotNull(deduplicator.claim(elsewhere, data(UUID.randomUUID(), timestamp, 21.5)));
+    }
+    
+    @Test
+    void batchChecksItsMaybeSeenKeysInOneCall() {
+        Instant timestamp = Instant.parse("2026-10-19T10:00:00Z");
+        UUID original = UUID.randomUUID();
+        String stored = deduplicator.keyOf(reading(timestamp, "stored"));
+        String fresh = deduplicator.keyOf(reading(timestamp, "fresh"));
+        when(values.multiGet(List.of(IngestDeduplicator.KEY_PREFIX + stored, IngestDeduplicator.KEY_PREFIX + fresh)))
+                .thenReturn(Arrays.asList(original + "|" + timestamp, null));
+        
+        List<TelemetryData> readings = List.of(data(UUID.randomUUID(), timestamp, 21.5),
+                data(UUID.randomUUID(), timestamp, 21.5), data(UUID.randomUUID(), timestamp, 21.5),
+                data(UUID.randomUUID(), timestamp, 21.5));
+        List<IngestDeduplicator.Original> existing =
+                deduplicator.claimAll(Arrays.asList(stored, fresh, fresh, null), readings);
+        
+        assertEquals(original, existing.get(0).getMeasurementId());
+        assertNull(existing.get(1));
+        // Repeated within the batch: a retry of its first reading
+        assertEquals(readings.get(1).getMeasurementId(), existing.get(2).getMeasurementId());
+        assertNull(existing.get(3));
+        verify(values, never()).get(anyString());
+    }
+    
+    @Test
+    void retriesAreAnsweredWithTheStoredReadingNotTheirOwn() {
+        ReflectionTestUtils.setField(deduplicator, "incompleteUntil", 0L);
+        Instant timestamp = Instant.parse("2026-10-19T10:00:00Z");
+        String key = deduplicator.keyOf(reading(timestamp, "gw-7"));
+        TelemetryData stored = data(UUID.randomUUID(), timestamp, 21.5);
+        deduplicator.claim(key, stored);
+        
+        TelemetryData retry = data(UUID.randomUUID(), Instant.now(), 99.0);
+        retry.setUnit("F");
+        TelemetryData replayed = deduplicator.claim(key, retry).replay(retry);
+        assertEquals(stored.getMeasurementId(), replayed.getMeasurementId());
+        assertEquals(21.5, replayed.getValue());
+        assertEquals("°C", replayed.getUnit());
+        
+        // The Redis record keeps the reading; records of older versions hold only id and timestamp
+        String record = new IngestDeduplicator.Original(stored).encode();
+        TelemetryData fromRedis = IngestDeduplicator.Original.decode(record).replay(retry);
+        assertEquals(21.5, fromRedis.getValue());
+        assertEquals("°C", fromRedis.getUnit());
+        assertEquals(timestamp, fromRedis.getTimestamp());
+        assertEquals(99.0, IngestDeduplicator.Original.decode(stored.getMeasurementId() + "|" + timestamp)
+                .replay(retry).getValue());
+    }
+    
+    private TelemetryData data(UUID measurementId, Instant timestamp, double value) {
+        return TelemetryData.builder().measurementId(measurementId).deviceId(device).measurementType("temperature")
+                .value(value).unit("°C").quality("GOOD").timestamp(timestamp).build();
+    }
+    
+    private TelemetryRequest reading(Instant timestamp, String idempotencyKey) {
+        return TelemetryRequest.builder().deviceId(device).measurementType("temperature").value(21.5)
+                .timestamp(timestamp).idempotencyKey(idempotencyKey).build();
+    }
+}
@@ -0,0 +1,132 @@
+package com.warmhouse.telemetry.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warmhouse.telemetry.model.TelemetryData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InstanceMembershipServiceTest {
+    
+    private static final Map<String, String> MEMBERS = Map.of(
+            "a", "http://a:8084", "b", "http://b:8084", "c", "http://c:8084");
+    
+    @Test
+    void everyDeviceHasExactlyOneOwner() {
+        List<InstanceMembershipService> instances = new ArrayList<>();
+        for (String id : MEMBERS.keySet()) {
+            InstanceMembershipService instance = membership(id, mock(IngestCompressionService.class));
+            instance.applyMembers(MEMBERS);
+            instances.add(instance);
+        }
+        
+        for (int i = 0; i < 1_000; i++) {
+            UUID deviceId = UUID.randomUUID();
+            List<String> owners = new ArrayList<>();
+            List<String> forwardedTo = new ArrayList<>();
+            for (InstanceMembershipService instance : instances) {
+                InstanceMembershipService.Member owner = instance.remoteOwnerOf(deviceId);
+                if (owner == null) {
+                    owners.add(instance.getInstanceId());
+                } else {
+                    forwardedTo.add(owner.getId());
+                }
+            }
+            assertEquals(1, owners.size());
+            assertTrue(forwardedTo.stream().allMatch(owners.get(0)::equals));
+        }
+    }
+    
+    @Test
+    void joiningInstanceTakesOverAfterHeldReadingsAreStored() {
+        InfluxDBService influxDBService = mock(InfluxDBService.class);
+        IngestCompressionService compression = compression(influxDBService);
+        InstanceMembershipService a = membership("a", compression);
+        a.applyMembers(Map.of("a", "http://a:8084"));
+        
+        // Second temperature reading of each device is held by the swinging door
+        List<UUID> devices = new ArrayList<>();
+        Instant t0 = Instant.now();
+        for (int i = 0; i < 200; i++) {
+            UUID deviceId = UUID.randomUUID();
+            devices.add(deviceId);
+            assertEquals(1, compression.filter(reading(deviceId, t0, 20.0)).size());
+            assertEquals(0, compression.filter(reading(deviceId, t0.plusSeconds(5), 20.05)).size());
+        }
+        
+        a.applyMembers(Map.of("a", "http://a:8084", "b", "http://b:8084"));
+        
+        long moved = devices.stream().filter(id -> a.remoteOwnerOf(id) != null).count();
+        assertTrue(moved > 0 && moved < devices.size());
+        
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TelemetryData>> written = ArgumentCaptor.forClass(List.class);
+        verify(influxDBService).writeTelemetryDataBatch(written.capture());
+        assertEquals(moved, written.getValue().size());
+        assertTrue(written.getValue().stream().allMatch(point -> "b".equals(a.remoteOwnerOf(point.getDeviceId()).getId())));
+    }
+    
+    @Test
+    void forwardedHeaderIsTrustedOnlyWithTheSecretFromALiveMember() {
+        InstanceMembershipService a = membership("a", mock(IngestCompressionService.class));
+        a.applyMembers(Map.of("a", "http://a:8084", "b", "http://b:8084"));
+        IngestForwardingService forwarding = new IngestForwardingService(null, a, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(forwarding, "forwardingSecret", "s3cret");
+        forwarding.init();
+        
+        assertTrue(forwarding.isTrustedForward("b", "s3cret"));
+        assertFalse(forwarding.isTrustedForward("b", null));
+        assertFalse(forwarding.isTrustedForward("b", "guess"));
+        assertFalse(forwarding.isTrustedForward("z", "s3cret"));
+        assertFalse(forwarding.isTrustedForward(null, null));
+        
+        // Without a configured secret nobody is trusted, forwarded readings are admitted again
+        ReflectionTestUtils.setField(forwarding, "forwardingSecret", "");
+        assertFalse(forwarding.isTrustedForward("b", ""));
+    }
+    
+    private static InstanceMembershipService membership(String id, IngestCompressionService compression) {
+        InstanceMembershipService membership = new InstanceMembershipService(
+                null, compression, mock(RuleEngineService.class), mock(IngestDeduplicator.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(membership, "enabled", true);
+        ReflectionTestUtils.setField(membership, "instanceId", id);
+        ReflectionTestUtils.setField(membership, "advertisedUrl", "http://" + id + ":8084");
+        ReflectionTestUtils.setField(membership, "virtualNodes", 128);
+        membership.init();
+        return membership;
+    }
+    
+    private static IngestCompressionService compression(InfluxDBService influxDBService) {
+        MeasurementSchemaCatalog catalog = new MeasurementSchemaCatalog(new DefaultResourceLoader(), new ObjectMapper());
+        ReflectionTestUtils.setField(catalog, "catalogLocation", "classpath:measurement-schemas.json");
+        catalog.load();
+        
+        IngestCompressionService compression = new IngestCompressionService(
+                catalog, influxDBService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(compression, "enabled", true);
+        compression.init();
+        return compression;
+    }
+    
+    private static TelemetryData reading(UUID deviceId, Instant timestamp, double value) {
+        return TelemetryData.builder()
+                .deviceId(deviceId)
+                .measurementType("temperature")
+                .value(value)
+                .quality("GOOD")
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.config.CompactRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LocationCacheWriterTest {
+    
+    private CompactRedisTemplate redisTemplate;
+    private DependencyBulkheads bulkheads;
+    private LocationCacheWriter writer;
+    
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        bulkheads = new DependencyBulkheads(registry);
+        ReflectionTestUtils.setField(bulkheads, "redisPoolSize", 1);
+        ReflectionTestUtils.setField(bulkheads, "redisQueueCapacity", 1);
+        ReflectionTestUtils.setField(bulkheads, "redisTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(bulkheads, "redisFailureThreshold", 5);
+        ReflectionTestUtils.setField(bulkheads, "rabbitPoolSize", 1);
+        ReflectionTestUtils.setField(bulkheads, "rabbitQueueCapacity", 1);
+        ReflectionTestUtils.setField(bulkheads, "rabbitFailureThreshold", 5);
+        ReflectionTestUtils.invokeMethod(bulkheads, "init");
+        
+        redisTemplate = mock(CompactRedisTemplate.class);
+        writer = new LocationCacheWriter(redisTemplate, bulkheads, registry);
+        ReflectionTestUtils.setField(writer, "ttlMs", 600_000L);
+        ReflectionTestUtils.setField(writer, "refreshMarginMs", 60_000L);
+        ReflectionTestUtils.setField(writer, "capacity", 100);
+        ReflectionTestUtils.invokeMethod(writer, "init");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(bulkheads, "shutdown");
+    }
+    
+    @Test
+    void writesOnlyWhenTheLocationChanges() {
+        UUID device = UUID.randomUUID();
+        UUID kitchen = UUID.randomUUID();
+        for (int i = 0; i < 50; i++) {
+            writer.record(device, kitchen);
+        }
+        writer.flush();
+        
+        // Same location within the TTL: nothing to write
+        for (int i = 0; i < 50; i++) {
+            writer.record(device, kitchen);
+        }
+        writer.flush();
+        
+        writer.record(device, UUID.randomUUID());
+        writer.flush();
+        
+        verify(redisTemplate, times(2)).executePipelined(any(SessionCallback.class));
+    }
+}
@@ -0,0 +1,60 @@
+package com.warmhouse.telemetry.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warmhouse.telemetry.model.TelemetryData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeasurementSchemaCatalogTest {
+    
+    private MeasurementSchemaCatalog catalog;
+    
+    @BeforeEach
+    void setUp() {
+        catalog = new MeasurementSchemaCatalog(new DefaultResourceLoader(), new ObjectMapper());
+        ReflectionTestUtils.setField(catalog, "catalogLocation", "classpath:measurement-schemas.json");
+        catalog.load();
+    }
+    
+    @Test
+    void normalizesCatalogedReading() {
+        TelemetryData data = reading("Temperature", 21.456, "C", "good");
+        
+        catalog.conform(data);
+        
+        assertEquals("temperature", data.getMeasurementType());
+        assertEquals("celsius", data.getUnit());
+        assertEquals("GOOD", data.getQuality());
+        assertEquals(21.46, data.getValue());
+    }
+    
+    @Test
+    void rejectsReadingsOutsideSchema() {
+        assertThrows(IllegalArgumentException.class, () -> catalog.conform(reading("humidity", 120.0, "percent", "GOOD")));
+        assertThrows(IllegalArgumentException.class, () -> catalog.conform(reading("humidity", 40.0, "kelvin", "GOOD")));
+        assertThrows(IllegalArgumentException.class, () -> catalog.conform(reading("humidity", 40.0, "percent", "UNKNOWN")));
+    }
+    
+    @Test
+    void passesUnknownTypesUnlessStrict() {
+        TelemetryData data = reading("vibration", 3.0, "mm/s", "GOOD");
+        catalog.conform(data);
+        assertEquals("mm/s", data.getUnit());
+        
+        ReflectionTestUtils.setField(catalog, "strict", true);
+        assertThrows(IllegalArgumentException.class, () -> catalog.conform(reading("vibration", 3.0, "mm/s", "GOOD")));
+    }
+    
+    private static TelemetryData reading(String type, double value, String unit, String quality) {
+        return TelemetryData.builder()
+                .measurementType(type)
+                .value(value)
+                .unit(unit)
+                .quality(quality)
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.dto.TelemetryStatistics;
+import com.warmhouse.telemetry.model.QuantileSketch;
+import com.warmhouse.telemetry.model.SketchBucket;
+import com.warmhouse.telemetry.model.TelemetryData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QuantileSketchServiceTest {
+    
+    private final UUID device = UUID.randomUUID();
+    private InfluxDBService influxDBService;
+    private QuantileSketchService service;
+    
+    @BeforeEach
+    void setUp() {
+        influxDBService = mock(InfluxDBService.class);
+        service = new QuantileSketchService(influxDBService);
+        ReflectionTestUtils.setField(service, "relativeAccuracy", 0.01);
+        ReflectionTestUtils.setField(service, "maxBins", 2048);
+        ReflectionTestUtils.setField(service, "bucketMinutes", 60L);
+        ReflectionTestUtils.setField(service, "instanceId", "instance-a");
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void lateReadingForAnEvictedBucketAddsARowInsteadOfReplacingIt() {
+        Instant closedHour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(Duration.ofHours(2));
+        for (int i = 0; i < 300; i++) {
+            service.record(reading(closedHour.plusSeconds(i), 10));
+        }
+        service.flush();
+        for (int i = 0; i < 100; i++) {
+            service.record(reading(closedHour.plusSeconds(3000 + i), 1000));
+        }
+        service.flush();
+        
+        ArgumentCaptor<List<SketchBucket>> written = ArgumentCaptor.forClass(List.class);
+        verify(influxDBService, times(2)).writeSketchBuckets(written.capture());
+        SketchBucket first = written.getAllValues().get(0).get(0);
+        SketchBucket late = written.getAllValues().get(1).get(0);
+        assertEquals(first.getBucketStart(), late.getBucketStart());
+        assertNotEquals(first.getGeneration(), late.getGeneration());
+        assertEquals(100, late.getSketch().getCount());
+        
+        // Both generations are merged on read
+        when(influxDBService.querySketchBuckets(any(), any(), any(), any())).thenReturn(List.of(first, late));
+        TelemetryStatistics stats = TelemetryStatistics.builder().deviceId(device).measurementType("temperature")
+                .periodStart(closedHour).periodEnd(closedHour.plus(Duration.ofHours(1))).build();
+        service.applyPercentiles(stats);
+        assertEquals(10, stats.getP50(), 10 * 0.01);
+        assertEquals(1000, stats.getP99(), 1000 * 0.01);
+    }
+    
+    @Test
+    void liveBucketShadowsOnlyItsOwnPersistedGeneration() {
+        Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        service.record(reading(hour, 10));
+        service.flush();
+        SketchBucket restarted = SketchBucket.builder().deviceId(device).measurementType("temperature")
+                .bucketStart(hour).instanceId("instance-a").generation(-1)
+                .sketch(sketchOf(20, 99)).build();
+        when(influxDBService.querySketchBuckets(any(), any(), any(), any())).thenReturn(List.of(restarted));
+        
+        TelemetryStatistics stats = TelemetryStatistics.builder().deviceId(device).measurementType("temperature")
+                .periodStart(hour).periodEnd(hour.plus(Duration.ofHours(1))).build();
+        service.applyPercentiles(stats);
+        
+        // A row of an earlier generation of the same instance is still counted
+        assertEquals(20, stats.getP50(), 20 * 0.01);
+    }
+    
+    private QuantileSketch sketchOf(double value, int count) {
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        for (int i = 0; i < count; i++) {
+            sketch.add(value);
+        }
+        return sketch;
+    }
+    
+    private TelemetryData reading(Instant timestamp, double value) {
+        return TelemetryData.builder().deviceId(device).measurementType("temperature")
+                .value(value).timestamp(timestamp).build();
+    }
+}
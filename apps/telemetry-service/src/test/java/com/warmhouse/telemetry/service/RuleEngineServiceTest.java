@@ -0,0 +1,99 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.events.TelemetryEventPublisher;
+import com.warmhouse.telemetry.model.AlertRule;
+import com.warmhouse.telemetry.model.TelemetryData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class RuleEngineServiceTest {
+
+    private final UUID deviceId = UUID.randomUUID();
+    private TelemetryEventPublisher publisher;
+    private RuleEngineService engine;
+
+    @BeforeEach
+    void setUp() {
+        publisher = mock(TelemetryEventPublisher.class);
+        engine = new RuleEngineService(publisher);
+        ReflectionTestUtils.setField(engine, "windowCapacity", 16);
+    }
+
+    @Test
+    void thresholdWithHysteresisPublishesOnlyTransitions() {
+        AlertRule rule = AlertRule.builder().ruleId("hot").measurementType("temperature")
+                .type(AlertRule.Type.THRESHOLD_ABOVE).threshold(30.0).clearThreshold(28.0).build();
+        engine.updateRules(List.of(rule));
+
+        for (double value : new double[] {25, 31, 32, 29, 31, 27.5, 26}) {
+            engine.evaluate(reading("temperature", value, 0));
+        }
+
+        verify(publisher, times(1)).publishAlert(eq(rule), eq(deviceId), any(), any(), eq(true), anyDouble(), anyLong());
+        verify(publisher, times(1)).publishAlert(eq(rule), eq(deviceId), any(), any(), eq(false), anyDouble(), anyLong());
+    }
+
+    @Test
+    void rateOfChangeUsesSlidingWindow() {
+        AlertRule rule = AlertRule.builder().ruleId("spike").measurementType("temperature")
+                .type(AlertRule.Type.RATE_OF_CHANGE).threshold(5.0).windowSeconds(60L).build();
+        engine.updateRules(List.of(rule));
+
+        // Slow drift over several minutes never changes 5 degrees within one minute
+        for (int i = 0; i < 10; i++) {
+            engine.evaluate(reading("temperature", 20 + i * 2, i * 60));
+        }
+        verifyNoInteractions(publisher);
+
+        engine.evaluate(reading("temperature", 45, 10 * 60 + 10));
+        verify(publisher).publishAlert(eq(rule), eq(deviceId), any(), any(), eq(true), eq(45.0), anyLong());
+    }
+
+    @Test
+    void rulesForOtherMeasurementTypesAreIgnored() {
+        engine.updateRules(List.of(AlertRule.builder().ruleId("humid").measurementType("humidity")
+                .type(AlertRule.Type.THRESHOLD_ABOVE).threshold(10.0).build()));
+
+        engine.evaluate(reading("temperature", 99, 0));
+
+        verifyNoInteractions(publisher);
+    }
+
+    @Test
+    void missingDataIsJudgedByArrivalNotByEventTime() {
+        AlertRule rule = AlertRule.builder().ruleId("silent").measurementType("temperature")
+                .type(AlertRule.Type.MISSING_DATA).timeoutSeconds(300L).build();
+        engine.updateRules(List.of(rule));
+
+        // A backfilled reading from 2024 has just arrived, the device is not silent
+        engine.evaluate(reading("temperature", 21, 0));
+        engine.sweepMissingData();
+
+        verifyNoInteractions(publisher);
+    }
+
+    private TelemetryData reading(String type, double value, long secondsOffset) {
+        return TelemetryData.builder()
+                .deviceId(deviceId)
+                .houseId(UUID.randomUUID())
+                .locationId(UUID.randomUUID())
+                .measurementType(type)
+                .value(value)
+                .timestamp(Instant.parse("2024-12-20T15:30:00Z").plusSeconds(secondsOffset))
+                .build();
+    }
+}
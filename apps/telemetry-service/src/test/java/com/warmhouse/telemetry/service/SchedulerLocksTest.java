@@ -0,0 +1,106 @@
+package com.warmhouse.telemetry.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SchedulerLocksTest {
+    
+    private static final String KEY = "telemetry:test:lock";
+    
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+    
+    private SchedulerLocks instanceA;
+    private SchedulerLocks instanceB;
+    
+    @BeforeAll
+    static void startRedis() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            server = new RedisServer(port);
+            server.start();
+        } catch (Exception e) {
+            // Scripts need a real Redis; skip where the bundled server cannot run
+            server = null;
+        }
+        assumeTrue(server != null, "embedded Redis unavailable");
+        
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+    
+    @AfterAll
+    static void stopRedis() throws Exception {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+    
+    @BeforeEach
+    void setUp() {
+        redis.getConnectionFactory().getConnection().serverCommands().flushAll();
+        instanceA = locks("instance-a");
+        instanceB = locks("instance-b");
+    }
+    
+    @Test
+    void oneInstanceHoldsTheLockUntilItReleasesIt() {
+        assertTrue(instanceA.acquire(KEY, 60000));
+        assertFalse(instanceB.acquire(KEY, 60000));
+        
+        instanceA.release(KEY);
+        
+        assertTrue(instanceB.acquire(KEY, 60000));
+    }
+    
+    @Test
+    void expiredHolderLeavesTheNextHoldersLockAlone() throws Exception {
+        assertTrue(instanceA.acquire(KEY, 50));
+        Thread.sleep(100);
+        assertTrue(instanceB.acquire(KEY, 60000));
+        
+        assertFalse(instanceA.renew(KEY, 60000));
+        instanceA.release(KEY);
+        
+        assertEquals("instance-b", redis.opsForValue().get(KEY));
+        assertTrue(redis.getExpire(KEY) > 0);
+    }
+    
+    @Test
+    void holderExtendsItsLease() {
+        assertTrue(instanceA.acquire(KEY, 1000));
+        
+        assertTrue(instanceA.renew(KEY, 60000));
+        
+        assertTrue(redis.getExpire(KEY) > 1);
+    }
+    
+    private static SchedulerLocks locks(String instanceId) {
+        SchedulerLocks locks = new SchedulerLocks(redis);
+        ReflectionTestUtils.setField(locks, "instanceId", instanceId);
+        return locks;
+    }
+}
@@ -0,0 +1,165 @@
+package com.warmhouse.telemetry.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SensorCorrelationStoreTest {
+    
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+    
+    private final UUID deviceA = UUID.randomUUID();
+    private final UUID deviceB = UUID.randomUUID();
+    private SensorCorrelationStore store;
+    
+    @BeforeAll
+    static void startRedis() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            server = new RedisServer(port);
+            server.start();
+        } catch (Exception e) {
+            // Scripts need a real Redis; skip where the bundled server cannot run
+            server = null;
+        }
+        assumeTrue(server != null, "embedded Redis unavailable");
+        
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+    
+    @AfterAll
+    static void stopRedis() throws Exception {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+    
+    @BeforeEach
+    void setUp() {
+        redis.getConnectionFactory().getConnection().serverCommands().flushAll();
+        store = new SensorCorrelationStore(redis);
+    }
+    
+    @Test
+    void expandsCompactHashFields() {
+        Map<String, Object> sensor = SensorCorrelationStore.decode("42", Map.of(
+                "n", "Living room",
+                "t", "temperature",
+                "c", "1700000000000",
+                "u", "1700000005000"));
+        
+        assertEquals(List.of("sensor_id", "name", "type", "created_at", "updated_at"), List.copyOf(sensor.keySet()));
+        assertEquals("Living room", sensor.get("name"));
+        assertEquals(1700000005000L, sensor.get("updated_at"));
+        assertFalse(sensor.containsKey("device_id"));
+    }
+    
+    @Test
+    void updateMovesSensorBetweenIndexes() {
+        store.save("s1", "Kitchen thermometer", "temperature", "kitchen", deviceA);
+        Object createdAt = store.findByDevice(deviceA).get(0).get("created_at");
+        
+        assertTrue(store.update("s1", null, null, "hall", deviceB));
+        
+        assertTrue(store.findByDevice(deviceA).isEmpty());
+        assertTrue(store.findByLocation("kitchen").isEmpty());
+        assertEquals(Set.of(), redis.opsForSet().members(index("device:" + deviceA)));
+        List<Map<String, Object>> moved = store.findByDevice(deviceB);
+        assertEquals(1, moved.size());
+        assertEquals("hall", moved.get(0).get("location"));
+        // Null fields keep their value
+        assertEquals("Kitchen thermometer", moved.get(0).get("name"));
+        assertEquals("temperature", moved.get(0).get("type"));
+        assertEquals(createdAt, moved.get(0).get("created_at"));
+        assertEquals(1, store.findByType("temperature").size());
+        assertEquals(1, store.findByLocation("hall").size());
+    }
+    
+    @Test
+    void updateOfUnknownSensorStoresNothing() {
+        assertFalse(store.update("missing", "Ghost", "humidity", "attic", deviceA));
+        
+        assertFalse(redis.hasKey(SensorCorrelationStore.KEY_PREFIX + "missing"));
+        assertTrue(store.findByDevice(deviceA).isEmpty());
+        assertFalse(redis.hasKey(index("type:humidity")));
+    }
+    
+    @Test
+    void legacyJsonEntryIsReplacedByHash() {
+        String key = SensorCorrelationStore.KEY_PREFIX + "legacy";
+        redis.opsForValue().set(key, "{\"sensor_id\":\"legacy\",\"type\":\"co2\"}");
+        
+        assertTrue(store.update("legacy", "Hall CO2", "co2", "hall", deviceA));
+        
+        assertEquals(DataType.HASH, redis.type(key));
+        assertTrue(redis.getExpire(key) > 0);
+        List<Map<String, Object>> sensors = store.findByType("co2");
+        assertEquals(1, sensors.size());
+        assertEquals("Hall CO2", sensors.get(0).get("name"));
+        assertEquals(deviceA.toString(), sensors.get(0).get("device_id"));
+    }
+    
+    @Test
+    void deleteDropsSensorFromEveryIndex() {
+        store.save("s1", "Kitchen thermometer", "temperature", "kitchen", deviceA);
+        store.save("s2", "Kitchen hygrometer", "humidity", "kitchen", deviceA);
+        
+        assertTrue(store.delete("s1"));
+        assertFalse(store.delete("s1"));
+        
+        assertFalse(redis.hasKey(SensorCorrelationStore.KEY_PREFIX + "s1"));
+        assertEquals(Set.of("s2"), redis.opsForSet().members(index("device:" + deviceA)));
+        assertEquals(Set.of("s2"), redis.opsForSet().members(index("location:kitchen")));
+        assertFalse(redis.hasKey(index("type:temperature")));
+    }
+    
+    @Test
+    void deleteByDeviceRemovesItsSensorsAndTheirOtherIndexEntries() {
+        store.save("s1", "Kitchen thermometer", "temperature", "kitchen", deviceA);
+        store.save("s2", "Hall thermometer", "temperature", "hall", deviceA);
+        store.save("s3", "Kitchen hygrometer", "humidity", "kitchen", deviceB);
+        
+        assertEquals(2, store.deleteByDevice(deviceA));
+        assertEquals(0, store.deleteByDevice(deviceA));
+        
+        assertFalse(redis.hasKey(SensorCorrelationStore.KEY_PREFIX + "s1"));
+        assertFalse(redis.hasKey(SensorCorrelationStore.KEY_PREFIX + "s2"));
+        assertFalse(redis.hasKey(index("device:" + deviceA)));
+        assertFalse(redis.hasKey(index("location:hall")));
+        assertFalse(redis.hasKey(index("type:temperature")));
+        assertEquals(Set.of("s3"), redis.opsForSet().members(index("location:kitchen")));
+        assertEquals(1, store.findByDevice(deviceB).size());
+    }
+    
+    private static String index(String suffix) {
+        return SensorCorrelationStore.INDEX_PREFIX + suffix;
+    }
+}
@@ -0,0 +1,115 @@
+package com.warmhouse.telemetry.service;
+
+import com.influxdb.client.InfluxDBClientFactory;
+import com.warmhouse.telemetry.loadtest.FakeInfluxDBServer;
+import com.warmhouse.telemetry.model.TelemetryData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Routing of writes and queries across several local InfluxDB stand-ins
+ */
+class ShardedInfluxDBServiceTest {
+    
+    private final List<FakeInfluxDBServer> servers = new ArrayList<>();
+    private InfluxShardRouter router;
+    private InfluxDBService influxDBService;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        List<InfluxShard> shards = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            FakeInfluxDBServer server = new FakeInfluxDBServer();
+            servers.add(server);
+            String name = "shard-" + i;
+            names.add(name);
+            shards.add(new InfluxShard(name, server.getUrl(), InfluxDBClientFactory.create(
+                    server.getUrl(), "token".toCharArray(), "warmhouse", "telemetry"), true));
+        }
+        router = new InfluxShardRouter(shards, names, List.of(), 64, 1000);
+        
+        TieredStorageService tieredStorage = new TieredStorageService(router, null, null);
+        ReflectionTestUtils.setField(tieredStorage, "rawBucket", "telemetry");
+        ReflectionTestUtils.setField(tieredStorage, "rawRetention", "30d");
+        tieredStorage.init();
+        
+        influxDBService = new InfluxDBService(router, mock(MeasurementSchemaCatalog.class), tieredStorage,
+                mock(DeviceTombstones.class));
+        ReflectionTestUtils.setField(influxDBService, "bucket", "telemetry");
+        ReflectionTestUtils.setField(influxDBService, "org", "warmhouse");
+        ReflectionTestUtils.setField(influxDBService, "queryTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(influxDBService, "targetPoints", 1500L);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        router.close();
+        servers.forEach(FakeInfluxDBServer::close);
+    }
+    
+    @Test
+    void batchWritesAreSplitByHouseOwner() {
+        List<TelemetryData> batch = new ArrayList<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int house = 0; house < 60; house++) {
+            UUID houseId = UUID.randomUUID();
+            for (int reading = 0; reading < 5; reading++) {
+                batch.add(reading(UUID.randomUUID(), houseId));
+                expected.merge(router.shardFor(houseId).getName(), 1, Integer::sum);
+            }
+        }
+        
+        influxDBService.writeTelemetryDataBatch(batch);
+        
+        int shardsWithData = 0;
+        for (int i = 0; i < servers.size(); i++) {
+            long written = servers.get(i).getPointsWritten();
+            assertEquals(expected.getOrDefault("shard-" + i, 0).longValue(), written);
+            shardsWithData += written > 0 ? 1 : 0;
+        }
+        assertEquals(3, shardsWithData);
+    }
+    
+    @Test
+    void deviceQueriesFanOutOnlyUntilHouseIsKnown() {
+        UUID deviceId = UUID.randomUUID();
+        Instant end = Instant.now();
+        
+        influxDBService.queryByDeviceId(deviceId, end.minus(Duration.ofHours(1)), end);
+        assertEquals(3, servers.stream().mapToLong(FakeInfluxDBServer::getQueries).sum());
+        
+        UUID houseId = UUID.randomUUID();
+        influxDBService.writeTelemetryData(reading(deviceId, houseId));
+        influxDBService.queryByDeviceId(deviceId, end.minus(Duration.ofHours(1)), end);
+        
+        assertEquals(4, servers.stream().mapToLong(FakeInfluxDBServer::getQueries).sum());
+        int owner = Integer.parseInt(router.shardFor(houseId).getName().substring("shard-".length()));
+        assertEquals(1, servers.get(owner).getPointsWritten());
+    }
+    
+    private static TelemetryData reading(UUID deviceId, UUID houseId) {
+        return TelemetryData.builder()
+                .deviceId(deviceId)
+                .houseId(houseId)
+                .locationId(UUID.randomUUID())
+                .measurementType("temperature")
+                .value(21.5)
+                .quality("GOOD")
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.model.TelemetryData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TagCardinalityGuardTest {
+    
+    private TagCardinalityGuard guard;
+    
+    @BeforeEach
+    void setUp() {
+        guard = new TagCardinalityGuard(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(guard, "maxValuesPerKey", 100L);
+        ReflectionTestUtils.setField(guard, "policy", TagCardinalityGuard.Policy.DEMOTE);
+        ReflectionTestUtils.setField(guard, "maxTrackedKeys", 2);
+        ReflectionTestUtils.setField(guard, "precision", 12);
+        ReflectionTestUtils.invokeMethod(guard, "init");
+    }
+    
+    @Test
+    void overBudgetTagsAreDemotedToFields() {
+        UUID device = UUID.randomUUID();
+        for (int i = 0; i < 200; i++) {
+            guard.apply(reading(device, Map.of("request_id", "r" + i, "room", "kitchen")));
+        }
+        
+        TelemetryData data = reading(device, Map.of("request_id", "r-next", "room", "kitchen"));
+        guard.apply(data);
+        
+        assertEquals(Map.of("room", "kitchen"), data.getTags());
+        assertEquals("r-next", data.getMetadata().get(TagCardinalityGuard.DEMOTED_FIELD_PREFIX + "request_id"));
+        Map<String, Object> key = keyReport("request_id");
+        assertEquals(true, key.get("over_budget"));
+        assertTrue((Long) key.get("demoted") > 0);
+    }
+    
+    @Test
+    void overBudgetTagsRejectTheReadingUnderReject() {
+        ReflectionTestUtils.setField(guard, "policy", TagCardinalityGuard.Policy.REJECT);
+        UUID device = UUID.randomUUID();
+        int rejected = 0;
+        for (int i = 0; i < 200; i++) {
+            try {
+                guard.apply(reading(device, Map.of("request_id", "r" + i)));
+            } catch (IllegalArgumentException e) {
+                rejected++;
+            }
+        }
+        
+        assertTrue(rejected > 0);
+        TelemetryData repeated = reading(device, Map.of("request_id", "r0"));
+        assertThrows(IllegalArgumentException.class, () -> guard.apply(repeated));
+        assertEquals(Map.of("request_id", "r0"), repeated.getTags());
+        assertEquals((long) rejected + 1, keyReport("request_id").get("rejected"));
+    }
+    
+    @Test
+    void offendersAreTheDevicesThatUsedUpTheBudget() {
+        UUID noisy = UUID.randomUUID();
+        UUID quiet = UUID.randomUUID();
+        UUID late = UUID.randomUUID();
+        for (int i = 0; i < 150; i++) {
+            guard.apply(reading(noisy, Map.of("session", "s" + i)));
+            guard.apply(reading(quiet, Map.of("session", "s0")));
+        }
+        // Writes after the budget tripped repeat known values
+        for (int i = 0; i < 20; i++) {
+            guard.apply(reading(late, Map.of("session", "s1")));
+        }
+        
+        assertEquals(List.of(noisy), keyReport("session").get("offending_devices"));
+    }
+    
+    @Test
+    void keysBeyondTheTrackingLimitAreTreatedAsOverBudget() {
+        UUID device = UUID.randomUUID();
+        guard.apply(reading(device, Map.of("a", "1")));
+        guard.apply(reading(device, Map.of("b", "1")));
+        
+        TelemetryData data = reading(device, Map.of("c", "1"));
+        guard.apply(data);
+        
+        assertEquals(Map.of(), data.getTags());
+        assertEquals("1", data.getMetadata().get(TagCardinalityGuard.DEMOTED_FIELD_PREFIX + "c"));
+        assertEquals(2, guard.getReport(false).get("tracked_keys"));
+        assertEquals(1L, keyReport(TagCardinalityGuard.UNTRACKED_KEY).get("demoted"));
+    }
+    
+    @Test
+    void resetForgetsTheEstimateAndOffenders() {
+        UUID device = UUID.randomUUID();
+        for (int i = 0; i < 200; i++) {
+            guard.apply(reading(device, Map.of("request_id", "r" + i)));
+        }
+        
+        assertTrue(guard.reset("request_id"));
+        assertFalse(guard.reset("unknown"));
+        
+        Map<String, Object> key = keyReport("request_id");
+        assertEquals(false, key.get("over_budget"));
+        assertEquals(0L, key.get("estimated_values"));
+        assertEquals(List.of(), key.get("offending_devices"));
+        TelemetryData data = reading(device, Map.of("request_id", "r-after"));
+        guard.apply(data);
+        assertEquals(Map.of("request_id", "r-after"), data.getTags());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> keyReport(String key) {
+        List<Map<String, Object>> keys = (List<Map<String, Object>>) guard.getReport(false).get("keys");
+        return keys.stream().filter(entry -> key.equals(entry.get("key"))).findFirst().orElseThrow();
+    }
+    
+    private TelemetryData reading(UUID deviceId, Map<String, String> tags) {
+        return TelemetryData.builder()
+                .deviceId(deviceId)
+                .measurementType("temperature")
+                .value(21.0)
+                .tags(tags)
+                .build();
+    }
+}
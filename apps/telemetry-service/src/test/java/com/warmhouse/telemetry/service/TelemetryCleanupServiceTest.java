@@ -0,0 +1,62 @@
+package com.warmhouse.telemetry.service;
+
+import com.warmhouse.telemetry.events.TelemetryEventPublisher;
+import com.warmhouse.telemetry.model.AlertRule;
+import com.warmhouse.telemetry.model.TelemetryData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TelemetryCleanupServiceTest {
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void deletedDeviceRaisesNoMissingDataAlert() throws Exception {
+        TelemetryEventPublisher publisher = mock(TelemetryEventPublisher.class);
+        RuleEngineService ruleEngine = new RuleEngineService(publisher);
+        ReflectionTestUtils.setField(ruleEngine, "windowCapacity", 16);
+        AlertRule rule = AlertRule.builder().ruleId("silent").measurementType("temperature")
+                .type(AlertRule.Type.MISSING_DATA).timeoutSeconds(1L).build();
+        ruleEngine.updateRules(List.of(rule));
+        TelemetryCleanupService cleanup = new TelemetryCleanupService(mock(InfluxShardRouter.class),
+                mock(RedisTemplate.class), mock(SchedulerLocks.class), mock(TieredStorageService.class),
+                mock(SensorCorrelationStore.class), mock(LocationCacheWriter.class), mock(DeviceTombstones.class),
+                mock(IngestCompressionService.class), ruleEngine, new SimpleMeterRegistry());
+        
+        UUID deleted = UUID.randomUUID();
+        UUID silent = UUID.randomUUID();
+        ruleEngine.evaluate(reading(deleted));
+        ruleEngine.evaluate(reading(silent));
+        assertTrue(cleanup.cleanupDeviceData(deleted));
+        Thread.sleep(1100);
+        ruleEngine.sweepMissingData();
+        
+        verify(publisher).publishAlert(eq(rule), eq(silent), any(), any(), eq(true), anyDouble(), anyLong());
+        verify(publisher, never()).publishAlert(any(), eq(deleted), any(), any(), eq(true), anyDouble(), anyLong());
+    }
+    
+    private TelemetryData reading(UUID deviceId) {
+        return TelemetryData.builder()
+                .deviceId(deviceId)
+                .houseId(UUID.randomUUID())
+                .locationId(UUID.randomUUID())
+                .measurementType("temperature")
+                .value(21.0)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
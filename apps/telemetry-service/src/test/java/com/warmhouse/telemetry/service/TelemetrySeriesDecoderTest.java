@@ -0,0 +1,113 @@
+package com.warmhouse.telemetry.service;
+
+import com.influxdb.query.FluxRecord;
+import com.warmhouse.telemetry.model.QualityCode;
+import com.warmhouse.telemetry.model.TelemetrySeries;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TelemetrySeriesDecoderTest {
+    
+    private static final Instant START = Instant.parse("2024-12-20T15:30:00Z");
+    
+    private final UUID deviceId = UUID.randomUUID();
+    private final UUID houseId = UUID.randomUUID();
+    private final UUID locationId = UUID.randomUUID();
+    private final TelemetrySeriesDecoder decoder = new TelemetrySeriesDecoder(
+            type -> "temperature".equals(type) ? "celsius" : null);
+    
+    @Test
+    void eachTableBecomesOneSeries() {
+        decoder.accept(null, record(0, "temperature", 0, 21.5));
+        decoder.accept(null, record(0, "temperature", 10, 21.75));
+        decoder.accept(null, record(1, "humidity", 0, 45.0));
+        decoder.accept(null, record(2, "temperature", 0, 19.0));
+        
+        List<TelemetrySeries> series = decoder.getSeries();
+        assertEquals(3, series.size());
+        assertEquals("temperature", series.get(0).getMeasurementType());
+        assertEquals(2, series.get(0).getSize());
+        assertEquals(START.plusSeconds(10), series.get(0).getTimestamp(1));
+        assertEquals(21.75, series.get(0).getValue(1));
+        assertEquals(deviceId, series.get(0).getDeviceId());
+        assertEquals(houseId, series.get(0).getHouseId());
+        assertEquals(locationId, series.get(0).getLocationId());
+        assertEquals("humidity", series.get(1).getMeasurementType());
+        assertEquals(1, series.get(1).getSize());
+        assertEquals(1, series.get(2).getSize());
+        assertEquals(0, decoder.getSkipped());
+    }
+    
+    @Test
+    void malformedSeriesKeysSkipTheirWholeTable() {
+        FluxRecord malformed = record(0, "temperature", 0, 21.5);
+        malformed.getValues().put("device_id", "not-a-uuid");
+        FluxRecord sameTable = record(0, "temperature", 10, 21.75);
+        sameTable.getValues().put("device_id", "not-a-uuid");
+        FluxRecord noValue = record(1, "temperature", 0, 22.0);
+        noValue.getValues().put("value", null);
+        
+        decoder.accept(null, malformed);
+        decoder.accept(null, sameTable);
+        decoder.accept(null, noValue);
+        decoder.accept(null, record(1, "temperature", 10, 22.25));
+        
+        assertEquals(1, decoder.getSeries().size());
+        assertEquals(1, decoder.getSeries().get(0).getSize());
+        assertEquals(22.25, decoder.getSeries().get(0).getValue(0));
+        assertEquals(3, decoder.getSkipped());
+    }
+    
+    @Test
+    void qualityComesFromTheCodeFieldOrTheLegacyTag() {
+        FluxRecord coded = record(0, "temperature", 0, 21.5);
+        coded.getValues().put(InfluxDBService.QUALITY_FIELD, 2L);
+        FluxRecord legacy = record(0, "temperature", 10, 21.5);
+        legacy.getValues().put("quality", "bad");
+        FluxRecord unknown = record(0, "temperature", 20, 21.5);
+        unknown.getValues().put("quality", "flaky");
+        
+        decoder.accept(null, coded);
+        decoder.accept(null, legacy);
+        decoder.accept(null, unknown);
+        decoder.accept(null, record(0, "temperature", 30, 21.5));
+        
+        TelemetrySeries series = decoder.getSeries().get(0);
+        assertEquals(QualityCode.UNCERTAIN, series.getQuality(0));
+        assertEquals(QualityCode.BAD, series.getQuality(1));
+        assertEquals(QualityCode.UNKNOWN, series.getQuality(2));
+        assertEquals(QualityCode.GOOD, series.getQuality(3));
+    }
+    
+    @Test
+    void unitFieldWinsOverTheCatalog() {
+        FluxRecord legacy = record(0, "temperature", 0, 70.0);
+        legacy.getValues().put("unit", "fahrenheit");
+        
+        decoder.accept(null, legacy);
+        decoder.accept(null, record(1, "temperature", 0, 21.0));
+        decoder.accept(null, record(2, "vibration", 0, 0.3));
+        
+        assertEquals("fahrenheit", decoder.getSeries().get(0).getUnit());
+        assertEquals("celsius", decoder.getSeries().get(1).getUnit());
+        assertEquals("", decoder.getSeries().get(2).getUnit());
+    }
+    
+    private FluxRecord record(int table, String measurementType, long secondsOffset, double value) {
+        FluxRecord record = new FluxRecord(table);
+        Map<String, Object> values = record.getValues();
+        values.put("_time", START.plusSeconds(secondsOffset));
+        values.put("value", value);
+        values.put("measurement_type", measurementType);
+        values.put("device_id", deviceId.toString());
+        values.put("house_id", houseId.toString());
+        values.put("location_id", locationId.toString());
+        return record;
+    }
+}
@@ -0,0 +1,127 @@
+package com.warmhouse.telemetry.service;
+
+import com.influxdb.client.QueryApi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TieredStorageServiceTest {
+    
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+    
+    private final Set<Object> lateWindows = new HashSet<>();
+    private QueryApi queryApi;
+    private ValueOperations<String, Object> values;
+    private TieredStorageService storage;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        queryApi = mock(QueryApi.class);
+        InfluxShard shard = mock(InfluxShard.class);
+        when(shard.getQueryApi()).thenReturn(queryApi);
+        InfluxShardRouter shardRouter = mock(InfluxShardRouter.class);
+        when(shardRouter.getShards()).thenReturn(List.of(shard));
+        
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        values = mock(ValueOperations.class);
+        SetOperations<String, Object> sets = mock(SetOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(redisTemplate.opsForSet()).thenReturn(sets);
+        when(sets.add(eq("telemetry:tiers:late"), any(Object[].class))).thenAnswer(invocation -> {
+            lateWindows.addAll(Arrays.asList(invocation.getArguments()).subList(1, invocation.getArguments().length));
+            return 1L;
+        });
+        when(sets.members("telemetry:tiers:late")).thenAnswer(invocation -> new HashSet<>(lateWindows));
+        when(sets.remove(eq("telemetry:tiers:late"), any(Object[].class))).thenAnswer(invocation -> {
+            Arrays.asList(invocation.getArguments()).subList(1, invocation.getArguments().length).forEach(lateWindows::remove);
+            return 1L;
+        });
+        
+        SchedulerLocks locks = mock(SchedulerLocks.class);
+        when(locks.acquire(eq("telemetry:tiers:compaction:lock"), anyLong())).thenReturn(true);
+        
+        storage = new TieredStorageService(shardRouter, redisTemplate, locks);
+        ReflectionTestUtils.setField(storage, "rawBucket", "telemetry");
+        ReflectionTestUtils.setField(storage, "rawRetention", "7d");
+        ReflectionTestUtils.setField(storage, "enabled", true);
+        ReflectionTestUtils.setField(storage, "minuteBucket", "telemetry_1m");
+        ReflectionTestUtils.setField(storage, "minuteRetention", "90d");
+        ReflectionTestUtils.setField(storage, "hourBucket", "telemetry_1h");
+        ReflectionTestUtils.setField(storage, "hourRetention", "1825d");
+        ReflectionTestUtils.setField(storage, "org", "warmhouse");
+        ReflectionTestUtils.setField(storage, "compactionIntervalMs", 60000L);
+        ReflectionTestUtils.setField(storage, "initialLookback", "1d");
+        ReflectionTestUtils.setField(storage, "bucketsReady", true);
+        storage.init();
+    }
+    
+    @Test
+    void picksCoarsestTierSatisfyingResolution() {
+        Instant dayAgo = Instant.now().minus(Duration.ofDays(1));
+        
+        assertEquals(0, storage.selectTier(dayAgo, Duration.ofSeconds(30)));
+        assertEquals(1, storage.selectTier(dayAgo, Duration.ofMinutes(5)));
+        assertEquals(2, storage.selectTier(dayAgo, Duration.ofHours(2)));
+    }
+    
+    @Test
+    void fallsBackToTierThatStillHoldsStart() {
+        // Raw data is gone after 7 days, so fine resolution is served from the 1m tier
+        assertEquals(1, storage.selectTier(Instant.now().minus(Duration.ofDays(30)), Duration.ofSeconds(1)));
+        assertEquals(2, storage.selectTier(Instant.now().minus(Duration.ofDays(365)), Duration.ofSeconds(1)));
+    }
+    
+    @Test
+    void parsesRetentionDurations() {
+        assertEquals(Duration.ofDays(30), TieredStorageService.parseDuration("30d"));
+        assertEquals(Duration.ofDays(14), TieredStorageService.parseDuration("2w"));
+        assertEquals(Duration.ofMinutes(90), TieredStorageService.parseDuration("90m"));
+        assertThrows(IllegalArgumentException.class, () -> TieredStorageService.parseDuration("30y"));
+    }
+    
+    @Test
+    void recompactsWindowsWrittenAfterTheirRollup() {
+        long hour = Math.floorDiv(System.currentTimeMillis(), HOUR) * HOUR - HOUR;
+        when(values.get("telemetry:tiers:watermark:1m")).thenReturn(hour);
+        when(values.get("telemetry:tiers:watermark:1h")).thenReturn(hour);
+        // Both tiers are caught up, so only late windows are compacted
+        ReflectionTestUtils.setField(storage, "compactionLagMs", 2 * HOUR);
+        storage.compact();
+        
+        // A reading held back by compression lands in a minute already rolled up; an hour old one too
+        storage.noteWritten(Instant.ofEpochMilli(hour - 30 * MINUTE + 5000));
+        storage.noteWritten(Instant.ofEpochMilli(hour + MINUTE));
+        storage.compact();
+        
+        Instant minute = Instant.ofEpochMilli(hour - 30 * MINUTE);
+        verify(queryApi).query(contains(String.format("from(bucket: \"telemetry\") |> range(start: %s, stop: %s)",
+                minute, minute.plusMillis(MINUTE))), eq("warmhouse"));
+        verify(queryApi).query(contains(String.format("from(bucket: \"telemetry_1m\") |> range(start: %s, stop: %s)",
+                Instant.ofEpochMilli(hour - HOUR), Instant.ofEpochMilli(hour))), eq("warmhouse"));
+        verify(queryApi, never()).query(contains(String.format("range(start: %s, stop: %s)",
+                Instant.ofEpochMilli(hour + MINUTE), Instant.ofEpochMilli(hour + 2 * MINUTE))), any(String.class));
+        assertTrue(lateWindows.isEmpty());
+    }
+}
@@ -0,0 +1,40 @@
+package com.warmhouse.telemetry.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+    
+    @Test
+    void neverForgetsAndStaysNearTheFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        UUID[] added = new UUID[10_000];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = UUID.randomUUID();
+            filter.put(Hashing.hash64(added[i]));
+        }
+        
+        for (UUID id : added) {
+            assertTrue(filter.mightContain(Hashing.hash64(id)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(Hashing.hash64(UUID.randomUUID()))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+    
+    @Test
+    void putReportsWhetherTheFilterChanged() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        long hash = Hashing.hash64("device-1");
+        
+        assertTrue(filter.put(hash));
+        assertFalse(filter.put(hash));
+    }
+}
@@ -0,0 +1,49 @@
+package com.warmhouse.telemetry.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+    
+    @Test
+    void spreadsKeysEvenly() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(List.of("a", "b", "c"), List.of("a", "b", "c"), 128);
+        
+        int[] counts = new int[3];
+        for (int i = 0; i < 30_000; i++) {
+            counts[ring.getNodes().indexOf(ring.locate(UUID.randomUUID().toString()))]++;
+        }
+        
+        for (int count : counts) {
+            assertEquals(10_000, count, 2_000);
+        }
+        double total = 0;
+        for (double share : ring.ownership()) {
+            total += share;
+        }
+        assertEquals(1.0, total, 1e-9);
+    }
+    
+    @Test
+    void addingNodeOnlyMovesKeysToIt() {
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(List.of("a", "b", "c"), List.of("a", "b", "c"), 128);
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(
+                List.of("a", "b", "c", "d"), List.of("a", "b", "c", "d"), 128);
+        
+        int moved = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String key = UUID.randomUUID().toString();
+            String owner = after.locate(key);
+            if (!owner.equals(before.locate(key))) {
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+        
+        assertEquals(5_000, moved, 1_500);
+    }
+}
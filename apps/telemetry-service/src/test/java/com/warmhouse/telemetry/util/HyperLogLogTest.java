@@ -0,0 +1,33 @@
+package com.warmhouse.telemetry.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+    
+    @Test
+    void estimatesDistinctValuesWithinErrorBound() {
+        HyperLogLog hll = new HyperLogLog(12);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50_000; i++) {
+                hll.add("value-" + i);
+            }
+        }
+        
+        // 1.04 / sqrt(4096) is about 1.6%; allow three standard errors
+        assertEquals(50_000, hll.estimate(), 50_000 * 0.05);
+    }
+    
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        HyperLogLog hll = new HyperLogLog(12);
+        for (int i = 0; i < 100; i++) {
+            hll.add("firmware-" + i);
+            hll.add("firmware-" + i);
+        }
+        
+        assertEquals(100, hll.estimate(), 2);
+        assertFalse(hll.add("firmware-7"));
+    }
+}
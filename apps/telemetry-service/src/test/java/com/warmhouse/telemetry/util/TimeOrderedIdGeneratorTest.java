@@ -0,0 +1,40 @@
+package com.warmhouse.telemetry.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedIdGeneratorTest {
+    
+    @Test
+    void idsAreVersionSevenAndSortByTime() {
+        AtomicLong clock = new AtomicLong(1_760_000_000_000L);
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(clock::get);
+        
+        UUID first = generator.next();
+        clock.incrementAndGet();
+        UUID second = generator.next();
+        
+        assertEquals(7, first.version());
+        assertEquals(2, first.variant());
+        assertEquals(1_760_000_000_000L, TimeOrderedIdGenerator.timestampMillis(first));
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(first.toString().compareTo(second.toString()) < 0);
+    }
+    
+    @Test
+    void concurrentCallersGetDistinctIds() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        
+        IntStream.range(0, 200_000).parallel().forEach(i -> ids.add(generator.next()));
+        
+        assertEquals(200_000, ids.size());
+    }
+}